@@ -1,11 +1,18 @@
 package com.aajpm.altair.config;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.aajpm.altair.utility.solver.CachingEphemeridesSolver;
+import com.aajpm.altair.utility.solver.EphemeridesCache;
 import com.aajpm.altair.utility.solver.EphemeridesSolver;
 import com.aajpm.altair.utility.solver.HorizonsEphemeridesSolver;
+import com.aajpm.altair.utility.solver.LocalEphemeridesSolver;
 
 @Configuration
 @ConfigurationProperties(prefix = "altair.astrometrics")
@@ -29,6 +36,26 @@ public class AstrometricsConfig {
     /** Dawn line, in degrees, that marks the point at which the Sun is considered to completely set/rise */
     private double dawnLine = -18.0;
 
+    /** Which solver to use, either "horizons" (JPL Horizons API, default) or "local" (offline) */
+    private String ephemeridesSolver = "horizons";
+
+    /** File where ephemerides results are persisted between restarts. Leave empty to cache in memory only */
+    private Path cachePath = Path.of(System.getProperty("user.home"), "Altair", "cache", "ephemerides.cache");
+
+    /** How many ephemerides results are kept in memory */
+    private int cacheSize = 1024;
+
+    /** How many upcoming nights are calculated in advance */
+    private int prefetchNights = 7;
+
+    /** Time between samples of the alt/az tables fetched from JPL Horizons */
+    private Duration ephemerisTableStep = Duration.ofMinutes(5);
+
+    /** Separation from the full Moon, in degrees, below which broadband targets are avoided. Scaled with the illumination */
+    private double moonAvoidance = 60.0;
+
+    /** Filters that are barely affected by the Moon, so their exposures ignore the moon avoidance */
+    private List<String> narrowbandFilters = List.of("Ha", "OIII", "SII");
 
     //#region Getters/Setters
     public double getSiteLatitude() {
@@ -70,6 +97,62 @@ public class AstrometricsConfig {
     public void setDawnLine(double dawnLine) {
         this.dawnLine = dawnLine;
     }
+
+    public String getEphemeridesSolver() {
+        return ephemeridesSolver;
+    }
+
+    public void setEphemeridesSolver(String ephemeridesSolver) {
+        this.ephemeridesSolver = ephemeridesSolver;
+    }
+
+    public Path getCachePath() {
+        return cachePath;
+    }
+
+    public void setCachePath(Path cachePath) {
+        this.cachePath = cachePath;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getPrefetchNights() {
+        return prefetchNights;
+    }
+
+    public void setPrefetchNights(int prefetchNights) {
+        this.prefetchNights = prefetchNights;
+    }
+
+    public Duration getEphemerisTableStep() {
+        return ephemerisTableStep;
+    }
+
+    public void setEphemerisTableStep(Duration ephemerisTableStep) {
+        this.ephemerisTableStep = ephemerisTableStep;
+    }
+
+    public double getMoonAvoidance() {
+        return moonAvoidance;
+    }
+
+    public void setMoonAvoidance(double moonAvoidance) {
+        this.moonAvoidance = moonAvoidance;
+    }
+
+    public List<String> getNarrowbandFilters() {
+        return narrowbandFilters;
+    }
+
+    public void setNarrowbandFilters(List<String> narrowbandFilters) {
+        this.narrowbandFilters = narrowbandFilters;
+    }
     //#endregion
 
     //#endregion
@@ -77,7 +160,18 @@ public class AstrometricsConfig {
 
     @Bean
     public EphemeridesSolver ephemeridesSolver() {
-        return new HorizonsEphemeridesSolver(this);
+        EphemeridesCache cache = new EphemeridesCache(cachePath, cacheSize);
+        HorizonsEphemeridesSolver horizons = new HorizonsEphemeridesSolver(this);
+        horizons.setCache(cache);
+
+        EphemeridesSolver solver;
+        if ("local".equalsIgnoreCase(ephemeridesSolver)) {
+            // Horizons is only used to fetch the orbital elements of small bodies once
+            solver = new LocalEphemeridesSolver(this, horizons);
+        } else {
+            solver = horizons;
+        }
+        return new CachingEphemeridesSolver(solver, cache);
     }
     
 }
@@ -59,6 +59,20 @@ public class ObservatoryConfig {
      */
     private boolean disableSafetyChecks = false;
 
+    /**
+     * Maximum time (in ms) the governor waits for a transition, like starting
+     * the observatory, starting an order or parking, before giving up on it.
+     * It will try again on the next event.
+     */
+    private long transitionTimeout = 300000;
+
+    /**
+     * If true, the governor slews to the next target and moves the filter
+     * wheel and focuser while the previous image is being downloaded, instead
+     * of waiting for it to be saved.
+     */
+    private boolean pipelineExposures = true;
+
 
     private DomeConfig dome;
 
@@ -68,6 +82,10 @@ public class ObservatoryConfig {
 
     private FocuserConfig focuser;
 
+    private SamplingConfig sampling = new SamplingConfig();
+
+    private WorkersConfig workers = new WorkersConfig();
+
 
     //#region Getters/Setters
     public int getStatusUpdateInterval() {
@@ -102,6 +120,22 @@ public class ObservatoryConfig {
         this.disableSafetyChecks = disableSafetyChecks;
     }
 
+    public long getTransitionTimeout() {
+        return transitionTimeout;
+    }
+
+    public void setTransitionTimeout(long transitionTimeout) {
+        this.transitionTimeout = transitionTimeout;
+    }
+
+    public boolean getPipelineExposures() {
+        return pipelineExposures;
+    }
+
+    public void setPipelineExposures(boolean pipelineExposures) {
+        this.pipelineExposures = pipelineExposures;
+    }
+
     public DomeConfig getDome() {
         return dome;
     }
@@ -134,6 +168,22 @@ public class ObservatoryConfig {
         this.focuser = focuser;
     }
 
+    public SamplingConfig getSampling() {
+        return sampling;
+    }
+
+    public void setSampling(SamplingConfig sampling) {
+        this.sampling = sampling;
+    }
+
+    public WorkersConfig getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(WorkersConfig workers) {
+        this.workers = workers;
+    }
+
     //#endregion
 
     //#endregion
@@ -141,40 +191,41 @@ public class ObservatoryConfig {
     //#region Beans
 
     // TODO: Make more modular and configurable from application.yaml (use a factory?)
+    // Synchronous methods poll at the device's active rate, as they only wait while it's busy.
 
     @Bean
     public TelescopeService telescopeService() {
         AlpacaClient client = new AlpacaClient("http://localhost:32323/", (int) synchronousTimeout, (int) synchronousTimeout);
         
-        return new ASCOMTelescopeService(client, 0, statusUpdateInterval, synchronousTimeout);
+        return new ASCOMTelescopeService(client, 0, (int) sampling.getTelescope().getActiveInterval(statusUpdateInterval), synchronousTimeout);
     }
 
     @Bean
     public DomeService domeService() {
         AlpacaClient client = new AlpacaClient("http://localhost:32323/", (int) synchronousTimeout, (int) synchronousTimeout);
         
-        return new ASCOMDomeService(client, 0, dome, statusUpdateInterval, synchronousTimeout);
+        return new ASCOMDomeService(client, 0, dome, (int) sampling.getDome().getActiveInterval(statusUpdateInterval), synchronousTimeout);
     }
 
     @Bean
     public FocuserService focuserService() {
         AlpacaClient client = new AlpacaClient("http://localhost:32323/", (int) synchronousTimeout, (int) synchronousTimeout);
         
-        return new ASCOMFocuserService(client, 0, focuser, statusUpdateInterval, synchronousTimeout);
+        return new ASCOMFocuserService(client, 0, focuser, (int) sampling.getFocuser().getActiveInterval(statusUpdateInterval), synchronousTimeout);
     }
 
     @Bean
     public CameraService cameraService() {
         AlpacaClient client = new AlpacaClient("http://localhost:11111/", (int) synchronousTimeout, (int) synchronousTimeout);
         
-        return new ASCOMCameraService(client, 0, camera, statusUpdateInterval, synchronousTimeout);
+        return new ASCOMCameraService(client, 0, camera, (int) sampling.getCamera().getActiveInterval(statusUpdateInterval), synchronousTimeout);
     }
 
     @Bean
     public FilterWheelService filterWheelService() {
         AlpacaClient client = new AlpacaClient("http://localhost:32323/", (int) synchronousTimeout, (int) synchronousTimeout);
         
-        return new ASCOMFilterWheelService(client, 0, filterWheel, statusUpdateInterval, synchronousTimeout);
+        return new ASCOMFilterWheelService(client, 0, filterWheel, (int) sampling.getFilterWheel().getActiveInterval(statusUpdateInterval), synchronousTimeout);
     }
 
     @Bean
@@ -267,6 +318,12 @@ public class ObservatoryConfig {
         @NotNull
         private Path imageStorePath = Path.of(System.getProperty("user.home"), "Altair", "images");
 
+        /**
+         * Number of images saved in each transaction when ingesting an archive
+         * of existing FITS files.
+         */
+        private int ingestionBatchSize = 500;
+
         
         @PostConstruct  // Sets up the image store path
         public void init() throws IOException {
@@ -331,6 +388,14 @@ public class ObservatoryConfig {
             this.imageStorePath = Path.of(imageStorePath);
         }
 
+        public int getIngestionBatchSize() {
+            return ingestionBatchSize;
+        }
+
+        public void setIngestionBatchSize(int ingestionBatchSize) {
+            this.ingestionBatchSize = Math.max(1, ingestionBatchSize);
+        }
+
         public double getTargetCooling() {
             return targetCooling;
         }
@@ -412,5 +477,220 @@ public class ObservatoryConfig {
         }
         //#endregion
     }
+
+    public static class SamplingConfig {
+        /** Sampling policy for the telescope. Active while slewing, parked while parked. */
+        private PolicyConfig telescope = new PolicyConfig();
+
+        /** Sampling policy for the dome. Active while slewing or moving the shutter, parked while parked. */
+        private PolicyConfig dome = new PolicyConfig();
+
+        /** Sampling policy for the focuser. Active while moving. */
+        private PolicyConfig focuser = new PolicyConfig();
+
+        /** Sampling policy for the camera. Active while exposing or downloading an image. */
+        private PolicyConfig camera = new PolicyConfig();
+
+        /** Sampling policy for the filter wheel. Active while moving. */
+        private PolicyConfig filterWheel = new PolicyConfig();
+
+        /** Sampling policy for the weather watch. It has no busy states, so only the idle interval is used. */
+        private PolicyConfig weatherWatch = new PolicyConfig();
+
+        /** Sampling policy for the governor. Active while running an order, parked while parked or disabled. */
+        private PolicyConfig governor = new PolicyConfig();
+
+
+        //#region Getters/Setters
+        public PolicyConfig getTelescope() {
+            return telescope;
+        }
+
+        public void setTelescope(PolicyConfig telescope) {
+            this.telescope = telescope;
+        }
+
+        public PolicyConfig getDome() {
+            return dome;
+        }
+
+        public void setDome(PolicyConfig dome) {
+            this.dome = dome;
+        }
+
+        public PolicyConfig getFocuser() {
+            return focuser;
+        }
+
+        public void setFocuser(PolicyConfig focuser) {
+            this.focuser = focuser;
+        }
+
+        public PolicyConfig getCamera() {
+            return camera;
+        }
+
+        public void setCamera(PolicyConfig camera) {
+            this.camera = camera;
+        }
+
+        public PolicyConfig getFilterWheel() {
+            return filterWheel;
+        }
+
+        public void setFilterWheel(PolicyConfig filterWheel) {
+            this.filterWheel = filterWheel;
+        }
+
+        public PolicyConfig getWeatherWatch() {
+            return weatherWatch;
+        }
+
+        public void setWeatherWatch(PolicyConfig weatherWatch) {
+            this.weatherWatch = weatherWatch;
+        }
+
+        public PolicyConfig getGovernor() {
+            return governor;
+        }
+
+        public void setGovernor(PolicyConfig governor) {
+            this.governor = governor;
+        }
+        //#endregion
+    }
+
+    public static class WorkersConfig {
+        /** Threads checking the observing conditions. Never shared, so the checks don't wait behind anything else. */
+        private int safetyThreads = 1;
+
+        /** Threads running the governor's transitions and its database work. */
+        private int governorThreads = 2;
+
+        /** Threads slaving the dome to the telescope. */
+        private int slavingThreads = 1;
+
+        /** Threads downloading and saving the images. */
+        private int persistenceThreads = 2;
+
+        /** Threads reading the headers of the FITS files when ingesting an archive. */
+        private int ingestionThreads = 4;
+
+
+        //#region Getters/Setters
+        public int getSafetyThreads() {
+            return safetyThreads;
+        }
+
+        public void setSafetyThreads(int safetyThreads) {
+            this.safetyThreads = Math.max(1, safetyThreads);
+        }
+
+        public int getGovernorThreads() {
+            return governorThreads;
+        }
+
+        public void setGovernorThreads(int governorThreads) {
+            this.governorThreads = Math.max(1, governorThreads);
+        }
+
+        public int getSlavingThreads() {
+            return slavingThreads;
+        }
+
+        public void setSlavingThreads(int slavingThreads) {
+            this.slavingThreads = Math.max(1, slavingThreads);
+        }
+
+        public int getPersistenceThreads() {
+            return persistenceThreads;
+        }
+
+        public void setPersistenceThreads(int persistenceThreads) {
+            this.persistenceThreads = Math.max(1, persistenceThreads);
+        }
+
+        public int getIngestionThreads() {
+            return ingestionThreads;
+        }
+
+        public void setIngestionThreads(int ingestionThreads) {
+            this.ingestionThreads = Math.max(1, ingestionThreads);
+        }
+        //#endregion
+    }
+
+    public static class PolicyConfig {
+        /** Interval in ms between polls while the device is busy. 0 to use statusUpdateInterval. */
+        private long activeInterval = 0;
+
+        /** Interval in ms between polls while the device is connected but not busy. 0 to use statusUpdateInterval. */
+        private long idleInterval = 0;
+
+        /** Interval in ms between polls while the device is parked or disconnected. 0 to use statusUpdateInterval. */
+        private long parkedInterval = 0;
+
+        /** Longest time in ms without sending a status, even if it hasn't changed. 0 to only send changes. */
+        private long maxInterval = 0;
+
+
+        //#region Getters/Setters
+        public long getActiveInterval() {
+            return activeInterval;
+        }
+
+        /**
+         * @param fallback The interval to use if none was configured, in ms.
+         * @return The active interval in ms, or {@code fallback} if not set.
+         */
+        public long getActiveInterval(long fallback) {
+            return activeInterval > 0 ? activeInterval : fallback;
+        }
+
+        public void setActiveInterval(long activeInterval) {
+            this.activeInterval = Math.max(0, activeInterval);
+        }
+
+        public long getIdleInterval() {
+            return idleInterval;
+        }
+
+        /**
+         * @param fallback The interval to use if none was configured, in ms.
+         * @return The idle interval in ms, or {@code fallback} if not set.
+         */
+        public long getIdleInterval(long fallback) {
+            return idleInterval > 0 ? idleInterval : fallback;
+        }
+
+        public void setIdleInterval(long idleInterval) {
+            this.idleInterval = Math.max(0, idleInterval);
+        }
+
+        public long getParkedInterval() {
+            return parkedInterval;
+        }
+
+        /**
+         * @param fallback The interval to use if none was configured, in ms.
+         * @return The parked interval in ms, or {@code fallback} if not set.
+         */
+        public long getParkedInterval(long fallback) {
+            return parkedInterval > 0 ? parkedInterval : fallback;
+        }
+
+        public void setParkedInterval(long parkedInterval) {
+            this.parkedInterval = Math.max(0, parkedInterval);
+        }
+
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+
+        public void setMaxInterval(long maxInterval) {
+            this.maxInterval = Math.max(0, maxInterval);
+        }
+        //#endregion
+    }
     //#endregion
 }
@@ -0,0 +1,119 @@
+package com.aajpm.altair.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.aajpm.altair.utility.scheduler.DispatchSchedulingEngine;
+import com.aajpm.altair.utility.scheduler.FifoSchedulingEngine;
+import com.aajpm.altair.utility.scheduler.SchedulingEngine;
+
+@Configuration
+@ConfigurationProperties(prefix = "altair.scheduler")
+public class SchedulerConfig {
+
+    ///////////////////////////////// FIELDS //////////////////////////////////
+    //#region Fields
+
+    /** Which engine fills the free slots, either "dispatch" (default) or "fifo" (first come, first served) */
+    private String engine = "dispatch";
+
+    /** How much the quality of the sky (airmass and Moon) counts when choosing the next exposure */
+    private double qualityWeight = 1.0;
+
+    /** How much counts the fraction of its remaining visible time an order needs to be finished */
+    private double urgencyWeight = 1.0;
+
+    /** How much the priority of an order counts, older orders having more priority */
+    private double priorityWeight = 0.5;
+
+    /** Bonus to keep observing the same order instead of slewing to another one */
+    private double continuityWeight = 0.25;
+
+    /** Maximum number of passes of the local search over the dispatched plan, 0 to disable it */
+    private int localSearchPasses = 8;
+
+    /** How many nights ahead are planned to predict when the orders will be completed */
+    private int lookaheadNights = 7;
+
+    /** How many nights of the lookahead are prepared at the same time */
+    private int lookaheadThreads = 2;
+
+    //#region Getters/Setters
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public double getQualityWeight() {
+        return qualityWeight;
+    }
+
+    public void setQualityWeight(double qualityWeight) {
+        this.qualityWeight = qualityWeight;
+    }
+
+    public double getUrgencyWeight() {
+        return urgencyWeight;
+    }
+
+    public void setUrgencyWeight(double urgencyWeight) {
+        this.urgencyWeight = urgencyWeight;
+    }
+
+    public double getPriorityWeight() {
+        return priorityWeight;
+    }
+
+    public void setPriorityWeight(double priorityWeight) {
+        this.priorityWeight = priorityWeight;
+    }
+
+    public double getContinuityWeight() {
+        return continuityWeight;
+    }
+
+    public void setContinuityWeight(double continuityWeight) {
+        this.continuityWeight = continuityWeight;
+    }
+
+    public int getLocalSearchPasses() {
+        return localSearchPasses;
+    }
+
+    public void setLocalSearchPasses(int localSearchPasses) {
+        this.localSearchPasses = localSearchPasses;
+    }
+
+    public int getLookaheadNights() {
+        return lookaheadNights;
+    }
+
+    public void setLookaheadNights(int lookaheadNights) {
+        this.lookaheadNights = lookaheadNights;
+    }
+
+    public int getLookaheadThreads() {
+        return lookaheadThreads;
+    }
+
+    public void setLookaheadThreads(int lookaheadThreads) {
+        this.lookaheadThreads = lookaheadThreads;
+    }
+    //#endregion
+
+    //#endregion
+    ////////////////////////////////// BEANS //////////////////////////////////
+
+    @Bean
+    public SchedulingEngine schedulingEngine() {
+        if ("fifo".equalsIgnoreCase(engine))
+            return new FifoSchedulingEngine();
+
+        return new DispatchSchedulingEngine(qualityWeight, urgencyWeight, priorityWeight, continuityWeight, localSearchPasses);
+    }
+
+}
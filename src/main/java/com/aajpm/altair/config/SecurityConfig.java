@@ -41,6 +41,7 @@ public class SecurityConfig {
                 .requestMatchers("/altair/api/*/stream").permitAll()
                 .requestMatchers("/altair/api/**").hasRole("ADVANCED_USER")
                 .requestMatchers("/altair/**").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().denyAll()
         ).formLogin(login -> login
                 .loginPage("/login")
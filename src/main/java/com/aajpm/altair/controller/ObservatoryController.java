@@ -1,7 +1,5 @@
 package com.aajpm.altair.controller;
 
-import java.time.Duration;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
@@ -13,6 +11,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.service.ObservatoryService;
 import com.aajpm.altair.service.ObservatoryService.ObservatoryStatus;
+import com.aajpm.altair.service.StatusPublisherService;
 import com.aajpm.altair.service.observatory.CameraService;
 import com.aajpm.altair.service.observatory.DomeService;
 import com.aajpm.altair.service.observatory.FilterWheelService;
@@ -54,6 +53,9 @@ public class ObservatoryController {
     @Autowired
     WeatherWatchService weatherWatch;
 
+    @Autowired
+    StatusPublisherService statusPublisher;
+
     //#endregion
     //////////////////////////////// ATTRIBUTES ///////////////////////////////
     
@@ -140,7 +142,6 @@ public class ObservatoryController {
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @ResponseBody
     public Flux<ObservatoryStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> observatory.getStatus());
+        return statusPublisher.getObservatoryStream();
     }
 }
@@ -1,7 +1,7 @@
 package com.aajpm.altair.controller.api;
 
 import java.io.IOException;
-import java.time.Duration;
+import java.nio.file.Path;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -19,7 +19,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.entity.AstroImage;
 import com.aajpm.altair.entity.ControlOrder;
 import com.aajpm.altair.security.account.AltairUser;
@@ -27,11 +26,11 @@ import com.aajpm.altair.security.account.AltairUserService;
 import com.aajpm.altair.service.AstroImageService;
 import com.aajpm.altair.service.GovernorService;
 import com.aajpm.altair.service.ObservatoryService;
+import com.aajpm.altair.service.StatusPublisherService;
+import com.aajpm.altair.service.WorkerService;
 import com.aajpm.altair.service.observatory.CameraService;
 import com.aajpm.altair.service.observatory.CameraService.CameraStatus;
 
-import nom.tam.fits.FitsException;
-
 import com.aajpm.altair.service.observatory.CameraService.CameraCapabilities;
 
 import reactor.core.publisher.Flux;
@@ -51,18 +50,20 @@ public class CameraAPIController {
     AstroImageService astroImageService;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
 
     @Autowired
     CameraService camera;
 
+    @Autowired
+    WorkerService workers;
+
     private final Logger logger = LoggerFactory.getLogger(CameraAPIController.class);
 
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<CameraStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> camera.getStatus());
+        return statusPublisher.getCameraStream();
     }
 
     @GetMapping(value = "/capabilities")
@@ -169,17 +170,22 @@ public class CameraAPIController {
         ControlOrder finalOrder = currentOrder;
 
         return observatory
-                .saveImage(null, currentUser)
-                .doOnSuccess(path -> {
+                .getImage(null, currentUser)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    Path path;
                     try {
-                        AstroImage dbImage = astroImageService.create(path);
-                            if (finalOrder != null) {
-                                dbImage.setControlOrder(finalOrder);
-                            }
-                            astroImageService.save(dbImage);
-                    } catch (FitsException | IOException e) {
-                        logger.error("Error saving image", e);
+                        path = observatory.saveImage(image);
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                    // Catalogue it from the header in memory instead of reading the file back
+                    AstroImage dbImage = astroImageService.create(path.getFileName().toString(), image.getHeader());
+                    if (finalOrder != null) {
+                        dbImage.setControlOrder(finalOrder);
                     }
+                    astroImageService.save(dbImage);
+                    return Mono.just(path);
                 }).map(path -> 
                     ResponseEntity.ok()
                         .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + path.getFileName().toString() + "\"")
@@ -1,7 +1,5 @@
 package com.aajpm.altair.controller.api;
 
-import java.time.Duration;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,10 +8,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.service.observatory.DomeService;
 import com.aajpm.altair.service.observatory.DomeService.DomeCapabilities;
 import com.aajpm.altair.service.observatory.DomeService.DomeStatus;
+import com.aajpm.altair.service.StatusPublisherService;
 
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
@@ -26,13 +24,12 @@ public class DomeAPIController {
     DomeService dome;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
 
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<DomeStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> dome.getStatus());
+        return statusPublisher.getDomeStream();
     }
 
     @GetMapping(value = "/capabilities")
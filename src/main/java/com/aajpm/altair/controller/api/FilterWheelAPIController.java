@@ -1,8 +1,6 @@
 package com.aajpm.altair.controller.api;
 
 import java.util.List;
-import java.time.Duration;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,9 +8,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.service.observatory.FilterWheelService;
 import com.aajpm.altair.service.observatory.FilterWheelService.FilterWheelStatus;
+import com.aajpm.altair.service.StatusPublisherService;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -25,13 +23,12 @@ public class FilterWheelAPIController {
     FilterWheelService filterWheel;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
 
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<FilterWheelStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> filterWheel.getStatus());
+        return statusPublisher.getFilterWheelStream();
     }
 
     @GetMapping(value = "/connected")
@@ -1,7 +1,5 @@
 package com.aajpm.altair.controller.api;
 
-import java.time.Duration;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,10 +8,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.service.observatory.FocuserService;
 import com.aajpm.altair.service.observatory.FocuserService.FocuserCapabilities;
 import com.aajpm.altair.service.observatory.FocuserService.FocuserStatus;
+import com.aajpm.altair.service.StatusPublisherService;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -26,13 +24,12 @@ public class FocuserAPIController {
     FocuserService focuser;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
 
     
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<FocuserStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> focuser.getStatus());
+        return statusPublisher.getFocuserStream();
     }
 
     @GetMapping(value = "/capabilities")
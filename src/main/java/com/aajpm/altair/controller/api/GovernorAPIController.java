@@ -1,6 +1,7 @@
 package com.aajpm.altair.controller.api;
 
-import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -10,13 +11,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.security.account.AltairUser;
 import com.aajpm.altair.security.account.AltairUserService;
 import com.aajpm.altair.service.GovernorService;
 import com.aajpm.altair.service.GovernorService.GovernorStatus;
+import com.aajpm.altair.service.LookaheadService;
 import com.aajpm.altair.service.OrderService;
 import com.aajpm.altair.service.ProgramService;
+import com.aajpm.altair.service.StatusPublisherService;
 import com.aajpm.altair.utility.exception.UnauthorisedException;
 
 import reactor.core.publisher.Flux;
@@ -36,13 +38,24 @@ public class GovernorAPIController {
     ProgramService programService;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
+
+    @Autowired
+    LookaheadService lookaheadService;
 
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<GovernorStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> governor.getStatus());
+        return statusPublisher.getGovernorStream();
+    }
+
+    /**
+     * Predicted completion time of the pending orders, by ID. Orders not
+     * expected to be completed within the lookahead are not included.
+     */
+    @GetMapping(value = "/forecast")
+    public Mono<Map<Long, Instant>> getForecast() {
+        return Mono.fromCallable(lookaheadService::getPredictedCompletions);
     }
 
     @PostMapping(value = "/enable")
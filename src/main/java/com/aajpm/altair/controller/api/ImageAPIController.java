@@ -0,0 +1,110 @@
+package com.aajpm.altair.controller.api;
+
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aajpm.altair.security.account.AltairUser;
+import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.ImageIngestionService;
+import com.aajpm.altair.service.ImageIngestionService.IngestionStatus;
+import com.aajpm.altair.service.ImageSearchService;
+import com.aajpm.altair.service.ImageSearchService.ImageSearch;
+import com.aajpm.altair.service.ImageSearchService.ImageSearchPage;
+import com.aajpm.altair.service.ImageSearchService.ImageSummary;
+import com.aajpm.altair.utility.exception.UnauthorisedException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/altair/api/images")
+public class ImageAPIController {
+
+    @Autowired
+    ImageIngestionService ingestionService;
+
+    @Autowired
+    ImageSearchService searchService;
+
+
+    /**
+     * Lists the catalogue, newest first, a page at a time. To get the next
+     * page, pass the {@code next} cursor of this one as {@code after}.
+     */
+    @GetMapping(value = "")
+    public Mono<ImageSearchPage> listImages(@RequestParam(value = "after", required = false) String after,
+                                            @RequestParam(value = "limit", required = false) Integer limit) {
+        return Mono.fromCallable(() -> searchService.search(ImageSearch.all(limit, after)));
+    }
+
+    /**
+     * Streams the whole catalogue, newest first, as one JSON object per line.
+     * If it's interrupted, it can be resumed with the cursor of a page.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImageSummary> exportImages(@RequestParam(value = "after", required = false) String after) {
+        return searchService.stream(ImageSearch.all(null, after));
+    }
+
+    /**
+     * Searches the catalogue. To get the next page, send the same search
+     * again with {@code after} set to the {@code next} cursor of this one.
+     */
+    @PostMapping(value = "/search")
+    public Mono<ImageSearchPage> search(@RequestBody ImageSearch search) {
+        return Mono.fromCallable(() -> searchService.search(search));
+    }
+
+    /**
+     * Streams every image that matches a search, as one JSON object per line.
+     */
+    @PostMapping(value = "/search/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImageSummary> exportSearch(@RequestBody ImageSearch search) {
+        return searchService.stream(search);
+    }
+
+    /**
+     * Starts cataloguing the FITS files in a directory of the image store.
+     * Starting it again on the same directory resumes it.
+     */
+    @PostMapping(value = "/ingest")
+    public Mono<IngestionStatus> startIngestion(@RequestParam(value = "path") String path) {
+        try {
+            AltairUser user = AltairUserService.getCurrentUser();
+            if (!user.isAdmin())
+                return Mono.error(new UnauthorisedException(user));
+
+            return Mono.just(ingestionService.start(Path.of(path)));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    @GetMapping(value = "/ingest")
+    public Mono<IngestionStatus> getIngestion() {
+        return Mono.fromCallable(ingestionService::getStatus);
+    }
+
+    @PostMapping(value = "/ingest/cancel")
+    public Mono<IngestionStatus> cancelIngestion() {
+        try {
+            AltairUser user = AltairUserService.getCurrentUser();
+            if (!user.isAdmin())
+                return Mono.error(new UnauthorisedException(user));
+
+            ingestionService.cancel();
+            return Mono.just(ingestionService.getStatus());
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.aajpm.altair.controller.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aajpm.altair.security.account.AltairUser;
+import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.OrderService;
+import com.aajpm.altair.service.OrderService.OrderSummary;
+import com.aajpm.altair.utility.KeysetPage;
+import com.aajpm.altair.utility.exception.UnauthorisedException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/altair/api/orders")
+public class OrderAPIController {
+
+    @Autowired
+    OrderService orderService;
+
+
+    /**
+     * Lists the orders of every user by id, a page at a time. To get the
+     * next page, pass the {@code next} id of this one as {@code after}.
+     */
+    @GetMapping(value = "")
+    public Mono<KeysetPage<OrderSummary>> listOrders(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            AltairUser user = AltairUserService.getCurrentUser();
+            if (!user.isAdmin())
+                return Mono.error(new UnauthorisedException(user));
+
+            return Mono.fromCallable(() -> orderService.findPage(after, limit).map(OrderSummary::of));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Streams the orders of every user by id, as one JSON object per line.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<OrderSummary> exportOrders(@RequestParam(value = "after", defaultValue = "0") long after) {
+        try {
+            AltairUser user = AltairUserService.getCurrentUser();
+            if (!user.isAdmin())
+                return Flux.error(new UnauthorisedException(user));
+
+            return orderService.stream(after).map(OrderSummary::of);
+        } catch (Exception e) {
+            return Flux.error(e);
+        }
+    }
+
+}
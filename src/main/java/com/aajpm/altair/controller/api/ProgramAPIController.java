@@ -0,0 +1,43 @@
+package com.aajpm.altair.controller.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aajpm.altair.service.ProgramService;
+import com.aajpm.altair.service.ProgramService.ProgramSummary;
+import com.aajpm.altair.utility.KeysetPage;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/altair/api/programs")
+public class ProgramAPIController {
+
+    @Autowired
+    ProgramService programService;
+
+
+    /**
+     * Lists the programs by id, a page at a time. To get the next page, pass
+     * the {@code next} id of this one as {@code after}.
+     */
+    @GetMapping(value = "")
+    public Mono<KeysetPage<ProgramSummary>> listPrograms(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                         @RequestParam(value = "limit", required = false) Integer limit) {
+        return Mono.fromCallable(() -> programService.findPage(after, limit).map(ProgramSummary::of));
+    }
+
+    /**
+     * Streams all the programs by id, as one JSON object per line.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProgramSummary> exportPrograms(@RequestParam(value = "after", defaultValue = "0") long after) {
+        return programService.stream(after).map(ProgramSummary::of);
+    }
+
+}
@@ -4,10 +4,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.service.observatory.TelescopeService;
 import com.aajpm.altair.service.observatory.TelescopeService.TelescopeCapabilities;
 import com.aajpm.altair.service.observatory.TelescopeService.TelescopeStatus;
+import com.aajpm.altair.service.StatusPublisherService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -17,8 +17,6 @@ import org.springframework.web.bind.annotation.PostMapping;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
-
 
 @RestController
 @RequestMapping("/altair/api/telescope")
@@ -28,13 +26,12 @@ public class TelescopeAPIController {
     TelescopeService telescope;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
 
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<TelescopeStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> telescope.getStatus());
+        return statusPublisher.getTelescopeStream();
     }
 
     @GetMapping(value = "/capabilities")
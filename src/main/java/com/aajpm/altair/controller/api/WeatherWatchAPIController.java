@@ -1,7 +1,5 @@
 package com.aajpm.altair.controller.api;
 
-import java.time.Duration;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,10 +7,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.service.observatory.WeatherWatchService;
 import com.aajpm.altair.service.observatory.WeatherWatchService.WeatherWatchCapabilities;
 import com.aajpm.altair.service.observatory.WeatherWatchService.WeatherWatchStatus;
+import com.aajpm.altair.service.StatusPublisherService;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -25,13 +23,12 @@ public class WeatherWatchAPIController {
     WeatherWatchService weatherWatch;
 
     @Autowired
-    ObservatoryConfig config;
+    StatusPublisherService statusPublisher;
 
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<WeatherWatchStatus> getStatus() {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
-                .flatMap(i -> weatherWatch.getStatus());
+        return statusPublisher.getWeatherWatchStream();
     }
 
     ///////////////////////////////// GETTERS /////////////////////////////////
@@ -5,8 +5,11 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import com.aajpm.altair.entity.AstroObject;
 import com.aajpm.altair.service.AstroObjectService;
+import com.aajpm.altair.utility.KeysetPage;
 
 @Controller
 @RequestMapping("/altair/data/astro-object")
@@ -15,9 +18,19 @@ public class AstroObjectController {
     @Autowired
     AstroObjectService astroObjectService;
 
+    /**
+     * Lists the objects a page at a time, so the page renders as fast with
+     * a catalogue of thousands as with a dozen.
+     */
     @GetMapping("/list")
-    public String listAll(Model model) {
-        model.addAttribute("astroObjects", astroObjectService.findAll());
+    public String listAll(Model model,
+                          @RequestParam(value = "after", defaultValue = "0") long after,
+                          @RequestParam(value = "limit", required = false) Integer limit) {
+        KeysetPage<AstroObject> page = astroObjectService.findPage(after, limit);
+        model.addAttribute("astroObjects", page.items().isEmpty() && after == 0 ? null : page.items());
+        model.addAttribute("after", after);
+        model.addAttribute("next", page.next());
+        model.addAttribute("limit", limit);
         
         return "data/astro-object/list";
     }
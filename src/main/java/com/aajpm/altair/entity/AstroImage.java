@@ -3,12 +3,29 @@ package com.aajpm.altair.entity;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.ArrayList;
 
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = {
+    // Catalogue searches: each one filters by one of these and pages by date, see ImageSearchService
+    @Index(name = "idx_images_date", columnList = "date, id"),
+    @Index(name = "idx_images_target_date", columnList = "target_id, date, id"),
+    @Index(name = "idx_images_filter_date", columnList = "filter, date, id"),
+    @Index(name = "idx_images_frame_type_date", columnList = "frame_type, date, id"),
+    @Index(name = "idx_images_exposure_time", columnList = "exposure_time, id"),
+    @Index(name = "idx_images_ccd_temperature", columnList = "ccd_temperature, id")
+})
+// An image with its metadata, as shown in the catalogue
+@NamedEntityGraph(name = "AstroImage.catalogue",
+    attributeNodes = {
+        @NamedAttributeNode("target"),
+        @NamedAttributeNode("controlOrder"),
+        @NamedAttributeNode("exposureOrder"),
+        @NamedAttributeNode(value = "values", subgraph = "values")
+    },
+    subgraphs = @NamedSubgraph(name = "values", attributeNodes = @NamedAttributeNode("attribute")))
 public class AstroImage extends BasicEntity implements Serializable {
 
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////	
@@ -16,7 +33,8 @@ public class AstroImage extends BasicEntity implements Serializable {
 
     public AstroImage() {
         super();
-        values = new HashSet<>();
+        // A list, as new values are all equal until they have an id
+        values = new ArrayList<>();
     }
 
     //#endregion
@@ -29,6 +47,25 @@ public class AstroImage extends BasicEntity implements Serializable {
     @Column(name = "date", nullable = false)
     private Instant creationDate;
 
+    // The most searched FITS keywords, copied from the header so they can be
+    // indexed. The rest are only in the values. Null if not in the header.
+
+    /** EXPTIME, in seconds */
+    @Column(name = "exposure_time", nullable = true)
+    private Double exposureTime;
+
+    /** FILTER */
+    @Column(name = "filter", length = 64, nullable = true)
+    private String filter;
+
+    /** CCD-TEMP, in degrees Celsius */
+    @Column(name = "ccd_temperature", nullable = true)
+    private Double ccdTemperature;
+
+    /** IMAGETYP, like Light Frame or Dark Frame */
+    @Column(name = "frame_type", length = 32, nullable = true)
+    private String frameType;
+
 
     //#region Getters & Setters
     public void setFileName(String fileName) {
@@ -46,22 +83,54 @@ public class AstroImage extends BasicEntity implements Serializable {
     public void setCreationDate(Instant date) {
         this.creationDate = date;
     }
+
+    public Double getExposureTime() {
+        return exposureTime;
+    }
+
+    public void setExposureTime(Double exposureTime) {
+        this.exposureTime = exposureTime;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public Double getCcdTemperature() {
+        return ccdTemperature;
+    }
+
+    public void setCcdTemperature(Double ccdTemperature) {
+        this.ccdTemperature = ccdTemperature;
+    }
+
+    public String getFrameType() {
+        return frameType;
+    }
+
+    public void setFrameType(String frameType) {
+        this.frameType = frameType;
+    }
     //#endregion
 
     //#endregion
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = true)
+    @ManyToOne(fetch = FetchType.LAZY, optional = true)
     private ControlOrder controlOrder;
 
-    @OneToOne(fetch = FetchType.EAGER, optional = true, mappedBy = "image")
+    @OneToOne(fetch = FetchType.LAZY, optional = true, mappedBy = "image")
     private ExposureOrder exposureOrder;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = true)
+    @ManyToOne(fetch = FetchType.LAZY, optional = true)
     private AstroObject target;
 
-    @OneToMany(mappedBy = "image", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "image", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private Collection<ImageValue> values;
 
     //#region Getters & Setters
@@ -2,12 +2,16 @@ package com.aajpm.altair.entity;
 
 import java.io.Serializable;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PositiveOrZero;
 
 @Entity
 @Table(name = "objects")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class AstroObject extends BasicEntity implements Serializable {
 
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////	
@@ -1,9 +1,12 @@
 package com.aajpm.altair.entity;
 
+import org.hibernate.proxy.HibernateProxy;
+
 import jakarta.persistence.*;
 
-@Entity
-@Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
+// Not an entity itself, so each entity is the root of its own hierarchy and
+// has its own second-level cache region
+@MappedSuperclass
 public abstract class BasicEntity {
 
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////
@@ -17,8 +20,13 @@ public abstract class BasicEntity {
     /////////////////////////////// ATTRIBUTES ////////////////////////////////
     //#region Attributes
 
+    // Ids are unique across all the entities, and are taken from the table
+    // 50 at a time, so new entities don't need a round-trip each and their
+    // inserts can go in JDBC batches. Same table and segment as before.
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)    // To ensure uniqueness
+    @TableGenerator(name = "altair_ids", table = "hibernate_sequences", pkColumnName = "sequence_name",
+                    valueColumnName = "next_val", pkColumnValue = "default", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "altair_ids")
     private long id;
 
     @Version
@@ -49,11 +57,15 @@ public abstract class BasicEntity {
         return this.getClass().getSimpleName() + " [id=" + id + ", version=" + this.version +  "]";
     }
 
+    // Both use getId() and not the field, as lazy associations are proxies
+    // whose own fields are never set
+
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + (int) (id ^ (id >>> 32));
+        long key = getId();
+        result = prime * result + (int) (key ^ (key >>> 32));
         return result;
     }
 
@@ -64,12 +76,21 @@ public abstract class BasicEntity {
         if (obj == null)
             return false;
         if (obj instanceof Long)
-            return id == (Long) obj;
-        if (getClass() != obj.getClass())
+            return getId() == (Long) obj;
+        if (!(obj instanceof BasicEntity) || effectiveClass(this) != effectiveClass(obj))
             return false;
 
         BasicEntity other = (BasicEntity) obj;
-        return id == other.id;
+        return getId() == other.getId();
+    }
+
+    /**
+     * @return The class of the entity, without initializing it if it's a proxy.
+     */
+    private static Class<?> effectiveClass(Object entity) {
+        return entity instanceof HibernateProxy proxy
+                ? proxy.getHibernateLazyInitializer().getPersistentClass()
+                : entity.getClass();
     }
 
     //#endregion
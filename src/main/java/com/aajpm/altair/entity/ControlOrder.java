@@ -12,7 +12,11 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 
 @Entity
-@Table(name = "control_orders")
+@Table(name = "control_orders", indexes = {
+    // Overlap queries: only the orders that end after the range starts are scanned
+    @Index(name = "idx_control_orders_end_time", columnList = "requested_end, requested_time"),
+    @Index(name = "idx_control_orders_time_end", columnList = "requested_time, requested_end")
+})
 @DiscriminatorValue("control")
 public class ControlOrder extends Order	{
 
@@ -36,6 +40,10 @@ public class ControlOrder extends Order	{
     @NotNull
     private Duration requestedDuration;
 
+    /** Kept in sync with the requested time and duration, so the database can index it */
+    @Column(name = "requested_end")
+    private Instant requestedEnd;
+
 
     //#region Getters & Setters
     public Instant getRequestedTime() {
@@ -44,6 +52,7 @@ public class ControlOrder extends Order	{
 
     public void setRequestedTime(Instant requestedTime) {
         this.requestedTime = requestedTime;
+        updateRequestedEnd();
     }
 
     public Duration getRequestedDuration() {
@@ -52,6 +61,14 @@ public class ControlOrder extends Order	{
 
     public void setRequestedDuration(Duration requestedDuration) {
         this.requestedDuration = requestedDuration;
+        updateRequestedEnd();
+    }
+
+    public Instant getRequestedEnd() {
+        // Orders saved before the column existed don't have it until backfilled
+        if (requestedEnd == null && requestedTime != null && requestedDuration != null)
+            return requestedTime.plus(requestedDuration);
+        return requestedEnd;
     }
     //#endregion
 
@@ -60,7 +77,7 @@ public class ControlOrder extends Order	{
     //#region Relationships
 
     @OneToMany( mappedBy = "controlOrder",
-                fetch = FetchType.EAGER,
+                fetch = FetchType.LAZY,
                 cascade = {
                     CascadeType.PERSIST,
                     CascadeType.MERGE,
@@ -95,6 +112,15 @@ public class ControlOrder extends Order	{
         return new Interval(requestedTime, requestedDuration);
     }
 
+    /**
+     * Sets the requested end from the requested time and duration.
+     */
+    public void updateRequestedEnd() {
+        requestedEnd = (requestedTime != null && requestedDuration != null)
+                        ? requestedTime.plus(requestedDuration)
+                        : null;
+    }
+
     //#endregion
 
 }
@@ -53,13 +53,13 @@ public class ExposureOrder extends BasicEntity implements Serializable {
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private ProgramOrder program;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private ExposureParams exposureParams;
 
-    @OneToOne(fetch = FetchType.EAGER, optional = true, cascade = CascadeType.ALL, orphanRemoval = false)
+    @OneToOne(fetch = FetchType.LAZY, optional = true, cascade = CascadeType.ALL, orphanRemoval = false)
     private AstroImage image;
 
     //#region Getters & Setters
@@ -3,11 +3,15 @@ package com.aajpm.altair.entity;
 import java.io.Serializable;
 import java.util.Collection;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
 @Entity
 @Table(name = "exposure_params")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class ExposureParams extends BasicEntity implements Serializable {
     
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////	
@@ -258,10 +262,10 @@ public class ExposureParams extends BasicEntity implements Serializable {
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @ManyToOne(optional = false, fetch = FetchType.EAGER)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Program program;
 
-    @OneToMany(mappedBy = "exposureParams", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "exposureParams", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private Collection<ExposureOrder> exposureOrders;
 
 
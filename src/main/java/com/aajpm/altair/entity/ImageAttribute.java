@@ -4,11 +4,15 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 
 @Entity
 @Table(name = "image_attributes")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class ImageAttribute extends BasicEntity implements Serializable {
     
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////	
@@ -80,7 +84,7 @@ public class ImageAttribute extends BasicEntity implements Serializable {
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @OneToMany(mappedBy = "attribute", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "attribute", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private Collection<ImageValue> values;
 
 
@@ -1,11 +1,17 @@
 package com.aajpm.altair.entity;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "image_values")
+@Table(name = "image_values", indexes = {
+    // Searches by attribute, the image id last so the EXISTS subqueries never read the rows
+    @Index(name = "idx_image_values_text", columnList = "attribute_id, value, image_id"),
+    @Index(name = "idx_image_values_number", columnList = "attribute_id, numeric_value, image_id"),
+    @Index(name = "idx_image_values_date", columnList = "attribute_id, date_value, image_id")
+})
 public class ImageValue extends BasicEntity implements Serializable {
     
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////	
@@ -20,6 +26,15 @@ public class ImageValue extends BasicEntity implements Serializable {
     @Column(name = "value", length = 512)
     private String value;
 
+    // The value again, typed, if it's a number or a date, so it can be
+    // searched by range. Null otherwise.
+
+    @Column(name = "numeric_value", nullable = true)
+    private Double numericValue;
+
+    @Column(name = "date_value", nullable = true)
+    private Instant dateValue;
+
 
     //#region Getters & Setters
     public String getValue() {
@@ -29,16 +44,32 @@ public class ImageValue extends BasicEntity implements Serializable {
     public void setValue(String value) {
         this.value = value;
     }
+
+    public Double getNumericValue() {
+        return numericValue;
+    }
+
+    public void setNumericValue(Double numericValue) {
+        this.numericValue = numericValue;
+    }
+
+    public Instant getDateValue() {
+        return dateValue;
+    }
+
+    public void setDateValue(Instant dateValue) {
+        this.dateValue = dateValue;
+    }
     //#endregion
 
     //#endregion
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private AstroImage image;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private ImageAttribute attribute;
 
 
@@ -9,8 +9,9 @@ import jakarta.persistence.*;
 
 @Entity
 @Table(name = "orders")
-@Inheritance(strategy = InheritanceType.JOINED)
-@DiscriminatorColumn(name = "order_type")
+// Each kind of order in its own table, with every column, as when it was
+// under BasicEntity: JOINED would look for the common columns in "orders"
+@Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
 public abstract class Order extends BasicEntity implements Serializable {
 
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////
@@ -53,7 +54,7 @@ public abstract class Order extends BasicEntity implements Serializable {
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private AltairUser user;
 
 
@@ -8,6 +8,18 @@ import jakarta.persistence.*;
 @Entity
 @Table(name = "program_orders")
 @DiscriminatorValue("program")
+// Everything the scheduler and the governor need to run the order, in one query
+@NamedEntityGraph(name = "ProgramOrder.schedule",
+    attributeNodes = {
+        @NamedAttributeNode("user"),
+        @NamedAttributeNode(value = "program", subgraph = "program"),
+        @NamedAttributeNode(value = "exposureOrders", subgraph = "exposureOrders")
+    },
+    subgraphs = {
+        @NamedSubgraph(name = "program", attributeNodes = @NamedAttributeNode("target")),
+        @NamedSubgraph(name = "exposureOrders", attributeNodes = @NamedAttributeNode(value = "exposureParams", subgraph = "exposureParams")),
+        @NamedSubgraph(name = "exposureParams", attributeNodes = @NamedAttributeNode("program"))
+    })
 public class ProgramOrder extends Order {
 
     ////////////////////////////// CONSTRUCTORS ///////////////////////////////
@@ -28,10 +40,10 @@ public class ProgramOrder extends Order {
     //////////////////////////// RELATIONSHIPS ////////////////////////////////
     //#region Relationships
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private Program program;
 
-    @OneToMany(mappedBy = "program", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "program", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private List<ExposureOrder> exposureOrders;
 
 
@@ -3,7 +3,9 @@ package com.aajpm.altair.repository;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
@@ -12,21 +14,42 @@ import com.aajpm.altair.entity.AstroImage;
 //@Repository - not needed because this is a subinterface of JpaRepository
 public interface AstroImageRepository extends JpaRepository<AstroImage, Long> {
 
+    // The catalogue queries load the images with their metadata, see AstroImage.catalogue
+
+    @EntityGraph("AstroImage.catalogue")
     @Query("SELECT i FROM AstroImage i WHERE i.controlOrder.user.id = ?1 OR i.exposureOrder.program.user.id = ?1")    
     Collection<AstroImage> findByUserId(long userId);
 
+    @EntityGraph("AstroImage.catalogue")
     Collection<AstroImage> findByTargetId(long targetId);
 
+    @EntityGraph("AstroImage.catalogue")
     Collection<AstroImage> findByValuesValueAndValuesAttributeName(String imageValue, String attributeName);
 
     //Check if it compiles
+    @EntityGraph("AstroImage.catalogue")
     Collection<AstroImage> findByValuesAttributeNameAndValuesValueIsNull(String attributeName);
 
+    @EntityGraph("AstroImage.catalogue")
     @Query("SELECT i FROM AstroImage i WHERE i.creationDate BETWEEN ?1 AND ?2 AND (i.controlOrder.user.id = ?3 OR i.exposureOrder.program.user.id = ?3) AND i.target.id = ?4 ORDER BY i.creationDate ASC")
     List<AstroImage> findByCreationDateBetweenAndUserIdAndTargetIdOrderByCreationDateAsc(Instant start, Instant end, long userId, long targetId);
 
+    @EntityGraph("AstroImage.catalogue")
     List<AstroImage> findByCreationDateBetweenOrderByCreationDateAsc(Instant start, Instant end);
 
+    @EntityGraph("AstroImage.catalogue")
     List<AstroImage> findByCreationDateBetweenAndTargetIdOrderByCreationDateAsc(Instant start, Instant end, long targetId);
 
+    @Query("SELECT i.fileName FROM AstroImage i")
+    Set<String> findAllFileNames();
+
+    // The images catalogued before the searched keywords had their own columns
+    @EntityGraph("AstroImage.catalogue")
+    @Query("SELECT i FROM AstroImage i WHERE EXISTS (SELECT v FROM ImageValue v WHERE v.image = i AND ("
+         + "(v.attribute.fitsKeyword = 'EXPTIME' AND i.exposureTime IS NULL) OR "
+         + "(v.attribute.fitsKeyword = 'FILTER' AND i.filter IS NULL) OR "
+         + "(v.attribute.fitsKeyword = 'CCD-TEMP' AND i.ccdTemperature IS NULL) OR "
+         + "(v.attribute.fitsKeyword = 'IMAGETYP' AND i.frameType IS NULL)))")
+    List<AstroImage> findWithSearchColumnsMissing();
+
 }
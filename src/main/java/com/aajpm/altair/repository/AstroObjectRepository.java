@@ -1,16 +1,29 @@
 package com.aajpm.altair.repository;
 
 import java.util.Collection;
+import java.util.List;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.aajpm.altair.entity.AstroObject;
 
+import jakarta.persistence.QueryHint;
+
 //@Repository - not needed because this is a subinterface of JpaRepository
-public interface AstroObjectRepository extends JpaRepository<AstroObject, Long> {
+public interface AstroObjectRepository extends KeysetRepository<AstroObject> {
     
+    // Looked up by name by the scheduler and on every image catalogued, so
+    // these are cached until the table is written to
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<AstroObject> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     AstroObject findByName(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     AstroObject findByNameIgnoreCase(String name);
 
     Collection<AstroObject> findByType(String type);
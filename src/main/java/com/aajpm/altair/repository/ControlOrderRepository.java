@@ -3,7 +3,9 @@ package com.aajpm.altair.repository;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
@@ -12,10 +14,14 @@ import com.aajpm.altair.entity.ControlOrder;
 //@Repository - not needed because this is a subinterface of JpaRepository
 public interface ControlOrderRepository extends JpaRepository<ControlOrder, Long>{
 
+    // Control orders are always used with their user, and never with their images
+
+    @EntityGraph(attributePaths = "user")
     Collection<ControlOrder> findByUserId(long userID);
 
     Collection<ControlOrder> findByCompletedFalse();
 
+    @EntityGraph(attributePaths = "user")
     List<ControlOrder> findByCompletedFalseOrderByCreationTimeAsc();
 
     @Query("SELECT o FROM ControlOrder o WHERE o.requestedTime >= ?1 AND o.requestedTime < ?2")
@@ -27,5 +33,18 @@ public interface ControlOrderRepository extends JpaRepository<ControlOrder, Long
     Collection<ControlOrder> findByRequestedTimeBefore(Instant endTime);
 
     List<ControlOrder> findByRequestedTimeBeforeOrderByRequestedTimeAsc(Instant endTime);
+
+    @EntityGraph(attributePaths = "user")
+    @Query("SELECT o FROM ControlOrder o WHERE o.requestedTime >= ?1 AND o.requestedEnd < ?2 ORDER BY o.requestedTime ASC")
+    List<ControlOrder> findWithinRangeOrder(Instant startTime, Instant endTime);
+
+    @EntityGraph(attributePaths = "user")
+    @Query("SELECT o FROM ControlOrder o WHERE o.requestedEnd > ?1 AND o.requestedTime < ?2 ORDER BY o.requestedTime ASC")
+    List<ControlOrder> findOverlappingOrder(Instant startTime, Instant endTime);
+
+    List<ControlOrder> findByRequestedEndIsNull();
+
+    @EntityGraph(attributePaths = "user")
+    Optional<ControlOrder> findWithUserById(long id);
     
 }
@@ -2,6 +2,7 @@ package com.aajpm.altair.repository;
 
 import java.util.Collection;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
@@ -10,6 +11,7 @@ import com.aajpm.altair.entity.ExposureOrder;
 //@Repository - not needed because this is a subinterface of JpaRepository
 public interface ExposureOrderRepository extends JpaRepository<ExposureOrder, Long> {
 
+    @EntityGraph(attributePaths = { "program", "exposureParams" })
     Collection<ExposureOrder> findByProgramUserId(long userID);
 
     Collection<ExposureOrder> findByProgramId(long programID);
@@ -18,6 +20,7 @@ public interface ExposureOrderRepository extends JpaRepository<ExposureOrder, Lo
 
     Collection<ExposureOrder> findByState(String state);
 
+    @EntityGraph(attributePaths = { "program", "exposureParams" })
     @Query("SELECT eo FROM ExposureOrder eo WHERE eo.state  <> 'COMPLETED'")
     Collection<ExposureOrder> findNotCompleted();
     
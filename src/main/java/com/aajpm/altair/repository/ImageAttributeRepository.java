@@ -1,14 +1,29 @@
 package com.aajpm.altair.repository;
 
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.aajpm.altair.entity.ImageAttribute;
 
+import jakarta.persistence.QueryHint;
+
 //@Repository - not needed because this is a subinterface of JpaRepository
 public interface ImageAttributeRepository extends JpaRepository<ImageAttribute, Long> {
 
+    // The attributes are read for every image catalogued, and seldom change,
+    // so the queries are cached until the table is written to
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<ImageAttribute> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     ImageAttribute findByName(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     ImageAttribute findByFitsKeyword(String keyword);
     
 }
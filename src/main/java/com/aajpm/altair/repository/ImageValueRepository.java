@@ -1,8 +1,11 @@
 package com.aajpm.altair.repository;
 
 import java.util.Collection;
+import java.util.List;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.aajpm.altair.entity.ImageValue;
 
@@ -13,6 +16,13 @@ public interface ImageValueRepository extends JpaRepository<ImageValue, Long> {
 
     Collection<ImageValue> findByAttributeId(long attributeID);
 
+    @EntityGraph(attributePaths = "attribute")
     Collection<ImageValue> findByImageId(long imageID);
+
+    // Untyped values that might be a number or a date: they start with a
+    // digit, a sign or a point, so the text values are not read on every start
+    @Query("SELECT v FROM ImageValue v WHERE v.numericValue IS NULL AND v.dateValue IS NULL "
+         + "AND SUBSTRING(v.value, 1, 1) IN ('0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '-', '.')")
+    List<ImageValue> findUntypedNumbersOrDates();
     
 }
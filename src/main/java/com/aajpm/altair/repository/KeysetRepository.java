@@ -0,0 +1,24 @@
+package com.aajpm.altair.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import com.aajpm.altair.entity.BasicEntity;
+
+/**
+ * A repository whose entities can be listed by keyset, in pages ordered by
+ * id. Only the first page of the {@link Pageable} is used, as its size, so
+ * no count query is run. Redeclare it with an entity graph if the listing
+ * needs any association.
+ *
+ * @param <T> The type of the entities.
+ */
+@NoRepositoryBean
+public interface KeysetRepository<T extends BasicEntity> extends JpaRepository<T, Long> {
+
+    List<T> findByIdGreaterThanOrderByIdAsc(long id, Pageable limit);
+
+}
@@ -3,17 +3,24 @@ package com.aajpm.altair.repository;
 import java.util.Collection;
 import java.util.List;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 
 import com.aajpm.altair.entity.Order;
 
 //@Repository - not needed because this is a subinterface of JpaRepository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends KeysetRepository<Order> {
 
+    @EntityGraph(attributePaths = "user")
     Collection<Order> findByUserId(long userID);
 
     Collection<Order> findByCompletedFalse();
 
+    @EntityGraph(attributePaths = "user")
     List<Order> findByCompletedFalseOrderByCreationTimeAsc();
+
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Order> findByIdGreaterThanOrderByIdAsc(long id, Pageable limit);
     
 }
@@ -2,7 +2,9 @@ package com.aajpm.altair.repository;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.aajpm.altair.entity.ProgramOrder;
@@ -10,12 +12,17 @@ import com.aajpm.altair.entity.ProgramOrder;
 //@Repository - not needed because this is a subinterface of JpaRepository
 public interface ProgramOrderRepository extends JpaRepository<ProgramOrder, Long> {
 
+    @EntityGraph(attributePaths = { "user", "program" })
     Collection<ProgramOrder> findByUserId(long userID);
 
     Collection<ProgramOrder> findByCompletedFalse();
 
+    @EntityGraph("ProgramOrder.schedule")
     List<ProgramOrder> findByCompletedFalseOrderByCreationTimeAsc();
 
+    @EntityGraph("ProgramOrder.schedule")
+    Optional<ProgramOrder> findWithExposuresById(long id);
+
     Collection<ProgramOrder> findByProgramTargetId(long astroObjectID);
     
 }
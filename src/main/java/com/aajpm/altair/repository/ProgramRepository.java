@@ -1,18 +1,44 @@
 package com.aajpm.altair.repository;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.aajpm.altair.entity.Program;
 
+import jakarta.persistence.QueryHint;
+
 //@Repository - not needed because this is a subinterface of JpaRepository
-public interface ProgramRepository extends JpaRepository<Program, Long> {
+public interface ProgramRepository extends KeysetRepository<Program> {
+
+    // A program is always wanted with its target and its exposures
 
+    // As a query, as the entity graph is ignored by the find of the entity manager
+    @Override
+    @Query("SELECT p FROM Program p WHERE p.id = ?1")
+    @EntityGraph(attributePaths = { "target", "exposures" })
+    Optional<Program> findById(Long id);
+
+    @EntityGraph(attributePaths = { "target", "exposures" })
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Program findByName(String name);
 
+    @EntityGraph(attributePaths = { "target", "exposures" })
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Program findByNameIgnoreCase(String name);
 
+    // Listed with just their target, see ProgramService.ProgramSummary
+    @Override
+    @EntityGraph(attributePaths = "target")
+    List<Program> findByIdGreaterThanOrderByIdAsc(long id, Pageable limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Collection<Program> findByEnabled(boolean enabled);
 
     Collection<Program> findByTargetId(long targetID);
@@ -153,7 +153,7 @@ public class AltairUser extends BasicEntity implements UserDetails {
 
     // Roles act as permissions since Spring hasn't ported RoleHierarchy yet and the
     // old method is deprecated. Change it if ever porting to Spring 6.X?
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "user_roles",
         joinColumns = @JoinColumn(name = "user_id"),
         inverseJoinColumns = @JoinColumn(name = "role_id"))
@@ -1,5 +1,6 @@
 package com.aajpm.altair.security.account;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -8,6 +9,8 @@ import java.util.List;
 
 public interface AltairUserRepository extends JpaRepository<AltairUser, Long> {
 
+    // The roles are needed to authenticate and authorise the user
+    @EntityGraph(attributePaths = "roles")
     AltairUser findByUsername(String username);
 
     // Find users with failed login attempts whose last login attempt was more than the specified timeout ago
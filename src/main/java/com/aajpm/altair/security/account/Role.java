@@ -2,10 +2,14 @@ package com.aajpm.altair.security.account;
 
 import org.springframework.security.core.GrantedAuthority;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import jakarta.persistence.*;
 
 @Entity
 @Table(name = "roles")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Role implements GrantedAuthority {
 
     @Id
@@ -1,12 +1,20 @@
 package com.aajpm.altair.security.account;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
 
 public interface RoleRepository extends JpaRepository<Role, Long> {
     
+    // The roles never change once set up
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Role findByName(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT r FROM Role r WHERE r.name = :authority OR r.name = CONCAT('ROLE_', :authority)")
     Role findByAuthority(String authority);
 
@@ -5,9 +5,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.hibernate.Session;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -16,10 +24,16 @@ import com.aajpm.altair.entity.ImageAttribute;
 import com.aajpm.altair.entity.ImageValue;
 import com.aajpm.altair.repository.AstroImageRepository;
 import com.aajpm.altair.security.account.AltairUser;
+import com.aajpm.altair.utility.FitsHeaderReader;
 import com.aajpm.altair.utility.Interval;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import nom.tam.fits.Fits;
+import nom.tam.fits.FitsDate;
 import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
 import nom.tam.fits.ImageHDU;
 
 import com.aajpm.altair.entity.AstroImage;
@@ -29,11 +43,20 @@ import com.aajpm.altair.entity.AstroObject;
 @Transactional
 public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
 
+    /** A date, and optionally a time, as written by FitsDate */
+    private static final Pattern FITS_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}(T[0-9:.]+)?");
+
+    /** The FITS keywords that have their own column in the images */
+    private static final List<String> SEARCH_KEYWORDS = List.of("EXPTIME", "FILTER", "CCD-TEMP", "IMAGETYP");
+
     /////////////////////////// MANAGED REPOSITORY ////////////////////////////
 
     @Autowired
     private AstroImageRepository astroImageRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     protected AstroImageRepository getManagedRepository() {
         return astroImageRepository;
@@ -83,20 +106,20 @@ public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
 
     /**
      * Creates an {@link AstroImage} from the existing FITS file at the given path.
+     * Only the header is read, the image data is skipped.
      * 
      * @param path The path to the FITS file.
      * 
      * @return A new {@link AstroImage}, populated with the FITS header values.
-     * @throws IOException
+     * @throws FitsException If the FITS file header could not be read.
+     * @throws IOException If the file could not be read.
      */
     public AstroImage create(Path path) throws FitsException, IOException {
         Assert.notNull(path, "The path cannot be null.");
         Assert.isTrue(Files.exists(path), "The path must exist.");
         Assert.isTrue(Files.isRegularFile(path), "The path must be a regular file.");
 
-        try (Fits fits = new Fits(path.toFile())) {
-            return create(path.getFileName().toString(), fits);
-        }
+        return create(path.getFileName().toString(), FitsHeaderReader.read(path));
     }
 
     /**
@@ -123,24 +146,61 @@ public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
      * @return A new {@link AstroImage}, populated with the FITS header values.
      */
     public AstroImage create(String filename, ImageHDU hdu) {
+        return create(filename, hdu.getHeader());
+    }
+
+    /**
+     * Creates an {@link AstroImage} from the given FITS header. Used to
+     * catalogue an image that is still in memory, without reading back the
+     * file it was just written to.
+     * 
+     * @param filename The name of the FITS file.
+     * @param header The FITS {@link Header} to create the image from.
+     * @return A new {@link AstroImage}, populated with the FITS header values.
+     */
+    public AstroImage create(String filename, Header header) {
+        return create(filename, header, imageAttributeService.findAll(), astroObjectService::findByName);
+    }
+
+    /**
+     * Creates an {@link AstroImage} from the given FITS header, with the
+     * attributes and the targets already at hand, so nothing is queried.
+     * Used to catalogue many images at once.
+     * 
+     * @param filename The name of the FITS file.
+     * @param header The FITS {@link Header} to create the image from.
+     * @param supportedAttributes The {@link ImageAttribute}s to look for in the header.
+     * @param targets Finds the {@link AstroObject} with the given name, or
+     *                {@code null} if there is none.
+     * @return A new {@link AstroImage}, populated with the FITS header values.
+     */
+    public AstroImage create(String filename, Header header, Collection<ImageAttribute> supportedAttributes, Function<String, AstroObject> targets) {
+        Assert.notNull(header, "The header cannot be null.");
+
         AstroImage image = create();
         image.setFileName(filename);
-        image.setCreationDate(hdu.getCreationDate().toInstant());
+        image.setCreationDate(getCreationDate(header));
 
-        // Set the target object, if it is present in the HDU and the DB
-        AstroObject target = astroObjectService.findByName(hdu.getObject());
+        // Set the target object, if it is present in the header and the DB
+        AstroObject target = targets.apply(getTrimmedString(header, "OBJECT"));
         if (target != null) {
             image.setTarget(target);
         }
 
-        Collection<ImageAttribute> supportedAttributes = imageAttributeService.findAll();
+        // The keywords that are searched the most have their own columns
+        for (String keyword : SEARCH_KEYWORDS) {
+            setSearchColumn(image, keyword, getTrimmedString(header, keyword));
+        }
+
         for (ImageAttribute attribute : supportedAttributes) {
-            String value = hdu.getTrimmedString(attribute.getFitsKeyword());
+            String value = getTrimmedString(header, attribute.getFitsKeyword());
             if (value != null) {
                 ImageValue imgVal = imageValueService.create();
                 imgVal.setImage(image);
                 imgVal.setAttribute(attribute);
-                imgVal.setValue(value);
+                imgVal.setValue(truncate(value, 512));
+                imgVal.setNumericValue(parseNumber(value));
+                imgVal.setDateValue(parseDate(value));
                 image.addValue(imgVal);
             }
         }
@@ -152,25 +212,50 @@ public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
  
     @Override
     public AstroImage save(AstroImage image) {
-        Assert.notNull(image, "The image cannot be null.");
-
-        // Filename validation
-        Assert.hasText(image.getFileName(), "The image must have a file name.");
-        String validFileNameRegex = "[^a-zA-Z0-9\\._\\-]";
-        Assert.isTrue(!image.getFileName().matches(validFileNameRegex), "The image file name contains illegal characters.");
-
-        Path imgStorePath = observatoryService.getConfig().getCamera().getImageStorePath();
-        Path filePath = imgStorePath.resolve(image.getFileName());
-        Assert.isTrue(Files.exists(filePath), "The image file does not exist.");
-
-        // Creation date validation
-        Assert.notNull(image.getCreationDate(), "The image must have a creation date.");
-
+        validate(image);
         return super.save(image);
     }
  
+    /**
+     * Saves many new images at once, with their values, in a single
+     * transaction. The inserts are sent to the database in JDBC batches.
+     * Every image is checked as {@link #save(AstroImage)} does before any of
+     * them is inserted, so an invalid one fails the whole batch.
+     * 
+     * @param images The images to save.
+     * @param batchSize The number of inserts of each JDBC batch.
+     * 
+     * @return The saved images.
+     */
+    public List<AstroImage> saveAll(Collection<AstroImage> images, int batchSize) {
+        Assert.notNull(images, "The images cannot be null.");
+        Assert.isTrue(batchSize > 0, "The batch size must be positive.");
+        for (AstroImage image : images) {
+            validate(image);
+            Assert.isTrue(image.getId() == 0, "This object has already been saved.");
+        }
+
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        List<AstroImage> saved = astroImageRepository.saveAll(images);
+        astroImageRepository.flush();
+        return saved;
+    }
+
     @Override
     public AstroImage update(AstroImage image) {
+        validate(image);
+        return super.update(image);
+    }
+
+    /**
+     * Checks that an image can be saved: it must have a valid file name, its
+     * file must be in the image store, and it must have a creation date.
+     * 
+     * @param image The image to check.
+     * 
+     * @throws IllegalArgumentException If the image is not valid.
+     */
+    public void validate(AstroImage image) {
         Assert.notNull(image, "The image cannot be null.");
 
         // Filename validation
@@ -184,8 +269,29 @@ public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
 
         // Creation date validation
         Assert.notNull(image.getCreationDate(), "The image must have a creation date.");
+    }
 
-        return super.update(image);
+    /**
+     * Fills the typed values of the images catalogued before they were
+     * stored, so the searches find them: the searched keywords are copied
+     * from the image values to their columns, and the values that are
+     * numbers or dates are stored as such.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTypedValues() {
+        // Managed, so the changes are flushed when the transaction commits
+        for (ImageValue value : imageValueService.findUntypedNumbersOrDates()) {
+            value.setNumericValue(parseNumber(value.getValue()));
+            value.setDateValue(parseDate(value.getValue()));
+        }
+
+        for (AstroImage image : astroImageRepository.findWithSearchColumnsMissing()) {
+            for (ImageValue value : image.getValues()) {
+                String keyword = value.getAttribute().getFitsKeyword();
+                if (SEARCH_KEYWORDS.contains(keyword))
+                    setSearchColumn(image, keyword, value.getValue());
+            }
+        }
     }
 
     ///////////////////////////////// METHODS /////////////////////////////////
@@ -295,6 +401,20 @@ public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
             return astroImageRepository.findByValuesAttributeNameAndValuesValueIsNull(attr.getName());
     }
 
+    /**
+     * Finds the file names of all the catalogued images.
+     * 
+     * @return A {@link Set} with the file names, relative to the image store.
+     */
+    public Set<String> findAllFileNames() {
+        Set<String> fileNames = astroImageRepository.findAllFileNames();
+
+        // To check for transaction integrity
+        Assert.notNull(fileNames, "The query for all file names returned null.");
+
+        return fileNames;
+    }
+
     /**
      * Loads a valid {@link Path} to the image file of the given {@link AstroImage}.
      * 
@@ -313,5 +433,96 @@ public class AstroImageService extends BasicEntityCRUDService<AstroImage> {
     }
 
     //#endregion Methods
-    
+
+    ///////////////////////////////// HELPERS /////////////////////////////////
+    //#region Helpers
+
+    // Same as BasicHDU#getCreationDate
+    private static Instant getCreationDate(Header header) {
+        String date = header.getStringValue("DATE");
+        if (date == null)
+            return null;
+        try {
+            Date created = new FitsDate(date).toDate();
+            return created == null ? null : created.toInstant();
+        } catch (FitsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The value of a card, whatever its type. Unlike
+     * {@link Header#getStringValue(String)}, which is {@code null} for
+     * numbers and booleans.
+     */
+    private static String getTrimmedString(Header header, String keyword) {
+        if (keyword == null)
+            return null;
+        HeaderCard card = header.findCard(keyword);
+        String value = card == null ? null : card.getValue();
+        return value == null ? null : value.trim();
+    }
+
+    /**
+     * @return The value as a number, or {@code null} if it isn't one. FITS
+     *         allows a D as the exponent, as in Fortran.
+     */
+    private static Double parseNumber(String value) {
+        if (value == null || value.isEmpty())
+            return null;
+        try {
+            double number = Double.parseDouble(value.replace('D', 'E').replace('d', 'e'));
+            return Double.isFinite(number) ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The value as an {@link Instant}, or {@code null} if it isn't
+     *         a FITS date, as in DATE-OBS.
+     */
+    private static Instant parseDate(String value) {
+        if (value == null || !FITS_DATE.matcher(value).matches())
+            return null;
+        try {
+            Date date = new FitsDate(value).toDate();
+            return date == null ? null : date.toInstant();
+        } catch (FitsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copies the value of one of the {@link #SEARCH_KEYWORDS} to its column,
+     * unless it's already set.
+     */
+    private static void setSearchColumn(AstroImage image, String keyword, String value) {
+        switch (keyword) {
+            case "EXPTIME":
+                if (image.getExposureTime() == null)
+                    image.setExposureTime(parseNumber(value));
+                break;
+            case "FILTER":
+                if (image.getFilter() == null)
+                    image.setFilter(truncate(value, 64));
+                break;
+            case "CCD-TEMP":
+                if (image.getCcdTemperature() == null)
+                    image.setCcdTemperature(parseNumber(value));
+                break;
+            case "IMAGETYP":
+                if (image.getFrameType() == null)
+                    image.setFrameType(truncate(value, 32));
+                break;
+            default:
+                throw new IllegalArgumentException("Not a searched keyword: " + keyword);
+        }
+    }
+
+    private static String truncate(String value, int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+
+    //#endregion
 }
@@ -1,17 +1,37 @@
 package com.aajpm.altair.service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.util.Assert;
 
+import com.aajpm.altair.config.AstrometricsConfig;
 import com.aajpm.altair.entity.AstroObject;
 import com.aajpm.altair.entity.AstroObject.AstroType;
 import com.aajpm.altair.repository.AstroObjectRepository;
+import com.aajpm.altair.service.event.AstroObjectChangedEvent;
+import com.aajpm.altair.service.event.DataRestEventHandler;
 import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.IntervalSet;
+import com.aajpm.altair.utility.QualityCurve;
+import com.aajpm.altair.utility.SkyConditions;
+import com.aajpm.altair.utility.VisibilityIndex;
+import com.aajpm.altair.utility.solver.CoordinateTransform;
 import com.aajpm.altair.utility.solver.EphemeridesSolver;
 
 import reactor.core.publisher.Flux;
@@ -36,6 +56,45 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
     @Autowired
     private EphemeridesSolver solver;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    ///////////////////////////// VISIBILITY INDEX ////////////////////////////
+
+    /** How many times an object can rise within the same night */
+    private static final int MAX_WINDOWS_PER_NIGHT = 4;
+
+    /** The longest night that is indexed */
+    private static final Duration MAX_INDEX_SPAN = Duration.ofDays(1);
+
+    /** The observable windows of the catalogue for the current night */
+    private volatile VisibilityIndex visibilityIndex = null;
+
+    /** Counts the changes to the catalogue, see {@link #invalidateVisibility(AstroObject)} */
+    private final AtomicLong visibilityGeneration = new AtomicLong();
+
+    /** The generation at which each object changed, until an index built after it is in use */
+    private final Map<Long, Long> changedObjects = new ConcurrentHashMap<>();
+
+    ////////////////////////////// SKY CONDITIONS /////////////////////////////
+
+    /** How many nights of sky conditions are kept, enough for the lookahead */
+    private static final int MAX_SKY_CONDITIONS = 16;
+
+    /**
+     * The Sun and Moon samples of the last nights queried, by the range they
+     * cover, most recently used last. Shared by every quality curve, and by
+     * the nights prepared at the same time.
+     */
+    private final Map<Interval, Mono<SkyConditions>> skyConditions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Interval, Mono<SkyConditions>> eldest) {
+            return size() > MAX_SKY_CONDITIONS;
+        }
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(AstroObjectService.class);
+
     /////////////////////////////// CONSTRUCTORS //////////////////////////////
 
     public AstroObjectService() {
@@ -76,7 +135,15 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
             Assert.notNull(object.getDec(), "The declination of the entity cannot be null.");
         }
 
-        return super.update(object);
+        AstroObject updated = super.update(object);
+        eventPublisher.publishEvent(new AstroObjectChangedEvent(updated));
+        return updated;
+    }
+
+    @Override
+    public void delete(AstroObject object) {
+        super.delete(object);
+        eventPublisher.publishEvent(new AstroObjectChangedEvent(object));
     }
 
 
@@ -260,6 +327,10 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
 
         if (object.isEarth()) // Why are you even checking this?
             return Mono.just(true);
+
+        VisibilityIndex index = getIndexFor(object, interval);
+        if (index != null)      // The whole night is dark, no need to check for daylight
+            return Mono.just(index.isObservableDuring(object.getId(), interval));
         
         return getRiseSetTime(object, interval).flatMap(observableInterval -> {
             // To be visible in an interval, getRiseSetTime must return the interval itself
@@ -275,6 +346,9 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
     /**
      * Checks if the given {@link AstroObject} is visible at some point during
      * the given interval.
+     * <p>
+     * If the interval is within the night of the {@link VisibilityIndex}, it
+     * is answered from it without calling the solver.
      * 
      * @param object The object to be queried.
      * @param interval The interval during which to check the visibility.
@@ -284,7 +358,6 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
      *         or a {@link Mono#error(Throwable)} if the body is not found or is
      *         out of bounds.
      */
-    @SuppressWarnings("java:S3776")
     public Mono<Interval> isVisibleInterval(AstroObject object, Interval interval) {
         Assert.notNull(object, "The object to be queried cannot be null.");
 
@@ -296,36 +369,60 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
         if (object.isEarth()) // Why are you even checking this?
             return Mono.just(interval);
 
+        VisibilityIndex index = getIndexFor(object, interval);
+        if (index != null)
+            return Mono.just(index.firstWindow(object.getId(), interval));
+
         return getRiseSetTime(object, interval).flatMap(observableInterval -> {
-            // To be visible in an interval, observableInterval must overlap the interval
-            if (!observableInterval.hasOverlap(interval)) {
+            // To be visible in an interval, observableInterval must not be empty
+            if (observableInterval.isEmpty()) {
                 return Mono.just(Interval.empty());
             }
 
             // Now check if at some point it is not daylight
-            return daylight.map(daylightInterval -> {
-                if (daylightInterval.contains(observableInterval))
-                    return Interval.empty();
-
-                // If the observable interval starts before daylight
-                if (observableInterval.getStart().isBefore(daylightInterval.getStart())) {
-                    if (observableInterval.getEnd().isBefore(daylightInterval.getStart())) {
-                        // If the observable interval ends before daylight, it is fully observable
-                        return observableInterval;
-                    } else {
-                        // Otherwise, it is observable until daylight
-                        return new Interval(observableInterval.getStart(), daylightInterval.getStart());
-                    }
+            return daylight.map(daylightInterval -> darkPart(observableInterval, daylightInterval));
+        });
+    }
+
+    /**
+     * Checks when each of the given {@link AstroObject} is visible during the
+     * given interval, as {@link #isVisibleInterval(AstroObject, Interval)}
+     * does, but in a single batch.
+     * <p>
+     * The daylight is only calculated once, the objects with fixed coordinates
+     * are solved in a single pass over their coordinates, and the Solar system
+     * bodies are requested together.
+     * 
+     * @param objects The objects to be queried.
+     * @param interval The interval during which to check the visibility.
+     * 
+     * @return A {@link Mono} containing a {@link List} with the timeframe at
+     *         which each object is visible, in the same order as
+     *         {@code objects}, {@link Interval#empty()} if it is not visible
+     *         at all, or {@code null} if it couldn't be calculated, like for
+     *         bodies that are not found or objects without coordinates.
+     */
+    public Mono<List<Interval>> getVisibleIntervals(List<AstroObject> objects, Interval interval) {
+        Assert.notNull(objects, "The objects to be queried cannot be null.");
+
+        Mono<Interval> daylight = solver.getRiseSetTime("Sol", interval, 0.0);
+
+        return Mono.zip(daylight, getObservableIntervals(objects, interval)).map(tuple -> {
+            Interval daylightInterval = tuple.getT1();
+            Interval[] observable = tuple.getT2();
+
+            List<Interval> ret = new ArrayList<>(objects.size());
+            for (int i = 0; i < observable.length; i++) {
+                AstroObject object = objects.get(i);
+                if (object.isSol()) {
+                    ret.add(interval.overlap(daylightInterval));
+                } else if (object.isEarth() || observable[i] == null || observable[i].isEmpty()) {
+                    ret.add(observable[i]);
                 } else {
-                    if (observableInterval.getStart().isAfter(daylightInterval.getEnd())) {
-                        // If the observable interval starts after daylight, it is fully observable
-                        return observableInterval;
-                    } else {
-                        // Otherwise, it is observable after daylight
-                        return new Interval(observableInterval.getEnd(), daylightInterval.getEnd());
-                    }
+                    ret.add(darkPart(observable[i], daylightInterval));
                 }
-            });
+            }
+            return ret;
         });
     }
     
@@ -339,8 +436,25 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
      *         visible during the given interval.
      */
     public Flux<AstroObject> getVisibleObjects(Interval interval) {
-        return Flux.fromIterable(astroObjectRepository.findAll())
-                .filterWhen(object -> isVisible(object, interval));
+        List<AstroObject> objects = astroObjectRepository.findAll();
+        Mono<Interval> daylight = solver.getRiseSetTime("Sol", interval, 0.0);
+
+        return Mono.zip(daylight, getObservableIntervals(objects, interval)).flatMapMany(tuple -> {
+            boolean isDaytime = tuple.getT1().equals(interval);
+            Interval[] observable = tuple.getT2();
+
+            return Flux.range(0, objects.size())
+                    .filter(i -> {
+                        AstroObject object = objects.get(i);
+                        if (object.isSol())
+                            return isDaytime;
+                        if (object.isEarth())
+                            return true;
+                        // To be visible in an interval, the rise/set time must be the interval itself
+                        return interval.equals(observable[i]) && !isDaytime;
+                    })
+                    .map(objects::get);
+        });
     }
 
     /**
@@ -353,13 +467,395 @@ public class AstroObjectService extends BasicEntityCRUDService<AstroObject> {
      *         visible at some point during the given interval.
      */
     public Flux<AstroObject> getVisibleObjectsInterval(Interval interval) {
-        return Flux.fromIterable(astroObjectRepository.findAll())
-                .filterWhen(object ->
-                    isVisibleInterval(object, interval)
-                    .map(observableInterval -> !observableInterval.isEmpty())
-                );
+        List<AstroObject> objects = astroObjectRepository.findAll();
+
+        VisibilityIndex index = this.visibilityIndex;
+        if (index == null || !index.covers(interval))
+            return filterVisibleInterval(objects, interval);
+
+        // Answer the indexed objects from the index, and the rest from the solver
+        long[] observable = index.findObservable(interval);
+        Flux<AstroObject> indexed = Flux.fromIterable(objects)
+                                    .filter(object -> Arrays.binarySearch(observable, object.getId()) >= 0);
+        List<AstroObject> notIndexed = objects.stream()
+                                    .filter(object -> !index.contains(object.getId()))
+                                    .toList();
+
+        return indexed.concatWith(filterVisibleInterval(notIndexed, interval));
+    }
+
+    private Flux<AstroObject> filterVisibleInterval(List<AstroObject> objects, Interval interval) {
+        if (objects.isEmpty())
+            return Flux.empty();
+
+        return getVisibleIntervals(objects, interval).flatMapMany(visible ->
+            Flux.range(0, objects.size())
+                .filter(i -> visible.get(i) != null && !visible.get(i).isEmpty())
+                .map(objects::get)
+        );
+    }
+
+    /**
+     * Builds the {@link VisibilityIndex} of the whole catalogue for the
+     * current night, or the next one if it is daytime, and starts using it.
+     * 
+     * @return A {@link Mono} containing the new index.
+     */
+    public Mono<VisibilityIndex> refreshVisibilityIndex() {
+        return Mono.defer(() -> {
+            // Taken before the catalogue is read, anything committed later is dropped again
+            long generation = visibilityGeneration.get();
+            return solver.getNightTime(Instant.now()).flatMap(this::buildVisibilityIndex)
+                    .map(index -> useVisibilityIndex(index, generation));
+        });
+    }
+
+    /**
+     * Builds a {@link VisibilityIndex} of the whole catalogue for the given
+     * night, with the windows at which each object is above the horizon line.
+     * The Sun and the Earth are not indexed.
+     * 
+     * @param night The night to index. It must be fully dark, e.g. as
+     *              returned by {@link EphemeridesSolver#getNightTime(Instant)}.
+     *              Only its first day is indexed.
+     * 
+     * @return A {@link Mono} containing the new index.
+     */
+    public Mono<VisibilityIndex> buildVisibilityIndex(Interval night) {
+        // Polar nights can last for weeks, only the first day is indexed
+        Interval indexed = night.getDuration().compareTo(MAX_INDEX_SPAN) > 0
+                            ? new Interval(night.getStart(), MAX_INDEX_SPAN)
+                            : night;
+
+        List<AstroObject> objects = astroObjectRepository.findAll().stream()
+                                        .filter(object -> !object.isSol() && !object.isEarth())
+                                        .toList();
+
+        VisibilityIndex.Builder builder = new VisibilityIndex.Builder(indexed);
+        objects.forEach(object -> builder.add(object.getId()));
+
+        return addWindows(builder, objects, indexed).map(VisibilityIndex.Builder::build);
+    }
+
+    /**
+     * @return The current {@link VisibilityIndex}, or {@code null} if it
+     *         hasn't been built yet.
+     */
+    public VisibilityIndex getVisibilityIndex() {
+        return visibilityIndex;
+    }
+
+    /**
+     * Drops the object from the {@link VisibilityIndex} once the change is
+     * committed, whether it came through this service or the generated REST
+     * endpoints, see {@link DataRestEventHandler}.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAstroObjectChanged(AstroObjectChangedEvent event) {
+        invalidateVisibility(event.object());
+    }
+
+    /**
+     * Gets the position of the Sun and the Moon over the night that contains
+     * the given interval, sampled every
+     * {@link AstrometricsConfig#getEphemerisTableStep()}. The samples of the
+     * last nights queried are kept, so the scheduler can rate many targets
+     * without asking the solver again, even when planning several nights at
+     * the same time.
+     * 
+     * @param interval The interval to cover.
+     * 
+     * @return A {@link Mono} containing the {@link SkyConditions}, covering at
+     *         least {@code interval}.
+     */
+    public Mono<SkyConditions> getSkyConditions(Interval interval) {
+        Assert.notNull(interval, "The interval cannot be null.");
+
+        Mono<SkyConditions> cached = getCachedSkyConditions(interval);
+        if (cached != null)
+            return cached;
+
+        // Sample the whole night if possible, so the next queries hit the cache
+        return solver.getNightTime(interval.getStart())
+                .map(night -> isWithin(interval, night) && night.getDuration().compareTo(MAX_INDEX_SPAN) <= 0 ? night : interval)
+                .onErrorReturn(interval)
+                .flatMap(this::cacheSkyConditions);
+    }
+
+    /**
+     * Rates how good the sky is for the given {@link AstroObject} over an
+     * interval, taking into account its airmass and its separation from the
+     * Moon and the Moon's illumination.
+     * 
+     * @param object The object to be rated.
+     * @param interval The interval to cover.
+     * 
+     * @return A {@link Mono} containing the {@link QualityCurve} of the
+     *         object, covering at least {@code interval}, or a
+     *         {@link Mono#error(Throwable)} if the body is not found.
+     * 
+     * @see SkyConditions#curveFor(double[], double[])
+     */
+    public Mono<QualityCurve> getQualityCurve(AstroObject object, Interval interval) {
+        Assert.notNull(object, "The object to be queried cannot be null.");
+        Assert.hasText(object.getName(), "The name of the object to be queried cannot be null.");
+        Assert.isTrue(!object.isEarth(), "The Earth cannot be rated.");
+
+        return getSkyConditions(interval).flatMap(sky -> sampleTarget(object, sky)
+                                            .map(altAz -> sky.curveFor(altAz[0], altAz[1])));
+    }
+
+    //#endregion
+    ///////////////////////////////// HELPERS /////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Calculates the rise and set times of all the given objects in a single
+     * batch, as {@link #getRiseSetTime(AstroObject, Interval)} does one by one.
+     * The Sun gets an empty interval, as the daylight is calculated apart, and
+     * the Earth gets the whole {@code interval}. Objects that can't be
+     * calculated, like those without coordinates, get {@code null}.
+     */
+    private Mono<Interval[]> getObservableIntervals(List<AstroObject> objects, Interval interval) {
+        int size = objects.size();
+        Interval[] ret = new Interval[size];
+        Arrays.fill(ret, Interval.empty());
+
+        // Split the objects in fixed coordinates (SoA) and Solar system bodies
+        int[] fixedIndex = new int[size];
+        double[] ra = new double[size];
+        double[] dec = new double[size];
+        int fixedCount = 0;
+
+        List<Integer> movingIndex = new ArrayList<>();
+        List<String> movingNames = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            AstroObject object = objects.get(i);
+            if (object.isEarth()) {
+                ret[i] = interval;
+            } else if (object.isSol()) {
+                continue;
+            } else if (!object.shouldHaveRaDec()) {
+                movingIndex.add(i);
+                movingNames.add(object.getName());
+            } else if (object.getRa() != null && object.getDec() != null) {
+                fixedIndex[fixedCount] = i;
+                ra[fixedCount] = object.getRa();
+                dec[fixedCount] = object.getDec();
+                fixedCount++;
+            } else {
+                logger.warn("AstroObjectService: {} has no valid Right Ascension and Declination, its visibility can't be calculated", object.getName());
+                ret[i] = null;
+            }
+        }
+
+        final int fixedTotal = fixedCount;
+        Mono<Interval[]> fixed = solver.getRiseSetTimes(Arrays.copyOf(ra, fixedTotal), Arrays.copyOf(dec, fixedTotal), interval);
+        Mono<Interval[]> moving = movingNames.isEmpty()
+                                ? Mono.just(new Interval[0])
+                                : solver.getRiseSetTimes(movingNames.toArray(new String[0]), interval);
+
+        return Mono.zip(fixed, moving).map(tuple -> {
+            Interval[] fixedResults = tuple.getT1();
+            for (int i = 0; i < fixedTotal; i++) {
+                ret[fixedIndex[i]] = fixedResults[i];
+            }
+            Interval[] movingResults = tuple.getT2();
+            for (int i = 0; i < movingResults.length; i++) {
+                ret[movingIndex.get(i)] = movingResults[i];
+            }
+            return ret;
+        });
+    }
+
+    /**
+     * Adds the windows of the given objects within {@code range} to the
+     * builder. The night is dark by definition, so only the rise/set times
+     * matter. All the objects are solved in a single batch, and then the
+     * few that set before the end of the night are searched again on their
+     * own, in case they rise again.
+     */
+    private Mono<VisibilityIndex.Builder> addWindows(VisibilityIndex.Builder builder, List<AstroObject> objects, Interval range) {
+        return getObservableIntervals(objects, range).flatMap(windows ->
+            Flux.range(0, objects.size())
+                .filter(i -> windows[i] != null && !windows[i].isEmpty())
+                .concatMap(i -> {
+                    builder.add(objects.get(i).getId(), windows[i]);
+                    return addNextWindows(builder, objects.get(i), windows[i], range.getEnd(), MAX_WINDOWS_PER_NIGHT - 1);
+                })
+                .then(Mono.just(builder))
+        );
+    }
+
+    /**
+     * Adds the windows of an object that come after {@code previous}, until
+     * the end of the night.
+     */
+    private Mono<Void> addNextWindows(VisibilityIndex.Builder builder, AstroObject object, Interval previous, Instant end, int remaining) {
+        Instant start = previous.getEnd().plusSeconds(1);
+        if (remaining <= 0 || !start.isBefore(end))
+            return Mono.empty();
+
+        return getObservableIntervals(List.of(object), new Interval(start, end)).flatMap(windows -> {
+            if (windows[0] == null || windows[0].isEmpty())
+                return Mono.empty();
+            builder.add(object.getId(), windows[0]);
+            return addNextWindows(builder, object, windows[0], end, remaining - 1);
+        });
+    }
+
+    private synchronized Mono<SkyConditions> getCachedSkyConditions(Interval interval) {
+        for (Map.Entry<Interval, Mono<SkyConditions>> entry : skyConditions.entrySet()) {
+            if (isWithin(interval, entry.getKey())) {
+                // Touch it, so it's the most recently used
+                return skyConditions.get(entry.getKey());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts sampling the sky over a range, unless it is already covered,
+     * sharing the result with every concurrent query. Failed samplings are
+     * not kept.
+     */
+    private synchronized Mono<SkyConditions> cacheSkyConditions(Interval range) {
+        Mono<SkyConditions> cached = getCachedSkyConditions(range);
+        if (cached != null)
+            return cached;
+
+        Mono<SkyConditions> sampled = sampleSkyConditions(range)
+                                        .doOnError(e -> forgetSkyConditions(range))
+                                        .cache();
+        skyConditions.put(range, sampled);
+        return sampled;
     }
 
+    private synchronized void forgetSkyConditions(Interval range) {
+        skyConditions.remove(range);
+    }
+
+    /**
+     * Samples the Sun and the Moon over a range, from its start until past its
+     * end, with the configured step.
+     */
+    private Mono<SkyConditions> sampleSkyConditions(Interval range) {
+        AstrometricsConfig config = solver.getConfig();
+        long step = config.getEphemerisTableStep().toMillis();
+        long start = range.getStart().toEpochMilli();
+        int size = (int) Math.max(2, (range.getEnd().toEpochMilli() - start + step - 1) / step + 1);
+
+        double[][] sun = new double[2][size];
+        double[][] moon = new double[2][size];
+        return Flux.range(0, size)
+                .concatMap(i -> {
+                    Instant time = Instant.ofEpochMilli(start + i * step);
+                    return Mono.zip(solver.getAltAz("Sun", time), solver.getAltAz("Moon", time))
+                            .doOnNext(altAz -> {
+                                sun[0][i] = altAz.getT1()[0];
+                                sun[1][i] = altAz.getT1()[1];
+                                moon[0][i] = altAz.getT2()[0];
+                                moon[1][i] = altAz.getT2()[1];
+                            });
+                })
+                .then(Mono.fromCallable(() -> new SkyConditions(start, step, sun, moon, config.getDawnLine(), config.getMoonAvoidance())));
+    }
+
+    /**
+     * Samples the altitude and azimuth of an object at the same times as the
+     * given {@link SkyConditions}. Fixed coordinates are transformed locally,
+     * bodies of the Solar system are asked to the solver.
+     */
+    private Mono<double[][]> sampleTarget(AstroObject object, SkyConditions sky) {
+        int size = sky.size();
+        double[][] altAz = new double[2][size];
+
+        if (object.shouldHaveRaDec()) {
+            Assert.notNull(object.getRa(), "The object " + object.getName() + " does not have a valid Right Ascension.");
+            Assert.notNull(object.getDec(), "The object " + object.getName() + " does not have a valid Declination.");
+
+            AstrometricsConfig config = solver.getConfig();
+            CoordinateTransform transform = new CoordinateTransform(config.getSiteLatitude(), config.getSiteLongitude());
+            double[] sample = new double[2];
+            for (int i = 0; i < size; i++) {
+                transform.transform(object.getRa() * 15.0, object.getDec(), sky.timeOf(i), sample);
+                altAz[0][i] = sample[0];
+                altAz[1][i] = sample[1];
+            }
+            return Mono.just(altAz);
+        }
+
+        String body = object.isSol() ? "Sun" : object.getName();
+        return Flux.range(0, size)
+                .concatMap(i -> solver.getAltAz(body, Instant.ofEpochMilli(sky.timeOf(i)))
+                        .doOnNext(sample -> {
+                            altAz[0][i] = sample[0];
+                            altAz[1][i] = sample[1];
+                        }))
+                .then(Mono.just(altAz));
+    }
+
+    private static boolean isWithin(Interval inner, Interval outer) {
+        return !inner.getStart().isBefore(outer.getStart()) && !inner.getEnd().isAfter(outer.getEnd());
+    }
+
+    /**
+     * Returns the current {@link VisibilityIndex} if it can answer queries
+     * about the given object and interval, {@code null} otherwise.
+     */
+    private VisibilityIndex getIndexFor(AstroObject object, Interval interval) {
+        VisibilityIndex index = this.visibilityIndex;
+        if (index == null || !index.covers(interval) || !index.contains(object.getId()))
+            return null;
+        return index;
+    }
+
+    /**
+     * Drops an object from the {@link VisibilityIndex}, as its coordinates
+     * might have changed, so it is queried from the solver until the index is
+     * rebuilt. The change gets a new generation, so an index whose build
+     * started before it doesn't bring the object back.
+     */
+    private synchronized void invalidateVisibility(AstroObject object) {
+        if (object.getId() == 0)
+            return;
+
+        changedObjects.put(object.getId(), visibilityGeneration.incrementAndGet());
+        VisibilityIndex index = this.visibilityIndex;
+        if (index != null) {
+            this.visibilityIndex = index.without(object.getId());
+        }
+    }
+
+    /**
+     * Starts using a new {@link VisibilityIndex}, without the objects that
+     * changed after its build started.
+     * 
+     * @param index The new index.
+     * @param generation The generation when its build started.
+     * 
+     * @return The index in use.
+     */
+    private synchronized VisibilityIndex useVisibilityIndex(VisibilityIndex index, long generation) {
+        VisibilityIndex ret = index;
+        for (Map.Entry<Long, Long> changed : changedObjects.entrySet()) {
+            if (changed.getValue() > generation)
+                ret = ret.without(changed.getKey());
+        }
+        changedObjects.values().removeIf(changed -> changed <= generation);
+
+        this.visibilityIndex = ret;
+        return ret;
+    }
+
+    /**
+     * Returns the first part of {@code observable} that is outside of
+     * {@code daylight}, or {@link Interval#empty()} if there is none.
+     */
+    private static Interval darkPart(Interval observable, Interval daylight) {
+        return IntervalSet.of(observable).difference(IntervalSet.of(daylight)).first();
+    }
 
     //#endregion
 }
@@ -2,11 +2,16 @@ package com.aajpm.altair.service;
 
 import java.util.List;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 import com.aajpm.altair.entity.BasicEntity;
+import com.aajpm.altair.repository.KeysetRepository;
+import com.aajpm.altair.utility.KeysetPage;
+
+import reactor.core.publisher.Flux;
 
 /**
  * A service that provides basic CRUD operations for a given entity.
@@ -48,6 +53,45 @@ public abstract class BasicEntityCRUDService<T extends BasicEntity> {
         return entities;
     }
 
+    /**
+     * Finds a page of the entities, ordered by id. Only for the services whose
+     * repository is a {@link KeysetRepository}.
+     * 
+     * @param after The id to start after, {@code 0} for the first page.
+     * @param limit The size of the page, or {@code null} for the default one.
+     * 
+     * @return The page, with the id to start the next one after.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<T> findPage(long after, Integer limit) {
+        Assert.state(getManagedRepository() instanceof KeysetRepository, "These entities can't be listed by pages.");
+        Assert.isTrue(after >= 0, "The id to start after [" + after + "] is not valid.");
+        int size = KeysetPage.limit(limit);
+
+        @SuppressWarnings("unchecked")
+        KeysetRepository<T> repository = (KeysetRepository<T>) getManagedRepository();
+        List<T> entities = repository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+
+        // To check for transaction integrity
+        Assert.notNull(entities, "The query for a page of entities returned null.");
+
+        return KeysetPage.of(entities, size, BasicEntity::getId);
+    }
+
+    /**
+     * Goes through all the entities, ordered by id, a page at a time. Unlike
+     * {@link #findAll()}, it never holds more than a page in memory.
+     * 
+     * @param after The id to start after, {@code 0} to start from the first.
+     * 
+     * @return A {@link Flux} with the entities.
+     * 
+     * @see #findPage(long, Integer)
+     */
+    public Flux<T> stream(long after) {
+        return KeysetPage.stream(after, from -> findPage(from, KeysetPage.MAX_LIMIT));
+    }
+
     /**
      * Finds the entity with the given id. If the entity does not exist, it will
      * throw an {@link IllegalArgumentException}.
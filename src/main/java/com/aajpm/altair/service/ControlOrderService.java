@@ -1,11 +1,13 @@
 package com.aajpm.altair.service;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -14,7 +16,9 @@ import com.aajpm.altair.entity.ControlOrder;
 import com.aajpm.altair.repository.ControlOrderRepository;
 import com.aajpm.altair.security.account.AltairUser;
 import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.event.OrderChangedEvent;
 import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.IntervalSet;
 
 @Service
 @Transactional
@@ -32,7 +36,8 @@ public class ControlOrderService extends BasicEntityCRUDService<ControlOrder> {
 
     /////////////////////////// SUPPORTING SERVICES ///////////////////////////
 
-    // None
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     /////////////////////////////// CONSTRUCTORS //////////////////////////////
 
@@ -73,7 +78,9 @@ public class ControlOrderService extends BasicEntityCRUDService<ControlOrder> {
         Assert.notNull(order.getRequestedDuration(), "Requested duration cannot be null.");
         Assert.isTrue(order.getRequestedDuration().toMinutes() > 0, "Requested duration must be greater than 0.");
 
-        return super.save(order);
+        ControlOrder saved = super.save(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(saved, OrderChangedEvent.Change.CREATED));
+        return saved;
     }
 
     @Override
@@ -84,12 +91,53 @@ public class ControlOrderService extends BasicEntityCRUDService<ControlOrder> {
 
         Assert.notNull(order.getRequestedDuration(), "Requested duration cannot be null.");
 
-        return super.update(order);
+        ControlOrder updated = super.update(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(updated, OrderChangedEvent.Change.UPDATED));
+        return updated;
+    }
+
+    @Override
+    public void delete(ControlOrder order) {
+        super.delete(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Change.DELETED));
+    }
+
+    /**
+     * Fills the requested end of the orders saved before it was stored, so
+     * the range queries find them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRequestedEnd() {
+        List<ControlOrder> orders = controlOrderRepository.findByRequestedEndIsNull();
+        if (orders.isEmpty())
+            return;
+
+        orders.forEach(ControlOrder::updateRequestedEnd);
+        controlOrderRepository.saveAll(orders);
     }
 
     ///////////////////////////////// METHODS /////////////////////////////////
     //#region Methods
 
+    /**
+     * Finds the {@link ControlOrder} with the given id, with its user. Unlike
+     * {@link #findById(long)}, it can be used after the transaction is over,
+     * like by the governor.
+     * 
+     * @param id The id of the order.
+     * 
+     * @return The order with the given id.
+     */
+    public ControlOrder findByIdWithUser(long id) {
+        Assert.isTrue(id != 0, "The id of the query [" + id + "] is not valid.");
+        ControlOrder order = controlOrderRepository.findWithUserById(id).orElse(null);
+
+        // To check for transaction integrity
+        Assert.notNull(order, "The query for order with id " + id + " returned null.");
+
+        return order;
+    }
+
     /**
      * Finds all {@link ControlOrder} made by the given user.
      * 
@@ -160,16 +208,7 @@ public class ControlOrderService extends BasicEntityCRUDService<ControlOrder> {
      *         given interval, ordered by the start of the requested time.
      */
     public List<ControlOrder> findInRange(Instant startTime, Instant endTime) {
-        List<ControlOrder> orders = controlOrderRepository.findStartsInRangeOrder(startTime, endTime);
-        orders = orders.stream()
-                .filter(order -> order
-                    .getRequestedTime()
-                    .plus(order.getRequestedDuration())
-                    .isBefore(endTime))
-                .sorted((o1, o2) -> o1.getRequestedTime().compareTo(o2.getRequestedTime()))
-                .toList();
-
-        return orders;
+        return controlOrderRepository.findWithinRangeOrder(startTime, endTime);
     }
 
     /**
@@ -201,21 +240,8 @@ public class ControlOrderService extends BasicEntityCRUDService<ControlOrder> {
      *         given interval, ordered by the start of the requested time.
      */
     public List<ControlOrder> findInRangeOpen(Instant startTime, Instant endTime) {
-        List<ControlOrder> orders = controlOrderRepository.findByRequestedTimeBeforeOrderByRequestedTimeAsc(endTime);
-        Interval interval = new Interval(startTime, endTime);
-
-        return orders.stream()
-                .filter(order -> {
-                    Instant orderStartTime = order.getRequestedTime();
-                    Instant orderEndTime = order.getRequestedTime().plus(order.getRequestedDuration());
-
-                    boolean isStartTimeInInterval = interval.contains(orderStartTime);
-                    boolean isEndTimeInInterval = interval.contains(orderEndTime);
-                    
-                    return isStartTimeInInterval || isEndTimeInInterval;
-                })
-                .sorted((o1, o2) -> o1.getRequestedTime().compareTo(o2.getRequestedTime()))
-                .toList();
+        // Uses the index on the end, so past orders are not even read
+        return controlOrderRepository.findOverlappingOrder(startTime, endTime);
     }
 
     /**
@@ -242,35 +268,9 @@ public class ControlOrderService extends BasicEntityCRUDService<ControlOrder> {
     public List<Interval> findAvailableTime(Instant startTime, Instant endTime) {
         List<ControlOrder> orders = findInRangeOpen(startTime, endTime);
 
-        // If there are no orders, then the entire interval is available
-        if (orders.isEmpty()) {
-            return List.of(new Interval(startTime, endTime));
-        }
-
-        // Convert the orders to intervals
-        List<Interval> taken = orders.stream()
-                .map(order -> new Interval(order.getRequestedTime(), order.getRequestedDuration()))
-                .sorted((o1, o2) -> o1.getStart().compareTo(o2.getStart()))
-                .toList();
-        
-        // Find the gaps between the intervals, which are the available times
-        List<Interval> available = new ArrayList<>();
-
-        if (startTime.isBefore(taken.get(0).getStart())) {
-            available.add(new Interval(startTime, taken.get(0).getStart()));
-        }
-        for (int i = 0; i < taken.size() - 1; i++) {
-            Interval curr = taken.get(i);
-            Interval next = taken.get(i + 1);
-            if (curr.getEnd().isBefore(next.getStart())) {
-                available.add(new Interval(curr.getEnd(), next.getStart()));
-            }
-        }
-        if (endTime.isAfter(taken.get(taken.size() - 1).getEnd())) {
-            available.add(new Interval(taken.get(taken.size() - 1).getEnd(), endTime));
-        }
-
-        return available;
+        // The available time is whatever the orders don't take, even if they overlap
+        IntervalSet taken = IntervalSet.of(orders.stream().map(ControlOrder::getRequestedInterval).toList());
+        return taken.complement(new Interval(startTime, endTime)).toList();
     }
 
     //#endregion
@@ -1,35 +1,44 @@
 package com.aajpm.altair.service;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import com.aajpm.altair.config.ObservatoryConfig;
 import com.aajpm.altair.entity.*;
 import com.aajpm.altair.security.account.AltairUser;
 import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.event.ObservingConditionsEvent;
+import com.aajpm.altair.service.event.OrderChangedEvent;
 import com.aajpm.altair.service.observatory.DomeService;
 import com.aajpm.altair.service.observatory.WeatherWatchService;
 import com.aajpm.altair.utility.Interval;
 import com.aajpm.altair.utility.exception.DeviceUnavailableException;
 import com.aajpm.altair.utility.exception.UnauthorisedException;
+import com.aajpm.altair.utility.solver.CachingEphemeridesSolver;
 import com.aajpm.altair.utility.solver.EphemeridesSolver;
 
-import nom.tam.fits.FitsException;
+import nom.tam.fits.ImageHDU;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
+import reactor.core.publisher.Sinks;
 import reactor.util.function.Tuple4;
 import reactor.util.function.Tuple5;
 import reactor.util.function.Tuples;
@@ -40,15 +49,48 @@ public class GovernorService {
     /////////////////////////////// ATTRIBUTES /////////////////////////////////
     //#region Attributes
 
-    private Order currentOrder = null;
+    // The steps run one at a time, but not always on the same thread, and the
+    // state is also read by the controllers and the event listeners, so every
+    // field is volatile and the queued order is taken atomically.
 
-    private Order nextOrder = null;
+    private volatile Order currentOrder = null;
 
-    private Interval currentOrderInterval = null;
+    /** The order queued by hand, to run before the planned ones */
+    private final AtomicReference<Order> nextOrder = new AtomicReference<>();
 
-    private Interval nextNight = null;
+    private volatile Interval currentOrderInterval = null;
 
-    private AltairUser currentUser = null;
+    private volatile Interval nextNight = null;
+
+    private volatile AltairUser currentUser = null;
+
+    /** Maximum time a transition can take before giving up on it */
+    private final Duration transitionTimeout;
+
+    /** Interval between checks of the observing conditions */
+    private final Duration safetyCheckInterval;
+
+    /** If the next exposure is prepared while the image of the current one is downloaded */
+    private final boolean pipelineExposures;
+
+    /** Watches the current order to step as soon as it's done */
+    private final AtomicReference<Disposable> orderWatch = new AtomicReference<>();
+
+    /** Steps when the next planned order is due, while there is nothing to run */
+    private final AtomicReference<Disposable> plannedStartWatch = new AtomicReference<>();
+
+    /** Longest wait for the next planned order without parking the telescope */
+    private static final Duration MAX_IDLE_WAIT = Duration.ofMinutes(10);
+
+    /** The event that came in while stepping, to step again once done, see {@link #coalesce(Trigger, Trigger)} */
+    private final AtomicReference<Trigger> pendingTrigger = new AtomicReference<>();
+
+    /**
+     * Interrupts the step in progress when it's no longer safe, see
+     * {@link #preemptForSafety()}. A new one for each step, which keeps the
+     * signal even if it comes before the step subscribes to it.
+     */
+    private final AtomicReference<Sinks.One<Trigger>> interruption = new AtomicReference<>(Sinks.one());
 
     //#region Flags    
 
@@ -61,6 +103,15 @@ public class GovernorService {
     /** isSafe() disable override */
     private final AtomicBoolean safeFlag = new AtomicBoolean(false);
 
+    /** If it was safe to observe on the last run, to notice when it changes */
+    private final AtomicBoolean wasSafe = new AtomicBoolean(false);
+
+    /** If the governor is evaluating its state right now */
+    private final AtomicBoolean stepping = new AtomicBoolean(false);
+
+    /** If the image of the current exposure is ready to be downloaded */
+    private final AtomicBoolean exposureReady = new AtomicBoolean(false);
+
     //#endregion
 
     //#endregion
@@ -79,9 +130,18 @@ public class GovernorService {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private ScheduleService scheduleService;
+
+    @Autowired
+    private LookaheadService lookaheadService;
+
     @Autowired
     private ProgramOrderService programOrderService;
 
+    @Autowired
+    private ControlOrderService controlOrderService;
+
     @Autowired
     private ExposureOrderService exposureOrderService;
 
@@ -91,6 +151,15 @@ public class GovernorService {
     @Autowired
     private AltairUserService userService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private WorkerService workers;
+
+    @Autowired
+    private SequencerService sequencer;
+
     private final Logger logger = LoggerFactory.getLogger(GovernorService.class);
 
     //#endregion
@@ -100,6 +169,9 @@ public class GovernorService {
     public GovernorService(ObservatoryConfig config) {
         super();
         safeFlag.set(config.getDisableSafetyChecks());
+        transitionTimeout = Duration.ofMillis(config.getTransitionTimeout());
+        safetyCheckInterval = Duration.ofMillis(config.getSampling().getGovernor().getIdleInterval(config.getStatusUpdateInterval()));
+        pipelineExposures = config.getPipelineExposures();
     }
 
     //#endregion
@@ -128,13 +200,14 @@ public class GovernorService {
                             !status.focuser().connected() &&
                             !status.filterWheel().connected();
 
+            Order current = currentOrder;
             if (isOff)
                 return State.PARKED;
-            if (currentOrder == null)
+            if (current == null)
                 return isParked ? State.PARKED : State.IDLE;
-            if (currentOrder instanceof ControlOrder)
+            if (current instanceof ControlOrder)
                 return State.MANUAL;
-            if (currentOrder instanceof ProgramOrder)
+            if (current instanceof ProgramOrder)
                 return State.RUNNING_PROGRAM;
 
             return State.ERROR;
@@ -151,32 +224,36 @@ public class GovernorService {
         Mono<Boolean> isSafeOverrideMono = Mono.just(safeFlag.get());
 
          Mono<String> currentOrderMono = Mono.fromCallable(() -> {
-            if (currentOrder instanceof ProgramOrder) {
-                ProgramOrder programOrder = (ProgramOrder) currentOrder;
+            Order current = currentOrder;
+            if (current instanceof ProgramOrder) {
+                ProgramOrder programOrder = (ProgramOrder) current;
                 return String.format(Locale.US,"%s [ID: %d]", programOrder.getProgram().getName(), programOrder.getId());
-            } else if (currentOrder != null) {
-                return String.format(Locale.US,"[ID: %d]", currentOrder.getId());
+            } else if (current != null) {
+                return String.format(Locale.US,"[ID: %d]", current.getId());
             }
             return "None";
         });
 
-        Mono<String> currentOrderRemainingTimeMono = Mono.just((currentOrderInterval == null || currentOrderInterval.hasElapsed())
+        Interval currentInterval = currentOrderInterval;
+        Mono<String> currentOrderRemainingTimeMono = Mono.just((currentInterval == null || currentInterval.hasElapsed())
                                                         ? "N/A"
-                                                        : (new Interval(Instant.now(), currentOrderInterval.getEnd()).toDurationString()));
+                                                        : (new Interval(Instant.now(), currentInterval.getEnd()).toDurationString()));
 
         Mono<String> nextOrderMono = Mono.fromCallable(() -> {
-            if (nextOrder instanceof ProgramOrder) {
-                ProgramOrder programOrder = (ProgramOrder) nextOrder;
+            Order queued = nextOrder.get();
+            if (queued instanceof ProgramOrder) {
+                ProgramOrder programOrder = (ProgramOrder) queued;
                 return String.format(Locale.US,"%s [ID: %d]", programOrder.getProgram().getName(), programOrder.getId());
-            } else if (nextOrder != null) {
-                return String.format(Locale.US,"[ID: %d]", nextOrder.getId());
+            } else if (queued != null) {
+                return String.format(Locale.US,"[ID: %d]", queued.getId());
             }
             return "None";
         });
 
         Mono<String> currentUserMono = Mono.just(getCurrentUser() == null ? "None" : getCurrentUser().getUsername());
        
-        Mono<String> nextNightMono = Mono.just(nextNight == null ? "None" : nextNight.toString());
+        Interval night = nextNight;
+        Mono<String> nextNightMono = Mono.just(night == null ? "None" : night.toString());
 
         Mono<String> useAltairSlaving = observatoryService.isAltairSlaving()
                                         .map(use -> Boolean.TRUE.equals(use) ? "Altair":"Native").onErrorReturn("Unknown");
@@ -207,10 +284,11 @@ public class GovernorService {
      *         or null if no order is being executed.
      */
     public AltairUser getCurrentUser() {
-        if (currentOrder == null) {
+        Order current = currentOrder;
+        if (current == null) {
             return currentUser;
         } else {
-            return currentOrder.getUser();
+            return current.getUser();
         }
     }
 
@@ -251,8 +329,9 @@ public class GovernorService {
             boolean isUserReal = dbUser != null && dbUser.equals(user);
             boolean isAdmin = user.isAdmin();
             boolean isCurrentUser = currentUser != null && currentUser.equals(user);
+            Interval currentInterval = currentOrderInterval;
             boolean isCurrentOrderAControlOrder = currentOrder instanceof ControlOrder;
-            boolean hasCurrentOrderExpired = currentOrderInterval != null && currentOrderInterval.hasElapsed();
+            boolean hasCurrentOrderExpired = currentInterval != null && currentInterval.hasElapsed();
 
             return isUserReal && (isAdmin || (isCurrentUser && isCurrentOrderAControlOrder && !hasCurrentOrderExpired));
         } catch (UsernameNotFoundException e) {
@@ -268,7 +347,10 @@ public class GovernorService {
      * Enables the governor.
      */
     public Mono<Boolean> enable() {
-        return weatherWatch.connect().doOnSuccess(v -> enabledFlag.set(true));
+        return weatherWatch.connect().doOnSuccess(v -> {
+            enabledFlag.set(true);
+            trigger(Trigger.MODE_CHANGED);
+        });
     }
 
     /**
@@ -382,7 +464,7 @@ public class GovernorService {
             currentUser = null;
             adminMode.set(false);
             return true;
-        });
+        }).doOnSuccess(v -> trigger(Trigger.MODE_CHANGED));
     }
 
     /**
@@ -450,23 +532,7 @@ public class GovernorService {
         if (currentOrder != null)
             return Mono.error(new IllegalStateException("Cannot start a new order while another one is in progress"));
 
-        return Mono.fromCallable(() -> {
-            ProgramOrder order = programOrderService.create();
-            order.setProgram(program);
-            order.setUser(user);
-            order.setCompleted(false);
-            order.setCreationTime(Instant.now());
-            ProgramOrder setupOrder = order;
-            program.getExposures().forEach(e -> {
-                ExposureOrder exposureOrder = exposureOrderService.create();
-                exposureOrder.setExposureParams(e);
-                exposureOrder.setProgram(setupOrder);
-                exposureOrder.setState(ExposureOrder.States.PENDING);
-                setupOrder.getExposureOrders().add(exposureOrder);
-            });
-
-            return programOrderService.save(setupOrder);
-        })
+        return Mono.fromCallable(() -> programOrderService.save(programOrderService.create(program, user)))
         .flatMap(this::queueOrder);
     }
 
@@ -475,9 +541,24 @@ public class GovernorService {
             return Mono.error(new IllegalArgumentException("Must provide an order"));
 
         return Mono.fromCallable(() -> {
-            nextOrder = order;
+            nextOrder.set(withFetchPlan(order));
             return true;
-        });
+        })
+        .subscribeOn(workers.getGovernor().getScheduler())
+        .doOnSuccess(v -> trigger(Trigger.ORDER_QUEUED));
+    }
+
+    /**
+     * Loads an order again with everything the governor uses, as it's used
+     * long after the transaction that loaded it is over and the associations
+     * are lazy.
+     */
+    private Order withFetchPlan(Order order) {
+        if (order instanceof ProgramOrder)
+            return programOrderService.findByIdWithExposures(order.getId());
+        if (order instanceof ControlOrder)
+            return controlOrderService.findByIdWithUser(order.getId());
+        return order;
     }
 
 
@@ -514,6 +595,7 @@ public class GovernorService {
         return Mono.fromCallable(() -> {
             currentOrder = order;
             currentOrderInterval = order.getRequestedInterval();
+            watchCurrentOrder();
             return true;
         });
     }
@@ -521,61 +603,142 @@ public class GovernorService {
     private Mono<Boolean> startProgramOrder(ProgramOrder order) {
         // Get the exposure order to run
         Mono<ExposureOrder> exposureOrder = Mono.fromCallable(() -> {
-            ExposureOrder eo = order.getExposureOrders()
-                                    .stream()
-                                    .filter(exp -> !exp.isCompleted())
-                                    .sorted((e1, e2) ->
-                                        e1.getExposureParams()
-                                            .getExposureTime()
-                                            .compareTo(
-                                                e2.getExposureParams().getExposureTime()
-                                            )
-                                    )
-                                    .findFirst()
-                                    .orElse(null);
+            ExposureOrder eo = nextExposure(order, null);
             if (eo == null)
                 throw new IllegalStateException("Program " + order.getProgram().getId() + " has no pending exposure orders");
             return eo;
         });
 
-        // Start the exposure order
-        return exposureOrder.flatMap(eo -> {
-            AstroObject target = eo.getExposureParams().getProgram().getTarget();
-            ExposureParams params = eo.getExposureParams();
-
-            Mono<Boolean> job = observatoryService.startCamera();
-                // Slew to the target, whether it's an object or coordinates
-                if (target.shouldHaveRaDec()) {
-                    job = job.then(observatoryService
-                                .slewTogetherRaDecAwait(target.getRa(), target.getDec()));
-                } else {
-                    job = job.then(ephemeridesSolver.getAltAz(target.getName()).flatMap(altAz ->
-                                    observatoryService.slewTogetherAltAzAwait(altAz[0], altAz[1])));
-                }
-            
-             job = job
-                    .then(observatoryService.setSlavedAwait(true))
-                    .then(observatoryService.startExposure(params))
-                    .then(Mono.fromCallable(() -> {
-                        eo.setState(ExposureOrder.States.IN_PROGRESS);
-                        ExposureOrder savedExposureOrder = exposureOrderService.update(eo);
-                        long exposureTime = Math.round(savedExposureOrder.getExposureParams().getExposureTime());
-                        currentOrder = savedExposureOrder.getProgram();
-                        currentOrderInterval = new Interval(Instant.now(), Duration.of(exposureTime, ChronoUnit.SECONDS));
-                        return true;
-                    }));
-            return job;
-        })
+        // Start the exposure order, slewing to the target, whether it's an object or coordinates
+        return exposureOrder.flatMap(eo -> sequencer
+                    .start(eo.getExposureParams())
+                    .then(markAsStarted(eo)))
         .onErrorResume(e -> Mono.fromCallable(() -> {
             // If there was an error, mark the exposure order as failed
             // and go to IDLE
+            logger.error("Governor: Error starting order {}", order.getId(), e);
             if (currentOrder != null) {
                 markAsFail();
             }
             currentOrder = null;
             currentOrderInterval = null;
             return true;
-        }));
+        }).subscribeOn(workers.getGovernor().getScheduler()));
+    }
+
+    /**
+     * Finds the exposure of a program to run next, the shortest one first.
+     *
+     * @param order The program order.
+     * @param skip An exposure to skip, like the one whose image is still
+     *             being saved, or {@code null}.
+     *
+     * @return The exposure order, or {@code null} if there are none left.
+     */
+    private ExposureOrder nextExposure(ProgramOrder order, ExposureOrder skip) {
+        return order.getExposureOrders()
+                    .stream()
+                    .filter(exp -> !exp.isCompleted() && exp != skip)
+                    .sorted((e1, e2) ->
+                        e1.getExposureParams()
+                            .getExposureTime()
+                            .compareTo(
+                                e2.getExposureParams().getExposureTime()
+                            )
+                    )
+                    .findFirst()
+                    .orElse(null);
+    }
+
+    /**
+     * Makes a just started exposure the current order and watches it.
+     */
+    private Mono<Boolean> markAsStarted(ExposureOrder eo) {
+        return Mono.fromCallable(() -> {
+            eo.setState(ExposureOrder.States.IN_PROGRESS);
+            ExposureOrder savedExposureOrder = exposureOrderService.update(eo);
+            long exposureTime = Math.round(eo.getExposureParams().getExposureTime());
+            // Reload the order, as the saved copy has its associations unloaded
+            currentOrder = programOrderService.findByIdWithExposures(savedExposureOrder.getProgram().getId());
+            currentOrderInterval = new Interval(Instant.now(), Duration.of(exposureTime, ChronoUnit.SECONDS));
+            watchCurrentOrder();
+            return true;
+        }).subscribeOn(workers.getGovernor().getScheduler());
+    }
+
+    /**
+     * Moves on to the next exposure as soon as the image of the current one
+     * is ready: the telescope slews to the next target and the filter and
+     * focus move while the image is downloaded, see {@link SequencerService}.
+     * If the next order is not a program, it's left queued and the governor
+     * goes to IDLE once the image is saved.
+     */
+    private Mono<Boolean> pipelineNextExposure() {
+        ProgramOrder finished = (ProgramOrder) currentOrder;
+        ExposureOrder finishedExposure = inProgressExposure(finished);
+        if (finishedExposure == null) {
+            return this.endOrder()
+                    .doOnSuccess(v -> trigger(Trigger.ORDER_ENDED));
+        }
+        stopWatchingOrder();
+
+        // The header must have the devices as they were, before anything moves
+        return observatoryService.getStatus().flatMap(status -> {
+            Mono<Boolean> download = completeExposure(finished, finishedExposure,
+                                        observatoryService.getImage(finished.getProgram().getTarget(), finished.getUser(), status))
+                                        .cache();
+
+            Mono<Order> nextOrderMono = takeNextOrder().onErrorResume(e -> {
+                logger.error("Governor: Error finding the next order", e);
+                return Mono.empty();
+            });
+
+            Mono<Boolean> advance = nextOrderMono.flatMap(next -> {
+                // Keep working on the same instance if the program goes on, so its exposures are up to date
+                ProgramOrder nextProgram = next.getId() == finished.getId() ? finished
+                                            : next instanceof ProgramOrder ? (ProgramOrder) next : null;
+                ExposureOrder nextExposure = nextProgram == null ? null : nextExposure(nextProgram, finishedExposure);
+                if (nextExposure == null) {
+                    // Nothing to prepare, like a control order, so leave it for IDLE
+                    // Unless another one was queued meanwhile, which goes first
+                    if (nextProgram == null)
+                        nextOrder.compareAndSet(null, next);
+                    return Mono.empty();
+                }
+
+                logger.info("Governor: Preparing exposure {} of order {} while saving the image of exposure {}", nextExposure.getId(), nextProgram.getId(), finishedExposure.getId());
+                return sequencer.advance(download, nextExposure.getExposureParams())
+                        .then(markAsStarted(nextExposure))
+                        .onErrorResume(e -> Mono.fromCallable(() -> {
+                            logger.error("Governor: Error moving on to exposure {} of order {}", nextExposure.getId(), nextProgram.getId(), e);
+                            nextExposure.setState(ExposureOrder.States.FAILED);
+                            exposureOrderService.update(nextExposure);
+                            currentOrder = null;
+                            currentOrderInterval = null;
+                            return false;
+                        }).subscribeOn(workers.getGovernor().getScheduler()));
+            });
+
+            return advance.switchIfEmpty(download.then(Mono.fromCallable(() -> {
+                currentOrder = null;
+                currentOrderInterval = null;
+                trigger(Trigger.ORDER_ENDED);
+                return true;
+            })));
+        });
+    }
+
+    /**
+     * Takes the queued order, or the next one from the scheduler.
+     */
+    private Mono<Order> takeNextOrder() {
+        return Mono.fromCallable(() -> {
+            Order queued = nextOrder.getAndSet(null);
+            if (queued != null)
+                return queued;
+            // It's time to start the scheduler
+            return scheduleService.next(nextNight);
+        }).subscribeOn(workers.getGovernor().getScheduler());
     }
     //#endregion
 
@@ -585,84 +748,129 @@ public class GovernorService {
      *          order is aborted.
      */
     public Mono<Boolean> abortOrder() {
+        stopWatchingOrder();
+        sequencer.reset();
         return observatoryService.abort()
                 .then(Mono.fromCallable(() -> {
                     markAsFail();
                     currentOrder = null;
                     currentOrderInterval = null;
                     return true;
-                }));
+                }).subscribeOn(workers.getGovernor().getScheduler()));
     }
 
     /**
      * Ends the current order, manages the order's completion status and goes to IDLE.
      */
     private Mono<Boolean> endOrder() {
+        stopWatchingOrder();
         return observatoryService.abort()
+                .then(Mono.defer(this::markAsComplete))
                 .then(Mono.fromCallable(() -> {
-                    markAsComplete();
                     currentOrder = null;
                     currentOrderInterval = null;
                     return true;
                 }));
     }
 
-    private void markAsComplete() {
+    /**
+     * Marks the current order as completed, saving the image first if it's a
+     * program order, so the next exposure doesn't overwrite it.
+     */
+    private Mono<Boolean> markAsComplete() {
         if (currentOrder instanceof ProgramOrder) {
             ProgramOrder programOrder = (ProgramOrder) currentOrder;
             // Find the exposure order that was running
-            ExposureOrder exposureOrder = programOrder
-                                            .getExposureOrders()
-                                            .stream()
-                                            .filter(eo -> eo.getState() == ExposureOrder.States.IN_PROGRESS)
-                                            .findFirst()
-                                            .orElse(null);
-            // If found, mark it as completed and save the image
-            if (exposureOrder != null) {
-                // Store image
-                observatoryService.saveImage(programOrder.getProgram().getTarget(), programOrder.getUser())
-                    .subscribe(path -> {
-                        try {
-                            logger.debug("Governor: Marking exposure {} of order {} as completed", exposureOrder.getId(), programOrder.getId());
-                            exposureOrder.setState(ExposureOrder.States.COMPLETED);
-                            
-                            logger.debug("Governor: Saving image {} for exposure order {}", path, exposureOrder.getId());
-                            AstroImage dbImage = astroImageService.create(path);
-                            dbImage.setExposureOrder(exposureOrder);
-                            exposureOrder.setImage(dbImage);
-                            exposureOrder.setState(ExposureOrder.States.COMPLETED);
-
-
-                            // Check if all exposure orders are completed
-                            boolean allCompleted = programOrder
-                                                    .getExposureOrders()
-                                                    .stream()
-                                                    .allMatch(ExposureOrder::isCompleted);
-
-                        if (allCompleted) {
-                                logger.debug("Governor: All exposures completed, marking order {} as completed", programOrder.getId());
-                                
-                                programOrder.setCompleted(true);
-                                programOrderService.update(programOrder);
-                            } else {
-                                exposureOrderService.update(exposureOrder);
-                            }
-                        } catch (FitsException | IOException e) {
-                            logger.error("Error saving image", e);
-                        }
-                    });
+            ExposureOrder exposureOrder = inProgressExposure(programOrder);
+            if (exposureOrder == null) {
+                logger.warn("Governor: Couldn't find exposure order for order {}", programOrder.getId());
+                return Mono.just(false);
             }
-        } else {
+            // If found, save the image and mark it as completed
+            return completeExposure(programOrder, exposureOrder,
+                        observatoryService.getImage(programOrder.getProgram().getTarget(), programOrder.getUser()));
+        } else if (currentOrder != null) {
             // If it's a control order, just mark it as completed
-            logger.debug("Governor: Marking order {} as completed", currentOrder.getId());
-            currentOrder.setCompleted(true);
-            currentOrder = orderService.update(currentOrder);
+            return Mono.fromCallable(() -> {
+                logger.debug("Governor: Marking order {} as completed", currentOrder.getId());
+                currentOrder.setCompleted(true);
+                orderService.update(currentOrder);
+                return true;
+            }).subscribeOn(workers.getGovernor().getScheduler());
         }
+        return Mono.just(false);
+    }
+
+    /**
+     * Saves the image of an exposure and marks it as completed, and its
+     * program too if it was the last one. Both on the persistence worker.
+     *
+     * @param programOrder The program order of the exposure.
+     * @param exposureOrder The exposure whose image is ready.
+     * @param image Downloads the image, with its header complete.
+     *
+     * @return A {@link Mono} that emits {@code true} once it's saved, or
+     *         {@code false} if it couldn't be.
+     */
+    private Mono<Boolean> completeExposure(ProgramOrder programOrder, ExposureOrder exposureOrder, Mono<ImageHDU> image) {
+        return workers.getPersistence().run("saveImage", image
+                .publishOn(workers.getPersistence().getScheduler())
+                .map(hdu -> {
+                    try {
+                        logger.debug("Governor: Marking exposure {} of order {} as completed", exposureOrder.getId(), programOrder.getId());
+                        exposureOrder.setState(ExposureOrder.States.COMPLETED);
+
+                        Path path = observatoryService.saveImage(hdu);
+                        logger.debug("Governor: Saving image {} for exposure order {}", path, exposureOrder.getId());
+                        // The header is still in memory, so there's no need to read the file back
+                        AstroImage dbImage = astroImageService.create(path.getFileName().toString(), hdu.getHeader());
+                        dbImage.setExposureOrder(exposureOrder);
+                        exposureOrder.setImage(dbImage);
+                        exposureOrder.setState(ExposureOrder.States.COMPLETED);
+
+
+                        // Check if all exposure orders are completed
+                        boolean allCompleted = programOrder
+                                                .getExposureOrders()
+                                                .stream()
+                                                .allMatch(ExposureOrder::isCompleted);
+
+                        if (allCompleted) {
+                            logger.debug("Governor: All exposures completed, marking order {} as completed", programOrder.getId());
+
+                            programOrder.setCompleted(true);
+                            programOrderService.update(programOrder);
+                        } else {
+                            exposureOrderService.update(exposureOrder);
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        logger.error("Error saving image", e);
+                        return false;
+                    }
+                })
+                .onErrorResume(e -> {
+                    logger.error("Governor: Error downloading the image of exposure {}", exposureOrder.getId(), e);
+                    return Mono.just(false);
+                }));
+    }
+
+    /**
+     * @return The exposure of the program that is running, or {@code null}.
+     */
+    private ExposureOrder inProgressExposure(ProgramOrder programOrder) {
+        return programOrder
+                .getExposureOrders()
+                .stream()
+                .filter(eo -> eo.getState() == ExposureOrder.States.IN_PROGRESS)
+                .findFirst()
+                .orElse(null);
     }
 
     private void markAsFail() {
-        if (currentOrder instanceof ProgramOrder) {
-            ProgramOrder programOrder = (ProgramOrder) currentOrder;
+        Order current = currentOrder;
+        if (current instanceof ProgramOrder) {
+            ProgramOrder programOrder = (ProgramOrder) current;
             // Find the current exposure order and mark it as failed
             ExposureOrder exposureOrder = programOrder
                                             .getExposureOrders()
@@ -671,11 +879,11 @@ public class GovernorService {
                                             .findFirst()
                                             .orElse(null);
             if (exposureOrder != null) {
-                logger.debug("Governor: Marking exposure {} of order {} as failed", exposureOrder, currentOrder.getId());
+                logger.debug("Governor: Marking exposure {} of order {} as failed", exposureOrder, programOrder.getId());
                 exposureOrder.setState(ExposureOrder.States.FAILED);
                 exposureOrderService.update(exposureOrder);
             } else {
-                logger.warn("Governor: Couldn't find exposure order for order {}", currentOrder.getId());
+                logger.warn("Governor: Couldn't find exposure order for order {}", programOrder.getId());
             }
         }
     }
@@ -684,27 +892,140 @@ public class GovernorService {
     /////////////////////////////// WORKERS ///////////////////////////////////
     //#region Workers
 
-    @Scheduled(fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
-    public void governor() {
-
-        if (!enabledFlag.get()) { // If the governor is disabled, do nothing
+    /**
+     * Evaluates the state of the governor as soon as something that might
+     * change it happens: an order is queued, the current exposure is ready,
+     * the time of the current order is up or the observing conditions change.
+     * Never blocks the caller, and the events that come in while evaluating
+     * are coalesced into a single evaluation afterwards, except for the
+     * observing conditions becoming unsafe, see {@link #preemptForSafety()}.
+     */
+    private void trigger(Trigger trigger) {
+        if (!stepping.compareAndSet(false, true)) {
+            pendingTrigger.accumulateAndGet(trigger, GovernorService::coalesce);
             return;
         }
 
-        long timeout = 15000;
+        Sinks.One<Trigger> stop = Sinks.one();
+        interruption.set(stop);
+        workers.getGovernor().run("step", Mono.defer(() -> step(trigger)).takeUntilOther(stop.asMono()))
+            .onErrorResume(e -> {
+                logger.error("Governor: Error handling {}", trigger, e);
+                return Mono.empty();
+            })
+            .doFinally(signal -> {
+                stepping.set(false);
+                Trigger pending = pendingTrigger.getAndSet(null);
+                if (pending != null)
+                    trigger(pending);
+            })
+            .subscribe();
+    }
+
+    /**
+     * Starts the periodic checks of the governor, each one on its own worker,
+     * so checking the observing conditions never waits behind a transition or
+     * a dome slew.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        workers.getSafety().schedulePeriodically("conditions", safetyCheckInterval, safetyCheckInterval, this::checkObservingConditions);
+        workers.getGovernor().schedulePeriodically("tick", Duration.ofSeconds(30), Duration.ofSeconds(30), this::governor);
+    }
+
+    /**
+     * Periodic check, in case some event was missed or a transition failed
+     * and should be retried. The transitions themselves are driven by the
+     * events, see {@link #trigger(Trigger)}.
+     */
+    public Mono<Boolean> governor() {
+        return Mono.fromCallable(() -> {
+            if (enabledFlag.get()) {
+                trigger(Trigger.TICK);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Checks the observing conditions, so the governor parks as soon as they
+     * are not safe anymore and starts as soon as they are safe again, instead
+     * of waiting for the next periodic check.
+     */
+    public Mono<Boolean> checkObservingConditions() {
+        if (!enabledFlag.get() || adminMode.get() || safeFlag.get())
+            return Mono.just(false);
+
+        return observatoryService.isSafe(false)
+                .onErrorReturn(false)
+                .map(safe -> Boolean.TRUE.equals(safe) && nextNight != null && nextNight.contains(Instant.now()))
+                .doOnNext(isSafe -> {
+                    if (isSafe == wasSafe.get())
+                        return;
+                    if (Boolean.TRUE.equals(isSafe))
+                        trigger(Trigger.SAFETY_CHANGED);
+                    else
+                        preemptForSafety();
+                });
+    }
+
+    /**
+     * Parks as soon as it's no longer safe to observe. The step in progress,
+     * like a slew to the next target, is interrupted instead of waited for,
+     * and the step that follows stops whatever it left moving or exposing
+     * before parking, see {@link #haltForSafety()}.
+     */
+    private void preemptForSafety() {
+        if (stepping.get())
+            logger.info("Governor: It's not safe to observe anymore, interrupting the transition in progress.");
+        interruption.get().tryEmitValue(Trigger.SAFETY_CHANGED);
+        trigger(Trigger.SAFETY_CHANGED);
+    }
+
+    /**
+     * Keeps a change of the observing conditions over any event that comes
+     * after it, as only that step halts the observatory before parking, see
+     * {@link #transition(Trigger, Boolean, State)}. Otherwise the latest
+     * event is kept, the step evaluating everything anyway.
+     */
+    private static Trigger coalesce(Trigger pending, Trigger next) {
+        return pending == Trigger.SAFETY_CHANGED ? pending : next;
+    }
+
+    /** Once the change is committed, so the scheduler sees it */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        // The running order is only replaced once it's done
+        if (enabledFlag.get() && currentOrder == null) {
+            trigger(Trigger.ORDER_QUEUED);
+        }
+    }
+
+    /**
+     * Takes the transition of the current state of the governor.
+     */
+    private Mono<Boolean> step(Trigger trigger) {
+        if (!enabledFlag.get()) { // If the governor is disabled, do nothing
+            return Mono.just(false);
+        }
 
         // Check if next night is cached. If not, fetch it.
         // * Note: this is done because the night time is not expected to change
         // and fetching might be a costly operation.
-        if (this.nextNight == null || this.nextNight.isBefore(Instant.now())) {
-            this.nextNight = ephemeridesSolver
-                                .getNightTime()
-                                .blockOptional(Duration.ofMillis(30000))
-                                .orElse(null);
-        }
-        if (this.nextNight == null) {
-            logger.warn("Governor: couldn't find next night, assuming it's not safe to observe.");
-        }
+        Mono<Interval> nightMono = Mono.defer(() -> {
+            Interval night = nextNight;
+            if (night != null && !night.isBefore(Instant.now()))
+                return Mono.just(night);
+
+            return ephemeridesSolver
+                    .getNightTime()
+                    .timeout(Duration.ofMillis(30000))
+                    .doOnNext(fetched -> nextNight = fetched)
+                    .onErrorResume(e -> {
+                        logger.warn("Governor: Error fetching the next night", e);
+                        return Mono.empty();
+                    });
+        });
 
         Mono<Boolean> isSafeMono = weatherWatch.connect().then(observatoryService
                                     .isSafe(false)  // will use nextNight if available
@@ -713,45 +1034,87 @@ public class GovernorService {
         Mono<State> stateMono = this.getState()
                                     .onErrorReturn(State.ERROR);
 
-        Tuple2<Boolean, State> t = Mono
-                                    .zip(isSafeMono, stateMono)
-                                    .blockOptional(Duration.ofMillis(timeout))
-                                    .orElse(Tuples.of(false, State.ERROR));
+        return nightMono
+                .then(Mono.zip(isSafeMono, stateMono))
+                .timeout(Duration.ofMillis(15000))
+                .onErrorReturn(Tuples.of(false, State.ERROR))
+                .flatMap(t -> transition(trigger, t.getT1(), t.getT2())
+                                .timeout(transitionTimeout)
+                                .onErrorResume(e -> {
+                                    logger.error("Governor: Error leaving state {} on {}", t.getT2(), trigger, e);
+                                    return Mono.just(false);
+                                }));
+    }
+
+    private Mono<Boolean> transition(Trigger trigger, Boolean safe, State state) {
+        if (this.nextNight == null) {
+            logger.warn("Governor: couldn't find next night, assuming it's not safe to observe.");
+        }
 
         boolean isSafe;
         if (safeFlag.get()) {
             logger.info("Governor: Safe override is on, ignoring isSafe() and executing.");
             isSafe = true;
         } else {
-            logger.trace("Governor: [isSafe = {}, nextNight = {}, isNight = {}]", t.getT1(), nextNight, nextNight == null ? "null" : nextNight.contains(Instant.now()));
-            isSafe = Boolean.TRUE.equals(t.getT1()) && nextNight != null && nextNight.contains(Instant.now());
+            logger.trace("Governor: [isSafe = {}, nextNight = {}, isNight = {}]", safe, nextNight, nextNight == null ? "null" : nextNight.contains(Instant.now()));
+            isSafe = Boolean.TRUE.equals(safe) && nextNight != null && nextNight.contains(Instant.now());
         }
-        
-        boolean isDone = currentOrderInterval == null || currentOrderInterval.isBefore(Instant.now());
-        State state = t.getT2();
 
-        logger.debug("Governor executing: isSafe = {}, state = {}", isSafe, state);
+        if (wasSafe.getAndSet(isSafe) != isSafe) {
+            logger.info("Governor: observing conditions changed [isSafe = {}]", isSafe);
+            eventPublisher.publishEvent(new ObservingConditionsEvent(isSafe));
+        }
+
+        boolean isDone = isCurrentOrderDone();
+
+        logger.debug("Governor executing: trigger = {}, isSafe = {}, state = {}", trigger, isSafe, state);
 
+        Mono<Boolean> halt = Mono.just(true);
+        if (trigger == Trigger.SAFETY_CHANGED && !isSafe
+                && (state == State.IDLE || state == State.RUNNING_PROGRAM || state == State.MANUAL)) {
+            halt = haltForSafety();
+        }
+
+        return halt.then(Mono.defer(() -> stateAction(state, isSafe, isDone)));
+    }
+
+    /**
+     * Stops the slews and the exposure in progress, as the step that started
+     * them may have been interrupted, see {@link #preemptForSafety()}.
+     */
+    private Mono<Boolean> haltForSafety() {
+        sequencer.reset();
+        return Mono.whenDelayError(observatoryService.abort(), observatoryService.abortExposure())
+                .thenReturn(true)
+                .onErrorResume(e -> {
+                    logger.error("Governor: Error stopping the observatory before parking", e);
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Takes the action of a state, as the observing conditions and the
+     * current order are now.
+     */
+    private Mono<Boolean> stateAction(State state, boolean isSafe, boolean isDone) {
         switch (state) {
             case DISABLED:
                 logger.error("If you're seeing this, something is wrong: governor is disabled but somehow still running.");
-                return;
+                return Mono.just(false);
             case ADMIN:
                 logger.debug("Governor: Admin mode, skipping execution");
-                return;
+                return Mono.just(false);
             case PARKED:
                 /* Same as OFF, but if there are no orders/it's not time yet, make sure to
                  * park everything and turn off the observatory.
                  */
-                parkedStateAction(isSafe);
-                return;
+                return parkedStateAction(isSafe);
             case IDLE:
                 /**
                  * Check if isSafe, if not, go into PARKED.
                  * Check if there are programs to run.
                  */
-                idleStateAction(isSafe);
-                return;
+                return idleStateAction(isSafe);
             case RUNNING_PROGRAM:
                 /**
                  * Check if isSafe, if not, abort the program
@@ -760,19 +1123,17 @@ public class GovernorService {
                  * If not, mark it as complete, save the image
                  * and start the next one.
                  */
-                runningProgramStateAction(isSafe, isDone);
-                return;
+                return runningProgramStateAction(isSafe, isDone);
             case MANUAL:
                 /**
                  * Check if the user's session is over.
                  * If so, kick out and park the telescope.
                  */
-                manualStateAction(isSafe, isDone);
-                return;
+                return manualStateAction(isSafe, isDone);
             case ERROR:
             default:
                 logger.error("Governor is in an error/unknown state: {}", state);
-                return;
+                return Mono.just(false);
         }
     }
 
@@ -780,97 +1141,65 @@ public class GovernorService {
      * Check if it's time to start the scheduler,
      * and if so, connect and start running programs.
      */
-    private void parkedStateAction(boolean isSafe) {
-        try {
-            // If it's not safe, make sure it's parked and exit
-            if (!isSafe) {
-                logger.info("Governor: it's not safe to observe, parking the telescope. [isSafe = {}, nextNight = {}, isNight = {}]", isSafe, nextNight, nextNight == null ? "null" : nextNight.contains(Instant.now()));
-                observatoryService.stopAwait()
-                        .then(observatoryService.disconnectAllExceptWeather())
-                        .block(Duration.ofMinutes(5));
-                return;
-            }
-
-
-            Order queuedOrder = null;
-            if (nextOrder != null) {
-                queuedOrder = nextOrder;
-                nextOrder = null;
-            } else {
-                // It's time to start the scheduler
-                Interval searchInterval = new Interval(Instant.now(), nextNight.getEnd());
-                List<Order> orders = orderService.buildSchedule(searchInterval).block();
-                if (orders != null && !orders.isEmpty()) {
-                    queuedOrder = orders.get(0);
-                }
-            }
-
-            if (queuedOrder == null) {
-                // If there are no orders to run, park the telescope and exit
-                logger.info("Governor: no orders to run, parking the telescope.");
-                    observatoryService.stopAwait()
-                            .then(disconnectAllExceptWeather())
-                            .block(Duration.ofMinutes(5));
-                    return;
-            }
-            
-            // If there are orders to run, start the observatory and run the queued order
-            logger.debug("Governor: Starting the observatory and running the first order.");
-            connectAll().block(Duration.ofMinutes(5));
-            observatoryService.startAwait().block(Duration.ofMinutes(5));
-            logger.info("Governor: Observatory started, running the order [ID={}]", queuedOrder);
-            this.startOrder(queuedOrder).block(Duration.ofMinutes(5));
-        } catch (Exception e) {
-            logger.error("Error starting the observatory", e);
+    private Mono<Boolean> parkedStateAction(boolean isSafe) {
+        // If it's not safe, make sure it's parked and exit
+        if (!isSafe) {
+            logger.info("Governor: it's not safe to observe, parking the telescope. [isSafe = {}, nextNight = {}, isNight = {}]", isSafe, nextNight, nextNight == null ? "null" : nextNight.contains(Instant.now()));
+            return observatoryService.stopAwait()
+                    .then(observatoryService.disconnectAllExceptWeather());
         }
+
+        return startNextOrder();
     }
 
     /**
      * Check if isSafe, if not, go into PARKED.
      * Check if there are programs to run.
      */
-    private void idleStateAction(boolean isSafe) {
-        try {
-            if (!isSafe) {
-                logger.info("Governor: it's not safe to observe, parking the telescope. [isSafe = {}, nextNight = {}, isNight = {}]", isSafe, nextNight, nextNight == null ? "null" : nextNight.contains(Instant.now()));
-                observatoryService.stopAwait()
-                    .block(Duration.ofMinutes(5));
-                return;
-            }
-            
+    private Mono<Boolean> idleStateAction(boolean isSafe) {
+        if (!isSafe) {
+            logger.info("Governor: it's not safe to observe, parking the telescope. [isSafe = {}, nextNight = {}, isNight = {}]", isSafe, nextNight, nextNight == null ? "null" : nextNight.contains(Instant.now()));
+            return observatoryService.stopAwait();
+        }
 
-            Order queuedOrder = null;
-            if (nextOrder != null) {
-                queuedOrder = nextOrder;
-                nextOrder = null;
-            } else {
-                // It's time to start the scheduler
-                Interval searchInterval = new Interval(Instant.now(), nextNight.getEnd());
-                List<Order> orders = orderService.buildSchedule(searchInterval).block();
-                if (orders != null && !orders.isEmpty()) {
-                    queuedOrder = orders.get(0);
-                }
-            }
+        return startNextOrder();
+    }
 
-            if (queuedOrder == null) {
-                // If there are no orders to run, park the telescope and exit
-                logger.info("Governor: no orders to run, parking the telescope.");
-                    observatoryService.stopAwait()
-                            .then(disconnectAllExceptWeather())
-                            .block(Duration.ofMinutes(5));
-                    return;
-            }
-            
-            // If there are orders to run, start the observatory and run the queued order
-            logger.debug("Governor: Starting the observatory and running the first order.");
-            connectAll().block(Duration.ofMinutes(5));
-            observatoryService.startAwait().block(Duration.ofMinutes(5));
-            logger.info("Governor: Observatory started, running the order [ID={}]", queuedOrder);
-            this.startOrder(queuedOrder).block(Duration.ofMinutes(5));
-        } catch (Exception e) {
-            logger.error("Error starting the observatory", e);
-        }
-        
+    /**
+     * Starts the queued order, or the next one from the scheduler. If there
+     * are no orders to run, parks the telescope.
+     */
+    private Mono<Boolean> startNextOrder() {
+        return takeNextOrder()
+                .flatMap(order -> {
+                    // If there are orders to run, start the observatory and run the queued order
+                    logger.debug("Governor: Starting the observatory and running the first order.");
+                    return connectAll()
+                            .then(observatoryService.startAwait())
+                            .doOnSuccess(v -> logger.info("Governor: Observatory started, running the order [ID={}]", order.getId()))
+                            .then(this.startOrder(order));
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    // The plan may have something later, like a target that hasn't risen yet
+                    Instant nextStart = scheduleService.getNextStart();
+                    if (nextStart != null && nextStart.isAfter(Instant.now())) {
+                        watchPlannedStart(nextStart);
+                        if (Duration.between(Instant.now(), nextStart).compareTo(MAX_IDLE_WAIT) <= 0) {
+                            logger.info("Governor: next order planned at {}, waiting for it.", nextStart);
+                            return Mono.just(false);
+                        }
+                    }
+
+                    // If there are no orders to run, park the telescope and exit
+                    logger.info("Governor: no orders to run, parking the telescope.");
+                    sequencer.reset();
+                    return observatoryService.stopAwait()
+                            .then(disconnectAllExceptWeather());
+                }))
+                .onErrorResume(e -> {
+                    logger.error("Error starting the observatory", e);
+                    return Mono.just(false);
+                });
     }
 
     /**
@@ -881,44 +1210,50 @@ public class GovernorService {
      * If not, mark it as complete, save the image
      * and start the next one.
      */
-    private void runningProgramStateAction(boolean isSafe, boolean isDone) {
-        if (isDone) {
+    private Mono<Boolean> runningProgramStateAction(boolean isSafe, boolean isDone) {
+        if (isDone && isSafe && pipelineExposures && exposureReady.get()) {
+            logger.info("Governor: Program is done, moving on to the next one while saving the image.");
+            return pipelineNextExposure();
+        }
 
+        if (isDone) {
+            Mono<Boolean> ret = Mono.just(true);
             if (isSafe) {
-                // Go to IDLE (Do nothing, save the image will clear currentProgram)
+                // Go to IDLE and start the next one right away
                 logger.info("Governor: Program is done, saving the image.");
-
             } else {
                 logger.info("Governor: Program is done, but it's not safe to observe, parking the telescope first.");
-                observatoryService.stopAwait()
-                    .block(Duration.ofMinutes(5));
+                sequencer.reset();
+                ret = observatoryService.stopAwait();
             }
 
             // Download and save the image, mark the exposure/program as complete
-            this.endOrder()
-                .block(Duration.ofMinutes(5));
-
-        } else {
-            if (isSafe) {
-                // It's safe and running, so do nothing
-                logger.debug("Governor: Program is running, waiting for it to finish.");
+            return ret.then(this.endOrder())
+                    .doOnSuccess(v -> {
+                        if (isSafe)
+                            trigger(Trigger.ORDER_ENDED);
+                    });
+        }
 
-            } else {
-                // Abort and go to PARKED/Safe position
-                logger.info("Governor: It's not safe to observe, aborting the program and parking the telescope.");
-                this.abortOrder()
-                    .then(observatoryService.stopAwait())
-                    .block(Duration.ofMinutes(5));
-            }
+        if (isSafe) {
+            // It's safe and running, so do nothing
+            logger.debug("Governor: Program is running, waiting for it to finish.");
+            return Mono.just(false);
         }
+
+        // Abort and go to PARKED/Safe position
+        logger.info("Governor: It's not safe to observe, aborting the program and parking the telescope.");
+        return this.abortOrder()
+                .then(observatoryService.stopAwait());
     }
 
     /**
      * Check if the user's session is over.
      * If so, kick out and park the telescope.
      */
-    private void manualStateAction(boolean isSafe, boolean isDone) {
+    private Mono<Boolean> manualStateAction(boolean isSafe, boolean isDone) {
         if (isDone) {
+            Mono<Boolean> ret = Mono.just(true);
             if (isSafe) {
                 // Go to IDLE (Do nothing, endOrder() will clear currentProgram)
                 if (currentOrder != null && currentOrder.getUser() != null) {
@@ -929,25 +1264,130 @@ public class GovernorService {
                 }
             } else {
                 logger.info("Governor: Session is over, but it's not safe to keep observing, parking the telescope first.");
-                observatoryService.stopAwait()
-                    .block(Duration.ofMinutes(5));
+                ret = observatoryService.stopAwait();
             }
 
-            this.endOrder()
-                .block(Duration.ofMinutes(5));
+            return ret.then(this.endOrder())
+                    .doOnSuccess(v -> {
+                        if (isSafe)
+                            trigger(Trigger.ORDER_ENDED);
+                    });
+        }
+
+        if (isSafe) {
+            // It's safe and running, so do nothing
+            logger.debug("Governor: Session is running, waiting for it to finish.");
+            return Mono.just(false);
+        }
+
+        // Abort and go to PARKED/Safe position
+        logger.info("Governor: It's not safe to observe, aborting the session and parking the telescope.");
+        return this.abortOrder()
+                .then(observatoryService.stopAwait());
+    }
+
+    /**
+     * Program orders are done once the image is ready, or if it never gets
+     * ready, once the transition timeout is over. Control orders are done
+     * once their time is up.
+     */
+    private boolean isCurrentOrderDone() {
+        Interval interval = currentOrderInterval;
+        if (interval == null)
+            return true;
+        if (currentOrder instanceof ProgramOrder)
+            return exposureReady.get() || !Instant.now().isBefore(interval.getEnd().plus(transitionTimeout));
+
+        return interval.isBefore(Instant.now());
+    }
+
+    /**
+     * Steps as soon as the current order is done: once the image of the
+     * exposure is ready for program orders, or once the time is up for
+     * control orders.
+     */
+    private void watchCurrentOrder() {
+        Interval interval = currentOrderInterval;
+        exposureReady.set(false);
+        if (interval == null) {
+            stopWatchingOrder();
+            return;
+        }
+
+        Duration remaining = Duration.between(Instant.now(), interval.getEnd());
+        if (remaining.isNegative())
+            remaining = Duration.ZERO;
 
+        Mono<Trigger> done;
+        if (currentOrder instanceof ProgramOrder) {
+            // The image is ready a bit after the exposure time, once it's read out
+            done = Mono.delay(remaining)
+                    .then(observatoryService.waitForExposure(transitionTimeout))
+                    .doOnNext(ready -> {
+                        exposureReady.set(true);
+                        sequencer.imageReady();
+                    })
+                    .thenReturn(Trigger.EXPOSURE_COMPLETE)
+                    .onErrorReturn(Trigger.INTERVAL_ELAPSED);
         } else {
-            if (isSafe) {
-                // It's safe and running, so do nothing
-                 logger.debug("Governor: Session is running, waiting for it to finish.");
-            } else {
-                // Abort and go to PARKED/Safe position
-                logger.info("Governor: It's not safe to observe, aborting the session and parking the telescope.");
-                this.abortOrder()
-                    .then(observatoryService.stopAwait())
-                    .block(Duration.ofMinutes(5));
-            }
+            done = Mono.delay(remaining)
+                    .thenReturn(Trigger.INTERVAL_ELAPSED);
+        }
+
+        Disposable previous = orderWatch.getAndSet(done.subscribe(this::trigger));
+        if (previous != null)
+            previous.dispose();
+    }
+
+    /**
+     * Steps when the next planned order is due, instead of waiting for the
+     * periodic check.
+     */
+    private void watchPlannedStart(Instant start) {
+        Duration remaining = Duration.between(Instant.now(), start);
+        Disposable previous = plannedStartWatch.getAndSet(Mono.delay(remaining.isNegative() ? Duration.ZERO : remaining)
+                                                            .thenReturn(Trigger.PLANNED_START)
+                                                            .subscribe(this::trigger));
+        if (previous != null)
+            previous.dispose();
+    }
+
+    private void stopWatchingOrder() {
+        Disposable previous = orderWatch.getAndSet(null);
+        if (previous != null)
+            previous.dispose();
+    }
+
+    /**
+     * Calculates the upcoming nights in advance, so the governor and the
+     * scheduler don't have to wait for the solver when they need them.
+     * Runs regardless of the governor being enabled.
+     */
+    @Scheduled(initialDelay = 1, fixedDelay = 360, timeUnit = TimeUnit.MINUTES)
+    public void prefetchEphemerides() {
+        if (!(ephemeridesSolver instanceof CachingEphemeridesSolver)) {
+            return;
         }
+
+        int nights = ephemeridesSolver.getConfig().getPrefetchNights();
+        ((CachingEphemeridesSolver) ephemeridesSolver)
+            .prefetchNights(Instant.now(), nights)
+            .doOnSuccess(v -> logger.debug("Governor: Prefetched the next {} nights", nights))
+            .onErrorResume(e -> {
+                logger.warn("Governor: Error prefetching the next nights", e);
+                return Mono.empty();
+            })
+            .subscribe();
+    }
+
+    /**
+     * Plans the next nights to predict when each order will be completed, see
+     * {@link LookaheadService}. The nights whose orders didn't change are not
+     * planned again. Runs regardless of the governor being enabled.
+     */
+    @Scheduled(initialDelay = 3, fixedDelay = 30, timeUnit = TimeUnit.MINUTES)
+    public void refreshLookahead() {
+        lookaheadService.requestRefresh();
     }
 
 
@@ -976,6 +1416,28 @@ public class GovernorService {
         ERROR
     }
 
+    /**
+     * The events that make the governor evaluate its state.
+     */
+    private enum Trigger {
+        /** The governor was enabled or left admin mode */
+        MODE_CHANGED,
+        /** A new order was queued or placed */
+        ORDER_QUEUED,
+        /** The image of the current exposure is ready */
+        EXPOSURE_COMPLETE,
+        /** The time of the current order is up */
+        INTERVAL_ELAPSED,
+        /** The current order ended, so the next one can start */
+        ORDER_ENDED,
+        /** The observing conditions changed */
+        SAFETY_CHANGED,
+        /** The next planned order is due */
+        PLANNED_START,
+        /** The periodic check, in case some event was missed */
+        TICK
+    }
+
     public record GovernorStatus(
         /** Current state of the governor, as a String */
         String state,
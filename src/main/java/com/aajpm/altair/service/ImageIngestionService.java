@@ -0,0 +1,352 @@
+package com.aajpm.altair.service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.utility.FitsHeaderReader;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Catalogues archives of existing FITS files, like the images taken before
+ * Altair was in use. The directory tree is walked and the headers are read in
+ * parallel on the ingestion worker, reading only up to the END card of each
+ * file. The attributes and the targets are looked up in memory, and the
+ * images are saved in batches, each one in its own transaction.
+ * <p>
+ * Files already in the catalogue are skipped, so an ingestion that was
+ * cancelled or failed can be resumed just by starting it again. Its progress
+ * is kept in the {@code altair.ingestion.files} metric, tagged by the
+ * {@code result} of each file, and the time to save each batch in the
+ * {@code altair.worker.duration} metric of the ingestion worker.
+ */
+@Service
+public class ImageIngestionService {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    /** The current or last ingestion */
+    private volatile Disposable job;
+
+    private volatile Path root;
+
+    private volatile Instant started;
+
+    private volatile Instant finished;
+
+    private final AtomicLong found = new AtomicLong(0);
+
+    private final AtomicLong catalogued = new AtomicLong(0);
+
+    private final AtomicLong skipped = new AtomicLong(0);
+
+    private final AtomicLong failed = new AtomicLong(0);
+
+    //#endregion
+    ///////////////////// SUPPORTING SERVICES & COMPONENTS ////////////////////
+    //#region Supporting Services & Components
+
+    @Autowired
+    private AstroImageService astroImageService;
+
+    @Autowired
+    private ImageAttributeService imageAttributeService;
+
+    @Autowired
+    private AstroObjectService astroObjectService;
+
+    @Autowired
+    private WorkerService workers;
+
+    @Autowired
+    private ObservatoryConfig config;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Logger logger = LoggerFactory.getLogger(ImageIngestionService.class);
+
+    @PreDestroy
+    private void tearDown() {
+        cancel();
+    }
+
+    //#endregion
+    ///////////////////////////////// METHODS /////////////////////////////////
+    //#region Methods
+
+    /**
+     * Starts cataloguing the FITS files in a directory of the image store,
+     * and all its subdirectories. The file names are kept relative to the
+     * image store.
+     *
+     * @param path The directory, absolute or relative to the image store.
+     *
+     * @return The status of the ingestion that was just started.
+     */
+    public synchronized IngestionStatus start(Path path) {
+        Assert.notNull(path, "The path cannot be null.");
+        Path store = config.getCamera().getImageStorePath().toAbsolutePath().normalize();
+        Path dir = store.resolve(path).toAbsolutePath().normalize();
+        Assert.isTrue(dir.startsWith(store), "The path must be inside the image store.");
+        Assert.isTrue(Files.isDirectory(dir), "The path must be a directory.");
+
+        Assert.state(isFinished(), "An ingestion is already running.");
+
+        root = dir;
+        started = Instant.now();
+        finished = null;
+        found.set(0);
+        catalogued.set(0);
+        skipped.set(0);
+        failed.set(0);
+
+        logger.info("Ingestion: Cataloguing the FITS files in {}", dir);
+        job = ingest(store, dir)
+                .doFinally(signal -> {
+                    finished = Instant.now();
+                    logger.info("Ingestion: Finished ({}) {}", signal, getStatus());
+                })
+                .subscribe(
+                    count -> {},
+                    e -> logger.error("Ingestion: Error walking {}, start it again to resume", dir, e));
+
+        return getStatus();
+    }
+
+    /**
+     * Stops the running ingestion, if any. The batches already saved are
+     * kept, so it can be resumed later.
+     */
+    public synchronized void cancel() {
+        Disposable running = job;
+        if (running != null && !isFinished()) {
+            logger.info("Ingestion: Cancelled");
+            running.dispose();
+        }
+    }
+
+    /**
+     * @return The progress of the current or last ingestion.
+     */
+    public IngestionStatus getStatus() {
+        Instant start = started;
+        Instant end = finished;
+        long done = catalogued.get();
+
+        double filesPerSecond = 0.0;
+        if (start != null) {
+            long millis = Duration.between(start, end != null ? end : Instant.now()).toMillis();
+            filesPerSecond = millis > 0 ? done * 1000.0 / millis : 0.0;
+        }
+
+        return new IngestionStatus(
+            start != null && end == null,
+            root != null ? root.toString() : null,
+            start,
+            end,
+            found.get(),
+            done,
+            skipped.get(),
+            failed.get(),
+            filesPerSecond
+        );
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    private boolean isFinished() {
+        return started == null || finished != null;
+    }
+
+    /**
+     * The ingestion itself: walks the tree, reads the headers in parallel
+     * and saves the images in batches, one after the other.
+     *
+     * @return A {@link Flux} that emits the size of each saved batch.
+     */
+    private Flux<Integer> ingest(Path store, Path dir) {
+        int threads = config.getWorkers().getIngestionThreads();
+        int batchSize = config.getCamera().getIngestionBatchSize();
+        Scheduler scheduler = workers.getIngestion().getScheduler();
+
+        return Mono.fromCallable(this::loadCatalogue)
+                .subscribeOn(scheduler)
+                .flatMapMany(catalogue -> Flux.using(
+                        () -> Files.walk(dir),
+                        walk -> Flux.fromStream(walk.filter(ImageIngestionService::isFitsFile)),
+                        Stream::close)
+                    .filter(file -> {
+                        found.incrementAndGet();
+                        if (catalogue.fileNames().contains(fileName(store, file))) {
+                            skipped.incrementAndGet();
+                            files("skipped").increment();
+                            return false;
+                        }
+                        return true;
+                    })
+                    .parallel(threads)
+                    .runOn(scheduler)
+                    .flatMap(file -> Mono.justOrEmpty(read(store, file, catalogue)))
+                    .sequential()
+                    .buffer(batchSize)
+                    .concatMap(batch -> workers.getIngestion().call("saveBatch", () -> saveBatch(batch, batchSize))));
+    }
+
+    /**
+     * Loads everything needed to catalogue the files without querying the
+     * database for each one.
+     */
+    private Catalogue loadCatalogue() {
+        Set<String> fileNames = astroImageService.findAllFileNames();
+
+        List<ImageAttribute> attributes = imageAttributeService.findAll()
+                                            .stream()
+                                            .filter(attribute -> attribute.getFitsKeyword() != null)
+                                            .toList();
+
+        Map<String, AstroObject> targets = astroObjectService.findAll()
+                                            .stream()
+                                            .collect(Collectors.toMap(
+                                                object -> object.getName().toLowerCase(Locale.ROOT),
+                                                Function.identity(),
+                                                (first, second) -> first));
+
+        logger.debug("Ingestion: {} images already catalogued, {} attributes, {} targets", fileNames.size(), attributes.size(), targets.size());
+        return new Catalogue(fileNames, attributes, targets);
+    }
+
+    /**
+     * Reads the header of a file and creates its image, checked as it will
+     * be when saved, so a single invalid file doesn't fail its whole batch.
+     *
+     * @return The image, or {@code null} if the header couldn't be read or
+     *         the image is not valid.
+     */
+    private AstroImage read(Path store, Path file, Catalogue catalogue) {
+        try {
+            AstroImage image = astroImageService.create(fileName(store, file), FitsHeaderReader.read(file),
+                                    catalogue.attributes(), catalogue::findTarget);
+            if (image.getCreationDate() == null) {
+                // Old files might not have a DATE, but they all have a last modified time
+                image.setCreationDate(Files.getLastModifiedTime(file).toInstant());
+            }
+            astroImageService.validate(image);
+            return image;
+        } catch (Exception e) {
+            logger.warn("Ingestion: Couldn't catalogue {}", file, e);
+            failed.incrementAndGet();
+            files("failed").increment();
+            return null;
+        }
+    }
+
+    private int saveBatch(List<AstroImage> batch, int batchSize) {
+        try {
+            astroImageService.saveAll(batch, batchSize);
+            catalogued.addAndGet(batch.size());
+            files("catalogued").increment(batch.size());
+        } catch (Exception e) {
+            // The whole batch is rolled back, so it will be tried again when resumed
+            logger.error("Ingestion: Error saving a batch of {} images, starting with {}", batch.size(), batch.get(0).getFileName(), e);
+            failed.addAndGet(batch.size());
+            files("failed").increment(batch.size());
+        }
+        logger.info("Ingestion: {} of {} files catalogued ({} skipped, {} failed), {} files/s",
+                        catalogued.get(), found.get(), skipped.get(), failed.get(), String.format(Locale.US, "%.1f", getStatus().filesPerSecond()));
+        return batch.size();
+    }
+
+    private Counter files(String result) {
+        return Counter.builder("altair.ingestion.files")
+                .description("FITS files processed when ingesting an archive")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * @return The name of the file as catalogued, relative to the image store
+     *         and with forward slashes.
+     */
+    private static String fileName(Path store, Path file) {
+        return store.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static boolean isFitsFile(Path file) {
+        if (!Files.isRegularFile(file))
+            return false;
+
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz"))
+            name = name.substring(0, name.length() - 3);
+        return name.endsWith(".fit") || name.endsWith(".fits") || name.endsWith(".fts");
+    }
+
+    /** What is already in the database, loaded once per ingestion */
+    private record Catalogue(
+        Set<String> fileNames,
+        Collection<ImageAttribute> attributes,
+        Map<String, AstroObject> targets
+    ) {
+        AstroObject findTarget(String name) {
+            return name == null ? null : targets.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    //#endregion
+    ////////////////////////////// INNER CLASSES //////////////////////////////
+    //#region Inner classes
+
+    public record IngestionStatus(
+        /** If an ingestion is running */
+        boolean running,
+        /** The directory being catalogued */
+        String root,
+        Instant started,
+        /** When it finished, or null if it's still running */
+        Instant finished,
+        /** FITS files found so far */
+        long found,
+        /** Files saved to the catalogue */
+        long catalogued,
+        /** Files that were already catalogued */
+        long skipped,
+        /** Files that couldn't be read or saved */
+        long failed,
+        /** Files catalogued per second, on average */
+        double filesPerSecond
+    ) {}
+
+    //#endregion
+}
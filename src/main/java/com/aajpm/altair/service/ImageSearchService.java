@@ -0,0 +1,348 @@
+package com.aajpm.altair.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.ImageValue;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Searches the image catalogue by its metadata. The most searched FITS
+ * keywords are columns of the images, and the rest are searched through the
+ * typed values of the attributes, each filter being an indexed subquery.
+ * <p>
+ * The results are paged by keyset: each page ends with a cursor holding the
+ * sort key and the id of its last image, and the next page starts right
+ * after it. Unlike an offset, it costs the same on the first page and the
+ * thousandth, and images catalogued meanwhile don't shift the pages.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ImageSearchService {
+
+    /** The page size if none is given */
+    public static final int DEFAULT_LIMIT = 50;
+
+    /** The largest page that can be asked for */
+    public static final int MAX_LIMIT = 500;
+
+    /////////////////////// SUPPORTING SERVICES & COMPONENTS //////////////////
+    //#region Supporting Services & Components
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ImageAttributeService imageAttributeService;
+
+    //#endregion
+    ///////////////////////////////// METHODS /////////////////////////////////
+    //#region Methods
+
+    /**
+     * Finds a page of the images that match a search.
+     *
+     * @param search The filters, the order and the page to find.
+     *
+     * @return The page of images, with the cursor of the next page if there
+     *         are more.
+     */
+    public ImageSearchPage search(ImageSearch search) {
+        Assert.notNull(search, "The search cannot be null.");
+        int limit = search.limit() == null ? DEFAULT_LIMIT : search.limit();
+        Assert.isTrue(limit > 0 && limit <= MAX_LIMIT, "The limit must be between 1 and " + MAX_LIMIT + ".");
+        SortField sort = search.sort() == null ? SortField.DATE : search.sort();
+        boolean descending = Boolean.TRUE.equals(search.descending());
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AstroImage> query = cb.createQuery(AstroImage.class);
+        Root<AstroImage> image = query.from(AstroImage.class);
+        image.fetch("target", JoinType.LEFT);
+
+        List<Predicate> where = filters(cb, query, image, search);
+
+        Path<Comparable<Object>> key = image.get(sort.attribute);
+        Path<Long> id = image.get("id");
+        // Images without the sort key have no place in the order
+        where.add(cb.isNotNull(key));
+        if (search.after() != null)
+            where.add(after(cb, key, id, Cursor.decode(search.after(), sort), descending));
+
+        query.select(image)
+             .where(where.toArray(Predicate[]::new))
+             .orderBy(descending ? List.of(cb.desc(key), cb.desc(id))
+                                 : List.of(cb.asc(key), cb.asc(id)));
+
+        // One more to know if there is a next page
+        List<AstroImage> images = entityManager.createQuery(query)
+                                        .setMaxResults(limit + 1)
+                                        .getResultList();
+
+        String next = null;
+        if (images.size() > limit) {
+            images = images.subList(0, limit);
+            next = Cursor.encode(images.get(limit - 1), sort);
+        }
+
+        return new ImageSearchPage(images.stream().map(ImageSummary::of).toList(), next);
+    }
+
+    /**
+     * Goes through all the images that match a search, a page at a time,
+     * asking for the next page only once the previous one is consumed.
+     *
+     * @param search The filters and the order. Its cursor, if any, is where
+     *               it starts, to resume an interrupted stream.
+     *
+     * @return A {@link Flux} with the images, in the order of the search.
+     */
+    public Flux<ImageSummary> stream(ImageSearch search) {
+        Assert.notNull(search, "The search cannot be null.");
+        ImageSearch pages = search.limit() == null ? search.withLimit(MAX_LIMIT) : search;
+
+        return Mono.fromCallable(() -> search(pages))
+                .expand(page -> page.next() == null
+                                ? Mono.empty()
+                                : Mono.fromCallable(() -> search(pages.startingAfter(page.next()))))
+                .subscribeOn(Schedulers.boundedElastic())
+                .concatMapIterable(ImageSearchPage::images, 1);
+    }
+
+    //#endregion
+    ///////////////////////////////// HELPERS /////////////////////////////////
+    //#region Helpers
+
+    private List<Predicate> filters(CriteriaBuilder cb, CriteriaQuery<?> query, Root<AstroImage> image, ImageSearch search) {
+        List<Predicate> where = new ArrayList<>();
+
+        if (search.from() != null)
+            where.add(cb.greaterThanOrEqualTo(image.get("creationDate"), search.from()));
+        if (search.to() != null)
+            where.add(cb.lessThan(image.get("creationDate"), search.to()));
+        if (search.targetId() != null)
+            where.add(cb.equal(image.get("target").get("id"), search.targetId()));
+        if (search.filter() != null)
+            where.add(cb.equal(image.get("filter"), search.filter()));
+        if (search.frameType() != null)
+            where.add(cb.equal(image.get("frameType"), search.frameType()));
+        if (search.minExposureTime() != null)
+            where.add(cb.greaterThanOrEqualTo(image.get("exposureTime"), search.minExposureTime()));
+        if (search.maxExposureTime() != null)
+            where.add(cb.lessThanOrEqualTo(image.get("exposureTime"), search.maxExposureTime()));
+        if (search.minCcdTemperature() != null)
+            where.add(cb.greaterThanOrEqualTo(image.get("ccdTemperature"), search.minCcdTemperature()));
+        if (search.maxCcdTemperature() != null)
+            where.add(cb.lessThanOrEqualTo(image.get("ccdTemperature"), search.maxCcdTemperature()));
+
+        if (search.attributes() != null) {
+            for (AttributeFilter filter : search.attributes())
+                where.add(cb.exists(hasValue(cb, query, image, filter)));
+        }
+
+        return where;
+    }
+
+    /**
+     * @return A subquery for the values of an image that match the filter,
+     *         which only reads the index of the attribute's values.
+     */
+    private Subquery<Long> hasValue(CriteriaBuilder cb, CriteriaQuery<?> query, Root<AstroImage> image, AttributeFilter filter) {
+        Assert.notNull(filter, "The attribute filter cannot be null.");
+        Assert.hasText(filter.keyword(), "The attribute filter must have a FITS keyword.");
+        ImageAttribute attribute = imageAttributeService.findByKeyword(filter.keyword());
+        Assert.notNull(attribute, "There is no attribute for the FITS keyword " + filter.keyword() + ".");
+
+        Subquery<Long> subquery = query.subquery(Long.class);
+        Root<ImageValue> value = subquery.from(ImageValue.class);
+
+        List<Predicate> where = new ArrayList<>();
+        where.add(cb.equal(value.get("attribute").get("id"), attribute.getId()));
+        where.add(cb.equal(value.get("image"), image));
+        if (filter.value() != null)
+            where.add(cb.equal(value.get("value"), filter.value()));
+        if (filter.min() != null)
+            where.add(cb.greaterThanOrEqualTo(value.get("numericValue"), filter.min()));
+        if (filter.max() != null)
+            where.add(cb.lessThanOrEqualTo(value.get("numericValue"), filter.max()));
+        if (filter.from() != null)
+            where.add(cb.greaterThanOrEqualTo(value.get("dateValue"), filter.from()));
+        if (filter.to() != null)
+            where.add(cb.lessThan(value.get("dateValue"), filter.to()));
+
+        return subquery.select(value.get("id")).where(where.toArray(Predicate[]::new));
+    }
+
+    /**
+     * @return The images after the cursor in the order of the search, as
+     *         {@code key > k OR (key = k AND id > i)}.
+     */
+    private static Predicate after(CriteriaBuilder cb, Path<Comparable<Object>> key, Path<Long> id, Cursor cursor, boolean descending) {
+        if (descending) {
+            return cb.or(cb.lessThan(key, cursor.key()),
+                         cb.and(cb.equal(key, cursor.key()), cb.lessThan(id, cursor.id())));
+        }
+        return cb.or(cb.greaterThan(key, cursor.key()),
+                     cb.and(cb.equal(key, cursor.key()), cb.greaterThan(id, cursor.id())));
+    }
+
+    /** Where a page ended, as an opaque string for the clients */
+    private record Cursor(Comparable<Object> key, long id) {
+
+        static String encode(AstroImage last, SortField sort) {
+            String raw = sort.getter.apply(last) + "~" + last.getId();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @SuppressWarnings("unchecked")
+        static Cursor decode(String cursor, SortField sort) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('~');
+                return new Cursor((Comparable<Object>) sort.parser.apply(raw.substring(0, separator)),
+                                  Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("The cursor is not valid for sorting by " + sort + ".", e);
+            }
+        }
+    }
+
+    //#endregion
+    ////////////////////////////// INNER CLASSES //////////////////////////////
+    //#region Inner classes
+
+    /** What the images can be sorted by, each one backed by an index */
+    public enum SortField {
+        DATE("creationDate", AstroImage::getCreationDate, Instant::parse),
+        EXPOSURE_TIME("exposureTime", AstroImage::getExposureTime, Double::valueOf),
+        CCD_TEMPERATURE("ccdTemperature", AstroImage::getCcdTemperature, Double::valueOf),
+        FILE_NAME("fileName", AstroImage::getFileName, name -> name);
+
+        private final String attribute;
+        private final Function<AstroImage, Object> getter;
+        private final Function<String, Comparable<?>> parser;
+
+        SortField(String attribute, Function<AstroImage, Object> getter, Function<String, Comparable<?>> parser) {
+            this.attribute = attribute;
+            this.getter = getter;
+            this.parser = parser;
+        }
+    }
+
+    /**
+     * A search of the catalogue. Every filter is optional, and they must all
+     * match. Sorting by a metadata column only finds the images that have it.
+     */
+    public record ImageSearch(
+        /** Taken at or after it */
+        Instant from,
+        /** Taken before it */
+        Instant to,
+        Long targetId,
+        /** The FILTER, exactly */
+        String filter,
+        /** The IMAGETYP, exactly */
+        String frameType,
+        Double minExposureTime,
+        Double maxExposureTime,
+        Double minCcdTemperature,
+        Double maxCcdTemperature,
+        /** Filters on any other attribute */
+        List<AttributeFilter> attributes,
+        /** DATE if null */
+        SortField sort,
+        Boolean descending,
+        /** The page size, {@value ImageSearchService#DEFAULT_LIMIT} if null */
+        Integer limit,
+        /** The cursor of the previous page, or null for the first one */
+        String after
+    ) {
+        /** Every image, newest first */
+        public static ImageSearch all(Integer limit, String after) {
+            return new ImageSearch(null, null, null, null, null, null, null, null, null, null, SortField.DATE, true, limit, after);
+        }
+
+        /** The same search, for the page after the cursor */
+        public ImageSearch startingAfter(String cursor) {
+            return new ImageSearch(from, to, targetId, filter, frameType, minExposureTime, maxExposureTime,
+                                   minCcdTemperature, maxCcdTemperature, attributes, sort, descending, limit, cursor);
+        }
+
+        /** The same search, with pages of another size */
+        public ImageSearch withLimit(Integer limit) {
+            return new ImageSearch(from, to, targetId, filter, frameType, minExposureTime, maxExposureTime,
+                                   minCcdTemperature, maxCcdTemperature, attributes, sort, descending, limit, after);
+        }
+    }
+
+    /**
+     * A filter on the value of an attribute, found by its FITS keyword. The
+     * ranges only match values that are numbers or dates.
+     */
+    public record AttributeFilter(
+        String keyword,
+        /** The value, exactly */
+        String value,
+        Double min,
+        Double max,
+        /** At or after it */
+        Instant from,
+        /** Before it */
+        Instant to
+    ) {}
+
+    public record ImageSearchPage(
+        List<ImageSummary> images,
+        /** The cursor of the next page, or null if this is the last one */
+        String next
+    ) {}
+
+    /** An image as listed in the results */
+    public record ImageSummary(
+        long id,
+        String fileName,
+        Instant creationDate,
+        String target,
+        String filter,
+        String frameType,
+        Double exposureTime,
+        Double ccdTemperature
+    ) {
+        static ImageSummary of(AstroImage image) {
+            return new ImageSummary(
+                image.getId(),
+                image.getFileName(),
+                image.getCreationDate(),
+                image.getTarget() != null ? image.getTarget().getName() : null,
+                image.getFilter(),
+                image.getFrameType(),
+                image.getExposureTime(),
+                image.getCcdTemperature()
+            );
+        }
+    }
+
+    //#endregion
+}
@@ -1,6 +1,7 @@
 package com.aajpm.altair.service;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -105,5 +106,15 @@ public class ImageValueService extends BasicEntityCRUDService<ImageValue> {
 
         return imageValueRepository.findByImageIdAndAttributeId(image.getId(), attr.getId());
     }
+
+    /**
+     * Finds the {@link ImageValue}s without a typed value that might be a
+     * number or a date, like the ones saved before those were stored.
+     *
+     * @return a {@link List} of the untyped {@link ImageValue}s that start like a number
+     */
+    public List<ImageValue> findUntypedNumbersOrDates() {
+        return imageValueRepository.findUntypedNumbersOrDates();
+    }
     
 }
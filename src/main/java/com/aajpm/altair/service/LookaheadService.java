@@ -0,0 +1,372 @@
+package com.aajpm.altair.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.aajpm.altair.config.SchedulerConfig;
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.ExposureOrder;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.service.event.OrderChangedEvent;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.scheduler.ScheduledExposure;
+import com.aajpm.altair.utility.scheduler.SchedulingCandidate;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Plans the next nights in the background to predict when each
+ * {@link ProgramOrder} will be completed.
+ * <p>
+ * Finding which orders can be observed in each slot of a night is the costly
+ * part, as it needs the visibility of every target, so the nights are
+ * prepared in parallel on a bounded pool. Then the nights are planned one
+ * after the other, as each one depends on what was planned in the previous
+ * ones, which is cheap.
+ * <p>
+ * Both steps are cached per night, keyed by a hash of their inputs: the
+ * night, its control orders and the pending orders whose target can be
+ * observed that night for the preparation, plus how many exposures of each
+ * order were planned in the previous nights for the plan. A refresh only
+ * recomputes the nights whose inputs changed, so a change to an order only
+ * prepares again the nights in which it can be observed.
+ */
+@Service
+public class LookaheadService {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    /** Cached nights, by their end */
+    private final Map<Instant, NightPlan> nights = new HashMap<>();
+
+    /** Predicted completion time of each order, by ID */
+    private volatile Map<Long, Instant> completions = Map.of();
+
+    /** If a refresh is running, and if another one was requested meanwhile */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private final AtomicBoolean refreshRequested = new AtomicBoolean(false);
+
+    private Scheduler scheduler;
+
+    //#endregion
+    /////////////////////////// SUPPORTING SERVICES ///////////////////////////
+    //#region Supporting Services
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProgramOrderService programOrderService;
+
+    @Autowired
+    private ControlOrderService controlOrderService;
+
+    @Autowired
+    private AstroObjectService astroObjectService;
+
+    @Autowired
+    private EphemeridesSolver ephemeridesSolver;
+
+    @Autowired
+    private SchedulerConfig schedulerConfig;
+
+    private final Logger logger = LoggerFactory.getLogger(LookaheadService.class);
+
+    @PostConstruct
+    private void setUp() {
+        scheduler = Schedulers.newBoundedElastic(Math.max(1, schedulerConfig.getLookaheadThreads()), Integer.MAX_VALUE, "altair-lookahead");
+    }
+
+    @PreDestroy
+    private void tearDown() {
+        scheduler.dispose();
+    }
+
+    //#endregion
+    ///////////////////////////////// METHODS /////////////////////////////////
+    //#region Methods
+
+    /**
+     * Gets the predicted completion time of every order that would be
+     * completed within the lookahead, as of the last refresh.
+     *
+     * @return The predicted completion time of the orders, by ID.
+     */
+    public Map<Long, Instant> getPredictedCompletions() {
+        return completions;
+    }
+
+    /**
+     * Gets when an order is predicted to be completed, as of the last refresh.
+     *
+     * @param order The order to check.
+     *
+     * @return The predicted completion time, or {@code null} if it is not
+     *         expected to be completed within the lookahead.
+     */
+    public Instant getPredictedCompletion(ProgramOrder order) {
+        return completions.get(order.getId());
+    }
+
+    /**
+     * Plans the next nights again, reusing the nights whose inputs didn't
+     * change, and updates the predicted completion times.
+     *
+     * @return A {@link Mono} emitting the predicted completion time of the
+     *         orders, by ID.
+     */
+    public Mono<Map<Long, Instant>> refresh() {
+        return Mono.zip(Mono.fromCallable(programOrderService::findNotCompleted).subscribeOn(scheduler),
+                        upcomingNights())
+                .flatMap(tuple -> {
+                    List<ProgramOrder> pending = tuple.getT1();
+                    return Flux.fromIterable(tuple.getT2())
+                            .flatMapSequential(night -> prepare(night, pending).subscribeOn(scheduler), Math.max(1, schedulerConfig.getLookaheadThreads()))
+                            .collectList()
+                            .map(prepared -> simulate(prepared, pending));
+                })
+                .doOnNext(predicted -> completions = predicted);
+    }
+
+    /**
+     * Requests a {@link #refresh()} in the background. If one is already
+     * running, another one is run once it finishes.
+     */
+    public void requestRefresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            refreshRequested.set(true);
+            return;
+        }
+
+        refresh()
+            .doOnNext(predicted -> logger.debug("LookaheadService: predicted the completion of {} orders", predicted.size()))
+            .onErrorResume(e -> {
+                logger.warn("LookaheadService: Error planning the next nights", e);
+                return Mono.empty();
+            })
+            .doFinally(signal -> {
+                refreshing.set(false);
+                if (refreshRequested.getAndSet(false))
+                    requestRefresh();
+            })
+            .subscribe();
+    }
+
+    //#endregion
+    ///////////////////////////////// EVENTS //////////////////////////////////
+    //#region Events
+
+    /** Once the change is committed, so the refresh sees it */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        requestRefresh();
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Gets the current or next night and the ones after it.
+     */
+    private Mono<List<Interval>> upcomingNights() {
+        return ephemeridesSolver.getNightTime(Instant.now())
+                .expand(night -> ephemeridesSolver.getNightTime(night.getEnd().plus(Duration.ofMinutes(1))))
+                .take(Math.max(1, schedulerConfig.getLookaheadNights()))
+                .collectList();
+    }
+
+    /**
+     * Finds the candidates of each free slot of a night, unless they are
+     * cached. Only the pending orders that can be observed that night count
+     * as its inputs.
+     */
+    private Mono<NightPlan> prepare(Interval night, List<ProgramOrder> pending) {
+        return Flux.fromIterable(pending)
+                .filterWhen(order -> isObservable(order, night))
+                .collectList()
+                .flatMap(observable -> prepare(night, hashPending(observable)));
+    }
+
+    private Mono<NightPlan> prepare(Interval night, long pendingHash) {
+        return Mono.defer(() -> {
+            List<ControlOrder> controlOrders = controlOrderService.findInRangeOpen(night.getStart(), night.getEnd());
+            long inputs = hash(hash(hash(night.getStart().toEpochMilli(), night.getEnd().toEpochMilli()), hashControl(controlOrders)), pendingHash);
+
+            NightPlan cached = getCached(night);
+            if (cached != null && cached.inputs == inputs)
+                return Mono.just(cached);
+
+            List<Interval> slots = controlOrderService.findAvailableTime(night.getStart(), night.getEnd());
+            return Flux.fromIterable(slots)
+                    .concatMap(orderService::findCandidates)
+                    .collectList()
+                    .map(candidates -> {
+                        NightPlan prepared = new NightPlan(night, inputs, slots, candidates);
+                        synchronized (nights) {
+                            nights.put(night.getEnd(), prepared);
+                        }
+                        return prepared;
+                    });
+        });
+    }
+
+    /**
+     * Plans the nights one after the other, reusing the plans whose inputs
+     * didn't change, and finds when each order gets all its exposures planned.
+     */
+    private Map<Long, Instant> simulate(List<NightPlan> prepared, List<ProgramOrder> pending) {
+        Map<ProgramOrder, Integer> remaining = new HashMap<>();
+        for (ProgramOrder order : pending) {
+            int count = (int) order.getExposureOrders().stream().filter(exp -> !exp.isCompleted()).count();
+            remaining.put(order, count);
+        }
+
+        Map<ProgramOrder, Integer> planned = new HashMap<>();
+        Map<Long, Instant> predicted = new HashMap<>();
+        for (NightPlan night : prepared) {
+            long inputs = hashPlanned(night, planned);
+            if (night.plan == null || night.planInputs != inputs) {
+                Map<ProgramOrder, Integer> working = new HashMap<>(planned);
+                List<ScheduledExposure<ProgramOrder>> plan = new ArrayList<>();
+                for (int i = 0; i < night.slots.size(); i++) {
+                    List<ScheduledExposure<ProgramOrder>> slotPlan = orderService.plan(night.candidates.get(i), night.slots.get(i), working);
+                    slotPlan.forEach(exposure -> working.merge(exposure.getOrder(), 1, Integer::sum));
+                    plan.addAll(slotPlan);
+                }
+                night.plan = plan;
+                night.planInputs = inputs;
+            }
+
+            for (ScheduledExposure<ProgramOrder> exposure : night.plan) {
+                int count = planned.merge(exposure.getOrder(), 1, Integer::sum);
+                if (count == remaining.getOrDefault(exposure.getOrder(), -1)) {
+                    predicted.put(exposure.getOrder().getId(), Instant.ofEpochMilli(exposure.getEndMillis()));
+                }
+            }
+        }
+
+        // Forget the nights that are over
+        synchronized (nights) {
+            nights.keySet().removeIf(end -> end.isBefore(Instant.now()));
+        }
+        return Map.copyOf(predicted);
+    }
+
+    /**
+     * Checks if the target of an order is visible at some point of a night.
+     * If it can't be checked, it is taken as visible, so the night is not
+     * reused by mistake.
+     */
+    private Mono<Boolean> isObservable(ProgramOrder order, Interval night) {
+        return astroObjectService.isVisibleInterval(order.getProgram().getTarget(), night)
+                .map(visible -> !visible.isEmpty())
+                .onErrorReturn(true)
+                .defaultIfEmpty(true);
+    }
+
+    private NightPlan getCached(Interval night) {
+        synchronized (nights) {
+            return nights.get(night.getEnd());
+        }
+    }
+
+    /** Hashes what the candidates of a night depend on: the orders observable in it and their remaining exposures */
+    private static long hashPending(List<ProgramOrder> pending) {
+        long hash = 17;
+        List<ProgramOrder> sorted = new ArrayList<>(pending);
+        sorted.sort(Comparator.comparingLong(ProgramOrder::getId));
+        for (ProgramOrder order : sorted) {
+            hash = hash(hash, order.getId());
+            hash = hash(hash, order.getProgram().getTarget().getId());
+            hash = hash(hash, order.getCreationTime() == null ? 0 : order.getCreationTime().toEpochMilli());
+            long[] exposures = order.getExposureOrders()
+                                    .stream()
+                                    .filter(exp -> !exp.isCompleted())
+                                    .map(ExposureOrder::getExposureParams)
+                                    .mapToLong(params -> Double.doubleToLongBits(params.getExposureTime()))
+                                    .sorted()
+                                    .toArray();
+            for (long exposure : exposures) {
+                hash = hash(hash, exposure);
+            }
+        }
+        return hash;
+    }
+
+    /** Hashes the control orders that split a night in slots */
+    private static long hashControl(List<ControlOrder> controlOrders) {
+        long hash = 31;
+        for (ControlOrder order : controlOrders) {
+            hash = hash(hash, order.getId());
+            hash = hash(hash, order.getRequestedTime().toEpochMilli());
+            hash = hash(hash, order.getRequestedDuration().toMillis());
+        }
+        return hash;
+    }
+
+    /** Hashes what the plan of a night depends on: its candidates and what was planned before */
+    private static long hashPlanned(NightPlan night, Map<ProgramOrder, Integer> planned) {
+        long hash = night.inputs;
+        for (List<SchedulingCandidate<ProgramOrder>> slot : night.candidates) {
+            for (SchedulingCandidate<ProgramOrder> candidate : slot) {
+                hash = hash(hash, planned.getOrDefault(candidate.getOrder(), 0));
+            }
+        }
+        return hash;
+    }
+
+    /** FNV-1a over longs */
+    private static long hash(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /** A night of the lookahead, with the candidates of each slot and the last plan */
+    private static final class NightPlan {
+
+        private final Interval night;
+
+        private final long inputs;
+
+        private final List<Interval> slots;
+
+        private final List<List<SchedulingCandidate<ProgramOrder>>> candidates;
+
+        private long planInputs;
+
+        private List<ScheduledExposure<ProgramOrder>> plan = null;
+
+        private NightPlan(Interval night, long inputs, List<Interval> slots, List<List<SchedulingCandidate<ProgramOrder>>> candidates) {
+            this.night = night;
+            this.inputs = inputs;
+            this.slots = slots;
+            this.candidates = candidates;
+        }
+
+        @Override
+        public String toString() {
+            return "NightPlan [night=" + night + ", slots=" + slots.size() + "]";
+        }
+    }
+
+    //#endregion
+}
@@ -6,7 +6,6 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Locale;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 import java.util.zip.GZIPOutputStream;
@@ -14,7 +13,8 @@ import java.util.zip.GZIPOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import com.aajpm.altair.config.AstrometricsConfig;
@@ -85,6 +85,9 @@ public class ObservatoryService {
     @Autowired
     private WeatherWatchService weatherWatch;
 
+    @Autowired
+    private WorkerService workers;
+
     //#endregion
     /////////////////////////////// CONSTRUCTOR ///////////////////////////////
     //#region Constructor
@@ -286,7 +289,7 @@ public class ObservatoryService {
         if (!slaving)   // If unslaving, just unslave, no need to wait
             return setSlaved(false);
 
-        long statusUpdateInterval = config.getStatusUpdateInterval();
+        long statusUpdateInterval = config.getSampling().getDome().getActiveInterval(config.getStatusUpdateInterval());
         long synchronousTimeout = config.getSynchronousTimeout();
         synchronousTimeout = synchronousTimeout > 0 ? synchronousTimeout : 300000;
 
@@ -1003,6 +1006,35 @@ public class ObservatoryService {
         .doOnError(e -> logger.error("Observatory::abortDome(): Error aborting dome", e));
     }
 
+    /**
+     * Aborts and discards the exposure in progress, if any.
+     * 
+     * Note: {@link #abort()} leaves the camera alone, so the image of an
+     * exposure that just finished can still be downloaded.
+     * 
+     * @return A {@link Mono} that will complete when the camera has received the command.
+     */
+    public Mono<Boolean> abortExposure() {
+        return camera.isConnected().flatMap(connected -> {
+            // If already disconnected, do nothing and return
+            if (Boolean.FALSE.equals(connected))
+                return Mono.just(true);
+
+            return camera.getCapabilities()
+                    .zipWith(camera.getCameraState().onErrorReturn(CameraService.STATUS_IDLE))
+                    .flatMap(tuples -> {
+                        boolean canAbort = tuples.getT1().canAbortExposure();
+                        int state = tuples.getT2();
+                        boolean isExposing = state == CameraService.STATUS_WAITING || state == CameraService.STATUS_EXPOSING;
+                        return canAbort && isExposing
+                            ? camera.abortExposure()
+                            : Mono.just(true);
+                    });
+        })
+        .doOnSuccess(s -> logger.info("Observatory::abortExposure(): Exposure aborted successfully"))
+        .doOnError(e -> logger.error("Observatory::abortExposure(): Error aborting exposure", e));
+    }
+
 
     /**
      * Slew the telescope and dome asynchronously to the given coordinates.
@@ -1014,6 +1046,7 @@ public class ObservatoryService {
      *         signal.
      */
     public Mono<Boolean> slewTogetherRaDec(double ra, double dec) {
+        // Geometric, as the mount corrects the refraction itself
         Mono<double[]> asAltAz = ephemeridesSolver.raDecToAltAz(ra, dec);
 
         return connectAll().then(asAltAz.zipWith(this.isSlaved())).flatMap(tuples -> {
@@ -1300,6 +1333,7 @@ public class ObservatoryService {
      * @return A {@link Mono} that will complete when the devices end the slew.
      */
     public Mono<Boolean> slewTogetherRaDecAwait(double ra, double dec) {
+        // Geometric, as the mount corrects the refraction itself
         Mono<double[]> asAltAz = ephemeridesSolver.raDecToAltAz(ra, dec);
 
         return connectAll().then(asAltAz.zipWith(this.isSlaved())).flatMap(tuples -> {
@@ -1581,6 +1615,19 @@ public class ObservatoryService {
      * @return A {@link Mono} that will complete when the exposure has started. 
      */
     public Mono<Boolean> startExposure(ExposureParams params) {
+        return prepareExposure(params).then(startCameraExposure(params));
+    }
+
+    /**
+     * Moves the focuser and the filter wheel for an exposure, without
+     * starting it. Nothing here uses the camera, so it can be done while the
+     * previous image is being downloaded.
+     * 
+     * @param params The exposure parameters.
+     * @return A {@link Mono} that will complete when the filter and focus are
+     *         in place.
+     */
+    public Mono<Boolean> prepareExposure(ExposureParams params) {
         // Focuser starts moving to the base focus, if any
         Integer baseFocus = params.getProgram().getTarget().getBaseFocus();
 
@@ -1603,6 +1650,34 @@ public class ObservatoryService {
                                             return filterWheel.getFocusOffsets().map(offsets -> Tuples.of(index, offsets.get(index)));
                                         });
 
+        return filterData.flatMap(data -> {
+            int filterIndex = data.getT1();
+            int focusOffset = data.getT2();
+
+            if (filterIndex < 0) {
+                // If the filter wasn't found, throw an error
+                return Mono.error(new IllegalArgumentException("Filter "+ filterName +" not found"));
+            }
+
+            // After moving to base focus, move to the offset
+            Mono<Boolean> focuserAction = focuserActionStart.then(focuser.moveRelativeAwait(focusOffset));
+
+            // Also select the filter. If filter wasn't found, throw an error
+            Mono<Boolean> filterAction = filterWheel.setPositionAwait(filterIndex);
+
+            return Mono.when(focuserAction, filterAction).thenReturn(true);
+        });
+    }
+
+    /**
+     * Starts the camera exposure with the given parameters, assuming the
+     * filter and focus are already in place, see
+     * {@link #prepareExposure(ExposureParams)}.
+     * 
+     * @param params The exposure parameters.
+     * @return A {@link Mono} that will complete when the exposure has started. 
+     */
+    public Mono<Boolean> startCameraExposure(ExposureParams params) {
         // Sets up the camera
         double duration = params.getExposureTime(); 
         boolean lightFrame = params.isLightFrame();
@@ -1645,26 +1720,7 @@ public class ObservatoryService {
             });
         }
 
-        // Redeclaration of cameraAction bc it must be effectively final
-        Mono<Boolean> cameraActionFinal = cameraAction;
-
-        return filterData.flatMap(data -> {
-            int filterIndex = data.getT1();
-            int focusOffset = data.getT2();
-
-            if (filterIndex < 0) {
-                // If the filter wasn't found, throw an error
-                return Mono.error(new IllegalArgumentException("Filter "+ filterName +" not found"));
-            }
-
-            // After moving to base focus, move to the offset
-            Mono<Boolean> focuserAction = focuserActionStart.then(focuser.moveRelativeAwait(focusOffset));
-
-            // Also select the filter. If filter wasn't found, throw an error
-            Mono<Boolean> filterAction = filterWheel.setPositionAwait(filterIndex);
-
-            return Mono.when(focuserAction, filterAction).then(cameraActionFinal);
-        });
+        return cameraAction;
     }
 
     /**
@@ -1674,7 +1730,8 @@ public class ObservatoryService {
      * @return A {@link Mono} that will complete when there is an image ready.
      */
     public Mono<Boolean> waitForExposure(Duration timeout) {
-        return Flux.interval(Duration.ofMillis(config.getStatusUpdateInterval()))
+        long statusUpdateInterval = config.getSampling().getCamera().getActiveInterval(config.getStatusUpdateInterval());
+        return Flux.interval(Duration.ofMillis(statusUpdateInterval))
                 .flatMap(i -> camera.isImageReady()
                     .filter(Boolean.TRUE::equals)
                     .flatMap(ready -> Mono.just(true))
@@ -1696,8 +1753,27 @@ public class ObservatoryService {
      *         when it is available.
      */
     public Mono<ImageHDU> getImage(AstroObject target, AltairUser author) {
+        return getStatus().flatMap(status -> getImage(target, author, status));
+    }
+
+    /**
+     * Gets the latest image from the camera, adding the metadata of the
+     * devices as they were in the given status to its header. Used when the
+     * devices might have moved on to the next exposure while downloading it.
+     * 
+     * @param target If the image is of a target, the target object to add to
+     *               the header. If {@code null}, no target information will be
+     *               added.
+     * @param author The user that created the image. If {@code null}, no
+     *                creator information will be added.
+     * @param status The status of the observatory when the image was taken.
+     * 
+     * @return A {@link Mono} that will emit the image as a {@link ImageHDU}
+     *         when it is available.
+     */
+    public Mono<ImageHDU> getImage(AstroObject target, AltairUser author, ObservatoryStatus status) {
         Mono<ImageHDU> image = camera.getImage();
-        Mono<ObservatoryStatus> statuses = getStatus();
+        Mono<ObservatoryStatus> statuses = Mono.just(status);
         Mono<WeatherWatchCapabilities> weatherWatchCapabilities = weatherWatch.getCapabilities();
         
         Mono<String> telescopeName = telescope.getCapabilities().map(TelescopeCapabilities::name).onErrorReturn("Unknown");
@@ -1753,13 +1829,15 @@ public class ObservatoryService {
      *         image.
      */
     public Mono<Path> saveImage() {
-        return getImage(null, null).flatMap(image -> {
-            try {
-                return Mono.just(saveImage(image));
-            } catch (IOException e) {
-                return Mono.error(e);
-            }
-        });
+        return getImage(null, null)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    try {
+                        return Mono.just(saveImage(image));
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                });
     }
 
     /**
@@ -1773,13 +1851,15 @@ public class ObservatoryService {
      *         image.
      */
     public Mono<Path> saveImage(AstroObject target) {
-        return getImage(target, null).flatMap(image -> {
-            try {
-                return Mono.just(saveImage(image));
-            } catch (IOException e) {
-                return Mono.error(e);
-            }
-        });
+        return getImage(target, null)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    try {
+                        return Mono.just(saveImage(image));
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                });
     }
 
     /**
@@ -1795,13 +1875,41 @@ public class ObservatoryService {
      *         image.
      */
     public Mono<Path> saveImage(AstroObject target, AltairUser author) {
-        return getImage(target, author).flatMap(image -> {
-            try {
-                return Mono.just(saveImage(image));
-            } catch (IOException e) {
-                return Mono.error(e);
-            }
-        });
+        return getImage(target, author)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    try {
+                        return Mono.just(saveImage(image));
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                });
+    }
+
+    /**
+     * Saves the latest exposure made by the camera to the image store, with
+     * the metadata of the devices as they were in the given status.
+     *
+     * @param target The target object to add to the image's metadata. If
+     *               {@code null}, no target information will be added. 
+     * @param author The user that created the image. If {@code null}, no
+     *                creator information will be added.
+     * @param status The status of the observatory when the image was taken.
+     * 
+     * @return A {@link Mono} that will emit the path to the saved image when
+     *         it is available, or an error if there was a problem saving the
+     *         image.
+     */
+    public Mono<Path> saveImage(AstroObject target, AltairUser author, ObservatoryStatus status) {
+        return getImage(target, author, status)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    try {
+                        return Mono.just(saveImage(image));
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                });
     }
 
     /**
@@ -1818,13 +1926,15 @@ public class ObservatoryService {
      *         image.
      */
     public Mono<Path> saveImage(AstroObject target, String filename) {
-        return getImage(target, null).flatMap(image -> {
-            try {
-                return Mono.just(saveImage(image, filename, false));
-            } catch (IOException e) {
-                return Mono.error(e);
-            }
-        });
+        return getImage(target, null)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    try {
+                        return Mono.just(saveImage(image, filename, false));
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                });
     }
 
     /**
@@ -1843,13 +1953,15 @@ public class ObservatoryService {
      *         image.
      */
     public Mono<Path> saveImage(AstroObject target, AltairUser author, String filename) {
-        return getImage(target, author).flatMap(image -> {
-            try {
-                return Mono.just(saveImage(image, filename, false));
-            } catch (IOException e) {
-                return Mono.error(e);
-            }
-        });
+        return getImage(target, author)
+                .publishOn(workers.getPersistence().getScheduler())
+                .flatMap(image -> {
+                    try {
+                        return Mono.just(saveImage(image, filename, false));
+                    } catch (IOException e) {
+                        return Mono.error(e);
+                    }
+                });
     }
 
     /**
@@ -2090,18 +2202,28 @@ public class ObservatoryService {
     /////////////////////////////// WORKERS ///////////////////////////////////
     //#region Workers
 
+    /**
+     * Starts the Altair manual slaving worker on its own threads, so a long
+     * dome slew doesn't hold up any other worker.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSlaver() {
+        workers.getSlaving().schedulePeriodically("slaver", Duration.ofSeconds(30), Duration.ofSeconds(30), this::slaver);
+    }
+
     /**
      * Altair manual slaving worker, every 30 seconds tries to update the
      * position of the dome to match the telescope's position.
+     * 
+     * @return A {@link Mono} that will complete once the dome is in position.
      */
-    @Scheduled(fixedDelay = 30, timeUnit = TimeUnit.SECONDS)
     @SuppressWarnings("java:S3776")
-    public void slaver() {
+    public Mono<Boolean> slaver() {
         // If it's not using Altair slaving, do nothing
         if (!(useAltairSlaving.get() && altairSlaved.get())) {
             logger.debug("Slaver: Not using Altair slaving, skipping update");
             altairSlaved.set(false);
-            return;
+            return Mono.just(false);
         }
             
         Mono<TelescopeCapabilities> telescopeCapsMono = telescope.getCapabilities();
@@ -2144,7 +2266,7 @@ public class ObservatoryService {
         
         
         // Slew the dome to the coordinates
-        whereTo.flatMap(altAz -> {
+        return whereTo.flatMap(altAz -> {
             Double alt = altAz.getT1();
             Double az = altAz.getT2();
 
@@ -2165,7 +2287,7 @@ public class ObservatoryService {
                 .doOnSuccess(s -> logger.info("Slaver: Successfully slewed dome to Altitude: {}°, Azimuth: {}°", alt, az))
                 .doOnError(e -> logger.error("Slaver: Couldn't slew dome to target", e));
         })
-        .block(Duration.ofMinutes(5));
+        .timeout(Duration.ofMinutes(5));
     }
 
     //#endregion
@@ -2185,9 +2307,7 @@ public class ObservatoryService {
             camera.getStatus(),
             filterWheel.getStatus(),
             weatherWatch.getStatus()
-        ).map(tuple -> new ObservatoryStatus(
-            useAltairSlaving.get(),
-            altairSlaved.get(),
+        ).map(tuple -> getStatus(
             tuple.getT1(),
             tuple.getT2(),
             tuple.getT3(),
@@ -2197,6 +2317,26 @@ public class ObservatoryService {
         )); 
     }
 
+    /**
+     * Builds the status of the observatory from already fetched device statuses,
+     * without polling the devices again.
+     * 
+     * @return The status of the observatory, with the current slaving settings.
+     */
+    public ObservatoryStatus getStatus(TelescopeStatus telescopeStatus, DomeStatus domeStatus, FocuserStatus focuserStatus,
+                                       CameraStatus cameraStatus, FilterWheelStatus filterWheelStatus, WeatherWatchStatus weatherWatchStatus) {
+        return new ObservatoryStatus(
+            useAltairSlaving.get(),
+            altairSlaved.get(),
+            telescopeStatus,
+            domeStatus,
+            focuserStatus,
+            cameraStatus,
+            filterWheelStatus,
+            weatherWatchStatus
+        );
+    }
+
     //#endregion
     //////////////////////////////// RECORDS //////////////////////////////////
     //#region Records
@@ -1,12 +1,18 @@
 package com.aajpm.altair.service;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -18,12 +24,16 @@ import com.aajpm.altair.entity.ProgramOrder;
 import com.aajpm.altair.repository.OrderRepository;
 import com.aajpm.altair.security.account.AltairUser;
 import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.event.OrderChangedEvent;
 import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.KeysetPage;
+import com.aajpm.altair.utility.scheduler.ScheduledExposure;
+import com.aajpm.altair.utility.scheduler.SchedulingCandidate;
+import com.aajpm.altair.utility.scheduler.SchedulingEngine;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple2;
-import reactor.util.function.Tuples;
 
 @Service
 @Transactional
@@ -42,6 +52,15 @@ public class OrderService {
     @Autowired
     private ProgramOrderService programOrderService;
 
+    @Autowired
+    private AstroObjectService astroObjectService;
+
+    @Autowired
+    private SchedulingEngine schedulingEngine;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /////////////////////////////// CONSTRUCTORS //////////////////////////////
 
     public OrderService() {
@@ -60,6 +79,38 @@ public class OrderService {
         return orders;
     }
 
+    /**
+     * Finds a page of the orders, ordered by id, with their users.
+     * 
+     * @param after The id to start after, {@code 0} for the first page.
+     * @param limit The size of the page, or {@code null} for the default one.
+     * 
+     * @return The page, with the id to start the next one after.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<Order> findPage(long after, Integer limit) {
+        Assert.isTrue(after >= 0, "The id to start after [" + after + "] is not valid.");
+        int size = KeysetPage.limit(limit);
+
+        List<Order> orders = orderRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+
+        // To check for transaction integrity
+        Assert.notNull(orders, "The query for a page of orders returned null.");
+
+        return KeysetPage.of(orders, size, Order::getId);
+    }
+
+    /**
+     * Goes through all the orders, ordered by id, a page at a time.
+     * 
+     * @param after The id to start after, {@code 0} to start from the first.
+     * 
+     * @return A {@link Flux} with the orders, with their users.
+     */
+    public Flux<Order> stream(long after) {
+        return KeysetPage.stream(after, from -> findPage(from, KeysetPage.MAX_LIMIT));
+    }
+
     public Order findById(long id) {
         Assert.isTrue(id != 0, "The id of the query [" + id + "] is not valid.");
         Order order = orderRepository.findById(id).orElse(null);
@@ -74,7 +125,9 @@ public class OrderService {
         Assert.notNull(order, "The order to save cannot be null.");
         Assert.isTrue(order.getId() == 0, "This object has already been saved.");
 
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(saved, OrderChangedEvent.Change.CREATED));
+        return saved;
     }
 
     public Order update(Order order) {
@@ -82,7 +135,9 @@ public class OrderService {
         Assert.isTrue(order.getId() != 0, "This object has not been saved.");
         Assert.isTrue(orderRepository.existsById(order.getId()), "The order to update does not exist.");
 
-        return orderRepository.save(order);
+        Order updated = orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(updated, OrderChangedEvent.Change.UPDATED));
+        return updated;
     }
 
     public void delete(Order order) {
@@ -91,6 +146,7 @@ public class OrderService {
         Assert.isTrue(orderRepository.existsById(order.getId()), "The order to delete does not exist.");
 
         orderRepository.delete(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Change.DELETED));
     }
 
     //#endregion
@@ -119,128 +175,205 @@ public class OrderService {
         return orderRepository.findByCompletedFalseOrderByCreationTimeAsc();
     }
 
-    public Mono<List<Order>> buildSchedule(Interval interval) {
+    public Mono<List<ScheduledExposure<Order>>> buildSchedule(Interval interval) {
         return buildSchedule(interval.getStart(), interval.getEnd());
     }
     
     /**
      * Builds a schedule of orders between the specified start and end times.
      * The schedule is built by fetching the requested {@link ControlOrder}s
-     * and filling the spaces between them with {@link ProgramOrder}s.
+     * and filling the spaces between them with {@link ProgramOrder}s, as
+     * planned by the configured {@link SchedulingEngine}.
      * 
      * @param startTime the start time of the schedule.
      * @param endTime the end time of the schedule.
      * 
-     * @return a {@link Mono} emitting a list of orders representing the schedule.
+     * @return a {@link Mono} emitting the schedule, sorted by start time:
+     *         each {@link ControlOrder} with its requested interval, and each
+     *         exposure of a {@link ProgramOrder} with the time the engine
+     *         planned it at, which may be after the start of its slot if the
+     *         target hadn't risen yet.
      */
-    public Mono<List<Order>> buildSchedule(Instant startTime, Instant endTime) {
+    public Mono<List<ScheduledExposure<Order>>> buildSchedule(Instant startTime, Instant endTime) {
         
-        List<Order> schedule = new LinkedList<>();
+        List<ScheduledExposure<Order>> schedule = new LinkedList<>();
         List<ControlOrder> controlOrders = controlOrderService.findInRangeOpen(startTime, endTime);
         List<Interval> freeSlots = controlOrderService.findAvailableTime(startTime, endTime);
 
         boolean startsOnFreeSlot = !freeSlots.isEmpty() && !freeSlots.get(0).getStart().isBefore(startTime);
 
-        if (!startsOnFreeSlot) {    // If it starts on a controlOrder, set it as the first scheduled order.
-            schedule.add(controlOrders.remove(0));
+        if (!startsOnFreeSlot && !controlOrders.isEmpty()) {    // If it starts on a controlOrder, set it as the first scheduled order.
+            schedule.add(scheduled(controlOrders.remove(0)));
         }
 
+        // Exposures of each order already planned in previous slots
+        Map<ProgramOrder, Integer> planned = new HashMap<>();
+
         return Flux.fromIterable(freeSlots)
-                .flatMap(slot -> programOrderService.findInRange(slot.getStart(), slot.getEnd())
-                    .map(programOrders -> {
-                        // Replace the free time slot with a schedule of ProgramOrders that fit in it.
-                        List<ProgramOrder> slotSchedule = new LinkedList<>();
-
-                        Instant timeCursor = slot.getStart();
-                        Instant slotEnd = slot.getEnd();
-
-                        // While there are ProgramOrder intervals that fit between timeCursor and slotEnd,
-                        // find the first one that fits and add it to the schedule.
-
-                        boolean isSlotFilled = false;
-                        do {
-                            Tuple2<ProgramOrder, Interval> nextOrder = selectNextOrder(programOrders, schedule, timeCursor, slotEnd);
-                            if (nextOrder == null) break; // If there are no more ProgramOrders, end the loop.
-                            // Add the order to the schedules.
-                            slotSchedule.add(nextOrder.getT1());
-                            schedule.add(nextOrder.getT1());
-                            timeCursor = nextOrder.getT2().getEnd();
-                            isSlotFilled = !timeCursor.isBefore(slotEnd);
-                        } while (!isSlotFilled);
+                // One slot at a time, so the exposures planned in a slot are not planned again in the next ones.
+                .concatMap(slot -> planSlot(slot, planned)
+                    .map(plan -> {
+                        // Replace the free time slot with the exposures the engine plans in it.
+                        for (ScheduledExposure<ProgramOrder> exposure : plan) {
+                            schedule.add(new ScheduledExposure<>(exposure.getOrder(), exposure.getStartMillis(), exposure.getEndMillis()));
+                            planned.merge(exposure.getOrder(), 1, Integer::sum);
+                        }
 
                         if (!controlOrders.isEmpty())
                             // Add the next ControlOrder to the schedule.
-                            schedule.add(controlOrders.remove(0));
+                            schedule.add(scheduled(controlOrders.remove(0)));
                         
-                        return slotSchedule;
+                        return plan;
                     })
                 )
                 // Return the schedule with the remaining ControlOrders appended, if any.
-                .then(Mono.just(append(schedule, controlOrders)));  
+                .then(Mono.fromCallable(() -> {
+                    controlOrders.forEach(order -> schedule.add(scheduled(order)));
+                    return schedule;
+                }));
     }
 
     /**
-     * Appends a list to another. The original list is modified.
+     * Plans which {@link ProgramOrder}s are observed during a free time slot,
+     * using the configured {@link SchedulingEngine}.
+     * 
+     * @param slot The free time slot to fill.
+     * @param planned How many exposures of each order have already been
+     *                planned elsewhere, so they are not planned again.
      * 
-     * @param <T> The type of the elements in the list.
-     * @param list The list to append to.
-     * @param toAppend The list to append.
-     * @return The list with the appended elements.
+     * @return a {@link Mono} emitting the planned exposures, sorted by start time.
      */
-    private static <T> List<T> append(List<T> list, List<? extends T> toAppend) {
-        list.addAll(toAppend);
-        return list;
+    public Mono<List<ScheduledExposure<ProgramOrder>>> planSlot(Interval slot, Map<ProgramOrder, Integer> planned) {
+        return findCandidates(slot).map(candidates -> plan(candidates, slot, planned));
     }
 
     /**
-     * Selects the next {@link ProgramOrder} to be scheduled. It will select the
-     * first ProgramOrder that fits between the timeCursor and the slotEnd with 
-     * unqueued {@link ExposureOrder}.
+     * Finds the {@link ProgramOrder}s that can be observed during a free time
+     * slot, with all their remaining exposures, and prepares them for the
+     * {@link SchedulingEngine}. This is the costly part of planning a slot, as
+     * it needs the visibility of every target.
      * 
-     * @param programOrders The list of tuples to select from.
-     * @param schedule The current schedule/queued orders.
-     * @param timeCursor The current time cursor, that is, the time of the last scheduled order.
-     * @param slotEnd The end of the current free time slot.
-     * @return A tuple with the selected {@link ProgramOrder} and the interval it fits in,
-     *         or {@code null} if there are no more ProgramOrders to select.
+     * @param slot The free time slot to fill.
+     * 
+     * @return a {@link Mono} emitting the candidates, sorted by the start of their visible interval.
      */
-    private Tuple2<ProgramOrder, Interval> selectNextOrder(List<Tuple2<ProgramOrder, Interval>> programOrders, List<Order> schedule, Instant timeCursor, Instant slotEnd) {
-
-        // FIFO approach, maybe add a algorithm select in a future release.
-        for (Tuple2<ProgramOrder, Interval> tuple : programOrders) {
-            ProgramOrder pOrder = tuple.getT1();
-            List<ExposureOrder> exposures = pOrder.getExposureOrders()
-                                                    .stream()
-                                                    .filter(exp -> !exp.isCompleted())
-                                                    .sorted((e1, e2) -> e1.getExposureParams()
-                                                                        .getExposureTime()
-                                                                        .compareTo(
-                                                                        e2.getExposureParams()
-                                                                        .getExposureTime())
-                                                            )
-                                                    .toList();
-            
-            int remainingExposures = exposures.size();
-            int timesAlreadyPresent = (int) schedule.stream()
-                                                .filter(ProgramOrder.class::isInstance)
-                                                .map(ProgramOrder.class::cast)
-                                                .filter(order -> order.equals(pOrder))
-                                                .count();
-
-            
-            if (remainingExposures > timesAlreadyPresent) {
-                // If there are unqueued exposures, return the first one unless it doesn't fit in the slot.
-                double exposureSeconds = exposures.get(timesAlreadyPresent).getExposureParams().getExposureTime();
-                Duration exposureDuration = Duration.ofSeconds((long) exposureSeconds);
-                Duration remainingTime = Duration.between(timeCursor, slotEnd);
-
-                if (remainingTime.compareTo(exposureDuration) >= 0) // If the exposure fits in the slot, return it.
-                    return Tuples.of(pOrder, new Interval(timeCursor, exposureDuration)); 
-            }                              
-        }
+    public Mono<List<SchedulingCandidate<ProgramOrder>>> findCandidates(Interval slot) {
+        return programOrderService.findInRange(slot.getStart(), slot.getEnd())
+                .flatMap(this::toCandidates);
+    }
 
-        // If there are no valid ProgramOrders, return null.
-        return null;
+    /**
+     * Plans a free time slot from candidates found with {@link #findCandidates(Interval)}.
+     * 
+     * @param candidates The candidates of the slot.
+     * @param slot The free time slot to fill.
+     * @param planned How many exposures of each order have already been
+     *                planned elsewhere, so they are not planned again.
+     * 
+     * @return the planned exposures, sorted by start time.
+     */
+    public List<ScheduledExposure<ProgramOrder>> plan(List<SchedulingCandidate<ProgramOrder>> candidates, Interval slot, Map<ProgramOrder, Integer> planned) {
+        List<SchedulingCandidate<ProgramOrder>> remaining = candidates.stream()
+                                                                    .map(candidate -> candidate.skip(planned.getOrDefault(candidate.getOrder(), 0)))
+                                                                    .filter(Objects::nonNull)
+                                                                    .toList();
+        return schedulingEngine.schedule(remaining, slot);
+    }
+
+    /**
+     * A {@link ControlOrder} in the schedule, during its requested interval.
+     */
+    private static ScheduledExposure<Order> scheduled(ControlOrder order) {
+        Interval interval = order.getRequestedInterval();
+        return new ScheduledExposure<>(order, interval.getStart().toEpochMilli(), interval.getEnd().toEpochMilli());
+    }
+
+    /**
+     * Prepares the {@link ProgramOrder}s available in a slot for the
+     * {@link SchedulingEngine}, with the {@link ExposureOrder}s that are not
+     * completed and how good the sky is for their target. Older orders have
+     * more priority.
+     * 
+     * @param programOrders The orders available in the slot and their visible intervals.
+     * @return A {@link Mono} emitting the candidates, in the same order as the orders.
+     */
+    private Mono<List<SchedulingCandidate<ProgramOrder>>> toCandidates(List<Tuple2<ProgramOrder, Interval>> programOrders) {
+        LongSummaryStatistics creationTimes = programOrders.stream()
+                                                           .map(tuple -> tuple.getT1().getCreationTime())
+                                                           .filter(Objects::nonNull)
+                                                           .mapToLong(Instant::toEpochMilli)
+                                                           .summaryStatistics();
+
+        return Flux.fromIterable(programOrders)
+                .flatMapSequential(tuple -> {
+                    ProgramOrder order = tuple.getT1();
+                    Interval visibleInterval = tuple.getT2();
+                    long[] exposures = remainingExposures(order);
+                    if (exposures.length == 0)
+                        return Mono.empty();
+
+                    double priority = priority(order.getCreationTime(), creationTimes);
+                    return Mono.defer(() -> astroObjectService.getQualityCurve(order.getProgram().getTarget(), visibleInterval))
+                            .map(Optional::of)
+                            // Without the sky conditions, every time of the window is rated the same.
+                            .onErrorReturn(Optional.empty())
+                            .defaultIfEmpty(Optional.empty())
+                            .map(curve -> new SchedulingCandidate<>(order, visibleInterval, exposures, priority, curve.orElse(null)));
+                })
+                .collectList();
+    }
+
+    /**
+     * Gets the durations of the {@link ExposureOrder}s of an order that are
+     * not completed, shortest first.
+     * 
+     * @param order The order to check.
+     * @return The durations of the remaining exposures, in milliseconds.
+     */
+    private static long[] remainingExposures(ProgramOrder order) {
+        return order.getExposureOrders()
+                    .stream()
+                    .filter(exp -> !exp.isCompleted())
+                    .mapToLong(exp -> (long) (exp.getExposureParams().getExposureTime() * 1000.0))
+                    .sorted()
+                    .toArray();
+    }
+
+    /**
+     * Rates an order by its age, from 1 for the oldest to 0 for the newest.
+     */
+    private static double priority(Instant creationTime, LongSummaryStatistics creationTimes) {
+        if (creationTime == null)
+            return 0.0;
+        if (creationTimes.getMax() <= creationTimes.getMin())
+            return 1.0;
+
+        return (creationTimes.getMax() - creationTime.toEpochMilli()) / (double) (creationTimes.getMax() - creationTimes.getMin());
+    }
+
+    //#endregion
+    ////////////////////////////// INNER CLASSES //////////////////////////////
+    //#region Inner classes
+
+    /** An order as listed, without its exposures or images */
+    public record OrderSummary(
+        long id,
+        /** program or control */
+        String type,
+        String user,
+        Instant creationTime,
+        boolean completed
+    ) {
+        /** The user must be loaded, as with {@link OrderService#findPage} */
+        public static OrderSummary of(Order order) {
+            return new OrderSummary(
+                order.getId(),
+                order instanceof ProgramOrder ? "program" : "control",
+                order.getUser() != null ? order.getUser().getUsername() : null,
+                order.getCreationTime(),
+                Boolean.TRUE.equals(order.isCompleted())
+            );
+        }
     }
 
     //#endregion
@@ -6,16 +6,19 @@ import java.util.Collection;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import com.aajpm.altair.config.AstrometricsConfig;
 import com.aajpm.altair.entity.ExposureOrder;
 import com.aajpm.altair.entity.Program;
 import com.aajpm.altair.entity.ProgramOrder;
 import com.aajpm.altair.repository.ProgramOrderRepository;
 import com.aajpm.altair.security.account.AltairUser;
 import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.event.OrderChangedEvent;
 import com.aajpm.altair.utility.Interval;
 
 import reactor.core.publisher.Flux;
@@ -42,6 +45,15 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
     @Autowired
     private AstroObjectService astroObjectService;
 
+    @Autowired
+    private ExposureOrderService exposureOrderService;
+
+    @Autowired
+    private AstrometricsConfig astrometricsConfig;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /////////////////////////////// CONSTRUCTORS //////////////////////////////
 
     public ProgramOrderService() {
@@ -53,6 +65,33 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
         return new ProgramOrder();
     }
 
+    /**
+     * Creates a new order for a program, with a pending {@link ExposureOrder}
+     * for each of its exposures. They are all inserted when the order is
+     * saved, the exposures in a single JDBC batch.
+     * 
+     * @param program The program to order.
+     * @param user The user placing the order.
+     * 
+     * @return The new, unsaved, order.
+     */
+    public ProgramOrder create(Program program, AltairUser user) {
+        Assert.notNull(program, "The program cannot be null.");
+        Assert.notNull(user, "The user cannot be null.");
+
+        ProgramOrder order = create();
+        order.setProgram(program);
+        order.setUser(user);
+        order.setCompleted(false);
+        order.setCreationTime(Instant.now());
+        program.getExposures().forEach(params -> {
+            ExposureOrder exposure = exposureOrderService.create(order, params);
+            exposure.setState(ExposureOrder.States.PENDING);
+            order.getExposureOrders().add(exposure);
+        });
+        return order;
+    }
+
     //////////////////////////////// SAVE METHODS //////////////////////////////
 
     @Override
@@ -62,7 +101,9 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
         Assert.notNull(order.getProgram(), "Program cannot be null.");
         Assert.notEmpty(order.getExposureOrders(), "Must contain at least one exposure order.");
 
-        return super.save(order);
+        ProgramOrder saved = super.save(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(saved, OrderChangedEvent.Change.CREATED));
+        return saved;
     }
 
     @Override
@@ -72,12 +113,40 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
         Assert.notNull(order.getProgram(), "Program cannot be null.");
         // No need to check for empty exposure orders, since some might have been removed.
 
-        return super.update(order);
+        ProgramOrder updated = super.update(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(updated, OrderChangedEvent.Change.UPDATED));
+        return updated;
+    }
+
+    @Override
+    public void delete(ProgramOrder order) {
+        super.delete(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Change.DELETED));
     }
 
     ///////////////////////////////// METHODS /////////////////////////////////
     //#region Methods
 
+    /**
+     * Finds the {@link ProgramOrder} with the given id, with everything needed
+     * to run it: its program and target, its user, and its exposures with
+     * their parameters. Unlike {@link #findById(long)}, it can be used after
+     * the transaction is over, like by the governor.
+     * 
+     * @param id The id of the order.
+     * 
+     * @return The order with the given id.
+     */
+    public ProgramOrder findByIdWithExposures(long id) {
+        Assert.isTrue(id != 0, "The id of the query [" + id + "] is not valid.");
+        ProgramOrder order = programOrderRepository.findWithExposuresById(id).orElse(null);
+
+        // To check for transaction integrity
+        Assert.notNull(order, "The query for order with id " + id + " returned null.");
+
+        return order;
+    }
+
     /**
      * Finds all {@link ProgramOrder} made by the given user.
      * 
@@ -124,6 +193,10 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
      * {@link Program} target is visible in the given time range and at least
      * one of the {@link ProgramOrder}'s remaining {@link ExposureOrder} durations
      * fit in the given time range.
+     * <p>
+     * Unless all the remaining exposures use narrowband filters, the visible
+     * interval is also trimmed to the part where the target is far enough from
+     * the Moon, see {@link AstroObjectService#getQualityCurve}.
      * 
      * @param startTime The start time of the time range.
      * @param endTime  The end time of the time range.
@@ -141,6 +214,7 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
         return Flux.fromIterable(pendingOrders)
                 // Make a tuple appending the shortest remaining exposure duration to the order.
                 .flatMap(order -> astroObjectService.isVisibleInterval(order.getProgram().getTarget(), range)
+                        .flatMap(visibleInterval -> avoidMoon(order, visibleInterval))
                         .map(visibleInterval ->  Tuples.of(order, visibleInterval)))
                 // Filter out orders that are not visible in the given time range.
                 .filter(tuple -> {
@@ -157,12 +231,49 @@ public class ProgramOrderService extends BasicEntityCRUDService<ProgramOrder> {
                                             : Interval.empty();
 
 
-                    return (!startExposureInterval.isEmpty()) && range.contains(startExposureInterval);
+                    // Not range.contains(), which leaves out the targets already up at the start of the
+                    // range, and in milliseconds, like the visible intervals, as the range may be more precise
+                    return (!startExposureInterval.isEmpty())
+                            && startExposureInterval.getStart().toEpochMilli() >= range.getStart().toEpochMilli()
+                            && startExposureInterval.getEnd().toEpochMilli() <= range.getEnd().toEpochMilli();
                 })
                 // Collect all tuples into a list, sorted by the start time of the visible interval.
                 .collectSortedList((t1, t2) -> t1.getT2().getStart().compareTo(t2.getT2().getStart()));
     }
 
     //#endregion Methods
+    ///////////////////////////////// HELPERS /////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Trims the visible interval of an order to the first part where the Moon
+     * doesn't affect its target, unless it only has narrowband exposures left.
+     */
+    private Mono<Interval> avoidMoon(ProgramOrder order, Interval visibleInterval) {
+        if (visibleInterval.isEmpty() || isNarrowbandOnly(order))
+            return Mono.just(visibleInterval);
+
+        return astroObjectService.getQualityCurve(order.getProgram().getTarget(), visibleInterval)
+                .map(curve -> curve.firstClearInterval(visibleInterval))
+                // If the Moon can't be checked, schedule on visibility alone as before
+                .onErrorReturn(visibleInterval);
+    }
+
+    /**
+     * Checks if all the remaining exposures of an order use one of the
+     * configured narrowband filters.
+     */
+    private boolean isNarrowbandOnly(ProgramOrder order) {
+        List<String> narrowband = astrometricsConfig.getNarrowbandFilters();
+        if (narrowband == null || narrowband.isEmpty())
+            return false;
+
+        return order.getExposureOrders().stream()
+                .filter(exposure -> !exposure.isCompleted())
+                .map(exposure -> exposure.getExposureParams().getFilter())
+                .allMatch(filter -> filter != null && narrowband.stream().anyMatch(filter::equalsIgnoreCase));
+    }
+
+    //#endregion
     
 }
@@ -111,5 +111,27 @@ public class ProgramService extends BasicEntityCRUDService<Program> {
     }
 
     //#endregion
-    
+
+    ////////////////////////////// INNER CLASSES //////////////////////////////
+    //#region Inner classes
+
+    /** A program as listed, without its exposures */
+    public record ProgramSummary(
+        long id,
+        String name,
+        boolean enabled,
+        String target
+    ) {
+        /** The target must be loaded, as with {@link ProgramService#findPage} */
+        public static ProgramSummary of(Program program) {
+            return new ProgramSummary(
+                program.getId(),
+                program.getName(),
+                Boolean.TRUE.equals(program.isEnabled()),
+                program.getTarget() != null ? program.getTarget().getName() : null
+            );
+        }
+    }
+
+    //#endregion
 }
@@ -0,0 +1,390 @@
+package com.aajpm.altair.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.Order;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.service.event.ObservingConditionsEvent;
+import com.aajpm.altair.service.event.OrderChangedEvent;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.IntervalSet;
+import com.aajpm.altair.utility.VisibilityIndex;
+import com.aajpm.altair.utility.scheduler.ScheduledExposure;
+
+/**
+ * Keeps the plan of the night in memory, so the governor only has to take the
+ * next order from it instead of building the whole schedule again.
+ * <p>
+ * The rest of the night is laid out as the {@link ControlOrder}s and the free
+ * slots between them. Each slot is planned with
+ * {@link OrderService#planSlot(Interval, Map)} when it is reached, and only
+ * planned again if something that affects it changes:
+ * <ul>
+ *  <li>A {@link ProgramOrder} is created or updated: the slots in which its
+ *      target is observable, according to the {@link VisibilityIndex}.</li>
+ *  <li>A {@link ProgramOrder} is completed or deleted: its exposures are
+ *      removed from the plan, and the slots where it was planned are filled
+ *      again.</li>
+ *  <li>A {@link ControlOrder} changes: the slots are laid out again, keeping
+ *      the plan of those that didn't change.</li>
+ *  <li>It becomes safe to observe after a pause, or the plan falls behind
+ *      by more than an exposure: the current slot is planned again from now.</li>
+ * </ul>
+ * The changes to the orders arrive as {@link OrderChangedEvent}s, once they
+ * are committed, and the pauses as {@link ObservingConditionsEvent}s.
+ * <p>
+ * Planning a slot can take a while, as it needs the visibility of every
+ * target, so it's done without holding the lock of the plan and the result
+ * is only swapped in if nothing touched the slot meanwhile. The events are
+ * never held up by it.
+ */
+@Service
+public class ScheduleService {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    /** Night being planned, {@code null} until the governor asks for an order */
+    private Interval night = null;
+
+    /** The control orders and free slots of the rest of the night, in order */
+    private final LinkedList<Segment> timeline = new LinkedList<>();
+
+    /** If the control orders changed, so the slots must be laid out again */
+    private boolean layoutChanged = true;
+
+    /** Times a slot is planned again in a row if it keeps changing while being planned */
+    private static final int MAX_PLAN_ATTEMPTS = 3;
+
+    /** Longest time a slot can take to be planned */
+    private static final Duration PLAN_TIMEOUT = Duration.ofMinutes(1);
+
+    //#endregion
+    /////////////////////////// SUPPORTING SERVICES ///////////////////////////
+    //#region Supporting Services
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ControlOrderService controlOrderService;
+
+    @Autowired
+    private AstroObjectService astroObjectService;
+
+    private final Logger logger = LoggerFactory.getLogger(ScheduleService.class);
+
+    //#endregion
+    ///////////////////////////////// METHODS /////////////////////////////////
+    //#region Methods
+
+    /**
+     * Takes the order that should be run now out of the plan.
+     *
+     * @param night The night being observed. If it is not the one planned,
+     *              the plan is started again for it.
+     *
+     * @return The order to run now, or {@code null} if there is nothing to
+     *         run yet, like when waiting for a target to rise or for a
+     *         {@link ControlOrder} to start.
+     */
+    public Order next(Interval night) {
+        for (int attempt = 0; attempt < MAX_PLAN_ATTEMPTS; attempt++) {
+            PlanRequest request;
+            synchronized (this) {
+                Instant now = Instant.now();
+                if (!night.equals(this.night) || layoutChanged) {
+                    layout(night, now);
+                }
+
+                request = planRequest(now);
+                if (request == null)
+                    return takeHead(now);
+            }
+
+            List<ScheduledExposure<ProgramOrder>> plan = orderService.planSlot(request.range(), request.planned())
+                                                                     .blockOptional(PLAN_TIMEOUT)
+                                                                     .orElse(List.of());
+            synchronized (this) {
+                swapIn(request, plan);
+            }
+        }
+
+        logger.warn("ScheduleService: the current slot kept changing while being planned, trying again later");
+        return null;
+    }
+
+    /**
+     * Gets when the next planned order starts, so the governor can wait for
+     * it when {@link #next(Interval)} has nothing to run yet.
+     *
+     * @return The start of the next planned exposure or {@link ControlOrder},
+     *         the start of the next slot if it hasn't been planned yet, or
+     *         {@code null} if there is nothing else planned for the night.
+     */
+    public synchronized Instant getNextStart() {
+        for (Segment segment : timeline) {
+            if (segment.control != null || segment.dirty)
+                return segment.interval.getStart();
+
+            ScheduledExposure<ProgramOrder> exposure = segment.exposures.peekFirst();
+            if (exposure != null)
+                return Instant.ofEpochMilli(exposure.getStartMillis());
+        }
+        return null;
+    }
+
+    /**
+     * Gets what has been planned so far. The slots are only planned once they
+     * are reached, so the later ones may be missing.
+     *
+     * @return The planned orders and the time they are expected to run, in order.
+     */
+    public synchronized List<ScheduledExposure<Order>> getPlan() {
+        List<ScheduledExposure<Order>> plan = new ArrayList<>();
+        for (Segment segment : timeline) {
+            if (segment.control != null) {
+                plan.add(new ScheduledExposure<>(segment.control, segment.interval.getStart().toEpochMilli(), segment.interval.getEnd().toEpochMilli()));
+            } else {
+                segment.exposures.forEach(exposure -> plan.add(new ScheduledExposure<>(exposure.getOrder(), exposure.getStartMillis(), exposure.getEndMillis())));
+            }
+        }
+        return plan;
+    }
+
+    //#endregion
+    ///////////////////////////////// EVENTS //////////////////////////////////
+    //#region Events
+
+    /** Once the change is committed, so the planner sees it */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onOrderChanged(OrderChangedEvent event) {
+        Order order = event.order();
+        if (order instanceof ControlOrder) {
+            layoutChanged = true;
+            return;
+        }
+        if (!(order instanceof ProgramOrder) || timeline.isEmpty())
+            return;
+
+        ProgramOrder programOrder = (ProgramOrder) order;
+        boolean wasPlanned = remove(programOrder);
+        boolean isPending = event.change() != OrderChangedEvent.Change.DELETED && !Boolean.TRUE.equals(programOrder.isCompleted());
+        if (isPending) {
+            markObservable(programOrder);
+        }
+        logger.debug("ScheduleService: order {} {}, was planned = {}", order.getId(), event.change(), wasPlanned);
+    }
+
+    @EventListener
+    public synchronized void onObservingConditions(ObservingConditionsEvent event) {
+        // The plan of the current slot is stale after a pause
+        if (event.safe() && !timeline.isEmpty()) {
+            timeline.getFirst().markDirty();
+        }
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Lays out the control orders and free slots of the rest of the night,
+     * keeping the plan of the slots that didn't change.
+     */
+    private void layout(Interval night, Instant now) {
+        Instant start = now.isAfter(night.getStart()) ? now : night.getStart();
+        Map<Instant, Segment> previousSlots = new HashMap<>();
+        if (night.equals(this.night)) {
+            timeline.stream()
+                    .filter(segment -> segment.control == null)
+                    .forEach(segment -> previousSlots.put(segment.interval.getEnd(), segment));
+        }
+
+        this.night = night;
+        this.layoutChanged = false;
+        timeline.clear();
+        if (!start.isBefore(night.getEnd()))
+            return;
+
+        for (ControlOrder order : controlOrderService.findInRangeOpen(start, night.getEnd())) {
+            // Completed orders keep their time, but are not run again
+            if (!Boolean.TRUE.equals(order.isCompleted())) {
+                timeline.add(new Segment(order.getRequestedInterval(), order));
+            }
+        }
+        for (Interval slot : controlOrderService.findAvailableTime(start, night.getEnd())) {
+            // A slot that only got shorter because time went by is still the same slot
+            Segment previous = previousSlots.get(slot.getEnd());
+            timeline.add(previous != null && !previous.interval.getStart().isAfter(slot.getStart())
+                            ? previous
+                            : new Segment(slot, null));
+        }
+        timeline.sort((s1, s2) -> s1.interval.getStart().compareTo(s2.interval.getStart()));
+
+        logger.debug("ScheduleService: laid out {} segments until {}", timeline.size(), night.getEnd());
+    }
+
+    /**
+     * Drops the segments whose time is up, and checks if the free slot at the
+     * head must be planned before taking anything from it: if it changed, or
+     * if the plan fell behind by more than an exposure.
+     *
+     * @return What to plan, or {@code null} if the head can be taken as it is.
+     */
+    private PlanRequest planRequest(Instant now) {
+        while (!timeline.isEmpty() && !timeline.getFirst().interval.getEnd().isAfter(now)) {
+            timeline.removeFirst();
+        }
+        if (timeline.isEmpty() || timeline.getFirst().control != null)
+            return null;
+
+        Segment head = timeline.getFirst();
+        ScheduledExposure<ProgramOrder> exposure = head.exposures.peekFirst();
+        boolean isBehind = exposure != null && exposure.getEndMillis() < now.toEpochMilli();
+        if (!head.dirty && !isBehind)
+            return null;
+
+        // The exposures planned in the other slots are already taken
+        Instant start = now.isAfter(head.interval.getStart()) ? now : head.interval.getStart();
+        Map<ProgramOrder, Integer> planned = new HashMap<>();
+        for (Segment segment : timeline) {
+            if (segment != head) {
+                segment.exposures.forEach(scheduled -> planned.merge(scheduled.getOrder(), 1, Integer::sum));
+            }
+        }
+        return new PlanRequest(head, head.version, new Interval(start, head.interval.getEnd()), planned);
+    }
+
+    /**
+     * Takes the order to run now from the head of the timeline, which must
+     * be up to date, see {@link #planRequest(Instant)}.
+     */
+    private Order takeHead(Instant now) {
+        if (timeline.isEmpty())
+            return null;
+
+        Segment head = timeline.getFirst();
+        if (head.control != null) {
+            if (head.interval.getStart().isAfter(now))
+                return null;
+            timeline.removeFirst();
+            return head.control;
+        }
+
+        // Nothing fits for now, or the next target hasn't risen yet
+        ScheduledExposure<ProgramOrder> exposure = head.exposures.peekFirst();
+        if (exposure == null || exposure.getStartMillis() > now.toEpochMilli())
+            return null;
+
+        head.exposures.removeFirst();
+        return exposure.getOrder();
+    }
+
+    /**
+     * Puts the plan of a slot in place, unless the slot was dropped or
+     * changed while it was being planned, in which case it stays dirty and is
+     * planned again.
+     */
+    private void swapIn(PlanRequest request, List<ScheduledExposure<ProgramOrder>> plan) {
+        Segment slot = request.slot();
+        if (slot.version != request.version() || !timeline.contains(slot)) {
+            logger.debug("ScheduleService: slot until {} changed while being planned", slot.interval.getEnd());
+            return;
+        }
+
+        slot.exposures.clear();
+        slot.exposures.addAll(plan);
+        slot.dirty = false;
+
+        logger.debug("ScheduleService: planned {} exposures from {} to {}", plan.size(), request.range().getStart(), slot.interval.getEnd());
+    }
+
+    /**
+     * Removes the exposures of an order from the plan, marking the slots it
+     * was in to be filled again.
+     *
+     * @return {@code true} if the order was in the plan.
+     */
+    private boolean remove(ProgramOrder order) {
+        boolean removed = false;
+        for (Segment segment : timeline) {
+            if (segment.exposures.removeIf(exposure -> exposure.getOrder().equals(order))) {
+                segment.markDirty();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Marks the slots in which the target of an order is observable to be
+     * planned again, or all of them if it is not in the {@link VisibilityIndex}.
+     */
+    private void markObservable(ProgramOrder order) {
+        VisibilityIndex index = astroObjectService.getVisibilityIndex();
+        long targetId = order.getProgram().getTarget().getId();
+        boolean isIndexed = index != null && index.contains(targetId);
+        IntervalSet windows = isIndexed ? IntervalSet.of(index.getWindows(targetId)) : IntervalSet.empty();
+
+        for (Segment segment : timeline) {
+            if (segment.control != null)
+                continue;
+            boolean isKnown = isIndexed && index.covers(segment.interval);
+            if (!isKnown || windows.intersects(segment.interval)) {
+                segment.markDirty();
+            }
+        }
+    }
+
+    /** A control order, or a free slot and the exposures planned in it */
+    private static final class Segment {
+
+        private final Interval interval;
+
+        private final ControlOrder control;
+
+        private final LinkedList<ScheduledExposure<ProgramOrder>> exposures = new LinkedList<>();
+
+        private boolean dirty = true;
+
+        /** Counts the changes, so a plan made before one is not used */
+        private long version = 0;
+
+        private Segment(Interval interval, ControlOrder control) {
+            this.interval = interval;
+            this.control = control;
+        }
+
+        private void markDirty() {
+            dirty = true;
+            version++;
+        }
+    }
+
+    /**
+     * A slot to plan, as it was when the planning started.
+     *
+     * @param slot The slot.
+     * @param version The version of the slot when the planning started.
+     * @param range The part of the slot to plan, from now on.
+     * @param planned The exposures of each order planned in the other slots.
+     */
+    private record PlanRequest(Segment slot, long version, Interval range, Map<ProgramOrder, Integer> planned) {}
+
+    //#endregion
+}
@@ -0,0 +1,164 @@
+package com.aajpm.altair.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ExposureParams;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sequences the actions of each exposure: pointing the telescope and the
+ * dome at the target, moving the filter wheel and the focuser, and starting
+ * the camera. The actions that don't depend on each other run at the same
+ * time, and the ones of the next exposure overlap with the download of the
+ * previous image whenever the hardware allows it:
+ * <ul>
+ * <li>Nothing moves while the shutter is open. The next exposure is only
+ * prepared once the image of the previous one is ready.</li>
+ * <li>The slew, the dome sync and the filter and focus moves don't use the
+ * camera, so they run while the previous image is being downloaded.</li>
+ * <li>The camera only starts the next exposure once the previous image is
+ * downloaded and everything is in place.</li>
+ * </ul>
+ * The time from an image being ready to the next exposure starting is kept
+ * in the {@code altair.sequencer.overhead} metric, tagged by whether the
+ * exposures were {@code pipelined}.
+ */
+@Service
+public class SequencerService {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    /** When the image of the last exposure was ready, in nanoseconds, or 0 if not counting */
+    private final AtomicLong imageReadyNanos = new AtomicLong(0);
+
+    //#endregion
+    /////////////////////////// SUPPORTING SERVICES ///////////////////////////
+    //#region Supporting Services
+
+    @Autowired
+    private ObservatoryService observatoryService;
+
+    @Autowired
+    private EphemeridesSolver ephemeridesSolver;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Logger logger = LoggerFactory.getLogger(SequencerService.class);
+
+    //#endregion
+    ///////////////////////////////// METHODS /////////////////////////////////
+    //#region Methods
+
+    /**
+     * Starts an exposure from scratch: the camera is started (and cooled
+     * down) while the telescope slews and the filter and focus move.
+     *
+     * @param params The parameters of the exposure.
+     *
+     * @return A {@link Mono} that will complete when the exposure has started.
+     */
+    public Mono<Boolean> start(ExposureParams params) {
+        return Mono.when(observatoryService.startCamera(), prepare(params))
+                .then(observatoryService.startCameraExposure(params))
+                .doOnSuccess(started -> recordOverhead(false));
+    }
+
+    /**
+     * Moves on to the next exposure once the image of the previous one is
+     * ready, preparing it while the image is downloaded.
+     *
+     * @param download Downloads and saves the previous image. It's waited
+     *                 for even if preparing the next exposure fails, so the
+     *                 image isn't lost.
+     * @param params The parameters of the next exposure.
+     *
+     * @return A {@link Mono} that will complete when the next exposure has
+     *         started.
+     */
+    public Mono<Boolean> advance(Mono<?> download, ExposureParams params) {
+        return Mono.whenDelayError(download, prepare(params))
+                .then(observatoryService.startCameraExposure(params))
+                .doOnSuccess(started -> recordOverhead(true));
+    }
+
+    /**
+     * Gets everything but the camera ready for an exposure. The slew and the
+     * filter and focus moves are independent, so they are done together.
+     *
+     * @param params The parameters of the exposure.
+     *
+     * @return A {@link Mono} that will complete when the telescope and the
+     *         dome are on target and the filter and focus are in place.
+     */
+    public Mono<Boolean> prepare(ExposureParams params) {
+        return Mono.when(slewTo(params.getProgram().getTarget()), observatoryService.prepareExposure(params))
+                .thenReturn(true);
+    }
+
+    /**
+     * Points the telescope and the dome at a target and slaves them together.
+     *
+     * @param target The target, either an object or coordinates.
+     *
+     * @return A {@link Mono} that will complete when the dome is synced.
+     */
+    public Mono<Boolean> slewTo(AstroObject target) {
+        Mono<Boolean> slew;
+        if (target.shouldHaveRaDec()) {
+            slew = observatoryService.slewTogetherRaDecAwait(target.getRa(), target.getDec());
+        } else {
+            slew = ephemeridesSolver.getAltAz(target.getName()).flatMap(altAz ->
+                        observatoryService.slewTogetherAltAzAwait(altAz[0], altAz[1]));
+        }
+        return slew.then(observatoryService.setSlavedAwait(true));
+    }
+
+    /**
+     * Notes that the image of the current exposure is ready, to measure the
+     * overhead until the next one starts.
+     */
+    public void imageReady() {
+        imageReadyNanos.set(System.nanoTime());
+    }
+
+    /**
+     * Stops measuring the overhead, like when parking, as the wait until the
+     * next exposure is not overhead anymore.
+     */
+    public void reset() {
+        imageReadyNanos.set(0);
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    private void recordOverhead(boolean pipelined) {
+        long ready = imageReadyNanos.getAndSet(0);
+        if (ready == 0)
+            return;
+
+        long overhead = System.nanoTime() - ready;
+        Timer.builder("altair.sequencer.overhead")
+            .description("Time from an image being ready to the next exposure starting")
+            .tag("pipelined", Boolean.toString(pipelined))
+            .register(registry)
+            .record(overhead, TimeUnit.NANOSECONDS);
+        logger.debug("SequencerService: next exposure started {} ms after the last image was ready [pipelined = {}]", overhead / 1_000_000, pipelined);
+    }
+
+    //#endregion
+}
@@ -0,0 +1,244 @@
+package com.aajpm.altair.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.config.ObservatoryConfig.PolicyConfig;
+import com.aajpm.altair.service.GovernorService.GovernorStatus;
+import com.aajpm.altair.service.ObservatoryService.ObservatoryStatus;
+import com.aajpm.altair.service.observatory.CameraService;
+import com.aajpm.altair.service.observatory.CameraService.CameraStatus;
+import com.aajpm.altair.service.observatory.DomeService;
+import com.aajpm.altair.service.observatory.DomeService.DomeStatus;
+import com.aajpm.altair.service.observatory.FilterWheelService;
+import com.aajpm.altair.service.observatory.FilterWheelService.FilterWheelStatus;
+import com.aajpm.altair.service.observatory.FocuserService;
+import com.aajpm.altair.service.observatory.FocuserService.FocuserStatus;
+import com.aajpm.altair.service.observatory.TelescopeService;
+import com.aajpm.altair.service.observatory.TelescopeService.TelescopeStatus;
+import com.aajpm.altair.service.observatory.WeatherWatchService;
+import com.aajpm.altair.service.observatory.WeatherWatchService.WeatherWatchStatus;
+import com.aajpm.altair.utility.statusreporting.SamplingPolicy;
+import com.aajpm.altair.utility.statusreporting.StatusPublisher;
+
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps a single, shared status stream per device, sampled at a rate that
+ * depends on what the device is doing.
+ * <p>
+ * Every SSE client subscribes to the same stream, so the devices are polled
+ * once no matter how many clients are connected, and nothing is polled when
+ * nobody is listening.
+ */
+@Service
+public class StatusPublisherService {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    /** Smallest change of the sensor temperature sent, in degrees Celsius */
+    static final double CAMERA_TEMPERATURE_DEADBAND = 0.1;
+
+    /** Smallest change of the cooler power sent, in percent */
+    static final double CAMERA_POWER_DEADBAND = 1.0;
+
+    private StatusPublisher<TelescopeStatus> telescopePublisher;
+
+    private StatusPublisher<DomeStatus> domePublisher;
+
+    private StatusPublisher<FocuserStatus> focuserPublisher;
+
+    private StatusPublisher<CameraStatus> cameraPublisher;
+
+    private StatusPublisher<FilterWheelStatus> filterWheelPublisher;
+
+    private StatusPublisher<WeatherWatchStatus> weatherWatchPublisher;
+
+    private StatusPublisher<GovernorStatus> governorPublisher;
+
+    private Flux<ObservatoryStatus> observatoryStream;
+
+    //#endregion
+    ///////////////////// SUPPORTING SERVICES & COMPONENTS ////////////////////
+    //#region Supporting Services & Components
+
+    @Autowired
+    private ObservatoryConfig config;
+
+    @Autowired
+    private ObservatoryService observatory;
+
+    @Autowired
+    private GovernorService governor;
+
+    @Autowired
+    private TelescopeService telescope;
+
+    @Autowired
+    private DomeService dome;
+
+    @Autowired
+    private FocuserService focuser;
+
+    @Autowired
+    private CameraService camera;
+
+    @Autowired
+    private FilterWheelService filterWheel;
+
+    @Autowired
+    private WeatherWatchService weatherWatch;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    @PostConstruct
+    private void init() {
+        ObservatoryConfig.SamplingConfig sampling = config.getSampling();
+
+        telescopePublisher = publisher("Telescope", telescope::getStatus, sampling.getTelescope(),
+                TelescopeStatus::slewing,
+                status -> status.parked() || !status.connected());
+
+        domePublisher = publisher("Dome", dome::getStatus, sampling.getDome(),
+                status -> status.slewing()
+                        || DomeService.SHUTTER_OPENING_STATUS.equalsIgnoreCase(status.shutterStatus())
+                        || DomeService.SHUTTER_CLOSING_STATUS.equalsIgnoreCase(status.shutterStatus()),
+                status -> status.parked() || !status.connected());
+
+        focuserPublisher = publisher("Focuser", focuser::getStatus, sampling.getFocuser(),
+                FocuserStatus::moving,
+                status -> !status.connected());
+
+        cameraPublisher = publisher("Camera", camera::getStatus, sampling.getCamera(),
+                StatusPublisherService::isCameraBusy,
+                status -> !status.connected(),
+                StatusPublisherService::isCameraUnchanged);
+
+        filterWheelPublisher = publisher("FilterWheel", filterWheel::getStatus, sampling.getFilterWheel(),
+                status -> Boolean.TRUE.equals(status.isMoving()),
+                status -> !Boolean.TRUE.equals(status.connected()));
+
+        // Weather changes slowly and has no "active" state, so it always uses the idle rate
+        weatherWatchPublisher = publisher("WeatherWatch", weatherWatch::getStatus, sampling.getWeatherWatch(),
+                status -> false,
+                status -> !status.connected());
+
+        governorPublisher = publisher("Governor", governor::getStatus, sampling.getGovernor(),
+                status -> GovernorService.State.BUSY.name().equalsIgnoreCase(status.state())
+                        || GovernorService.State.RUNNING_PROGRAM.name().equalsIgnoreCase(status.state()),
+                status -> GovernorService.State.PARKED.name().equalsIgnoreCase(status.state())
+                        || GovernorService.State.DISABLED.name().equalsIgnoreCase(status.state()));
+
+        observatoryStream = Flux.combineLatest(
+                objects -> observatory.getStatus(
+                    (TelescopeStatus) objects[0],
+                    (DomeStatus) objects[1],
+                    (FocuserStatus) objects[2],
+                    (CameraStatus) objects[3],
+                    (FilterWheelStatus) objects[4],
+                    (WeatherWatchStatus) objects[5]),
+                telescopePublisher.getStream(),
+                domePublisher.getStream(),
+                focuserPublisher.getStream(),
+                cameraPublisher.getStream(),
+                filterWheelPublisher.getStream(),
+                weatherWatchPublisher.getStream()
+            ).replay(1).refCount();
+    }
+
+    //#endregion
+    //////////////////////////////// GETTERS //////////////////////////////////
+    //#region Getters
+
+    public Flux<TelescopeStatus> getTelescopeStream() {
+        return telescopePublisher.getStream();
+    }
+
+    public Flux<DomeStatus> getDomeStream() {
+        return domePublisher.getStream();
+    }
+
+    public Flux<FocuserStatus> getFocuserStream() {
+        return focuserPublisher.getStream();
+    }
+
+    public Flux<CameraStatus> getCameraStream() {
+        return cameraPublisher.getStream();
+    }
+
+    public Flux<FilterWheelStatus> getFilterWheelStream() {
+        return filterWheelPublisher.getStream();
+    }
+
+    public Flux<WeatherWatchStatus> getWeatherWatchStream() {
+        return weatherWatchPublisher.getStream();
+    }
+
+    public Flux<GovernorStatus> getGovernorStream() {
+        return governorPublisher.getStream();
+    }
+
+    /**
+     * Gets the status of the whole observatory, built from the latest status
+     * of each device. It emits every time any of the devices changes.
+     *
+     * @return A {@link Flux} with the status of the observatory.
+     */
+    public Flux<ObservatoryStatus> getObservatoryStream() {
+        return observatoryStream;
+    }
+
+    //#endregion
+    //////////////////////////////// HELPERS //////////////////////////////////
+    //#region Helpers
+
+    private <T> StatusPublisher<T> publisher(String name, Supplier<Mono<T>> poller, PolicyConfig policy,
+                                             Predicate<T> isActive, Predicate<T> isParked) {
+        return publisher(name, poller, policy, isActive, isParked, Objects::equals);
+    }
+
+    private <T> StatusPublisher<T> publisher(String name, Supplier<Mono<T>> poller, PolicyConfig policy,
+                                             Predicate<T> isActive, Predicate<T> isParked, BiPredicate<T, T> isUnchanged) {
+        long fallback = config.getStatusUpdateInterval();
+        SamplingPolicy<T> sampling = SamplingPolicy.tiered(isActive, isParked,
+            Duration.ofMillis(policy.getActiveInterval(fallback)),
+            Duration.ofMillis(policy.getIdleInterval(fallback)),
+            Duration.ofMillis(policy.getParkedInterval(fallback)));
+        return new StatusPublisher<>(name, poller, sampling, isUnchanged, Duration.ofMillis(policy.getMaxInterval()));
+    }
+
+    private static boolean isCameraBusy(CameraStatus status) {
+        String state = status.status();
+        return "Waiting".equalsIgnoreCase(state)
+            || "Exposing".equalsIgnoreCase(state)
+            || "Reading".equalsIgnoreCase(state)
+            || "Downloading".equalsIgnoreCase(state);
+    }
+
+    /**
+     * Checks if a camera status is the same as the last one sent, but for the
+     * temperature and the cooler power within their deadbands, as they jitter
+     * while the cooler regulates.
+     */
+    static boolean isCameraUnchanged(CameraStatus last, CameraStatus status) {
+        return Math.abs(last.temperature() - status.temperature()) < CAMERA_TEMPERATURE_DEADBAND
+            && Math.abs(last.coolerPower() - status.coolerPower()) < CAMERA_POWER_DEADBAND
+            && new CameraStatus(last.connected(), status.temperature(), last.coolerStatus(), status.coolerPower(),
+                                last.status(), last.binning(), last.statusCompletion(),
+                                last.sfWidth(), last.sfHeight(), last.sfX(), last.sfY()).equals(status);
+    }
+
+    //#endregion
+}
@@ -0,0 +1,50 @@
+package com.aajpm.altair.service;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aajpm.altair.utility.VisibilityIndex;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the {@link VisibilityIndex} of {@link AstroObjectService} up to date,
+ * building it again for the current or next night once the indexed one is
+ * over. Runs regardless of the governor being enabled.
+ */
+@Service
+public class VisibilityIndexService {
+
+    @Autowired
+    private AstroObjectService astroObjectService;
+
+    private final Logger logger = LoggerFactory.getLogger(VisibilityIndexService.class);
+
+    /**
+     * Builds the {@link VisibilityIndex} of the catalogue for the current or
+     * next night, once the previous one is over, so the scheduler doesn't
+     * have to ask the solver for every target.
+     */
+    @Scheduled(initialDelay = 2, fixedDelay = 30, timeUnit = TimeUnit.MINUTES)
+    public void refreshVisibilityIndex() {
+        VisibilityIndex index = astroObjectService.getVisibilityIndex();
+        if (index != null && index.getNight().getEnd().isAfter(Instant.now())) {
+            return;
+        }
+
+        astroObjectService.refreshVisibilityIndex()
+            .doOnNext(newIndex -> logger.debug("VisibilityIndex: Indexed the visibility of {} objects for the night {}", newIndex.size(), newIndex.getNight()))
+            .onErrorResume(e -> {
+                logger.warn("VisibilityIndex: Error indexing the visibility of the catalogue", e);
+                return Mono.empty();
+            })
+            .subscribe();
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.aajpm.altair.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.config.ObservatoryConfig.WorkersConfig;
+import com.aajpm.altair.utility.Worker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the background workers of the observatory, each one with its own
+ * threads, so a long dome slew or image download never delays a safety check.
+ * See {@link Worker} for the metrics they publish.
+ */
+@Service
+public class WorkerService {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    /** Checks the observing conditions */
+    private Worker safety;
+
+    /** Runs the governor's transitions */
+    private Worker governor;
+
+    /** Slaves the dome to the telescope */
+    private Worker slaving;
+
+    /** Downloads and saves the images */
+    private Worker persistence;
+
+    /** Catalogues archives of existing images */
+    private Worker ingestion;
+
+    //#endregion
+    ///////////////////// SUPPORTING SERVICES & COMPONENTS ////////////////////
+    //#region Supporting Services & Components
+
+    @Autowired
+    private ObservatoryConfig config;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @PostConstruct
+    private void setUp() {
+        WorkersConfig workers = config.getWorkers();
+        safety = new Worker("safety", workers.getSafetyThreads(), registry);
+        governor = new Worker("governor", workers.getGovernorThreads(), registry);
+        slaving = new Worker("slaving", workers.getSlavingThreads(), registry);
+        persistence = new Worker("persistence", workers.getPersistenceThreads(), registry);
+        ingestion = new Worker("ingestion", workers.getIngestionThreads(), registry);
+    }
+
+    @PreDestroy
+    private void tearDown() {
+        safety.dispose();
+        governor.dispose();
+        slaving.dispose();
+        persistence.dispose();
+        ingestion.dispose();
+    }
+
+    //#endregion
+    //////////////////////////////// GETTERS //////////////////////////////////
+    //#region Getters
+
+    public Worker getSafety() {
+        return safety;
+    }
+
+    public Worker getGovernor() {
+        return governor;
+    }
+
+    public Worker getSlaving() {
+        return slaving;
+    }
+
+    public Worker getPersistence() {
+        return persistence;
+    }
+
+    public Worker getIngestion() {
+        return ingestion;
+    }
+
+    //#endregion
+}
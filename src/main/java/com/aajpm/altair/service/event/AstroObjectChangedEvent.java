@@ -0,0 +1,14 @@
+package com.aajpm.altair.service.event;
+
+import com.aajpm.altair.entity.AstroObject;
+
+/**
+ * Published when an {@link AstroObject} is updated or deleted, so the state
+ * derived from its coordinates, like the visibility index, is dropped once
+ * the change is committed.
+ * 
+ * @param object The object that changed, as it was saved or deleted.
+ */
+public record AstroObjectChangedEvent(AstroObject object) {
+
+}
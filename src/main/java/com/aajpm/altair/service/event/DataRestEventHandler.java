@@ -0,0 +1,51 @@
+package com.aajpm.altair.service.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.Order;
+
+/**
+ * Publishes the same events as the services for the writes made through the
+ * endpoints Spring Data REST generates for the repositories, which go straight
+ * to the repository and skip the services.
+ */
+@Component
+@RepositoryEventHandler
+public class DataRestEventHandler {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @HandleAfterSave
+    public void afterSave(AstroObject object) {
+        eventPublisher.publishEvent(new AstroObjectChangedEvent(object));
+    }
+
+    @HandleAfterDelete
+    public void afterDelete(AstroObject object) {
+        eventPublisher.publishEvent(new AstroObjectChangedEvent(object));
+    }
+
+    @HandleAfterCreate
+    public void afterCreate(Order order) {
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Change.CREATED));
+    }
+
+    @HandleAfterSave
+    public void afterSave(Order order) {
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Change.UPDATED));
+    }
+
+    @HandleAfterDelete
+    public void afterDelete(Order order) {
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Change.DELETED));
+    }
+
+}
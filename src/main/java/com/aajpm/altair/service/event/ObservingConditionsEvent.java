@@ -0,0 +1,11 @@
+package com.aajpm.altair.service.event;
+
+/**
+ * Published by the governor when it becomes safe or unsafe to observe, for
+ * example because the weather closes in or clears up.
+ * 
+ * @param safe Whether it is safe to observe now.
+ */
+public record ObservingConditionsEvent(boolean safe) {
+
+}
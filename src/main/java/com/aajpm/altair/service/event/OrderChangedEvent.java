@@ -0,0 +1,21 @@
+package com.aajpm.altair.service.event;
+
+import com.aajpm.altair.entity.Order;
+
+/**
+ * Published when an {@link Order} is created, updated (including when it is
+ * completed) or deleted, so the components that keep state derived from the
+ * orders, like the schedule, can update it instead of reloading everything.
+ * 
+ * @param order The order that changed, as it was saved or deleted.
+ * @param change What happened to the order.
+ */
+public record OrderChangedEvent(Order order, Change change) {
+
+    public enum Change {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+}
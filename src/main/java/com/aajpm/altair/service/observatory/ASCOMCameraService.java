@@ -1085,9 +1085,20 @@ public class ASCOMCameraService extends CameraService {
         Mono<Double> temperature = getTemperature().onErrorReturn(Double.NaN);
         Mono<Integer> coolerStatus = getCoolerStatus().onErrorReturn(COOLER_ERROR);
         Mono<Double> coolerPower = getCoolerPower().onErrorReturn(Double.NaN);
-        Mono<Integer> status = getCameraState().onErrorReturn(STATUS_ERROR);
+        Mono<Integer> status = getCameraState().onErrorReturn(STATUS_ERROR).cache();
         Mono<Tuple2<Integer, Integer>> binning = getBinning().onErrorReturn(Tuples.of(1, 1));
-        Mono<Double> statusCompletion = getStatusCompletion().onErrorReturn(Double.NaN);
+        // PercentCompleted only makes sense while the camera is busy, so don't poll it otherwise
+        Mono<Double> statusCompletion = status.flatMap(state -> {
+            switch (state) {
+                case STATUS_WAITING:
+                case STATUS_EXPOSING:
+                case STATUS_READING:
+                case STATUS_DOWNLOADING:
+                    return getStatusCompletion().onErrorReturn(Double.NaN);
+                default:
+                    return Mono.just(Double.NaN);
+            }
+        });
         Mono<Tuple4<Integer, Integer, Integer, Integer>> subFrame = getSubFrame().onErrorReturn(Tuples.of(0, 0, 0, 0));
 
         return Mono
@@ -0,0 +1,56 @@
+package com.aajpm.altair.utility;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.util.FitsInputStream;
+
+/**
+ * Reads only the primary header of a FITS file. It stops right after the END
+ * card, so the data unit, usually most of the file, is never read. Files
+ * compressed with gzip are detected by their magic number, whatever their
+ * extension.
+ */
+public final class FitsHeaderReader {
+
+    /** The first two bytes of a gzip stream */
+    private static final int GZIP_MAGIC = 0x1f8b;
+
+    private FitsHeaderReader() {}
+
+    /**
+     * Reads the primary header of a FITS file.
+     *
+     * @param path The path to the FITS file, optionally gzipped.
+     *
+     * @return The primary {@link Header} of the file.
+     *
+     * @throws FitsException If the file doesn't start with a valid header.
+     * @throws IOException If the file couldn't be read.
+     */
+    public static Header read(Path path) throws FitsException, IOException {
+        if (path == null)
+            throw new IllegalArgumentException("path cannot be null");
+
+        try (InputStream in = open(path); FitsInputStream fits = new FitsInputStream(in)) {
+            Header header = Header.readHeader(fits);
+            if (header == null)
+                throw new FitsException("No FITS header found in " + path);
+            return header;
+        }
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path));
+        in.mark(2);
+        int magic = (in.read() << 8) | in.read();
+        in.reset();
+        return magic == GZIP_MAGIC ? new GZIPInputStream(in) : in;
+    }
+}
@@ -0,0 +1,478 @@
+package com.aajpm.altair.utility;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of disjoint time intervals. Immutable.
+ * <p>
+ * The intervals are kept as sorted, merged epoch-millisecond arrays, so
+ * building a set from unsorted intervals is O(n log n) and every operation
+ * between two sets is a single linear sweep over both of them.
+ * <p>
+ * Unlike {@link Interval}, the intervals of a set are half-open:
+ * {@code [start, end)}. Adjacent or overlapping intervals are merged, and
+ * empty ones are dropped.
+ */
+public final class IntervalSet {
+
+    private static final IntervalSet EMPTY = new IntervalSet(new long[0], new long[0]);
+
+    /** Starts of the intervals, sorted */
+    private final long[] starts;
+
+    /** Ends of the intervals, so {@code ends[i] < starts[i + 1]} */
+    private final long[] ends;
+
+    private IntervalSet(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    /**
+     * Returns an empty set.
+     *
+     * @return A set without intervals.
+     */
+    public static IntervalSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set with a single interval.
+     *
+     * @param interval The interval.
+     *
+     * @return A set with the interval, or an empty one if it is empty.
+     */
+    public static IntervalSet of(Interval interval) {
+        if (interval == null)
+            throw new IllegalArgumentException("interval cannot be null");
+
+        return ofMillis(interval.getStart().toEpochMilli(), interval.getEnd().toEpochMilli());
+    }
+
+    /**
+     * Creates a set with the union of the given intervals.
+     *
+     * @param intervals The intervals, in any order and possibly overlapping.
+     *
+     * @return A set covering the same time as the intervals.
+     */
+    public static IntervalSet of(Collection<Interval> intervals) {
+        if (intervals == null)
+            throw new IllegalArgumentException("intervals cannot be null");
+
+        long[] newStarts = new long[intervals.size()];
+        long[] newEnds = new long[intervals.size()];
+        int i = 0;
+        for (Interval interval : intervals) {
+            newStarts[i] = interval.getStart().toEpochMilli();
+            newEnds[i] = interval.getEnd().toEpochMilli();
+            i++;
+        }
+        return ofMillis(newStarts, newEnds);
+    }
+
+    /**
+     * Creates a set with a single interval.
+     *
+     * @param start The start of the interval, in epoch milliseconds.
+     * @param end The end of the interval, in epoch milliseconds.
+     *
+     * @return A set with the interval, or an empty one if
+     *         {@code end <= start}.
+     */
+    public static IntervalSet ofMillis(long start, long end) {
+        if (end <= start)
+            return EMPTY;
+
+        return new IntervalSet(new long[] {start}, new long[] {end});
+    }
+
+    /**
+     * Creates a set with the union of the given intervals.
+     *
+     * @param starts The starts of the intervals, in epoch milliseconds.
+     * @param ends The ends of the intervals, in epoch milliseconds.
+     *
+     * @return A set covering the same time as the intervals. Intervals with
+     *         {@code ends[i] <= starts[i]} are ignored.
+     */
+    public static IntervalSet ofMillis(long[] starts, long[] ends) {
+        if (starts == null || ends == null)
+            throw new IllegalArgumentException("starts and ends cannot be null");
+        if (starts.length != ends.length)
+            throw new IllegalArgumentException("starts and ends must have the same length");
+
+        int n = starts.length;
+        int[] order = sortByStart(starts, n);
+
+        long[] newStarts = new long[n];
+        long[] newEnds = new long[n];
+        int count = 0;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            if (ends[i] <= starts[i])
+                continue;
+            if (count > 0 && starts[i] <= newEnds[count - 1]) {
+                newEnds[count - 1] = Math.max(newEnds[count - 1], ends[i]);
+            } else {
+                newStarts[count] = starts[i];
+                newEnds[count] = ends[i];
+                count++;
+            }
+        }
+        return create(newStarts, newEnds, count);
+    }
+
+    //#endregion
+    ////////////////////////////// ACCESSORS //////////////////////////////////
+    //#region Accessors
+
+    /**
+     * @return How many disjoint intervals the set has.
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * @return {@code true} if the set has no intervals.
+     */
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    public long getStartMillis(int i) {
+        return starts[i];
+    }
+
+    public long getEndMillis(int i) {
+        return ends[i];
+    }
+
+    /**
+     * @param i The index of the interval, from 0 to {@link #size()}.
+     *
+     * @return The i-th interval, by start.
+     */
+    public Interval get(int i) {
+        return toInterval(starts[i], ends[i]);
+    }
+
+    /**
+     * @return The first interval, or {@link Interval#empty()} if the set is
+     *         empty.
+     */
+    public Interval first() {
+        return isEmpty() ? Interval.empty() : get(0);
+    }
+
+    /**
+     * @return The intervals of the set, sorted by start.
+     */
+    public List<Interval> toList() {
+        List<Interval> ret = new ArrayList<>(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            ret.add(get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * @return The total time covered by the set, in milliseconds.
+     */
+    public long getTotalMillis() {
+        long total = 0;
+        for (int i = 0; i < starts.length; i++) {
+            total += ends[i] - starts[i];
+        }
+        return total;
+    }
+
+    //#endregion
+    /////////////////////////////// QUERIES ///////////////////////////////////
+    //#region Queries
+
+    /**
+     * Checks if an instant is within the set. O(log n).
+     *
+     * @param millis The instant, in epoch milliseconds.
+     *
+     * @return {@code true} if an interval contains it, its start included
+     *         but not its end.
+     */
+    public boolean contains(long millis) {
+        int i = floor(millis);
+        return i >= 0 && millis < ends[i];
+    }
+
+    /**
+     * Checks if an interval is fully within the set. O(log n).
+     *
+     * @param interval The interval to check.
+     *
+     * @return {@code true} if a single interval of the set contains it.
+     */
+    public boolean contains(Interval interval) {
+        long start = interval.getStart().toEpochMilli();
+        long end = interval.getEnd().toEpochMilli();
+        int i = floor(start);
+        return i >= 0 && end <= ends[i];
+    }
+
+    /**
+     * Checks if an interval overlaps the set for some time. O(log n).
+     *
+     * @param interval The interval to check.
+     *
+     * @return {@code true} if the interval and the set share some time.
+     */
+    public boolean intersects(Interval interval) {
+        long start = interval.getStart().toEpochMilli();
+        long end = interval.getEnd().toEpochMilli();
+        if (end <= start)
+            return false;
+
+        // The last interval starting before the end is the only candidate
+        int i = floor(end - 1);
+        return i >= 0 && ends[i] > start;
+    }
+
+    //#endregion
+    ////////////////////////////// OPERATIONS /////////////////////////////////
+    //#region Operations
+
+    /**
+     * Returns the time covered by this set or the other one. O(n + m).
+     *
+     * @param other The other set.
+     *
+     * @return A new set with the union of both.
+     */
+    public IntervalSet union(IntervalSet other) {
+        if (other.isEmpty())
+            return this;
+        if (this.isEmpty())
+            return other;
+
+        int n = starts.length + other.starts.length;
+        long[] newStarts = new long[n];
+        long[] newEnds = new long[n];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < starts.length || j < other.starts.length) {
+            long start;
+            long end;
+            if (j >= other.starts.length || (i < starts.length && starts[i] <= other.starts[j])) {
+                start = starts[i];
+                end = ends[i++];
+            } else {
+                start = other.starts[j];
+                end = other.ends[j++];
+            }
+
+            if (count > 0 && start <= newEnds[count - 1]) {
+                newEnds[count - 1] = Math.max(newEnds[count - 1], end);
+            } else {
+                newStarts[count] = start;
+                newEnds[count] = end;
+                count++;
+            }
+        }
+        return create(newStarts, newEnds, count);
+    }
+
+    /**
+     * Returns the time covered by both this set and the other one. O(n + m).
+     *
+     * @param other The other set.
+     *
+     * @return A new set with the intersection of both.
+     */
+    public IntervalSet intersection(IntervalSet other) {
+        if (this.isEmpty() || other.isEmpty())
+            return EMPTY;
+
+        int n = starts.length + other.starts.length;
+        long[] newStarts = new long[n];
+        long[] newEnds = new long[n];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < starts.length && j < other.starts.length) {
+            long start = Math.max(starts[i], other.starts[j]);
+            long end = Math.min(ends[i], other.ends[j]);
+            if (start < end) {
+                newStarts[count] = start;
+                newEnds[count] = end;
+                count++;
+            }
+            // Move past the one that ends first
+            if (ends[i] < other.ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return create(newStarts, newEnds, count);
+    }
+
+    /**
+     * Returns the time covered by this set but not by the other one. O(n + m).
+     *
+     * @param other The set to subtract.
+     *
+     * @return A new set with the difference.
+     */
+    public IntervalSet difference(IntervalSet other) {
+        if (this.isEmpty() || other.isEmpty())
+            return this;
+
+        // Each subtracted interval can split at most one of ours in two
+        int n = starts.length + other.starts.length;
+        long[] newStarts = new long[n];
+        long[] newEnds = new long[n];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < starts.length; i++) {
+            long start = starts[i];
+            long end = ends[i];
+
+            // Skip the subtracted intervals that end before this one starts
+            while (j < other.starts.length && other.ends[j] <= start) {
+                j++;
+            }
+
+            int k = j;
+            while (k < other.starts.length && other.starts[k] < end) {
+                if (other.starts[k] > start) {
+                    newStarts[count] = start;
+                    newEnds[count] = other.starts[k];
+                    count++;
+                }
+                start = Math.max(start, other.ends[k]);
+                if (start >= end)
+                    break;
+                k++;
+            }
+
+            if (start < end) {
+                newStarts[count] = start;
+                newEnds[count] = end;
+                count++;
+            }
+        }
+        return create(newStarts, newEnds, count);
+    }
+
+    /**
+     * Returns the time within a range that is not covered by this set.
+     * O(n).
+     *
+     * @param range The range to take the complement in.
+     *
+     * @return A new set with the gaps of this one within the range.
+     */
+    public IntervalSet complement(Interval range) {
+        return of(range).difference(this);
+    }
+
+    /**
+     * Returns the part of this set within a range. O(n).
+     *
+     * @param range The range to clamp the set to.
+     *
+     * @return A new set with the intervals clamped to the range.
+     */
+    public IntervalSet clamp(Interval range) {
+        return intersection(of(range));
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Last interval starting at or before {@code millis}, or -1.
+     */
+    private int floor(long millis) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Indices of the first {@code n} starts, sorted by start.
+     */
+    private static int[] sortByStart(long[] starts, int n) {
+        int[] order = new int[n];
+        boolean isSorted = true;
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            isSorted &= i == 0 || starts[i - 1] <= starts[i];
+        }
+        // Intervals usually come sorted already
+        if (isSorted)
+            return order;
+
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, (a, b) -> Long.compare(starts[a], starts[b]));
+        for (int i = 0; i < n; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    private static IntervalSet create(long[] starts, long[] ends, int count) {
+        if (count == 0)
+            return EMPTY;
+
+        return new IntervalSet(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count));
+    }
+
+    private static Interval toInterval(long start, long end) {
+        return new Interval(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end));
+    }
+
+    //#endregion
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof IntervalSet))
+            return false;
+        IntervalSet other = (IntervalSet) obj;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
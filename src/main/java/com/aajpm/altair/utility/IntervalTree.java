@@ -0,0 +1,180 @@
+package com.aajpm.altair.utility;
+
+import java.util.Arrays;
+
+/**
+ * A static interval tree over possibly overlapping time intervals, to find
+ * the ones containing an instant (stabbing queries) or overlapping a range
+ * without scanning them all, however long the intervals are: O(log n) per
+ * interval found at worst.
+ * <p>
+ * The intervals are sorted by start and laid out as an implicit balanced
+ * binary tree over that array: the middle of each range is the root of its
+ * subtree and keeps the latest end within it, so whole subtrees that end
+ * before the query are skipped. Everything is kept in primitive arrays.
+ * <p>
+ * The intervals are half-open, {@code [start, end)}, and the queries return
+ * their position in the arrays the tree was built from. Empty intervals are
+ * never found. Immutable.
+ */
+public final class IntervalTree {
+
+    /** Positions of the intervals in the original arrays, sorted by start */
+    private final int[] byStart;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    /** Latest end of the subtree rooted at each position of {@code byStart} */
+    private final long[] maxEnds;
+
+    /**
+     * Builds a new {@link IntervalTree}. O(n log n).
+     *
+     * @param starts The starts of the intervals, in epoch milliseconds.
+     * @param ends The ends of the intervals, in epoch milliseconds.
+     */
+    public IntervalTree(long[] starts, long[] ends) {
+        if (starts == null || ends == null)
+            throw new IllegalArgumentException("starts and ends cannot be null");
+        if (starts.length != ends.length)
+            throw new IllegalArgumentException("starts and ends must have the same length");
+
+        int n = starts.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+        this.byStart = new int[n];
+        this.starts = new long[n];
+        this.ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            byStart[i] = order[i];
+            this.starts[i] = starts[order[i]];
+            this.ends[i] = ends[order[i]];
+        }
+
+        this.maxEnds = new long[n];
+        buildMaxEnds(0, n);
+    }
+
+    /**
+     * @return How many intervals the tree has.
+     */
+    public int size() {
+        return byStart.length;
+    }
+
+    /**
+     * Finds the intervals containing an instant.
+     *
+     * @param millis The instant, in epoch milliseconds.
+     *
+     * @return The positions of the intervals, in no particular order.
+     */
+    public int[] stab(long millis) {
+        return findOverlapping(millis, millis + 1);
+    }
+
+    /**
+     * Finds the intervals that overlap a range for some time.
+     *
+     * @param from The start of the range, in epoch milliseconds.
+     * @param to The end of the range, in epoch milliseconds.
+     *
+     * @return The positions of the intervals, in no particular order.
+     */
+    public int[] findOverlapping(long from, long to) {
+        if (to <= from || byStart.length == 0)
+            return new int[0];
+
+        Hits hits = new Hits();
+        collect(0, byStart.length, from, to, hits);
+        return Arrays.copyOf(hits.values, hits.count);
+    }
+
+    /**
+     * Checks if some interval overlaps a range for some time.
+     *
+     * @param from The start of the range, in epoch milliseconds.
+     * @param to The end of the range, in epoch milliseconds.
+     *
+     * @return {@code true} if at least one interval overlaps the range.
+     */
+    public boolean overlaps(long from, long to) {
+        if (to <= from)
+            return false;
+
+        return anyOverlap(0, byStart.length, from, to);
+    }
+
+    ///////////////////////////////// HELPERS /////////////////////////////////
+    //#region Helpers
+
+    private long buildMaxEnds(int low, int high) {
+        if (low >= high)
+            return Long.MIN_VALUE;
+
+        int mid = (low + high) >>> 1;
+        long max = Math.max(ends[mid], Math.max(buildMaxEnds(low, mid), buildMaxEnds(mid + 1, high)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * Adds the intervals of the subtree {@code [low, high)} that overlap
+     * {@code [from, to)}.
+     */
+    private void collect(int low, int high, long from, long to, Hits hits) {
+        if (low >= high)
+            return;
+
+        int mid = (low + high) >>> 1;
+        // Everything in this subtree ends before the range
+        if (maxEnds[mid] <= from)
+            return;
+
+        collect(low, mid, from, to, hits);
+        // The right subtree starts even later
+        if (starts[mid] >= to)
+            return;
+
+        if (ends[mid] > from && ends[mid] > starts[mid])
+            hits.add(byStart[mid]);
+        collect(mid + 1, high, from, to, hits);
+    }
+
+    private boolean anyOverlap(int low, int high, long from, long to) {
+        if (low >= high)
+            return false;
+
+        int mid = (low + high) >>> 1;
+        if (maxEnds[mid] <= from)
+            return false;
+        if (anyOverlap(low, mid, from, to))
+            return true;
+        if (starts[mid] >= to)
+            return false;
+
+        return (ends[mid] > from && ends[mid] > starts[mid]) || anyOverlap(mid + 1, high, from, to);
+    }
+
+    /** A growable array of positions */
+    private static final class Hits {
+
+        private int[] values = new int[8];
+
+        private int count = 0;
+
+        private void add(int value) {
+            if (count == values.length)
+                values = Arrays.copyOf(values, count * 2);
+            values[count++] = value;
+        }
+    }
+
+    //#endregion
+}
@@ -0,0 +1,104 @@
+package com.aajpm.altair.utility;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A page of a listing ordered by id. The next page starts right after the
+ * last id of this one, so each page costs the same however deep it is, and
+ * no rows are skipped or repeated if some are added or removed meanwhile.
+ * Immutable.
+ *
+ * @param <T> The type of the items.
+ *
+ * @param items The items of the page, ordered by id.
+ * @param next The id to start the next page after, or {@code null} if this
+ *             is the last page.
+ */
+public record KeysetPage<T>(List<T> items, Long next) {
+
+    /** The page size if none is given */
+    public static final int DEFAULT_LIMIT = 50;
+
+    /** The largest page that can be asked for */
+    public static final int MAX_LIMIT = 500;
+
+    public KeysetPage {
+        if (items == null)
+            throw new IllegalArgumentException("items cannot be null");
+        items = List.copyOf(items);
+    }
+
+    /**
+     * Makes a page from the result of a query that asked for one more item
+     * than the limit, to know if there is a next page without counting.
+     *
+     * @param fetched The items, up to {@code limit + 1}.
+     * @param limit The size of the page.
+     * @param id The id of an item.
+     *
+     * @return The page, with at most {@code limit} items.
+     */
+    public static <T> KeysetPage<T> of(List<T> fetched, int limit, ToLongFunction<T> id) {
+        if (fetched == null)
+            throw new IllegalArgumentException("fetched cannot be null");
+        if (fetched.size() <= limit)
+            return new KeysetPage<>(fetched, null);
+
+        List<T> items = fetched.subList(0, limit);
+        return new KeysetPage<>(items, id.applyAsLong(items.get(limit - 1)));
+    }
+
+    /**
+     * Checks the page size asked for by a client.
+     *
+     * @param limit The page size, or {@code null} for the default one.
+     *
+     * @return The page size.
+     */
+    public static int limit(Integer limit) {
+        if (limit == null)
+            return DEFAULT_LIMIT;
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        return limit;
+    }
+
+    /**
+     * @return The same page, with its items transformed.
+     */
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        return new KeysetPage<>(items.stream().map(mapper).toList(), next);
+    }
+
+    /**
+     * Goes through a whole listing page by page, asking for the next one
+     * only when the previous one has been consumed, so no more than a page
+     * is kept in memory whatever the size of the listing. The pages are
+     * loaded on the bounded elastic scheduler, as they are blocking queries.
+     *
+     * @param after The id to start after, {@code 0} to start from the first
+     *              item, or the id of the last item received to resume.
+     * @param pages Loads the page after the given id.
+     *
+     * @return A {@link Flux} with every item of the listing, in order.
+     */
+    public static <T> Flux<T> stream(long after, LongFunction<KeysetPage<T>> pages) {
+        if (pages == null)
+            throw new IllegalArgumentException("pages cannot be null");
+
+        return Mono.fromCallable(() -> pages.apply(after))
+                .expand(page -> page.next() == null
+                                ? Mono.empty()
+                                : Mono.fromCallable(() -> pages.apply(page.next())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .concatMapIterable(KeysetPage::items, 1);
+    }
+
+}
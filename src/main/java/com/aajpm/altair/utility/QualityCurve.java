@@ -0,0 +1,225 @@
+package com.aajpm.altair.utility;
+
+import java.time.Instant;
+
+/**
+ * How good the sky is for a target over time: its altitude, airmass and
+ * separation from the Moon, and an overall quality rating, sampled at a fixed
+ * step and interpolated linearly in between.
+ * <p>
+ * Curves are built by {@link SkyConditions#curveFor(double[], double[])}, and
+ * are immutable.
+ */
+public final class QualityCurve {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private final long startMillis;
+
+    private final long stepMillis;
+
+    private final double[] altitude;
+
+    private final double[] airmass;
+
+    private final double[] moonSeparation;
+
+    /** 1 if the Moon doesn't affect the target, down to 0 next to a full Moon */
+    private final double[] moonFactor;
+
+    private final double[] quality;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    @SuppressWarnings("java:S107")
+    QualityCurve(long startMillis, long stepMillis, double[] altitude, double[] airmass,
+                 double[] moonSeparation, double[] moonFactor, double[] quality) {
+        this.startMillis = startMillis;
+        this.stepMillis = stepMillis;
+        this.altitude = altitude;
+        this.airmass = airmass;
+        this.moonSeparation = moonSeparation;
+        this.moonFactor = moonFactor;
+        this.quality = quality;
+    }
+
+    //#endregion
+    /////////////////////////////// QUERIES ///////////////////////////////////
+    //#region Queries
+
+    /**
+     * @param millis The time to check.
+     * @return {@code true} if the time is within the curve.
+     */
+    public boolean covers(long millis) {
+        return millis >= startMillis && millis <= timeOf(quality.length - 1);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return The altitude of the target, in decimal degrees.
+     *
+     * @throws IllegalArgumentException If the time is outside of the curve.
+     */
+    public double getAltitude(long millis) {
+        return interpolate(altitude, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return The airmass of the target, 1 at the zenith and
+     *         {@link Double#POSITIVE_INFINITY} below the horizon.
+     *
+     * @throws IllegalArgumentException If the time is outside of the curve.
+     */
+    public double getAirmass(long millis) {
+        return interpolate(airmass, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return The separation between the target and the Moon, in decimal degrees.
+     *
+     * @throws IllegalArgumentException If the time is outside of the curve.
+     */
+    public double getMoonSeparation(long millis) {
+        return interpolate(moonSeparation, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return The quality of the sky for the target, from 0 (unobservable) to
+     *         1 (at the zenith, unaffected by the Moon).
+     *
+     * @throws IllegalArgumentException If the time is outside of the curve.
+     */
+    public double getQuality(long millis) {
+        return interpolate(quality, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return {@code true} if the Moon is set or far enough from the target
+     *         for its illumination.
+     *
+     * @throws IllegalArgumentException If the time is outside of the curve.
+     */
+    public boolean isMoonClear(long millis) {
+        return interpolate(moonFactor, startMillis, stepMillis, millis) >= 1.0;
+    }
+
+    /**
+     * Calculates the mean quality over a range.
+     *
+     * @param range The range to rate, within the curve.
+     *
+     * @return The mean of {@link #getQuality(long)} over the range.
+     *
+     * @throws IllegalArgumentException If the range is outside of the curve.
+     */
+    public double meanQuality(Interval range) {
+        long from = range.getStart().toEpochMilli();
+        long to = range.getEnd().toEpochMilli();
+        if (to <= from)
+            return getQuality(from);
+
+        // Trapezoids over the samples within the range, plus both ends
+        double sum = 0.0;
+        long previous = from;
+        double previousQuality = getQuality(from);
+        for (int i = indexAfter(from); i < quality.length && timeOf(i) < to; i++) {
+            sum += (previousQuality + quality[i]) / 2.0 * (timeOf(i) - previous);
+            previous = timeOf(i);
+            previousQuality = quality[i];
+        }
+        sum += (previousQuality + getQuality(to)) / 2.0 * (to - previous);
+        return sum / (to - from);
+    }
+
+    /**
+     * Finds the first part of a range during which the Moon doesn't affect
+     * the target. Only the spans between two consecutive clear samples are
+     * considered clear, so the result is conservative by up to a step.
+     *
+     * @param range The range to search in.
+     *
+     * @return The first clear part of {@code range}, or {@link Interval#empty()}
+     *         if there is none.
+     *
+     * @throws IllegalArgumentException If the range is outside of the curve.
+     */
+    public Interval firstClearInterval(Interval range) {
+        long from = range.getStart().toEpochMilli();
+        long to = range.getEnd().toEpochMilli();
+        checkRange(from);
+        checkRange(to);
+
+        int i = (int) ((from - startMillis) / stepMillis);
+        while (i + 1 < moonFactor.length && timeOf(i) < to && !isClearSpan(i)) {
+            i++;
+        }
+        if (i + 1 >= moonFactor.length || timeOf(i) >= to)
+            return Interval.empty();
+
+        int j = i;
+        while (j + 1 < moonFactor.length && timeOf(j + 1) < to && isClearSpan(j + 1)) {
+            j++;
+        }
+
+        long start = Math.max(from, timeOf(i));
+        long end = Math.min(to, timeOf(j + 1));
+        return new Interval(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end));
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Interpolates linearly between evenly spaced samples.
+     *
+     * @throws IllegalArgumentException If the time is outside of the samples.
+     */
+    static double interpolate(double[] values, long startMillis, long stepMillis, long millis) {
+        long offset = millis - startMillis;
+        if (offset < 0 || offset > (values.length - 1) * stepMillis)
+            throw new IllegalArgumentException("The time " + Instant.ofEpochMilli(millis) + " is outside of the samples");
+
+        int i = (int) (offset / stepMillis);
+        if (i >= values.length - 1)
+            return values[values.length - 1];
+
+        double fraction = (offset - i * stepMillis) / (double) stepMillis;
+        double a = values[i];
+        double b = values[i + 1];
+        if (fraction == 0.0 || a == b)
+            return a;
+        // The airmass is infinite below the horizon, use the nearest sample
+        if (Double.isInfinite(a) || Double.isInfinite(b))
+            return fraction < 0.5 ? a : b;
+        return a + (b - a) * fraction;
+    }
+
+    private boolean isClearSpan(int i) {
+        return moonFactor[i] >= 1.0 && moonFactor[i + 1] >= 1.0;
+    }
+
+    private long timeOf(int i) {
+        return startMillis + i * stepMillis;
+    }
+
+    /** Index of the first sample strictly after a time */
+    private int indexAfter(long millis) {
+        return (int) ((millis - startMillis) / stepMillis) + 1;
+    }
+
+    private void checkRange(long millis) {
+        if (!covers(millis))
+            throw new IllegalArgumentException("The time " + Instant.ofEpochMilli(millis) + " is outside of the curve");
+    }
+
+    //#endregion
+}
@@ -0,0 +1,244 @@
+package com.aajpm.altair.utility;
+
+/**
+ * The position of the Sun and the Moon sampled at a fixed step over a period,
+ * usually a night, to rate how good the sky is for each target without going
+ * back to the ephemerides for every query.
+ * <p>
+ * The illumination of the Moon is derived from its elongation from the Sun,
+ * and a {@link QualityCurve} for a target is built by sampling the target at
+ * the same times, see {@link #curveFor(double[], double[])}.
+ * <p>
+ * Angles are in decimal degrees and times in milliseconds since the Unix
+ * epoch. The instances are immutable.
+ */
+public final class SkyConditions {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private final long startMillis;
+
+    private final long stepMillis;
+
+    private final double[] sunAltitude;
+
+    private final double[] moonAltitude;
+
+    private final double[] moonAzimuth;
+
+    /** Illuminated fraction of the Moon, 0-1 */
+    private final double[] moonIllumination;
+
+    /** Altitude of the Sun below which it is dark */
+    private final double dawnLine;
+
+    /** Separation from the full Moon below which a target is considered affected */
+    private final double moonAvoidance;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    /**
+     * Creates a new {@link SkyConditions}.
+     *
+     * @param startMillis The time of the first sample.
+     * @param stepMillis The time between samples.
+     * @param sunAltAz The altitude and azimuth of the Sun at each sample.
+     * @param moonAltAz The altitude and azimuth of the Moon at each sample.
+     * @param dawnLine The altitude of the Sun below which it is dark.
+     * @param moonAvoidance The separation from the full Moon below which a
+     *                      target is affected by it. It is scaled down with
+     *                      the illumination of the Moon.
+     *
+     * @throws IllegalArgumentException If there are less than two samples,
+     *                                  the arrays are not of the same length
+     *                                  or the step is not positive.
+     */
+    public SkyConditions(long startMillis, long stepMillis, double[][] sunAltAz, double[][] moonAltAz, double dawnLine, double moonAvoidance) {
+        int size = sunAltAz[0].length;
+        if (size < 2 || stepMillis <= 0)
+            throw new IllegalArgumentException("At least two samples at a positive step are needed");
+        if (sunAltAz[1].length != size || moonAltAz[0].length != size || moonAltAz[1].length != size)
+            throw new IllegalArgumentException("The samples of the Sun and the Moon must be of the same length");
+
+        this.startMillis = startMillis;
+        this.stepMillis = stepMillis;
+        this.sunAltitude = sunAltAz[0];
+        this.moonAltitude = moonAltAz[0];
+        this.moonAzimuth = moonAltAz[1];
+        this.dawnLine = dawnLine;
+        this.moonAvoidance = moonAvoidance;
+
+        this.moonIllumination = new double[size];
+        for (int i = 0; i < size; i++) {
+            // The phase angle is close enough to 180 - elongation, so k = (1 + cos(i)) / 2 = (1 - cos(elongation)) / 2
+            double elongation = separation(sunAltAz[0][i], sunAltAz[1][i], moonAltAz[0][i], moonAltAz[1][i]);
+            moonIllumination[i] = (1.0 - Math.cos(Math.toRadians(elongation))) / 2.0;
+        }
+    }
+
+    //#endregion
+    ////////////////////////////// ACCESSORS //////////////////////////////////
+    //#region Accessors
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    /**
+     * @return The time of the last sample.
+     */
+    public long getEndMillis() {
+        return startMillis + (size() - 1) * stepMillis;
+    }
+
+    /**
+     * @return The number of samples.
+     */
+    public int size() {
+        return sunAltitude.length;
+    }
+
+    /**
+     * @param index The index of the sample.
+     * @return The time of the sample.
+     */
+    public long timeOf(int index) {
+        return startMillis + index * stepMillis;
+    }
+
+    /**
+     * Checks if the samples cover the whole interval.
+     *
+     * @param interval The interval to check.
+     *
+     * @return {@code true} if the interval is within the sampled period.
+     */
+    public boolean covers(Interval interval) {
+        return interval.getStart().toEpochMilli() >= startMillis && interval.getEnd().toEpochMilli() <= getEndMillis();
+    }
+
+    //#endregion
+    /////////////////////////////// QUERIES ///////////////////////////////////
+    //#region Queries
+
+    /**
+     * @param millis The time to query.
+     * @return The altitude of the Sun, interpolated between samples.
+     *
+     * @throws IllegalArgumentException If the time is outside of the samples.
+     */
+    public double getSunAltitude(long millis) {
+        return QualityCurve.interpolate(sunAltitude, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return The altitude of the Moon, interpolated between samples.
+     *
+     * @throws IllegalArgumentException If the time is outside of the samples.
+     */
+    public double getMoonAltitude(long millis) {
+        return QualityCurve.interpolate(moonAltitude, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return The illuminated fraction of the Moon (0-1), interpolated between samples.
+     *
+     * @throws IllegalArgumentException If the time is outside of the samples.
+     */
+    public double getMoonIllumination(long millis) {
+        return QualityCurve.interpolate(moonIllumination, startMillis, stepMillis, millis);
+    }
+
+    /**
+     * @param millis The time to query.
+     * @return {@code true} if the Sun is below the dawn line.
+     *
+     * @throws IllegalArgumentException If the time is outside of the samples.
+     */
+    public boolean isDark(long millis) {
+        return getSunAltitude(millis) <= dawnLine;
+    }
+
+    /**
+     * Rates a target sampled at the same times as these conditions.
+     * <p>
+     * At each sample, the quality is the inverse of the airmass times the
+     * Moon factor, or 0 if the target is below the horizon or it isn't dark.
+     * The Moon factor is 1 when the Moon is below the horizon or the target
+     * is further from it than {@code moonAvoidance} scaled by the
+     * illumination, and falls linearly with the separation otherwise.
+     *
+     * @param altitude The altitude of the target at each sample.
+     * @param azimuth The azimuth of the target at each sample.
+     *
+     * @return The {@link QualityCurve} of the target.
+     *
+     * @throws IllegalArgumentException If the arrays are not as long as the samples.
+     */
+    public QualityCurve curveFor(double[] altitude, double[] azimuth) {
+        int size = size();
+        if (altitude.length != size || azimuth.length != size)
+            throw new IllegalArgumentException("The target must be sampled at the same times as the sky");
+
+        double[] airmass = new double[size];
+        double[] separation = new double[size];
+        double[] moonFactor = new double[size];
+        double[] quality = new double[size];
+        for (int i = 0; i < size; i++) {
+            airmass[i] = airmass(altitude[i]);
+            separation[i] = separation(altitude[i], azimuth[i], moonAltitude[i], moonAzimuth[i]);
+
+            double required = moonAvoidance * moonIllumination[i];
+            moonFactor[i] = (moonAltitude[i] <= 0.0 || separation[i] >= required) ? 1.0 : separation[i] / required;
+
+            boolean observable = altitude[i] > 0.0 && sunAltitude[i] <= dawnLine;
+            quality[i] = observable ? moonFactor[i] / airmass[i] : 0.0;
+        }
+
+        return new QualityCurve(startMillis, stepMillis, altitude, airmass, separation, moonFactor, quality);
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Relative airmass at an altitude (Kasten and Young, 1989), which stays
+     * finite down to the horizon.
+     *
+     * @param altitude The apparent altitude, in decimal degrees.
+     *
+     * @return The airmass, 1 at the zenith. {@link Double#POSITIVE_INFINITY}
+     *         below the horizon.
+     */
+    public static double airmass(double altitude) {
+        if (altitude <= 0.0)
+            return Double.POSITIVE_INFINITY;
+        return 1.0 / (Math.sin(Math.toRadians(altitude)) + 0.50572 * Math.pow(altitude + 6.07995, -1.6364));
+    }
+
+    /**
+     * Angular separation between two points in horizontal coordinates.
+     *
+     * @return The separation, in decimal degrees (0-180).
+     */
+    public static double separation(double alt1, double az1, double alt2, double az2) {
+        double a1 = Math.toRadians(alt1);
+        double a2 = Math.toRadians(alt2);
+        double dAz = Math.toRadians(az2 - az1);
+        // Haversine, well-conditioned for small separations
+        double h = Math.pow(Math.sin((a2 - a1) / 2), 2) + Math.cos(a1) * Math.cos(a2) * Math.pow(Math.sin(dAz / 2), 2);
+        return Math.toDegrees(2 * Math.asin(Math.min(1.0, Math.sqrt(h))));
+    }
+
+    //#endregion
+}
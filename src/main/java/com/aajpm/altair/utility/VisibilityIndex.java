@@ -0,0 +1,369 @@
+package com.aajpm.altair.utility;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A precomputed index of the windows at which a set of objects is observable
+ * during a night, so the scheduler doesn't have to ask an ephemerides solver
+ * every time.
+ * <p>
+ * The windows are kept in primitive arrays, grouped by object (sorted by ID)
+ * for point lookups, plus an {@link IntervalTree} over them for range and
+ * stabbing queries, so circumpolar objects that are observable all night
+ * don't make every query scan the whole night.
+ * <p>
+ * The index is immutable. Use a {@link Builder} to create one and
+ * {@link #without(long)} to drop an object after it changes.
+ */
+public final class VisibilityIndex {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private final Interval night;
+
+    /** IDs of the indexed objects, sorted */
+    private final long[] ids;
+
+    /** Windows of {@code ids[i]} are {@code [offsets[i], offsets[i + 1])} */
+    private final int[] offsets;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    /** The windows, for range queries */
+    private final IntervalTree tree;
+
+    private final long maxWindowMillis;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    private VisibilityIndex(Interval night, long[] ids, int[] offsets, long[] starts, long[] ends) {
+        this.night = night;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.starts = starts;
+        this.ends = ends;
+
+        long max = 0;
+        for (int i = 0; i < starts.length; i++) {
+            max = Math.max(max, ends[i] - starts[i]);
+        }
+        this.maxWindowMillis = max;
+        this.tree = new IntervalTree(starts, ends);
+    }
+
+    //#endregion
+    ////////////////////////////// ACCESSORS //////////////////////////////////
+    //#region Accessors
+
+    /**
+     * @return The night covered by the index.
+     */
+    public Interval getNight() {
+        return night;
+    }
+
+    /**
+     * @return How many objects are indexed.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return The length of the longest window, in milliseconds.
+     */
+    public long getMaxWindowMillis() {
+        return maxWindowMillis;
+    }
+
+    /**
+     * Checks if the index can answer queries about an interval, i.e. if the
+     * interval is within the night.
+     *
+     * @param interval The interval to check.
+     *
+     * @return {@code true} if the interval is within the night.
+     */
+    public boolean covers(Interval interval) {
+        return !interval.getStart().isBefore(night.getStart()) && !interval.getEnd().isAfter(night.getEnd());
+    }
+
+    /**
+     * Checks if an object is indexed.
+     *
+     * @param id The ID of the object.
+     *
+     * @return {@code true} if the object is indexed, even if it isn't
+     *         observable at all during the night.
+     */
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    //#endregion
+    /////////////////////////////// QUERIES ///////////////////////////////////
+    //#region Queries
+
+    /**
+     * Gets the observable windows of an object.
+     *
+     * @param id The ID of the object.
+     *
+     * @return The windows of the object, sorted by start, or an empty
+     *         {@link List} if it isn't observable or isn't indexed.
+     */
+    public List<Interval> getWindows(long id) {
+        int slot = Arrays.binarySearch(ids, id);
+        if (slot < 0)
+            return List.of();
+
+        List<Interval> ret = new ArrayList<>(offsets[slot + 1] - offsets[slot]);
+        for (int w = offsets[slot]; w < offsets[slot + 1]; w++) {
+            ret.add(toInterval(starts[w], ends[w]));
+        }
+        return ret;
+    }
+
+    /**
+     * Finds the first part of {@code range} at which an object is observable.
+     *
+     * @param id The ID of the object.
+     * @param range The range to check.
+     *
+     * @return The first window of the object clamped to {@code range}, or
+     *         {@link Interval#empty()} if it isn't observable during it.
+     */
+    public Interval firstWindow(long id, Interval range) {
+        int slot = Arrays.binarySearch(ids, id);
+        if (slot < 0)
+            return Interval.empty();
+
+        long from = range.getStart().toEpochMilli();
+        long to = range.getEnd().toEpochMilli();
+        for (int w = offsets[slot]; w < offsets[slot + 1]; w++) {
+            long start = Math.max(starts[w], from);
+            long end = Math.min(ends[w], to);
+            if (start < end)
+                return toInterval(start, end);
+        }
+        return Interval.empty();
+    }
+
+    /**
+     * Checks if an object is observable during the whole {@code range}.
+     *
+     * @param id The ID of the object.
+     * @param range The range to check.
+     *
+     * @return {@code true} if a single window of the object contains the range.
+     */
+    public boolean isObservableDuring(long id, Interval range) {
+        int slot = Arrays.binarySearch(ids, id);
+        if (slot < 0)
+            return false;
+
+        long from = range.getStart().toEpochMilli();
+        long to = range.getEnd().toEpochMilli();
+        for (int w = offsets[slot]; w < offsets[slot + 1]; w++) {
+            if (starts[w] <= from && ends[w] >= to)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the objects that are observable at some point of {@code range}.
+     *
+     * @param range The range to check.
+     *
+     * @return The IDs of the objects, sorted, without duplicates.
+     */
+    public long[] findObservable(Interval range) {
+        long from = range.getStart().toEpochMilli();
+        long to = range.getEnd().toEpochMilli();
+
+        int[] windows = tree.findOverlapping(from, to);
+        long[] found = new long[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            found[i] = ids[ownerOf(windows[i])];
+        }
+        return Arrays.stream(found).sorted().distinct().toArray();
+    }
+
+    /**
+     * Finds the objects that are observable at a given time.
+     *
+     * @param time The time to check.
+     *
+     * @return The IDs of the objects, sorted, without duplicates.
+     */
+    public long[] findObservable(Instant time) {
+        return findObservable(new Interval(time, time.plusMillis(1)));
+    }
+
+    //#endregion
+    ////////////////////////////// OPERATIONS /////////////////////////////////
+    //#region Operations
+
+    /**
+     * Creates a copy of the index without an object, so queries about it go
+     * back to the solver until the index is rebuilt.
+     *
+     * @param id The ID of the object to drop.
+     *
+     * @return A new index without the object, or this one if it wasn't indexed.
+     */
+    public VisibilityIndex without(long id) {
+        int slot = Arrays.binarySearch(ids, id);
+        if (slot < 0)
+            return this;
+
+        int removed = offsets[slot + 1] - offsets[slot];
+
+        long[] newIds = new long[ids.length - 1];
+        System.arraycopy(ids, 0, newIds, 0, slot);
+        System.arraycopy(ids, slot + 1, newIds, slot, ids.length - slot - 1);
+
+        int[] newOffsets = new int[offsets.length - 1];
+        System.arraycopy(offsets, 0, newOffsets, 0, slot + 1);
+        for (int i = slot + 1; i < newOffsets.length; i++) {
+            newOffsets[i] = offsets[i + 1] - removed;
+        }
+
+        long[] newStarts = new long[starts.length - removed];
+        long[] newEnds = new long[ends.length - removed];
+        System.arraycopy(starts, 0, newStarts, 0, offsets[slot]);
+        System.arraycopy(ends, 0, newEnds, 0, offsets[slot]);
+        System.arraycopy(starts, offsets[slot + 1], newStarts, offsets[slot], starts.length - offsets[slot + 1]);
+        System.arraycopy(ends, offsets[slot + 1], newEnds, offsets[slot], ends.length - offsets[slot + 1]);
+
+        return new VisibilityIndex(night, newIds, newOffsets, newStarts, newEnds);
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Finds the object a window belongs to.
+     */
+    private int ownerOf(int window) {
+        // Last offset that is <= window, skipping objects without windows
+        int low = 0;
+        int high = ids.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= window) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static Interval toInterval(long start, long end) {
+        return new Interval(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end));
+    }
+
+    //#endregion
+    /////////////////////////////// BUILDER ///////////////////////////////////
+    //#region Builder
+
+    /**
+     * Collects the windows of each object to build a {@link VisibilityIndex}.
+     */
+    public static final class Builder {
+
+        private final Interval night;
+
+        private final List<long[]> entries = new ArrayList<>();
+
+        /**
+         * Creates a new {@link Builder}.
+         *
+         * @param night The night the index covers. Windows are clamped to it.
+         */
+        public Builder(Interval night) {
+            this.night = night;
+        }
+
+        /**
+         * Indexes an object, even if it has no windows, so the index knows it
+         * isn't observable.
+         *
+         * @param id The ID of the object.
+         *
+         * @return This builder.
+         */
+        public Builder add(long id) {
+            entries.add(new long[] {id, Long.MIN_VALUE, Long.MIN_VALUE});
+            return this;
+        }
+
+        /**
+         * Adds an observable window of an object.
+         *
+         * @param id The ID of the object.
+         * @param window The window. Empty windows only index the object, and
+         *               overlapping ones are merged.
+         *
+         * @return This builder.
+         */
+        public Builder add(long id, Interval window) {
+            long start = Math.max(window.getStart().toEpochMilli(), night.getStart().toEpochMilli());
+            long end = Math.min(window.getEnd().toEpochMilli(), night.getEnd().toEpochMilli());
+            if (window.isEmpty() || start >= end)
+                return add(id);
+
+            entries.add(new long[] {id, start, end});
+            return this;
+        }
+
+        /**
+         * @return The new {@link VisibilityIndex}.
+         */
+        public VisibilityIndex build() {
+            entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+            long[] ids = entries.stream().mapToLong(entry -> entry[0]).distinct().toArray();
+            int windows = (int) entries.stream().filter(entry -> entry[1] != Long.MIN_VALUE).count();
+
+            int[] offsets = new int[ids.length + 1];
+            long[] starts = new long[windows];
+            long[] ends = new long[windows];
+
+            int slot = -1;
+            int w = 0;
+            for (long[] entry : entries) {
+                while (slot < 0 || ids[slot] != entry[0]) {
+                    offsets[++slot] = w;
+                }
+                if (entry[1] == Long.MIN_VALUE)
+                    continue;
+
+                // Overlapping or adjacent windows of the same object are merged
+                if (w > offsets[slot] && entry[1] <= ends[w - 1]) {
+                    ends[w - 1] = Math.max(ends[w - 1], entry[2]);
+                } else {
+                    starts[w] = entry[1];
+                    ends[w] = entry[2];
+                    w++;
+                }
+            }
+            offsets[ids.length] = w;
+
+            return new VisibilityIndex(night, ids, offsets, Arrays.copyOf(starts, w), Arrays.copyOf(ends, w));
+        }
+    }
+
+    //#endregion
+}
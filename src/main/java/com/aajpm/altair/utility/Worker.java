@@ -0,0 +1,196 @@
+package com.aajpm.altair.utility;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A background worker with its own bounded pool of threads, so its jobs
+ * never wait behind the jobs of other workers, however long those take.
+ * <p>
+ * Every job belongs to a task and the worker keeps, per task:
+ * <ul>
+ * <li>{@code altair.worker.duration}: how long each run took, until the
+ * returned {@link Mono} terminated.</li>
+ * <li>{@code altair.worker.lag}: how late each run started, from when it was
+ * due or submitted.</li>
+ * <li>{@code altair.worker.overruns}: how many periodic runs were skipped
+ * because the previous one was still running.</li>
+ * </ul>
+ * All of them are tagged with the {@code worker} and {@code task}.
+ */
+public final class Worker implements Disposable {
+
+    private final String name;
+
+    private final Scheduler scheduler;
+
+    private final MeterRegistry registry;
+
+    private final Logger logger = LoggerFactory.getLogger(Worker.class);
+
+    /**
+     * Creates a new {@link Worker}.
+     *
+     * @param name The name of the worker, used for its threads and metrics.
+     * @param threads The maximum number of threads of the worker.
+     * @param registry Where to publish the metrics of the worker.
+     */
+    public Worker(String name, int threads, MeterRegistry registry) {
+        if (name == null || name.isBlank())
+            throw new IllegalArgumentException("name cannot be empty");
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        if (registry == null)
+            throw new IllegalArgumentException("registry cannot be null");
+
+        this.name = name;
+        this.registry = registry;
+        this.scheduler = Schedulers.newBoundedElastic(threads, Integer.MAX_VALUE, "altair-" + name);
+    }
+
+    /**
+     * @return The name of the worker.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The {@link Scheduler} of the worker, to move blocking steps of
+     *         a pipeline to its threads.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Runs a job on the worker.
+     *
+     * @param <T> The type of the result of the job.
+     * @param task The task the job belongs to, for the metrics.
+     * @param job The job, subscribed to on the threads of the worker.
+     *
+     * @return A {@link Mono} that runs the job when subscribed to.
+     */
+    public <T> Mono<T> run(String task, Mono<T> job) {
+        return Mono.defer(() -> {
+            long submitted = System.nanoTime();
+            return Mono.defer(() -> {
+                        long started = System.nanoTime();
+                        lag(task).record(started - submitted, TimeUnit.NANOSECONDS);
+                        return job.doFinally(signal -> duration(task).record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+                    })
+                    .subscribeOn(scheduler);
+        });
+    }
+
+    /**
+     * Runs a blocking job on the worker.
+     *
+     * @param <T> The type of the result of the job.
+     * @param task The task the job belongs to, for the metrics.
+     * @param job The job, called on the threads of the worker.
+     *
+     * @return A {@link Mono} that runs the job when subscribed to.
+     */
+    public <T> Mono<T> call(String task, Callable<T> job) {
+        return run(task, Mono.fromCallable(job));
+    }
+
+    /**
+     * Runs a job periodically on the worker. A run is never started while the
+     * previous one is still running: it's skipped and counted as an overrun.
+     *
+     * @param task The task the job belongs to, for the metrics.
+     * @param initialDelay The time until the first run.
+     * @param period The time between the start of each run.
+     * @param job Creates the job of each run.
+     *
+     * @return A {@link Disposable} to stop running the job.
+     */
+    public Disposable schedulePeriodically(String task, Duration initialDelay, Duration period, Supplier<? extends Mono<?>> job) {
+        if (period == null || period.isZero() || period.isNegative())
+            throw new IllegalArgumentException("period must be positive");
+
+        AtomicBoolean running = new AtomicBoolean(false);
+        AtomicLong due = new AtomicLong(System.nanoTime() + initialDelay.toNanos());
+        long periodNanos = period.toNanos();
+
+        return scheduler.schedulePeriodically(() -> {
+            long started = System.nanoTime();
+            long late = started - due.getAndAdd(periodNanos);
+            if (!running.compareAndSet(false, true)) {
+                overruns(task).increment();
+                return;
+            }
+
+            lag(task).record(Math.max(0, late), TimeUnit.NANOSECONDS);
+            Mono.defer(job)
+                .onErrorResume(e -> {
+                    logger.warn("Worker {}: Error running {}", name, task, e);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    duration(task).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    running.set(false);
+                })
+                .subscribe();
+        }, initialDelay.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return scheduler.isDisposed();
+    }
+
+    ///////////////////////////////// HELPERS /////////////////////////////////
+    //#region Helpers
+
+    // Micrometer keeps a single meter per name and tags, so these are cheap
+
+    private Timer duration(String task) {
+        return Timer.builder("altair.worker.duration")
+                .description("How long the runs of a worker's task take")
+                .tag("worker", name)
+                .tag("task", task)
+                .register(registry);
+    }
+
+    private Timer lag(String task) {
+        return Timer.builder("altair.worker.lag")
+                .description("How late the runs of a worker's task start")
+                .tag("worker", name)
+                .tag("task", task)
+                .register(registry);
+    }
+
+    private Counter overruns(String task) {
+        return Counter.builder("altair.worker.overruns")
+                .description("Runs of a worker's task skipped because the previous one was still running")
+                .tag("worker", name)
+                .tag("task", task)
+                .register(registry);
+    }
+
+    //#endregion
+}
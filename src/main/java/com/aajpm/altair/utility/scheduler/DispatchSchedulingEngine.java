@@ -0,0 +1,271 @@
+package com.aajpm.altair.utility.scheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.aajpm.altair.utility.Interval;
+
+/**
+ * Plans the slot with a dispatch rule and improves it with a local search.
+ * <p>
+ * The dispatch walks the slot from the start, and at each step takes the next
+ * exposure of the best rated candidate that fits in its visible window. The
+ * candidates are rated by how good the sky is for them, how little time they
+ * have left to finish, their priority, and whether they are already being
+ * observed (to avoid slewing back and forth). If nothing fits, it waits until
+ * the next candidate rises.
+ * <p>
+ * The local search then swaps adjacent runs of exposures of different orders
+ * while that makes the exposures be taken through less airmass, and keeps
+ * every exposure in its window.
+ * <p>
+ * Only the candidates whose window has started and that still have exposures
+ * left are rated at each step, and the remaining exposures and time of each
+ * candidate are kept as counters, so a step doesn't depend on how much has
+ * been planned already.
+ */
+public class DispatchSchedulingEngine implements SchedulingEngine {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private static final double EPSILON = 1e-9;
+
+    private final double qualityWeight;
+
+    private final double urgencyWeight;
+
+    private final double priorityWeight;
+
+    private final double continuityWeight;
+
+    /** Maximum number of passes of the local search, 0 to disable it */
+    private final int localSearchPasses;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    public DispatchSchedulingEngine() {
+        this(1.0, 1.0, 0.5, 0.25, 8);
+    }
+
+    /**
+     * Creates a new {@link DispatchSchedulingEngine}.
+     *
+     * @param qualityWeight How much the quality of the sky counts.
+     * @param urgencyWeight How much counts the fraction of the remaining
+     *                      window of a candidate needed to finish it.
+     * @param priorityWeight How much the priority of the order counts.
+     * @param continuityWeight Bonus to keep observing the same order.
+     * @param localSearchPasses Maximum number of passes of the local search,
+     *                          0 to disable it.
+     */
+    public DispatchSchedulingEngine(double qualityWeight, double urgencyWeight, double priorityWeight, double continuityWeight, int localSearchPasses) {
+        this.qualityWeight = qualityWeight;
+        this.urgencyWeight = urgencyWeight;
+        this.priorityWeight = priorityWeight;
+        this.continuityWeight = continuityWeight;
+        this.localSearchPasses = localSearchPasses;
+    }
+
+    //#endregion
+    ////////////////////////////// SCHEDULING /////////////////////////////////
+    //#region Scheduling
+
+    @Override
+    public <T> List<ScheduledExposure<T>> schedule(List<SchedulingCandidate<T>> candidates, Interval slot) {
+        List<Run> runs = dispatch(candidates, slot);
+        improve(candidates, runs);
+
+        List<ScheduledExposure<T>> plan = new ArrayList<>();
+        for (Run run : runs) {
+            SchedulingCandidate<T> candidate = candidates.get(run.candidate);
+            long start = run.start;
+            for (int i = run.firstExposure; i < run.firstExposure + run.count; i++) {
+                long end = start + candidate.getExposureMillis(i);
+                plan.add(new ScheduledExposure<>(candidate.getOrder(), start, end));
+                start = end;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Builds a first plan, taking the best rated exposure that fits at each step.
+     */
+    private <T> List<Run> dispatch(List<SchedulingCandidate<T>> candidates, Interval slot) {
+        int size = candidates.size();
+        long cursor = slot.getStart().toEpochMilli();
+        long slotEnd = slot.getEnd().toEpochMilli();
+
+        int[] byStart = IntStream.range(0, size)
+                                 .boxed()
+                                 .sorted(Comparator.comparingLong(i -> candidates.get(i).getVisibleStart()))
+                                 .mapToInt(Integer::intValue)
+                                 .toArray();
+        int pending = 0;
+
+        // Candidates whose window has started and that may still fit
+        int[] active = new int[size];
+        int activeSize = 0;
+
+        // Index of the next exposure and remaining exposure time of each candidate
+        int[] next = new int[size];
+        long[] remaining = new long[size];
+        for (int i = 0; i < size; i++) {
+            SchedulingCandidate<T> candidate = candidates.get(i);
+            for (int j = 0; j < candidate.size(); j++) {
+                remaining[i] += candidate.getExposureMillis(j);
+            }
+        }
+
+        List<Run> runs = new ArrayList<>();
+        Run last = null;
+        while (cursor < slotEnd) {
+            while (pending < size && candidates.get(byStart[pending]).getVisibleStart() <= cursor) {
+                active[activeSize++] = byStart[pending++];
+            }
+
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < activeSize; k++) {
+                int i = active[k];
+                SchedulingCandidate<T> candidate = candidates.get(i);
+                // The exposures are sorted, so if the next one doesn't fit in the window, none will
+                if (next[i] >= candidate.size() || cursor + candidate.getExposureMillis(next[i]) > candidate.getVisibleEnd()) {
+                    active[k--] = active[--activeSize];
+                    continue;
+                }
+
+                long end = cursor + candidate.getExposureMillis(next[i]);
+                if (end > slotEnd)
+                    continue;
+
+                double score = score(candidate, cursor, end, remaining[i], last != null && last.candidate == i);
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+
+            if (best < 0) {
+                // Nothing fits now, wait for the next candidate to rise
+                if (pending >= size)
+                    break;
+                cursor = candidates.get(byStart[pending]).getVisibleStart();
+                continue;
+            }
+
+            long duration = candidates.get(best).getExposureMillis(next[best]);
+            if (last != null && last.candidate == best && last.end == cursor) {
+                last.count++;
+                last.end += duration;
+            } else {
+                last = new Run(best, next[best], cursor, cursor + duration);
+                runs.add(last);
+            }
+            next[best]++;
+            remaining[best] -= duration;
+            cursor += duration;
+        }
+
+        return runs;
+    }
+
+    /**
+     * Swaps adjacent runs while the plan gets better, see {@link #value}.
+     */
+    private <T> void improve(List<SchedulingCandidate<T>> candidates, List<Run> runs) {
+        boolean improved = true;
+        for (int pass = 0; pass < localSearchPasses && improved; pass++) {
+            improved = false;
+            for (int r = 0; r + 1 < runs.size(); r++) {
+                Run first = runs.get(r);
+                Run second = runs.get(r + 1);
+                if (first.end != second.start || first.candidate == second.candidate)
+                    continue;
+
+                SchedulingCandidate<T> a = candidates.get(first.candidate);
+                SchedulingCandidate<T> b = candidates.get(second.candidate);
+                long newSecondStart = first.start;
+                long newFirstStart = first.start + (second.end - second.start);
+                // Both runs must stay within their windows
+                if (newSecondStart < b.getVisibleStart() || second.end > a.getVisibleEnd())
+                    continue;
+
+                double gain = value(a, first, newFirstStart) + value(b, second, newSecondStart)
+                            - value(a, first, first.start) - value(b, second, second.start);
+                if (gain > EPSILON) {
+                    first.moveTo(newFirstStart);
+                    second.moveTo(newSecondStart);
+                    runs.set(r, second);
+                    runs.set(r + 1, first);
+                    improved = true;
+                }
+            }
+        }
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Rates taking the next exposure of a candidate between two times.
+     */
+    private double score(SchedulingCandidate<?> candidate, long start, long end, long remaining, boolean continues) {
+        double quality = candidate.getQuality(start + (end - start) / 2);
+        // Fraction of what's left of the window needed to finish the order
+        double urgency = Math.min(1.0, remaining / (double) Math.max(1L, candidate.getVisibleEnd() - start));
+
+        return qualityWeight * quality
+             + urgencyWeight * urgency
+             + priorityWeight * candidate.getPriority()
+             + (continues ? continuityWeight : 0.0);
+    }
+
+    /**
+     * Rates a run if it started at some time, as the quality of the sky at the
+     * middle of each exposure weighted by its duration.
+     */
+    private static double value(SchedulingCandidate<?> candidate, Run run, long start) {
+        double value = 0.0;
+        for (int i = run.firstExposure; i < run.firstExposure + run.count; i++) {
+            long duration = candidate.getExposureMillis(i);
+            value += candidate.getQuality(start + duration / 2) * duration;
+            start += duration;
+        }
+        return value;
+    }
+
+    /** Consecutive exposures of the same candidate */
+    private static final class Run {
+
+        private final int candidate;
+
+        private final int firstExposure;
+
+        private int count = 1;
+
+        private long start;
+
+        private long end;
+
+        private Run(int candidate, int firstExposure, long start, long end) {
+            this.candidate = candidate;
+            this.firstExposure = firstExposure;
+            this.start = start;
+            this.end = end;
+        }
+
+        private void moveTo(long newStart) {
+            end += newStart - start;
+            start = newStart;
+        }
+    }
+
+    //#endregion
+}
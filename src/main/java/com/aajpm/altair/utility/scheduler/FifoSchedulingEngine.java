@@ -0,0 +1,55 @@
+package com.aajpm.altair.utility.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aajpm.altair.utility.Interval;
+
+/**
+ * Fills the slot in the order the candidates are given: the next exposure is
+ * always from the first candidate with an exposure left that fits before the
+ * end of the slot. The visible windows are not checked, as the candidates are
+ * expected to have been filtered already.
+ * <p>
+ * This is how Altair has always scheduled, kept for comparison and as a
+ * fallback.
+ */
+public class FifoSchedulingEngine implements SchedulingEngine {
+
+    @Override
+    public <T> List<ScheduledExposure<T>> schedule(List<SchedulingCandidate<T>> candidates, Interval slot) {
+        long cursor = slot.getStart().toEpochMilli();
+        long slotEnd = slot.getEnd().toEpochMilli();
+
+        List<ScheduledExposure<T>> plan = new ArrayList<>();
+        // Index of the next exposure of each candidate
+        int[] next = new int[candidates.size()];
+        // Candidates before it have no exposures left
+        int first = 0;
+
+        boolean found = true;
+        while (found && cursor < slotEnd) {
+            found = false;
+            for (int i = first; i < candidates.size(); i++) {
+                SchedulingCandidate<T> candidate = candidates.get(i);
+                if (next[i] >= candidate.size()) {
+                    if (i == first)
+                        first++;
+                    continue;
+                }
+
+                long end = cursor + candidate.getExposureMillis(next[i]);
+                if (end <= slotEnd) {
+                    plan.add(new ScheduledExposure<>(candidate.getOrder(), cursor, end));
+                    next[i]++;
+                    cursor = end;
+                    found = true;
+                    break;
+                }
+            }
+        }
+
+        return plan;
+    }
+
+}
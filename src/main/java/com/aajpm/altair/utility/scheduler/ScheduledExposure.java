@@ -0,0 +1,56 @@
+package com.aajpm.altair.utility.scheduler;
+
+import java.time.Instant;
+
+import com.aajpm.altair.utility.Interval;
+
+/**
+ * An exposure of an order planned by a {@link SchedulingEngine}.
+ *
+ * @param <T> The type of the order.
+ */
+public final class ScheduledExposure<T> {
+
+    private final T order;
+
+    private final long startMillis;
+
+    private final long endMillis;
+
+    /**
+     * Creates a new {@link ScheduledExposure}.
+     *
+     * @param order The order the exposure belongs to.
+     * @param startMillis When the exposure starts.
+     * @param endMillis When the exposure ends.
+     */
+    public ScheduledExposure(T order, long startMillis, long endMillis) {
+        this.order = order;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    public T getOrder() {
+        return order;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * @return The time at which the exposure is planned.
+     */
+    public Interval getInterval() {
+        return new Interval(Instant.ofEpochMilli(startMillis), Instant.ofEpochMilli(endMillis));
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledExposure [order=" + order + ", interval=" + getInterval() + "]";
+    }
+}
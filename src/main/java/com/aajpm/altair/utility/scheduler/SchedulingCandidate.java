@@ -0,0 +1,141 @@
+package com.aajpm.altair.utility.scheduler;
+
+import java.util.Arrays;
+
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.QualityCurve;
+
+/**
+ * An order that can be scheduled, as seen by a {@link SchedulingEngine}.
+ *
+ * @param <T> The type of the order.
+ */
+public final class SchedulingCandidate<T> {
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private final T order;
+
+    private final long visibleStart;
+
+    private final long visibleEnd;
+
+    /** Durations of the remaining exposures, in ms, shortest first */
+    private final long[] exposureMillis;
+
+    /** 0 (lowest) to 1 (highest) */
+    private final double priority;
+
+    /** How good the sky is for the target, or {@code null} if unknown */
+    private final QualityCurve quality;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    /**
+     * Creates a new {@link SchedulingCandidate}.
+     *
+     * @param order The order to schedule.
+     * @param visible When the target of the order can be observed.
+     * @param exposureMillis The durations of the remaining exposures, in
+     *                       milliseconds. They are sorted shortest first.
+     * @param priority The priority of the order, from 0 (lowest) to 1 (highest).
+     * @param quality How good the sky is for the target, or {@code null} to
+     *                rate every time of the window the same.
+     *
+     * @throws IllegalArgumentException If the window is empty, there are no
+     *                                  exposures or any of them is negative.
+     */
+    public SchedulingCandidate(T order, Interval visible, long[] exposureMillis, double priority, QualityCurve quality) {
+        if (visible == null || visible.isEmpty())
+            throw new IllegalArgumentException("The visible window of a candidate cannot be empty");
+        if (exposureMillis.length == 0)
+            throw new IllegalArgumentException("A candidate needs at least one exposure");
+
+        this.order = order;
+        this.visibleStart = visible.getStart().toEpochMilli();
+        this.visibleEnd = visible.getEnd().toEpochMilli();
+        this.exposureMillis = exposureMillis.clone();
+        Arrays.sort(this.exposureMillis);
+        if (this.exposureMillis[0] < 0)
+            throw new IllegalArgumentException("The exposures of a candidate cannot be negative");
+        this.priority = Math.max(0.0, Math.min(1.0, priority));
+        this.quality = quality;
+    }
+
+    private SchedulingCandidate(SchedulingCandidate<T> other, long[] exposureMillis) {
+        this.order = other.order;
+        this.visibleStart = other.visibleStart;
+        this.visibleEnd = other.visibleEnd;
+        this.exposureMillis = exposureMillis;
+        this.priority = other.priority;
+        this.quality = other.quality;
+    }
+
+    /**
+     * Drops the shortest exposures, for when they have been planned elsewhere.
+     *
+     * @param count How many exposures to drop.
+     *
+     * @return A candidate with the rest of the exposures, this same one if
+     *         {@code count} is not positive, or {@code null} if none are left.
+     */
+    public SchedulingCandidate<T> skip(int count) {
+        if (count <= 0)
+            return this;
+        if (count >= exposureMillis.length)
+            return null;
+        return new SchedulingCandidate<>(this, Arrays.copyOfRange(exposureMillis, count, exposureMillis.length));
+    }
+
+    //#endregion
+    ////////////////////////////// ACCESSORS //////////////////////////////////
+    //#region Accessors
+
+    public T getOrder() {
+        return order;
+    }
+
+    public long getVisibleStart() {
+        return visibleStart;
+    }
+
+    public long getVisibleEnd() {
+        return visibleEnd;
+    }
+
+    /**
+     * @return The number of remaining exposures.
+     */
+    public int size() {
+        return exposureMillis.length;
+    }
+
+    /**
+     * @param index The index of the exposure, shortest first.
+     * @return The duration of the exposure, in milliseconds.
+     */
+    public long getExposureMillis(int index) {
+        return exposureMillis[index];
+    }
+
+    public double getPriority() {
+        return priority;
+    }
+
+    /**
+     * Rates the sky for the target at a time.
+     *
+     * @param millis The time to rate.
+     *
+     * @return The quality of the sky, see {@link QualityCurve#getQuality(long)},
+     *         or 1 if it is unknown.
+     */
+    public double getQuality(long millis) {
+        return (quality != null && quality.covers(millis)) ? quality.getQuality(millis) : 1.0;
+    }
+
+    //#endregion
+}
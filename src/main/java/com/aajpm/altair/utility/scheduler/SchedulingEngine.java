@@ -0,0 +1,29 @@
+package com.aajpm.altair.utility.scheduler;
+
+import java.util.List;
+
+import com.aajpm.altair.utility.Interval;
+
+/**
+ * Plans which exposures are taken during a free slot of the night.
+ * <p>
+ * Each {@link SchedulingCandidate} is an order with its visible window and
+ * the durations of its remaining exposures, which must be taken shortest
+ * first. An engine decides which of them are taken and when, without
+ * overlapping each other or leaving the slot.
+ */
+public interface SchedulingEngine {
+
+    /**
+     * Plans the exposures to take during a slot.
+     *
+     * @param <T> The type of the orders being scheduled.
+     * @param candidates The orders that can be scheduled in the slot.
+     * @param slot The free slot to fill.
+     *
+     * @return The planned exposures, sorted by start time. An order appears
+     *         once per exposure, and its exposures are planned shortest first.
+     */
+    <T> List<ScheduledExposure<T>> schedule(List<SchedulingCandidate<T>> candidates, Interval slot);
+
+}
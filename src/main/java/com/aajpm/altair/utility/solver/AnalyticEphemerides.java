@@ -0,0 +1,704 @@
+package com.aajpm.altair.utility.solver;
+
+import java.util.Locale;
+
+/**
+ * Low-precision analytic ephemerides for the Sun, the Moon and the planets,
+ * plus Keplerian propagation of arbitrary {@link OrbitalElements}.
+ * <p>
+ * Everything in here is plain arithmetic over static coefficient tables: no
+ * I/O, no allocations other than the caller's output arrays, and each position
+ * is evaluated in a few microseconds. The accuracy is more than enough for
+ * scheduling and pointing checks:
+ * <ul>
+ *   <li>Sun: ~0.01&deg; (Meeus, <i>Astronomical Algorithms</i>, ch. 25).</li>
+ *   <li>Moon: ~0.05&deg; (main terms of ELP-2000/82, Meeus ch. 47).</li>
+ *   <li>Planets: ~1' (Standish's Keplerian elements, valid 1800-2050).</li>
+ *   <li>Small bodies: as good as the elements, degrading away from their epoch.</li>
+ * </ul>
+ * Angles are in decimal degrees and times in milliseconds since the Unix epoch
+ * unless stated otherwise.
+ */
+public final class AnalyticEphemerides {
+
+    private AnalyticEphemerides() {
+        // Static utility class
+    }
+
+    ///////////////////////////////// CONSTANTS ///////////////////////////////
+    //#region Constants
+
+    /** Julian Day of the Unix epoch */
+    private static final double JD_UNIX_EPOCH = 2440587.5;
+
+    /** Julian Day of J2000.0 */
+    private static final double JD_J2000 = 2451545.0;
+
+    private static final double MILLIS_PER_DAY = 86400000.0;
+
+    private static final double DAYS_PER_CENTURY = 36525.0;
+
+    /**
+     * TT - UT1, in seconds. Changes by less than a second per year, so a fixed
+     * value is enough for this precision.
+     */
+    private static final double DELTA_T = 69.2;
+
+    /** Astronomical Unit, in km */
+    public static final double AU_KM = 149597870.7;
+
+    /** Earth's equatorial radius, in km */
+    private static final double EARTH_RADIUS_KM = 6378.14;
+
+    /** Light time for 1 AU, in days */
+    private static final double LIGHT_TIME_DAYS_PER_AU = 0.0057755183;
+
+    /** Obliquity of the ecliptic at J2000, in decimal degrees */
+    private static final double OBLIQUITY_J2000 = 23.4392911;
+
+    private static final double SUN_RADIUS_KM = 696000.0;
+
+    private static final double MOON_RADIUS_KM = 1737.4;
+
+    //#endregion
+    /////////////////////////////////// BODIES ////////////////////////////////
+    //#region Bodies
+
+    /**
+     * The bodies with a built-in analytic model.
+     */
+    public enum Body {
+        SUN("10", "SOL"),
+        MOON("301", "LUNA"),
+        MERCURY("199"),
+        VENUS("299"),
+        MARS("499"),
+        JUPITER("599"),
+        SATURN("699"),
+        URANUS("799"),
+        NEPTUNE("899"),
+        PLUTO("999");
+
+        private final String horizonsId;
+        private final String[] aliases;
+
+        Body(String horizonsId, String... aliases) {
+            this.horizonsId = horizonsId;
+            this.aliases = aliases;
+        }
+
+        /**
+         * Finds a body by its name, alias or JPL Horizons ID, ignoring case.
+         *
+         * @param name The name of the body.
+         *
+         * @return The matching {@link Body}, or {@code null} if there is none.
+         */
+        public static Body fromName(String name) {
+            if (name == null)
+                return null;
+            String key = name.trim().toUpperCase(Locale.US);
+            for (Body body : values()) {
+                if (body.name().equals(key) || body.horizonsId.equals(key))
+                    return body;
+                for (String alias : body.aliases) {
+                    if (alias.equals(key))
+                        return body;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The radius of the body in km, or 0 if its disk is not
+         *         relevant for rise/set calculations.
+         */
+        public double getRadius() {
+            switch (this) {
+                case SUN: return SUN_RADIUS_KM;
+                case MOON: return MOON_RADIUS_KM;
+                default: return 0.0;
+            }
+        }
+    }
+
+    /**
+     * Keplerian elements and rates per century from E.M. Standish, "Keplerian
+     * Elements for Approximate Positions of the Major Planets" (table 1, 1800-2050).
+     * Columns: a (AU), e, I, L, long. perihelion, long. node (degrees).
+     */
+    private static final double[][] PLANET_ELEMENTS = {
+        // Mercury
+        { 0.38709927, 0.20563593, 7.00497902, 252.25032350, 77.45779628, 48.33076593 },
+        { 0.00000037, 0.00001906, -0.00594749, 149472.67411175, 0.16047689, -0.12534081 },
+        // Venus
+        { 0.72333566, 0.00677672, 3.39467605, 181.97909950, 131.60246718, 76.67984255 },
+        { 0.00000390, -0.00004107, -0.00078890, 58517.81538729, 0.00268329, -0.27769418 },
+        // Earth-Moon barycentre
+        { 1.00000261, 0.01671123, -0.00001531, 100.46457166, 102.93768193, 0.0 },
+        { 0.00000562, -0.00004392, -0.01294668, 35999.37244981, 0.32327364, 0.0 },
+        // Mars
+        { 1.52371034, 0.09339410, 1.84969142, -4.55343205, -23.94362959, 49.55953891 },
+        { 0.00001847, 0.00007882, -0.00813131, 19140.30268499, 0.44441088, -0.29257343 },
+        // Jupiter
+        { 5.20288700, 0.04838624, 1.30439695, 34.39644051, 14.72847983, 100.47390909 },
+        { -0.00011607, -0.00013253, -0.00183714, 3034.74612775, 0.21252668, 0.20469106 },
+        // Saturn
+        { 9.53667594, 0.05386179, 2.48599187, 49.95424423, 92.59887831, 113.66242448 },
+        { -0.00125060, -0.00050991, 0.00193609, 1222.49362201, -0.41897216, -0.28867794 },
+        // Uranus
+        { 19.18916464, 0.04725744, 0.77263783, 313.23810451, 170.95427630, 74.01692503 },
+        { -0.00196176, -0.00004397, -0.00242939, 428.48202785, 0.40805281, 0.04240589 },
+        // Neptune
+        { 30.06992276, 0.00859048, 1.77004347, -55.12002969, 44.96476227, 131.78422574 },
+        { 0.00026291, 0.00005105, 0.00035372, 218.45945325, -0.32241464, -0.00508664 },
+        // Pluto
+        { 39.48211675, 0.24882730, 17.14001206, 238.92903833, 224.06891629, 110.30393684 },
+        { -0.00031596, 0.00005170, 0.00004818, 145.20780515, -0.04062942, -0.01183482 }
+    };
+
+    private static final int EARTH_INDEX = 2;
+
+    /**
+     * Periodic terms for the Moon's longitude and distance (Meeus, table 47.A).
+     * Columns: D, M, M', F, longitude (1e-6 deg), distance (1e-3 km).
+     */
+    private static final int[][] MOON_LR_TERMS = {
+        { 0, 0, 1, 0, 6288774, -20905355 },
+        { 2, 0, -1, 0, 1274027, -3699111 },
+        { 2, 0, 0, 0, 658314, -2955968 },
+        { 0, 0, 2, 0, 213618, -569925 },
+        { 0, 1, 0, 0, -185116, 48888 },
+        { 0, 0, 0, 2, -114332, -3149 },
+        { 2, 0, -2, 0, 58793, 246158 },
+        { 2, -1, -1, 0, 57066, -152138 },
+        { 2, 0, 1, 0, 53322, -170733 },
+        { 2, -1, 0, 0, 45758, -204586 },
+        { 0, 1, -1, 0, -40923, -129620 },
+        { 1, 0, 0, 0, -34720, 108743 },
+        { 0, 1, 1, 0, -30383, 104755 },
+        { 2, 0, 0, -2, 15327, 10321 },
+        { 0, 0, 1, 2, -12528, 0 },
+        { 0, 0, 1, -2, 10980, 79661 },
+        { 4, 0, -1, 0, 10675, -34782 },
+        { 0, 0, 3, 0, 10034, -23210 },
+        { 4, 0, -2, 0, 8548, -21636 },
+        { 2, 1, -1, 0, -7888, 24208 },
+        { 2, 1, 0, 0, -6766, 30824 },
+        { 1, 0, -1, 0, -5163, -8379 },
+        { 1, 1, 0, 0, 4987, -16675 },
+        { 2, -1, 1, 0, 4036, -12831 },
+        { 2, 0, 2, 0, 3994, -10445 },
+        { 4, 0, 0, 0, 3861, -11650 },
+        { 2, 0, -3, 0, 3665, 14403 },
+        { 0, 1, -2, 0, -2689, -7003 },
+        { 2, 0, -1, 2, -2602, 0 },
+        { 2, -1, -2, 0, 2390, 10056 },
+        { 1, 0, 1, 0, -2348, 6322 },
+        { 2, -2, 0, 0, 2236, -9884 }
+    };
+
+    /**
+     * Periodic terms for the Moon's latitude (Meeus, table 47.B).
+     * Columns: D, M, M', F, latitude (1e-6 deg).
+     */
+    private static final int[][] MOON_B_TERMS = {
+        { 0, 0, 0, 1, 5128122 },
+        { 0, 0, 1, 1, 280602 },
+        { 0, 0, 1, -1, 277693 },
+        { 2, 0, 0, -1, 173237 },
+        { 2, 0, -1, 1, 55413 },
+        { 2, 0, -1, -1, 46271 },
+        { 2, 0, 0, 1, 32573 },
+        { 0, 0, 2, 1, 17198 },
+        { 2, 0, 1, -1, 9266 },
+        { 0, 0, 2, -1, 8822 },
+        { 2, -1, 0, -1, 8216 },
+        { 2, 0, -2, -1, 4324 },
+        { 2, 0, 1, 1, 4200 },
+        { 2, 1, 0, -1, -3359 },
+        { 2, -1, -1, 1, 2463 },
+        { 2, -1, 0, 1, 2211 },
+        { 2, -1, -1, -1, 2065 }
+    };
+
+    //#endregion
+    ///////////////////////////////// TIME SCALES /////////////////////////////
+    //#region Time scales
+
+    /**
+     * Converts a timestamp into a Julian Day (UT).
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     *
+     * @return The Julian Day, in UT.
+     */
+    public static double julianDay(long epochMillis) {
+        return epochMillis / MILLIS_PER_DAY + JD_UNIX_EPOCH;
+    }
+
+    /**
+     * Converts a timestamp into Julian centuries of TT since J2000.0, the time
+     * argument of most of the series.
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     *
+     * @return The Julian centuries since J2000.0, in TT.
+     */
+    public static double julianCenturiesTT(long epochMillis) {
+        double jdTT = julianDay(epochMillis) + DELTA_T / 86400.0;
+        return (jdTT - JD_J2000) / DAYS_PER_CENTURY;
+    }
+
+    //#endregion
+    ////////////////////////////// NUTATION/OBLIQUITY /////////////////////////
+    //#region Nutation and obliquity
+
+    /**
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return The mean obliquity of the ecliptic, in decimal degrees.
+     */
+    public static double meanObliquity(double t) {
+        return (84381.448 + t * (-46.8150 + t * (-0.00059 + t * 0.001813))) / 3600.0;
+    }
+
+    /**
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return The true obliquity of the ecliptic, in decimal degrees.
+     */
+    public static double trueObliquity(double t) {
+        return meanObliquity(t) + nutationInObliquity(t);
+    }
+
+    /**
+     * Nutation in longitude (&Delta;&psi;), using the four main terms.
+     *
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return &Delta;&psi;, in decimal degrees.
+     */
+    public static double nutationInLongitude(double t) {
+        double omega = 125.04452 - 1934.136261 * t;
+        double sunL = 280.4665 + 36000.7698 * t;
+        double moonL = 218.3165 + 481267.8813 * t;
+        return (-17.20 * sinDeg(omega) - 1.32 * sinDeg(2 * sunL)
+                - 0.23 * sinDeg(2 * moonL) + 0.21 * sinDeg(2 * omega)) / 3600.0;
+    }
+
+    /**
+     * Nutation in obliquity (&Delta;&epsilon;), using the four main terms.
+     *
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return &Delta;&epsilon;, in decimal degrees.
+     */
+    public static double nutationInObliquity(double t) {
+        double omega = 125.04452 - 1934.136261 * t;
+        double sunL = 280.4665 + 36000.7698 * t;
+        double moonL = 218.3165 + 481267.8813 * t;
+        return (9.20 * cosDeg(omega) + 0.57 * cosDeg(2 * sunL)
+                + 0.10 * cosDeg(2 * moonL) - 0.09 * cosDeg(2 * omega)) / 3600.0;
+    }
+
+    //#endregion
+    /////////////////////////////////// POSITIONS /////////////////////////////
+    //#region Positions
+
+    /**
+     * Calculates the apparent geocentric equatorial coordinates of a body.
+     *
+     * @param body The body to calculate.
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param out An array of at least 3 elements, where the Right Ascension
+     *            (decimal degrees), Declination (decimal degrees) and distance
+     *            (AU) will be written.
+     */
+    public static void apparentPosition(Body body, long epochMillis, double[] out) {
+        double t = julianCenturiesTT(epochMillis);
+        switch (body) {
+            case SUN:
+                sunPosition(t, out);
+                break;
+            case MOON:
+                moonPosition(t, out);
+                break;
+            default:
+                planetPosition(body.ordinal() - Body.MERCURY.ordinal(), t, out);
+                break;
+        }
+    }
+
+    /**
+     * Calculates the apparent geocentric equatorial coordinates of a body
+     * orbiting the Sun, by Keplerian propagation of its orbital elements.
+     *
+     * @param elements The heliocentric orbital elements of the body.
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param out An array of at least 3 elements, where the Right Ascension
+     *            (decimal degrees), Declination (decimal degrees) and distance
+     *            (AU) will be written.
+     */
+    public static void apparentPosition(OrbitalElements elements, long epochMillis, double[] out) {
+        double t = julianCenturiesTT(epochMillis);
+        double[] earth = new double[3];
+        double[] target = new double[3];
+        heliocentricPlanet(EARTH_INDEX, t, earth);
+
+        double elementsT = julianCenturiesTT(elements.epoch().toEpochMilli());
+        double distance = 0.0;
+        // Two passes: the second one corrects for light time
+        for (int pass = 0; pass < 2; pass++) {
+            double days = (t - elementsT) * DAYS_PER_CENTURY - distance * LIGHT_TIME_DAYS_PER_AU;
+            double meanAnomaly = elements.meanAnomaly() + elements.meanMotion() * days;
+            keplerToEcliptic(elements.semiMajorAxis(), elements.eccentricity(), elements.inclination(),
+                             elements.ascendingNode(), elements.argumentOfPerihelion(), meanAnomaly, target);
+            distance = eclipticToApparent(target, earth, t, out);
+        }
+    }
+
+    /**
+     * Sun position, from Meeus ch. 25 (low accuracy method), corrected for
+     * nutation and aberration.
+     */
+    private static void sunPosition(double t, double[] out) {
+        double l0 = 280.46646 + t * (36000.76983 + t * 0.0003032);
+        double m = 357.52911 + t * (35999.05029 - t * 0.0001537);
+        double e = 0.016708634 - t * (0.000042037 + t * 0.0000001267);
+        double c = (1.914602 - t * (0.004817 + t * 0.000014)) * sinDeg(m)
+                 + (0.019993 - t * 0.000101) * sinDeg(2 * m)
+                 + 0.000289 * sinDeg(3 * m);
+        double trueLongitude = l0 + c;
+        double trueAnomaly = m + c;
+        double r = 1.000001018 * (1 - e * e) / (1 + e * cosDeg(trueAnomaly));
+
+        double lambda = trueLongitude + nutationInLongitude(t) - 0.005691611 / r;
+        eclipticToEquatorial(lambda, 0.0, trueObliquity(t), out);
+        out[2] = r;
+    }
+
+    /**
+     * Moon position, from the main terms of Meeus ch. 47, corrected for nutation.
+     */
+    private static void moonPosition(double t, double[] out) {
+        double lp = 218.3164477 + t * (481267.88123421 + t * (-0.0015786 + t * (1.0 / 538841 - t / 65194000)));
+        double d = 297.8501921 + t * (445267.1114034 + t * (-0.0018819 + t * (1.0 / 545868 - t / 113065000)));
+        double m = 357.5291092 + t * (35999.0502909 + t * (-0.0001536 + t / 24490000));
+        double mp = 134.9633964 + t * (477198.8675055 + t * (0.0087414 + t * (1.0 / 69699 - t / 14712000)));
+        double f = 93.2720950 + t * (483202.0175233 + t * (-0.0036539 + t * (-1.0 / 3526000 + t / 863310000)));
+        double e = 1 - t * (0.002516 + t * 0.0000074);
+
+        double a1 = 119.75 + 131.849 * t;
+        double a2 = 53.09 + 479264.290 * t;
+        double a3 = 313.45 + 481266.484 * t;
+
+        double sumL = 0.0;
+        double sumR = 0.0;
+        for (int[] term : MOON_LR_TERMS) {
+            double arg = term[0] * d + term[1] * m + term[2] * mp + term[3] * f;
+            double eFactor = eccentricityFactor(term[1], e);
+            sumL += term[4] * eFactor * sinDeg(arg);
+            sumR += term[5] * eFactor * cosDeg(arg);
+        }
+
+        double sumB = 0.0;
+        for (int[] term : MOON_B_TERMS) {
+            double arg = term[0] * d + term[1] * m + term[2] * mp + term[3] * f;
+            sumB += term[4] * eccentricityFactor(term[1], e) * sinDeg(arg);
+        }
+
+        // Additive terms (Venus, Jupiter and flattening of the Earth)
+        sumL += 3958 * sinDeg(a1) + 1962 * sinDeg(lp - f) + 318 * sinDeg(a2);
+        sumB += -2235 * sinDeg(lp) + 382 * sinDeg(a3) + 175 * sinDeg(a1 - f)
+              + 175 * sinDeg(a1 + f) + 127 * sinDeg(lp - mp) - 115 * sinDeg(lp + mp);
+
+        double lambda = lp + sumL / 1e6 + nutationInLongitude(t);
+        double beta = sumB / 1e6;
+        double distanceKm = 385000.56 + sumR / 1000.0;
+
+        eclipticToEquatorial(lambda, beta, trueObliquity(t), out);
+        out[2] = distanceKm / AU_KM;
+    }
+
+    /**
+     * Planet position, from Standish's Keplerian elements, corrected for light
+     * time, precession and nutation.
+     */
+    private static void planetPosition(int planet, double t, double[] out) {
+        int index = planet >= EARTH_INDEX ? planet + 1 : planet;   // Skip the Earth-Moon barycentre
+        double[] earth = new double[3];
+        double[] target = new double[3];
+        heliocentricPlanet(EARTH_INDEX, t, earth);
+
+        double distance = 0.0;
+        // Two passes: the second one corrects for light time
+        for (int pass = 0; pass < 2; pass++) {
+            heliocentricPlanet(index, t - distance * LIGHT_TIME_DAYS_PER_AU / DAYS_PER_CENTURY, target);
+            distance = eclipticToApparent(target, earth, t, out);
+        }
+    }
+
+    /**
+     * Heliocentric ecliptic J2000 position of a planet, in AU.
+     */
+    private static void heliocentricPlanet(int index, double t, double[] out) {
+        double[] el = PLANET_ELEMENTS[2 * index];
+        double[] rate = PLANET_ELEMENTS[2 * index + 1];
+
+        double a = el[0] + rate[0] * t;
+        double e = el[1] + rate[1] * t;
+        double inc = el[2] + rate[2] * t;
+        double meanLongitude = el[3] + rate[3] * t;
+        double perihelion = el[4] + rate[4] * t;
+        double node = el[5] + rate[5] * t;
+
+        keplerToEcliptic(a, e, inc, node, perihelion - node, meanLongitude - perihelion, out);
+    }
+
+    /**
+     * Solves Kepler's equation and rotates the position into the ecliptic frame
+     * the elements are referred to.
+     */
+    @SuppressWarnings("java:S107")
+    private static void keplerToEcliptic(double a, double e, double inc, double node, double argPeri, double meanAnomaly, double[] out) {
+        double xOrb;
+        double yOrb;
+        if (e < 1.0) {
+            double m = degToRadNormalized(meanAnomaly);
+            double ea = e < 0.8 ? m : Math.PI;
+            for (int i = 0; i < 50; i++) {
+                double delta = (ea - e * Math.sin(ea) - m) / (1 - e * Math.cos(ea));
+                ea -= delta;
+                if (Math.abs(delta) < 1e-12)
+                    break;
+            }
+            xOrb = a * (Math.cos(ea) - e);
+            yOrb = a * Math.sqrt(1 - e * e) * Math.sin(ea);
+        } else {
+            // Hyperbolic orbit, a < 0
+            double m = Math.toRadians(meanAnomaly);
+            double ha = asinh(m / e);
+            for (int i = 0; i < 50; i++) {
+                double delta = (e * Math.sinh(ha) - ha - m) / (e * Math.cosh(ha) - 1);
+                ha -= delta;
+                if (Math.abs(delta) < 1e-12)
+                    break;
+            }
+            xOrb = a * (Math.cosh(ha) - e);
+            yOrb = -a * Math.sqrt(e * e - 1) * Math.sinh(ha);
+        }
+
+        double cw = cosDeg(argPeri);
+        double sw = sinDeg(argPeri);
+        double cn = cosDeg(node);
+        double sn = sinDeg(node);
+        double ci = cosDeg(inc);
+        double si = sinDeg(inc);
+
+        out[0] = (cw * cn - sw * sn * ci) * xOrb + (-sw * cn - cw * sn * ci) * yOrb;
+        out[1] = (cw * sn + sw * cn * ci) * xOrb + (-sw * sn + cw * cn * ci) * yOrb;
+        out[2] = (sw * si) * xOrb + (cw * si) * yOrb;
+    }
+
+    /**
+     * Takes heliocentric J2000 ecliptic positions of a target and the Earth and
+     * writes the apparent RA/Dec of date of the target into {@code out}.
+     *
+     * @return The geocentric distance, in AU.
+     */
+    private static double eclipticToApparent(double[] target, double[] earth, double t, double[] out) {
+        double x = target[0] - earth[0];
+        double y = target[1] - earth[1];
+        double z = target[2] - earth[2];
+        double distance = Math.sqrt(x * x + y * y + z * z);
+
+        double lambda = Math.toDegrees(Math.atan2(y, x));
+        double beta = Math.toDegrees(Math.asin(z / distance));
+        eclipticToEquatorial(lambda, beta, OBLIQUITY_J2000, out);
+        precessFromJ2000(out[0], out[1], t, out);
+        nutate(out[0], out[1], t, out);
+        out[2] = distance;
+        return distance;
+    }
+
+    //#endregion
+    ////////////////////////////// TRANSFORMATIONS ////////////////////////////
+    //#region Transformations
+
+    /**
+     * Converts ecliptic coordinates into equatorial coordinates.
+     *
+     * @param lambda The ecliptic longitude, in decimal degrees.
+     * @param beta The ecliptic latitude, in decimal degrees.
+     * @param obliquity The obliquity of the ecliptic, in decimal degrees.
+     * @param out Where to write the Right Ascension and Declination, in decimal degrees.
+     */
+    public static void eclipticToEquatorial(double lambda, double beta, double obliquity, double[] out) {
+        double sl = sinDeg(lambda);
+        double cb = cosDeg(beta);
+        double sb = sinDeg(beta);
+        double se = sinDeg(obliquity);
+        double ce = cosDeg(obliquity);
+
+        double ra = Math.atan2(sl * ce * cb - sb * se, cosDeg(lambda) * cb);
+        double dec = Math.asin(sb * ce + cb * se * sl);
+        out[0] = normalizeDegrees(Math.toDegrees(ra));
+        out[1] = Math.toDegrees(dec);
+    }
+
+    /**
+     * Precesses equatorial coordinates from J2000 to the mean equinox of date
+     * (Meeus, eq. 21.3-21.4).
+     *
+     * @param ra The J2000 Right Ascension, in decimal degrees.
+     * @param dec The J2000 Declination, in decimal degrees.
+     * @param t Julian centuries since J2000.0 (TT).
+     * @param out Where to write the precessed Right Ascension and Declination, in decimal degrees.
+     */
+    public static void precessFromJ2000(double ra, double dec, double t, double[] out) {
+        double zeta = t * (2306.2181 + t * (0.30188 + t * 0.017998)) / 3600.0;
+        double z = t * (2306.2181 + t * (1.09468 + t * 0.018203)) / 3600.0;
+        double theta = t * (2004.3109 - t * (0.42665 + t * 0.041833)) / 3600.0;
+
+        double cd = cosDeg(dec);
+        double sd = sinDeg(dec);
+        double ct = cosDeg(theta);
+        double st = sinDeg(theta);
+        double cra = cosDeg(ra + zeta);
+
+        double a = cd * sinDeg(ra + zeta);
+        double b = ct * cd * cra - st * sd;
+        double c = st * cd * cra + ct * sd;
+
+        out[0] = normalizeDegrees(Math.toDegrees(Math.atan2(a, b)) + z);
+        out[1] = Math.toDegrees(Math.asin(Math.max(-1.0, Math.min(1.0, c))));
+    }
+
+    /**
+     * Corrects mean equatorial coordinates of date for nutation (Meeus, eq. 23.1).
+     *
+     * @param ra The mean Right Ascension, in decimal degrees.
+     * @param dec The mean Declination, in decimal degrees.
+     * @param t Julian centuries since J2000.0 (TT).
+     * @param out Where to write the true Right Ascension and Declination, in decimal degrees.
+     */
+    public static void nutate(double ra, double dec, double t, double[] out) {
+        double dpsi = nutationInLongitude(t);
+        double deps = nutationInObliquity(t);
+        double eps = trueObliquity(t);
+
+        double tanDec = Math.tan(Math.toRadians(dec));
+        double dRa = (cosDeg(eps) + sinDeg(eps) * sinDeg(ra) * tanDec) * dpsi - cosDeg(ra) * tanDec * deps;
+        double dDec = sinDeg(eps) * cosDeg(ra) * dpsi + sinDeg(ra) * deps;
+
+        out[0] = normalizeDegrees(ra + dRa);
+        out[1] = dec + dDec;
+    }
+
+    /**
+     * Converts apparent geocentric equatorial coordinates into topocentric
+     * horizontal coordinates, optionally correcting for atmospheric refraction.
+     *
+     * @param ra The Right Ascension, in decimal degrees.
+     * @param dec The Declination, in decimal degrees.
+     * @param distance The distance to the body, in AU, used for the parallax
+     *                 correction. Use {@link Double#POSITIVE_INFINITY} for stars.
+     * @param lst The Local Sidereal Time, in decimal degrees, see
+     *            {@link CoordinateTransform#localSiderealTime(long, double)}.
+     * @param latitude The latitude of the observer, in decimal degrees north positive.
+     * @param refract If atmospheric refraction should be applied.
+     * @param out Where to write the Altitude and Azimuth (north=0, east=90), in decimal degrees.
+     */
+    @SuppressWarnings("java:S107")
+    public static void equatorialToHorizontal(double ra, double dec, double distance, double lst, double latitude, boolean refract, double[] out) {
+        double ha = Math.toRadians(lst - ra);
+        double decRad = Math.toRadians(dec);
+        double latRad = Math.toRadians(latitude);
+
+        double sinLat = Math.sin(latRad);
+        double cosLat = Math.cos(latRad);
+        double sinDec = Math.sin(decRad);
+        double cosDec = Math.cos(decRad);
+        double cosHa = Math.cos(ha);
+
+        double alt = Math.toDegrees(Math.asin(sinLat * sinDec + cosLat * cosDec * cosHa));
+        double az = Math.toDegrees(Math.atan2(-cosDec * Math.sin(ha), sinDec * cosLat - cosDec * cosHa * sinLat));
+
+        // Topocentric parallax in altitude
+        double sinParallax = EARTH_RADIUS_KM / (distance * AU_KM);
+        alt -= Math.toDegrees(Math.asin(sinParallax * cosDeg(alt)));
+
+        if (refract)
+            alt += refraction(alt);
+
+        out[0] = alt;
+        out[1] = normalizeDegrees(az);
+    }
+
+    /**
+     * Atmospheric refraction for standard conditions (Saemundsson's formula).
+     *
+     * @param trueAltitude The geometric altitude, in decimal degrees.
+     *
+     * @return The refraction to add to the altitude, in decimal degrees. 0 if
+     *         the body is well below the horizon.
+     */
+    public static double refraction(double trueAltitude) {
+        if (trueAltitude < -1.0)
+            return 0.0;
+        double h = Math.max(trueAltitude, -0.9);
+        return 1.02 / Math.tan(Math.toRadians(h + 10.3 / (h + 5.11))) / 60.0;
+    }
+
+    /**
+     * Calculates the apparent semi-diameter of a body.
+     *
+     * @param radiusKm The radius of the body, in km.
+     * @param distance The distance to the body, in AU.
+     *
+     * @return The semi-diameter, in decimal degrees.
+     */
+    public static double semiDiameter(double radiusKm, double distance) {
+        return Math.toDegrees(Math.asin(Math.min(1.0, radiusKm / (distance * AU_KM))));
+    }
+
+    //#endregion
+    ////////////////////////////////// HELPERS ////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Normalizes an angle into the 0-360 range.
+     *
+     * @param deg The angle, in decimal degrees.
+     *
+     * @return The same angle, in the range [0, 360).
+     */
+    public static double normalizeDegrees(double deg) {
+        double ret = deg % 360.0;
+        return ret < 0 ? ret + 360.0 : ret;
+    }
+
+    private static double eccentricityFactor(int m, double e) {
+        switch (Math.abs(m)) {
+            case 1: return e;
+            case 2: return e * e;
+            default: return 1.0;
+        }
+    }
+
+    private static double degToRadNormalized(double deg) {
+        double rad = Math.toRadians(normalizeDegrees(deg));
+        return rad > Math.PI ? rad - 2 * Math.PI : rad;
+    }
+
+    private static double asinh(double x) {
+        return Math.log(x + Math.sqrt(x * x + 1));
+    }
+
+    private static double sinDeg(double deg) {
+        return Math.sin(Math.toRadians(deg));
+    }
+
+    private static double cosDeg(double deg) {
+        return Math.cos(Math.toRadians(deg));
+    }
+
+    //#endregion
+}
@@ -0,0 +1,312 @@
+package com.aajpm.altair.utility.solver;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aajpm.altair.utility.Interval;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * An {@link EphemeridesSolver} that caches the results of another one in an
+ * {@link EphemeridesCache}, so repeated queries (the same night, the same
+ * body, the same site) are answered without calling the underlying solver.
+ * <p>
+ * Night intervals and rise/set times of named bodies are cached. Everything
+ * else is cheap to calculate and is passed straight to the delegate. Upcoming
+ * nights can be fetched in advance with {@link #prefetchNights(Instant, int)}.
+ */
+public class CachingEphemeridesSolver extends EphemeridesSolver {
+
+    /** How long past its end, or past now if it's already over, a cached interval is kept */
+    private static final Duration INTERVAL_RETENTION = Duration.ofDays(1);
+
+    /** How many times a body can rise in an observing day, the Moon at most twice */
+    private static final int MAX_RISINGS = 4;
+
+    /** The gap after a setting time to look for the next rising */
+    private static final Duration RISING_GAP = Duration.ofMinutes(1);
+
+    private static final String EMPTY_VALUE = "empty";
+
+    private final EphemeridesSolver delegate;
+
+    private final EphemeridesCache cache;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(CachingEphemeridesSolver.class);
+
+    /**
+     * Creates a new {@link CachingEphemeridesSolver}.
+     *
+     * @param delegate The solver that does the actual calculations.
+     * @param cache The cache to store the results in.
+     */
+    public CachingEphemeridesSolver(EphemeridesSolver delegate, EphemeridesCache cache) {
+        this(delegate, cache, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new {@link CachingEphemeridesSolver}.
+     *
+     * @param delegate The solver that does the actual calculations.
+     * @param cache The cache to store the results in, which should expire
+     *              its entries by the same clock.
+     * @param clock The clock that tells if an interval is already over.
+     */
+    public CachingEphemeridesSolver(EphemeridesSolver delegate, EphemeridesCache cache, Clock clock) {
+        super(delegate.getConfig());
+        this.delegate = delegate;
+        this.cache = cache;
+        this.clock = clock;
+    }
+
+    /**
+     * @return The solver that does the actual calculations.
+     */
+    public EphemeridesSolver getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return The cache the results are stored in.
+     */
+    public EphemeridesCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Writes what is left of the cache to disk. Called by Spring on shutdown.
+     */
+    public void close() {
+        cache.close();
+    }
+
+    ///////////////////////////////// CACHED //////////////////////////////////
+    //#region Cached
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Every time the body is above the altitude during an observing day,
+     * from local mean noon to the next one, is cached by body, site, altitude
+     * and day, so any search interval within that day hits the same entry.
+     * Search intervals that span more than one observing day aren't cached.
+     */
+    @Override
+    public Mono<Interval> getRiseSetTime(String body, Interval searchInterval, double targetAltitude) {
+        LocalDate day = getObservingDay(searchInterval.getStart());
+        Interval window = new Interval(getLocalNoon(day), Duration.ofDays(1));
+        if (searchInterval.getEnd().isAfter(window.getEnd())) {
+            return delegate.getRiseSetTime(body, searchInterval, targetAltitude);
+        }
+
+        String key = String.format(Locale.US, "riseset|%s|%s|%.4f|%s",
+                        siteKey(), body.trim().toUpperCase(Locale.US), targetAltitude, day);
+
+        String cached = cache.get(key);
+        if (cached != null) {
+            return Mono.just(firstWithin(parseIntervals(cached), searchInterval));
+        }
+
+        return intervalsAbove(body, window, targetAltitude)
+                .doOnNext(intervals -> cache.put(key, formatIntervals(intervals), expiry(window)))
+                .map(intervals -> firstWithin(intervals, searchInterval));
+    }
+
+    /**
+     * Gets every time a body is above an altitude during a window, asking the
+     * delegate again after each setting time.
+     */
+    private Mono<List<Interval>> intervalsAbove(String body, Interval window, double targetAltitude) {
+        return delegate.getRiseSetTime(body, window, targetAltitude)
+                .expand(interval -> {
+                    if (interval.isEmpty() || !interval.getEnd().plus(RISING_GAP).isBefore(window.getEnd()))
+                        return Mono.empty();
+                    Instant next = interval.getEnd().plus(RISING_GAP);
+                    return delegate.getRiseSetTime(body, new Interval(next, window.getEnd()), targetAltitude);
+                })
+                .take(MAX_RISINGS)
+                .filter(interval -> !interval.isEmpty())
+                .collectList();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Nights are cached per observing day, i.e. the night that follows the
+     * local mean noon of each day, so any {@code start} during the same day
+     * hits the same entry.
+     */
+    @Override
+    public Mono<Interval> getNightTime(Instant start) {
+        LocalDate day = getObservingDay(start);
+        return getNight(day).flatMap(night -> {
+            if (!start.isBefore(night.getEnd())) {     // Already over, use the next one
+                return getNight(day.plusDays(1));
+            }
+            return Mono.just(night);
+        }).map(night -> night.getStart().isBefore(start) ? new Interval(start, night.getEnd()) : night);
+    }
+
+    /**
+     * Calculates and caches the nights starting on the observing day of
+     * {@code from}, so they are available even without access to the
+     * underlying solver.
+     *
+     * @param from The time to start from.
+     * @param nights How many nights to fetch.
+     *
+     * @return A {@link Mono} that completes when all nights are cached.
+     */
+    public Mono<Void> prefetchNights(Instant from, int nights) {
+        LocalDate firstDay = getObservingDay(from);
+        return Flux.range(0, Math.max(0, nights))
+                .concatMap(i -> getNight(firstDay.plusDays(i))
+                    .onErrorResume(e -> {
+                        logger.debug("CachingEphemeridesSolver: Could not prefetch night of {}", firstDay.plusDays(i), e);
+                        return Mono.empty();
+                    }))
+                .then();
+    }
+
+    /**
+     * Gets the night that follows the local mean noon of the given day.
+     */
+    private Mono<Interval> getNight(LocalDate day) {
+        String key = String.format(Locale.US, "night|%s|%.4f|%s", siteKey(), config.getDawnLine(), day);
+
+        String cached = cache.get(key);
+        if (cached != null) {
+            return Mono.just(parseInterval(cached));
+        }
+
+        return delegate.getNightTime(getLocalNoon(day))
+                .doOnNext(night -> cache.put(key, formatInterval(night), expiry(night)));
+    }
+
+    //#endregion
+    /////////////////////////////// DELEGATED /////////////////////////////////
+    //#region Delegated
+
+    @Override
+    public Mono<double[]> getAltAz(String body, Instant time) {
+        return delegate.getAltAz(body, time);
+    }
+
+    @Override
+    public Mono<Boolean> isVisible(String body, Instant time, double targetAltitude) {
+        return delegate.isVisible(body, time, targetAltitude);
+    }
+
+    @Override
+    public Mono<Boolean> isVisible(double ra, double dec, Instant time, double targetAltitude) {
+        return delegate.isVisible(ra, dec, time, targetAltitude);
+    }
+
+    @Override
+    public Mono<Interval> getRiseSetTime(double ra, double dec, double latitude, double longitude, Interval searchInterval, double targetAltitude) {
+        return delegate.getRiseSetTime(ra, dec, latitude, longitude, searchInterval, targetAltitude);
+    }
+
+    @Override
+    public Mono<Interval[]> getRiseSetTimes(double[] ra, double[] dec, Interval searchInterval, double targetAltitude) {
+        return delegate.getRiseSetTimes(ra, dec, searchInterval, targetAltitude);
+    }
+
+    @Override
+    public Mono<Double> getLST(Instant time, double longitude, boolean useHoursInstead) {
+        return delegate.getLST(time, longitude, useHoursInstead);
+    }
+
+    @Override
+    public Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time, boolean refract) {
+        return delegate.raDecToAltAz(ra, dec, latitude, longitude, time, refract);
+    }
+
+    @Override
+    public double getRaDecToAltAzPrecision() {
+        return delegate.getRaDecToAltAzPrecision();
+    }
+
+    //#endregion
+    //////////////////////////////// HELPERS //////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Keeps an interval until a while after it ends, and the ones already
+     * over, like a past night being looked at again, for a while from now.
+     */
+    private Instant expiry(Interval interval) {
+        Instant now = clock.instant();
+        Instant end = interval.getEnd().isAfter(now) ? interval.getEnd() : now;
+        return end.plus(INTERVAL_RETENTION);
+    }
+
+    private String siteKey() {
+        return String.format(Locale.US, "%.4f,%.4f", config.getSiteLatitude(), config.getSiteLongitude());
+    }
+
+    private static String formatInterval(Interval interval) {
+        if (interval.equals(Interval.empty()))
+            return EMPTY_VALUE;
+        return interval.getStart().toEpochMilli() + "," + interval.getEnd().toEpochMilli();
+    }
+
+    private static Interval parseInterval(String value) {
+        if (EMPTY_VALUE.equals(value))
+            return Interval.empty();
+        String[] parts = value.split(",");
+        return new Interval(Instant.ofEpochMilli(Long.parseLong(parts[0])), Instant.ofEpochMilli(Long.parseLong(parts[1])));
+    }
+
+    private static String formatIntervals(List<Interval> intervals) {
+        if (intervals.isEmpty())
+            return EMPTY_VALUE;
+        return intervals.stream().map(CachingEphemeridesSolver::formatInterval).collect(Collectors.joining(";"));
+    }
+
+    private static List<Interval> parseIntervals(String value) {
+        if (EMPTY_VALUE.equals(value))
+            return List.of();
+        return Arrays.stream(value.split(";")).map(CachingEphemeridesSolver::parseInterval).toList();
+    }
+
+    /**
+     * Gets the first of the cached intervals that overlaps the search
+     * interval, clamped to it, as the delegate would have answered.
+     */
+    private static Interval firstWithin(List<Interval> intervals, Interval searchInterval) {
+        for (Interval interval : intervals) {
+            Interval clamped = clamp(interval, searchInterval);
+            if (!clamped.isEmpty())
+                return clamped;
+        }
+        return Interval.empty();
+    }
+
+    /**
+     * Clamps a cached interval to the search interval of the current query,
+     * as it might have been cached for a wider one.
+     */
+    private static Interval clamp(Interval interval, Interval searchInterval) {
+        if (interval.equals(Interval.empty()))
+            return interval;
+        Instant start = interval.getStart().isBefore(searchInterval.getStart()) ? searchInterval.getStart() : interval.getStart();
+        Instant end = interval.getEnd().isAfter(searchInterval.getEnd()) ? searchInterval.getEnd() : interval.getEnd();
+        return start.isBefore(end) ? new Interval(start, end) : Interval.empty();
+    }
+
+    //#endregion
+}
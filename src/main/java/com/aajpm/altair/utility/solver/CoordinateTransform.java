@@ -0,0 +1,542 @@
+package com.aajpm.altair.utility.solver;
+
+/**
+ * Transforms catalogue (J2000) equatorial coordinates into apparent
+ * equatorial and horizontal coordinates for an observer.
+ * <p>
+ * Everything that only depends on the time (precession, nutation, the
+ * Earth's velocity and the sidereal time) is folded into a
+ * {@link #computeFrame(long, double[]) frame} once, so transforming each
+ * object is a 3x3 rotation plus a few square roots and a single
+ * {@code atan2}. Nothing is allocated per call: the bulk methods write into
+ * the caller's arrays, and the single-object ones reuse a per-thread frame.
+ * <p>
+ * The models are:
+ * <ul>
+ *   <li>Sidereal time: IAU 2006 GMST from the Earth Rotation Angle, plus the
+ *       equation of the equinoxes. UT1 is taken as UTC.</li>
+ *   <li>Precession: IAU 2006 (Capitaine et al. 2003) angles.</li>
+ *   <li>Nutation: the 18 largest terms of the IAU 1980 series, ~0.05".</li>
+ *   <li>Annual aberration, including the eccentricity of the Earth's orbit.</li>
+ *   <li>Refraction: Saemundsson's formula for standard conditions, as in
+ *       {@link AnalyticEphemerides#refraction(double)}.</li>
+ * </ul>
+ * Diurnal aberration, parallax and proper motion are ignored, so it is meant
+ * for stars and deep-sky objects, with an accuracy around an arcsecond.
+ * <p>
+ * Angles are in decimal degrees and times in milliseconds since the Unix
+ * epoch. Instances are immutable and thread-safe.
+ */
+public final class CoordinateTransform {
+
+    /////////////////////////////// CONSTANTS /////////////////////////////////
+    //#region Constants
+
+    /** Length of the arrays used to hold a frame */
+    public static final int FRAME_SIZE = 13;
+
+    /** Index of the apparent Greenwich sidereal time within a frame */
+    private static final int FRAME_GAST = 12;
+
+    /** 2000-01-01T12:00:00Z, in milliseconds since the Unix epoch */
+    private static final long J2000_MILLIS = 946728000000L;
+
+    private static final double MILLIS_PER_DAY = 86400000.0;
+
+    private static final double ARCSEC_TO_RAD = Math.PI / (180.0 * 3600.0);
+
+    /** Constant of aberration, in radians */
+    private static final double KAPPA = 20.49552 * ARCSEC_TO_RAD;
+
+    /**
+     * Largest terms of the IAU 1980 nutation series (Meeus, table 22.A): the
+     * multiples of D, M, M', F and &Omega;, followed by the coefficients of
+     * &Delta;&psi; (sin) and &Delta;&epsilon; (cos), in 0.0001" and 0.0001"/century.
+     */
+    private static final double[][] NUTATION_TERMS = {
+        { 0,  0,  0, 0, 1, -171996, -174.2, 92025,  8.9},
+        {-2,  0,  0, 2, 2,  -13187,   -1.6,  5736, -3.1},
+        { 0,  0,  0, 2, 2,   -2274,   -0.2,   977, -0.5},
+        { 0,  0,  0, 0, 2,    2062,    0.2,  -895,  0.5},
+        { 0,  1,  0, 0, 0,    1426,   -3.4,    54, -0.1},
+        { 0,  0,  1, 0, 0,     712,    0.1,    -7,  0.0},
+        {-2,  1,  0, 2, 2,    -517,    1.2,   224, -0.6},
+        { 0,  0,  0, 2, 1,    -386,   -0.4,   200,  0.0},
+        { 0,  0,  1, 2, 2,    -301,    0.0,   129, -0.1},
+        {-2, -1,  0, 2, 2,     217,   -0.5,   -95,  0.3},
+        {-2,  0,  1, 0, 0,    -158,    0.0,     0,  0.0},
+        {-2,  0,  0, 2, 1,     129,    0.1,   -70,  0.0},
+        { 0,  0, -1, 2, 2,     123,    0.0,   -53,  0.0},
+        { 2,  0,  0, 0, 0,      63,    0.0,     0,  0.0},
+        { 0,  0,  1, 0, 1,      63,    0.1,   -33,  0.0},
+        { 2,  0, -1, 2, 2,     -59,    0.0,    26,  0.0},
+        { 0,  0, -1, 0, 1,     -58,   -0.1,    32,  0.0},
+        { 0,  0,  1, 2, 1,     -51,    0.0,    27,  0.0},
+    };
+
+    /** Scratch frame for the single-object methods */
+    private static final ThreadLocal<double[]> FRAME = ThreadLocal.withInitial(() -> new double[FRAME_SIZE]);
+
+    //#endregion
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private final double latitude;
+
+    private final double longitude;
+
+    private final double sinLatitude;
+
+    private final double cosLatitude;
+
+    private final boolean refract;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    /**
+     * Creates a new {@link CoordinateTransform} for an observer, applying
+     * atmospheric refraction to the altitudes.
+     *
+     * @param latitude The latitude of the observer, in decimal degrees north positive.
+     * @param longitude The longitude of the observer, in decimal degrees east positive.
+     */
+    public CoordinateTransform(double latitude, double longitude) {
+        this(latitude, longitude, true);
+    }
+
+    /**
+     * Creates a new {@link CoordinateTransform} for an observer.
+     *
+     * @param latitude The latitude of the observer, in decimal degrees north positive.
+     * @param longitude The longitude of the observer, in decimal degrees east positive.
+     * @param refract If atmospheric refraction should be applied to the altitudes.
+     */
+    public CoordinateTransform(double latitude, double longitude, boolean refract) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.sinLatitude = Math.sin(Math.toRadians(latitude));
+        this.cosLatitude = Math.cos(Math.toRadians(latitude));
+        this.refract = refract;
+    }
+
+    //#endregion
+    ////////////////////////////// ACCESSORS //////////////////////////////////
+    //#region Accessors
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public boolean isRefracting() {
+        return refract;
+    }
+
+    //#endregion
+    ///////////////////////////// SIDEREAL TIME ///////////////////////////////
+    //#region Sidereal time
+
+    /**
+     * Calculates the Earth Rotation Angle (IAU 2000).
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     *
+     * @return The ERA, in decimal degrees (0-360).
+     */
+    public static double earthRotationAngle(long epochMillis) {
+        double du = (epochMillis - J2000_MILLIS) / MILLIS_PER_DAY;
+        // Split the whole days off, so the fraction keeps its precision
+        double turns = 0.7790572732640 + (du - Math.floor(du)) + 0.00273781191135448 * du;
+        return AnalyticEphemerides.normalizeDegrees(360.0 * turns);
+    }
+
+    /**
+     * Calculates the Greenwich Mean Sidereal Time (IAU 2006).
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     *
+     * @return The GMST, in decimal degrees (0-360).
+     */
+    public static double greenwichMeanSiderealTime(long epochMillis) {
+        double t = AnalyticEphemerides.julianCenturiesTT(epochMillis);
+        double poly = 0.014506 + t * (4612.156534 + t * (1.3915817 + t * (-0.00000044 + t * (-0.000029956 - t * 0.0000000368))));
+        return AnalyticEphemerides.normalizeDegrees(earthRotationAngle(epochMillis) + poly / 3600.0);
+    }
+
+    /**
+     * Calculates the Greenwich Apparent Sidereal Time, i.e. the GMST plus the
+     * equation of the equinoxes.
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     *
+     * @return The GAST, in decimal degrees (0-360).
+     */
+    public static double greenwichApparentSiderealTime(long epochMillis) {
+        double t = AnalyticEphemerides.julianCenturiesTT(epochMillis);
+        return AnalyticEphemerides.normalizeDegrees(greenwichMeanSiderealTime(epochMillis) + equationOfEquinoxes(t));
+    }
+
+    /**
+     * Calculates the apparent Local Sidereal Time.
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param longitude The longitude of the observer, in decimal degrees east positive.
+     *
+     * @return The LST, in decimal degrees (0-360).
+     */
+    public static double localSiderealTime(long epochMillis, double longitude) {
+        return AnalyticEphemerides.normalizeDegrees(greenwichApparentSiderealTime(epochMillis) + longitude);
+    }
+
+    /**
+     * Calculates the apparent Local Sidereal Time for this observer.
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     *
+     * @return The LST, in decimal degrees (0-360).
+     */
+    public double localSiderealTime(long epochMillis) {
+        return localSiderealTime(epochMillis, longitude);
+    }
+
+    //#endregion
+    ////////////////////////////// NUTATION ///////////////////////////////////
+    //#region Nutation
+
+    /**
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return The mean obliquity of the ecliptic (IAU 2006), in decimal degrees.
+     */
+    public static double meanObliquity(double t) {
+        return (84381.406 + t * (-46.836769 + t * (-0.0001831 + t * (0.00200340 + t * (-0.000000576 - t * 0.0000000434))))) / 3600.0;
+    }
+
+    /**
+     * Nutation in longitude (&Delta;&psi;).
+     *
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return &Delta;&psi;, in decimal degrees.
+     */
+    public static double nutationInLongitude(double t) {
+        return nutation(t, true);
+    }
+
+    /**
+     * Nutation in obliquity (&Delta;&epsilon;).
+     *
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return &Delta;&epsilon;, in decimal degrees.
+     */
+    public static double nutationInObliquity(double t) {
+        return nutation(t, false);
+    }
+
+    /**
+     * The equation of the equinoxes, i.e. the difference between the apparent
+     * and the mean sidereal time, including its complementary terms.
+     *
+     * @param t Julian centuries since J2000.0 (TT).
+     * @return The equation of the equinoxes, in decimal degrees.
+     */
+    public static double equationOfEquinoxes(double t) {
+        double omega = Math.toRadians(125.04452 - 1934.136261 * t);
+        double eps = meanObliquity(t) + nutationInObliquity(t);
+        return nutationInLongitude(t) * Math.cos(Math.toRadians(eps))
+                + (0.00264 * Math.sin(omega) + 0.000063 * Math.sin(2 * omega)) / 3600.0;
+    }
+
+    //#endregion
+    ////////////////////////////// TRANSFORMS /////////////////////////////////
+    //#region Transforms
+
+    /**
+     * Computes the parts of the transform that only depend on the time: the
+     * rotation from J2000 to the true equator and equinox of date, the
+     * velocity of the Earth and the apparent sidereal time. A frame can be
+     * reused for any number of objects at the same time.
+     *
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param frame An array of at least {@link #FRAME_SIZE} elements, where
+     *              the frame will be written.
+     */
+    public static void computeFrame(long epochMillis, double[] frame) {
+        double t = AnalyticEphemerides.julianCenturiesTT(epochMillis);
+
+        // Precession, J2000 to mean of date: R3(-z) R2(theta) R3(-zeta)
+        double zeta = (2.650545 + t * (2306.083227 + t * (0.2988499 + t * (0.01801828 + t * (-0.000005971 - t * 0.0000003173))))) * ARCSEC_TO_RAD;
+        double z = (-2.650545 + t * (2306.077181 + t * (1.0927348 + t * (0.01826837 + t * (-0.000028596 - t * 0.0000002904))))) * ARCSEC_TO_RAD;
+        double theta = t * (2004.191903 + t * (-0.4294934 + t * (-0.04182264 + t * (-0.000007089 - t * 0.0000001274)))) * ARCSEC_TO_RAD;
+
+        double cZeta = Math.cos(zeta);
+        double sZeta = Math.sin(zeta);
+        double cZ = Math.cos(z);
+        double sZ = Math.sin(z);
+        double cTheta = Math.cos(theta);
+        double sTheta = Math.sin(theta);
+
+        double p11 = cZeta * cTheta * cZ - sZeta * sZ;
+        double p12 = -sZeta * cTheta * cZ - cZeta * sZ;
+        double p13 = -sTheta * cZ;
+        double p21 = cZeta * cTheta * sZ + sZeta * cZ;
+        double p22 = -sZeta * cTheta * sZ + cZeta * cZ;
+        double p23 = -sTheta * sZ;
+        double p31 = cZeta * sTheta;
+        double p32 = -sZeta * sTheta;
+        double p33 = cTheta;
+
+        // Nutation, mean to true of date: R1(-eps) R3(-dpsi) R1(eps0)
+        double dpsi = Math.toRadians(nutationInLongitude(t));
+        double eps0 = Math.toRadians(meanObliquity(t));
+        double eps = eps0 + Math.toRadians(nutationInObliquity(t));
+
+        double cPsi = Math.cos(dpsi);
+        double sPsi = Math.sin(dpsi);
+        double cEps0 = Math.cos(eps0);
+        double sEps0 = Math.sin(eps0);
+        double cEps = Math.cos(eps);
+        double sEps = Math.sin(eps);
+
+        double n11 = cPsi;
+        double n12 = -sPsi * cEps0;
+        double n13 = -sPsi * sEps0;
+        double n21 = sPsi * cEps;
+        double n22 = cPsi * cEps * cEps0 + sEps * sEps0;
+        double n23 = cPsi * cEps * sEps0 - sEps * cEps0;
+        double n31 = sPsi * sEps;
+        double n32 = cPsi * sEps * cEps0 - cEps * sEps0;
+        double n33 = cPsi * sEps * sEps0 + cEps * cEps0;
+
+        frame[0] = n11 * p11 + n12 * p21 + n13 * p31;
+        frame[1] = n11 * p12 + n12 * p22 + n13 * p32;
+        frame[2] = n11 * p13 + n12 * p23 + n13 * p33;
+        frame[3] = n21 * p11 + n22 * p21 + n23 * p31;
+        frame[4] = n21 * p12 + n22 * p22 + n23 * p32;
+        frame[5] = n21 * p13 + n22 * p23 + n23 * p33;
+        frame[6] = n31 * p11 + n32 * p21 + n33 * p31;
+        frame[7] = n31 * p12 + n32 * p22 + n33 * p32;
+        frame[8] = n31 * p13 + n32 * p23 + n33 * p33;
+
+        // Velocity of the Earth, in units of c, from the Sun's true longitude (Meeus, ch. 23 and 25)
+        double m = Math.toRadians(357.52911 + t * (35999.05029 - t * 0.0001537));
+        double center = (1.914602 - t * (0.004817 + t * 0.000014)) * Math.sin(m)
+                      + (0.019993 - t * 0.000101) * Math.sin(2 * m)
+                      + 0.000289 * Math.sin(3 * m);
+        double sunLongitude = Math.toRadians(280.46646 + t * (36000.76983 + t * 0.0003032) + center);
+        double e = 0.016708634 - t * (0.000042037 + t * 0.0000001267);
+        double perihelion = Math.toRadians(102.93735 + t * (1.71946 + t * 0.00046));
+
+        double vx = KAPPA * (Math.sin(sunLongitude) - e * Math.sin(perihelion));
+        double vy = -KAPPA * (Math.cos(sunLongitude) - e * Math.cos(perihelion));
+        frame[9] = vx;
+        frame[10] = vy * cEps;
+        frame[11] = vy * sEps;
+
+        frame[FRAME_GAST] = AnalyticEphemerides.normalizeDegrees(greenwichMeanSiderealTime(epochMillis)
+                            + equationOfEquinoxes(t));
+    }
+
+    /**
+     * Converts J2000 coordinates into apparent coordinates of date.
+     *
+     * @param ra The J2000 Right Ascension, in decimal degrees.
+     * @param dec The J2000 Declination, in decimal degrees.
+     * @param frame The frame for the time, from {@link #computeFrame(long, double[])}.
+     * @param out Where to write the apparent Right Ascension and Declination, in decimal degrees.
+     */
+    public static void apparentPlace(double ra, double dec, double[] frame, double[] out) {
+        apparentPlace(ra, dec, frame, out, 0, out, 1);
+    }
+
+    /**
+     * Converts J2000 coordinates into apparent coordinates of date.
+     *
+     * @param ra The J2000 Right Ascension, in decimal degrees.
+     * @param dec The J2000 Declination, in decimal degrees.
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param out Where to write the apparent Right Ascension and Declination, in decimal degrees.
+     */
+    public static void apparentPlace(double ra, double dec, long epochMillis, double[] out) {
+        double[] frame = FRAME.get();
+        computeFrame(epochMillis, frame);
+        apparentPlace(ra, dec, frame, out);
+    }
+
+    /**
+     * Converts a batch of J2000 coordinates into apparent coordinates of date.
+     *
+     * @param ra The J2000 Right Ascensions, in decimal degrees.
+     * @param dec The J2000 Declinations, in decimal degrees.
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param raOut Where to write the apparent Right Ascensions, in decimal degrees.
+     * @param decOut Where to write the apparent Declinations, in decimal degrees.
+     *
+     * @throws IllegalArgumentException If the arrays are not of the same length.
+     */
+    public static void apparentPlaces(double[] ra, double[] dec, long epochMillis, double[] raOut, double[] decOut) {
+        checkLengths(ra, dec, raOut, decOut);
+        double[] frame = FRAME.get();
+        computeFrame(epochMillis, frame);
+
+        for (int i = 0; i < ra.length; i++) {
+            apparentPlace(ra[i], dec[i], frame, raOut, i, decOut, i);
+        }
+    }
+
+    /**
+     * Converts J2000 coordinates into the horizontal coordinates seen by this
+     * observer.
+     *
+     * @param ra The J2000 Right Ascension, in decimal degrees.
+     * @param dec The J2000 Declination, in decimal degrees.
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param out Where to write the Altitude and Azimuth (north=0, east=90), in decimal degrees.
+     */
+    public void transform(double ra, double dec, long epochMillis, double[] out) {
+        double[] frame = FRAME.get();
+        computeFrame(epochMillis, frame);
+        double lst = Math.toRadians(frame[FRAME_GAST] + longitude);
+        toHorizontal(ra, dec, frame, Math.sin(lst), Math.cos(lst), out, 0, out, 1);
+    }
+
+    /**
+     * Converts a batch of J2000 coordinates into the horizontal coordinates
+     * seen by this observer, all at the same time.
+     *
+     * @param ra The J2000 Right Ascensions, in decimal degrees.
+     * @param dec The J2000 Declinations, in decimal degrees.
+     * @param epochMillis The time, in milliseconds since the Unix epoch.
+     * @param altOut Where to write the Altitudes, in decimal degrees.
+     * @param azOut Where to write the Azimuths (north=0, east=90), in decimal degrees.
+     *
+     * @throws IllegalArgumentException If the arrays are not of the same length.
+     */
+    public void transform(double[] ra, double[] dec, long epochMillis, double[] altOut, double[] azOut) {
+        checkLengths(ra, dec, altOut, azOut);
+        double[] frame = FRAME.get();
+        computeFrame(epochMillis, frame);
+        double lst = Math.toRadians(frame[FRAME_GAST] + longitude);
+        double sinLst = Math.sin(lst);
+        double cosLst = Math.cos(lst);
+
+        for (int i = 0; i < ra.length; i++) {
+            toHorizontal(ra[i], dec[i], frame, sinLst, cosLst, altOut, i, azOut, i);
+        }
+    }
+
+    /**
+     * Converts apparent coordinates of date into the horizontal coordinates
+     * seen by this observer.
+     *
+     * @param ra The apparent Right Ascension, in decimal degrees.
+     * @param dec The apparent Declination, in decimal degrees.
+     * @param lst The apparent Local Sidereal Time, in decimal degrees.
+     * @param out Where to write the Altitude and Azimuth (north=0, east=90), in decimal degrees.
+     */
+    public void horizontal(double ra, double dec, double lst, double[] out) {
+        double raRad = Math.toRadians(ra);
+        double decRad = Math.toRadians(dec);
+        double cosDec = Math.cos(decRad);
+        double lstRad = Math.toRadians(lst);
+        horizontal(cosDec * Math.cos(raRad), cosDec * Math.sin(raRad), Math.sin(decRad),
+                    Math.sin(lstRad), Math.cos(lstRad), out, 0, out, 1);
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Converts a J2000 position into an apparent one with a precomputed frame.
+     */
+    @SuppressWarnings("java:S107")
+    private static void apparentPlace(double ra, double dec, double[] frame,
+                                      double[] raOut, int raIndex, double[] decOut, int decIndex) {
+        double raRad = Math.toRadians(ra);
+        double decRad = Math.toRadians(dec);
+        double cosDec = Math.cos(decRad);
+        double x0 = cosDec * Math.cos(raRad);
+        double y0 = cosDec * Math.sin(raRad);
+        double z0 = Math.sin(decRad);
+
+        double x = frame[0] * x0 + frame[1] * y0 + frame[2] * z0 + frame[9];
+        double y = frame[3] * x0 + frame[4] * y0 + frame[5] * z0 + frame[10];
+        double z = frame[6] * x0 + frame[7] * y0 + frame[8] * z0 + frame[11];
+
+        raOut[raIndex] = AnalyticEphemerides.normalizeDegrees(Math.toDegrees(Math.atan2(y, x)));
+        decOut[decIndex] = Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y)));
+    }
+
+    /**
+     * Transforms a J2000 position with a precomputed frame and sidereal time.
+     */
+    @SuppressWarnings("java:S107")
+    private void toHorizontal(double ra, double dec, double[] frame, double sinLst, double cosLst,
+                              double[] altOut, int altIndex, double[] azOut, int azIndex) {
+        double raRad = Math.toRadians(ra);
+        double decRad = Math.toRadians(dec);
+        double cosDec = Math.cos(decRad);
+        double x0 = cosDec * Math.cos(raRad);
+        double y0 = cosDec * Math.sin(raRad);
+        double z0 = Math.sin(decRad);
+
+        // Precession, nutation and aberration, the result is a direction of date
+        double x = frame[0] * x0 + frame[1] * y0 + frame[2] * z0 + frame[9];
+        double y = frame[3] * x0 + frame[4] * y0 + frame[5] * z0 + frame[10];
+        double z = frame[6] * x0 + frame[7] * y0 + frame[8] * z0 + frame[11];
+
+        horizontal(x, y, z, sinLst, cosLst, altOut, altIndex, azOut, azIndex);
+    }
+
+    /**
+     * Transforms a direction of date (not necessarily normalized) into
+     * horizontal coordinates, without going through the hour angle.
+     */
+    @SuppressWarnings("java:S107")
+    private void horizontal(double x, double y, double z, double sinLst, double cosLst,
+                            double[] altOut, int altIndex, double[] azOut, int azIndex) {
+        double norm = Math.sqrt(x * x + y * y + z * z);
+        double sinDec = z / norm;
+        // cos(dec) cos(H) and cos(dec) sin(H), with H = LST - RA
+        double hx = (x * cosLst + y * sinLst) / norm;
+        double hy = (x * sinLst - y * cosLst) / norm;
+
+        double sinAlt = sinLatitude * sinDec + cosLatitude * hx;
+        double alt = Math.toDegrees(Math.asin(Math.max(-1.0, Math.min(1.0, sinAlt))));
+        double az = Math.toDegrees(Math.atan2(-hy, sinDec * cosLatitude - hx * sinLatitude));
+
+        altOut[altIndex] = refract ? alt + AnalyticEphemerides.refraction(alt) : alt;
+        azOut[azIndex] = az < 0 ? az + 360.0 : az;
+    }
+
+    /**
+     * Sums the nutation series, either in longitude or in obliquity.
+     */
+    private static double nutation(double t, boolean inLongitude) {
+        double d = Math.toRadians(297.85036 + t * (445267.111480 + t * (-0.0019142 + t / 189474.0)));
+        double m = Math.toRadians(357.52772 + t * (35999.050340 + t * (-0.0001603 - t / 300000.0)));
+        double mp = Math.toRadians(134.96298 + t * (477198.867398 + t * (0.0086972 + t / 56250.0)));
+        double f = Math.toRadians(93.27191 + t * (483202.017538 + t * (-0.0036825 + t / 327270.0)));
+        double omega = Math.toRadians(125.04452 + t * (-1934.136261 + t * (0.0020708 + t / 450000.0)));
+
+        double sum = 0.0;
+        for (double[] term : NUTATION_TERMS) {
+            double arg = term[0] * d + term[1] * m + term[2] * mp + term[3] * f + term[4] * omega;
+            sum += inLongitude ? (term[5] + term[6] * t) * Math.sin(arg)
+                               : (term[7] + term[8] * t) * Math.cos(arg);
+        }
+        return sum / 36000000.0;
+    }
+
+    private static void checkLengths(double[] ra, double[] dec, double[] firstOut, double[] secondOut) {
+        int length = ra.length;
+        if (dec.length != length || firstOut.length < length || secondOut.length < length)
+            throw new IllegalArgumentException("The coordinate arrays must be of the same length");
+    }
+
+    //#endregion
+}
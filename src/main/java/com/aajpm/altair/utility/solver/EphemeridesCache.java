@@ -0,0 +1,327 @@
+package com.aajpm.altair.utility.solver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A two-tier key/value store for ephemerides results: a small in-memory LRU
+ * layer in front of an append-only file on disk, so results survive restarts.
+ * <p>
+ * The file holds one entry per line as {@code expiry\tkey\tvalue}, and only
+ * the offset of each key is kept in memory. New entries are appended in
+ * batches, every {@value #FLUSH_ENTRIES} entries or {@link #FLUSH_INTERVAL},
+ * and when the cache is closed. Expired and overwritten entries are dropped
+ * when the file is loaded, and whenever they outnumber the live ones. Keys
+ * and values must not contain tabs or line breaks.
+ * <p>
+ * If the file can't be read or written, the cache keeps working in memory only.
+ * Entries expire by the {@link Clock} given, the system one by default.
+ */
+public class EphemeridesCache {
+
+    /** How many new entries are written to disk at once */
+    public static final int FLUSH_ENTRIES = 64;
+
+    /** How long a new entry can wait to be written to disk */
+    public static final Duration FLUSH_INTERVAL = Duration.ofMinutes(1);
+
+    /** How many dead lines the file can have before it's compacted, at least */
+    private static final int COMPACT_SLACK = 1024;
+
+    /////////////////////////////// ATTRIBUTES /////////////////////////////////
+    //#region Attributes
+
+    private final Map<String, Entry> memory;
+
+    private final Map<String, Long> diskIndex = new HashMap<>();
+
+    /** The entries not written to disk yet, in order */
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+
+    private final Clock clock;
+
+    private long lastFlush;
+
+    /** How many lines the file has, live or not */
+    private int fileLines;
+
+    private Path file;
+
+    private RandomAccessFile raf;
+
+    private final Logger logger = LoggerFactory.getLogger(EphemeridesCache.class);
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    /**
+     * Creates a new {@link EphemeridesCache}.
+     *
+     * @param file The file backing the cache, or {@code null} to keep it only
+     *             in memory. It will be created if it doesn't exist.
+     * @param memoryCapacity How many entries to keep in memory.
+     */
+    public EphemeridesCache(Path file, int memoryCapacity) {
+        this(file, memoryCapacity, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new {@link EphemeridesCache}.
+     *
+     * @param file The file backing the cache, or {@code null} to keep it only
+     *             in memory. It will be created if it doesn't exist.
+     * @param memoryCapacity How many entries to keep in memory.
+     * @param clock The clock the entries expire by.
+     */
+    public EphemeridesCache(Path file, int memoryCapacity, Clock clock) {
+        this.clock = clock;
+        this.lastFlush = clock.millis();
+        int capacity = Math.max(1, memoryCapacity);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        if (file != null) {
+            try {
+                open(file);
+            } catch (IOException e) {
+                logger.warn("EphemeridesCache: Could not open {}, using memory only", file, e);
+                closeQuietly();
+            }
+        }
+    }
+
+    //#endregion
+    ////////////////////////////// OPERATIONS /////////////////////////////////
+    //#region Operations
+
+    /**
+     * Gets a value from the cache.
+     *
+     * @param key The key to look for.
+     *
+     * @return The value, or {@code null} if it isn't cached or has expired.
+     */
+    public synchronized String get(String key) {
+        long now = clock.millis();
+
+        Entry entry = memory.get(key);
+        if (entry == null)
+            entry = pending.get(key);
+        if (entry != null) {
+            if (entry.expiry >= now)
+                return entry.value;
+            memory.remove(key);
+            pending.remove(key);
+        }
+
+        Long offset = diskIndex.get(key);
+        if (offset == null || raf == null)
+            return null;
+
+        try {
+            String[] line = readLine(offset);
+            if (line == null || Long.parseLong(line[0]) < now) {
+                diskIndex.remove(key);
+                return null;
+            }
+            memory.put(key, new Entry(line[2], Long.parseLong(line[0])));
+            return line[2];
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("EphemeridesCache: Could not read {} from disk", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a value in the cache, in memory right away and on disk with the
+     * next batch.
+     *
+     * @param key The key to store the value under.
+     * @param value The value to store.
+     * @param expiry When the value stops being valid.
+     */
+    public synchronized void put(String key, String value, Instant expiry) {
+        Entry entry = new Entry(value, expiry.toEpochMilli());
+        memory.put(key, entry);
+
+        if (raf == null)
+            return;
+
+        pending.remove(key);        // Keep the order of the latest write
+        pending.put(key, entry);
+        if (pending.size() >= FLUSH_ENTRIES || clock.millis() - lastFlush >= FLUSH_INTERVAL.toMillis())
+            flush();
+    }
+
+    /**
+     * Writes the pending entries to disk, in a single write, and compacts the
+     * file if most of it is dead entries.
+     */
+    public synchronized void flush() {
+        lastFlush = clock.millis();
+        if (raf == null || pending.isEmpty())
+            return;
+
+        try {
+            long offset = raf.length();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(pending.size() * 128);
+            Map<String, Long> offsets = new HashMap<>();
+            for (Map.Entry<String, Entry> entry : pending.entrySet()) {
+                offsets.put(entry.getKey(), offset + bytes.size());
+                bytes.writeBytes(line(entry.getValue().expiry, entry.getKey(), entry.getValue().value));
+            }
+            raf.seek(offset);
+            raf.write(bytes.toByteArray());
+
+            diskIndex.putAll(offsets);
+            fileLines += pending.size();
+            pending.clear();
+
+            if (fileLines - diskIndex.size() > Math.max(COMPACT_SLACK, diskIndex.size())) {
+                raf.close();
+                raf = null;
+                diskIndex.clear();
+                open(file);
+            }
+        } catch (IOException e) {
+            logger.warn("EphemeridesCache: Could not write to {}, using memory only from now on", file, e);
+            closeQuietly();
+        }
+    }
+
+    /**
+     * @return How many entries are stored, counting both memory and disk.
+     */
+    public synchronized int size() {
+        if (raf == null)
+            return memory.size();
+        Set<String> keys = new HashSet<>(diskIndex.keySet());
+        keys.addAll(pending.keySet());
+        keys.addAll(memory.keySet());
+        return keys.size();
+    }
+
+    /**
+     * Writes the pending entries and closes the backing file. The cache keeps
+     * working in memory only.
+     */
+    public synchronized void close() {
+        flush();
+        closeQuietly();
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Opens the backing file, dropping expired and overwritten entries.
+     */
+    private void open(Path path) throws IOException {
+        this.file = path;
+        this.lastFlush = clock.millis();
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+
+        long now = clock.millis();
+        Map<String, String[]> live = new LinkedHashMap<>();
+        int lines = 0;
+
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                lines++;
+                String[] parts = line.split("\t", 3);
+                try {
+                    if (parts.length == 3 && Long.parseLong(parts[0]) >= now) {
+                        live.remove(parts[1]);      // Keep insertion order of the latest write
+                        live.put(parts[1], parts);
+                    }
+                } catch (NumberFormatException e) {
+                    // Corrupted line, drop it
+                }
+            }
+        }
+
+        // Rewrite the file without the dead entries
+        if (live.size() != lines) {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            StringBuilder sb = new StringBuilder();
+            for (String[] parts : live.values()) {
+                sb.append(parts[0]).append('\t').append(parts[1]).append('\t').append(parts[2]).append('\n');
+            }
+            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("EphemeridesCache: Compacted {} from {} to {} entries", path, lines, live.size());
+        }
+
+        raf = new RandomAccessFile(path.toFile(), "rw");
+
+        // Index the entries
+        long offset = 0;
+        for (String[] parts : live.values()) {
+            diskIndex.put(parts[1], offset);
+            offset += (parts[0] + "\t" + parts[1] + "\t" + parts[2] + "\n").getBytes(StandardCharsets.UTF_8).length;
+        }
+        fileLines = live.size();
+    }
+
+    private static byte[] line(long expiry, String key, String value) {
+        return (expiry + "\t" + key + "\t" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String[] readLine(long offset) throws IOException {
+        raf.seek(offset);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        byte[] buffer = new byte[128];
+        int read;
+        boolean endOfLine = false;
+        while (!endOfLine && (read = raf.read(buffer)) > 0) {
+            int length = 0;
+            while (length < read && buffer[length] != '\n') {
+                length++;
+            }
+            endOfLine = length < read;
+            bytes.write(buffer, 0, length);
+        }
+        String[] parts = bytes.toString(StandardCharsets.UTF_8).split("\t", 3);
+        return parts.length == 3 ? parts : null;
+    }
+
+    private void closeQuietly() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // Nothing else to do
+            }
+        }
+        raf = null;
+        diskIndex.clear();
+        pending.clear();
+    }
+
+    private record Entry(String value, long expiry) {}
+
+    //#endregion
+}
@@ -1,9 +1,17 @@
 package com.aajpm.altair.utility.solver;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.aajpm.altair.config.AstrometricsConfig;
 import com.aajpm.altair.utility.Interval;
@@ -26,6 +34,21 @@ public abstract class EphemeridesSolver {
      */
     protected static final Instant J2000_INSTANT = Instant.parse("2000-01-01T11:58:55.816Z");
 
+    /**
+     * How many bodies are solved at the same time by the batch methods.
+     */
+    protected static final int BATCH_CONCURRENCY = 8;
+
+    /**
+     * The transforms for the configured site, with and without refraction,
+     * created on first use.
+     */
+    private volatile CoordinateTransform siteTransform;
+
+    private volatile CoordinateTransform siteGeometricTransform;
+
+    private final Logger logger = LoggerFactory.getLogger(EphemeridesSolver.class);
+
     /**
      * Creates a new EphemeridesSolver.
      * 
@@ -151,7 +174,7 @@ public abstract class EphemeridesSolver {
      */
     public Mono<Boolean> isVisible(double ra, double dec, Instant time, double targetAltitude) {
         Mono<Boolean> isSunOut = isVisible("Sun", time, 0.0);
-        Mono<Boolean> isVisible = raDecToAltAz(ra, dec, config.getSiteLatitude(), config.getSiteLongitude(), time)
+        Mono<Boolean> isVisible = raDecToAltAz(ra, dec, config.getSiteLatitude(), config.getSiteLongitude(), time, true)
                                  .map(altAz -> altAz[0] > targetAltitude);
 
         return Mono.zip(isSunOut, isVisible)
@@ -270,6 +293,100 @@ public abstract class EphemeridesSolver {
      */
     public abstract Mono<Interval> getRiseSetTime(double ra, double dec, double latitude, double longitude, Interval searchInterval, double targetAltitude);
 
+    /**
+     * Calculates the rise and set times of several bodies in the Solar system
+     * at once, above the configured horizon line.
+     * 
+     * @param bodies The names of the bodies.
+     * @param searchInterval The interval to search for the rise and set times.
+     * 
+     * @return A {@link Mono} containing an array with the rise and set times
+     *         of each body, in the same order, as returned by
+     *         {@link #getRiseSetTime(String, Interval, double)}. Bodies whose
+     *         rise and set times couldn't be calculated, like those not
+     *         found, get {@code null}, so they aren't mistaken for bodies
+     *         that don't rise.
+     */
+    public Mono<Interval[]> getRiseSetTimes(String[] bodies, Interval searchInterval) {
+        return getRiseSetTimes(bodies, searchInterval, config.getHorizonLine());
+    }
+
+    /**
+     * Calculates the rise and set times of several bodies in the Solar system
+     * at once.
+     * <p>
+     * By default, up to {@link #BATCH_CONCURRENCY} bodies are requested at the
+     * same time, so implementations backed by a remote service don't make all
+     * the requests at once.
+     * 
+     * @param bodies The names of the bodies.
+     * @param searchInterval The interval to search for the rise and set times.
+     * @param targetAltitude The altitude to consider as set or rise, in decimal degrees.
+     * 
+     * @return A {@link Mono} containing an array with the rise and set times
+     *         of each body, in the same order, as returned by
+     *         {@link #getRiseSetTime(String, Interval, double)}. Bodies whose
+     *         rise and set times couldn't be calculated, like those not
+     *         found, get {@code null}, so they aren't mistaken for bodies
+     *         that don't rise.
+     */
+    public Mono<Interval[]> getRiseSetTimes(String[] bodies, Interval searchInterval, double targetAltitude) {
+        return Flux.fromArray(bodies)
+                .flatMapSequential(body -> getRiseSetTime(body, searchInterval, targetAltitude)
+                                            .defaultIfEmpty(Interval.empty())
+                                            .map(Optional::of)
+                                            .onErrorResume(e -> {
+                                                logger.warn("EphemeridesSolver: Could not calculate the rise and set times of {}", body, e);
+                                                return Mono.just(Optional.empty());
+                                            }),
+                                    BATCH_CONCURRENCY)
+                .collectList()
+                .map(list -> list.stream().map(result -> result.orElse(null)).toArray(Interval[]::new));
+    }
+
+    /**
+     * Calculates the rise and set times of several bodies OUTSIDE the Solar
+     * system at once, above the configured horizon line.
+     * 
+     * @param ra The Right Ascension of each body, in decimal hours.
+     * @param dec The Declination of each body, in decimal degrees.
+     * @param searchInterval The interval to search for the rise and set times.
+     * 
+     * @return A {@link Mono} containing an array with the rise and set times
+     *         of each body, in the same order, as returned by
+     *         {@link #getRiseSetTime(double, double, double, double, Interval, double)}.
+     */
+    public Mono<Interval[]> getRiseSetTimes(double[] ra, double[] dec, Interval searchInterval) {
+        return getRiseSetTimes(ra, dec, searchInterval, config.getHorizonLine());
+    }
+
+    /**
+     * Calculates the rise and set times of several bodies OUTSIDE the Solar
+     * system at once, from the configured site.
+     * <p>
+     * The default implementation calls
+     * {@link #getRiseSetTime(double, double, double, double, Interval, double)}
+     * for each body. Implementations are encouraged to override it with a
+     * single pass over the arrays.
+     * 
+     * @param ra The Right Ascension of each body, in decimal hours.
+     * @param dec The Declination of each body, in decimal degrees.
+     * @param searchInterval The interval to search for the rise and set times.
+     * @param targetAltitude The altitude to consider as set or rise, in decimal degrees.
+     * 
+     * @return A {@link Mono} containing an array with the rise and set times
+     *         of each body, in the same order, as returned by
+     *         {@link #getRiseSetTime(double, double, double, double, Interval, double)}.
+     */
+    public Mono<Interval[]> getRiseSetTimes(double[] ra, double[] dec, Interval searchInterval, double targetAltitude) {
+        if (ra.length != dec.length)
+            return Mono.error(new IllegalArgumentException("The RA and Dec arrays must have the same length"));
+        return Flux.range(0, ra.length)
+                .concatMap(i -> getRiseSetTime(ra[i], dec[i], config.getSiteLatitude(), config.getSiteLongitude(), searchInterval, targetAltitude))
+                .collectList()
+                .map(list -> list.toArray(new Interval[0]));
+    }
+
     /**
      * Calculates the closest night period to the current time.
      * If it is currently night, the returned {@link Interval} will start
@@ -326,6 +443,140 @@ public abstract class EphemeridesSolver {
         return Duration.between(J2000_INSTANT, time);
     }
 
+    /**
+     * Calculates the observing day a given time belongs to, i.e. the day whose
+     * local mean noon at the configured site is the last one before
+     * {@code time}. All the times of the same night share the same day.
+     * 
+     * @param time The time to get the observing day of.
+     * 
+     * @return The observing day, as a {@link LocalDate}.
+     */
+    protected LocalDate getObservingDay(Instant time) {
+        long offsetSeconds = Math.round(config.getSiteLongitude() / 15.0 * 3600.0);
+        return time.plusSeconds(offsetSeconds).minus(Duration.ofHours(12)).atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /**
+     * Calculates the local mean noon of a day at the configured site.
+     * 
+     * @param day The day to get the noon of.
+     * 
+     * @return The local mean noon, as an {@link Instant}.
+     */
+    protected Instant getLocalNoon(LocalDate day) {
+        long offsetSeconds = Math.round(config.getSiteLongitude() / 15.0 * 3600.0);
+        return day.atTime(12, 0).toInstant(ZoneOffset.UTC).minusSeconds(offsetSeconds);
+    }
+
+    /**
+     * Gets a {@link CoordinateTransform} for an observer, reusing the one of
+     * the configured site when possible.
+     *
+     * @param latitude The latitude of the observer.
+     * @param longitude The longitude of the observer.
+     * @param refract If the transform should apply atmospheric refraction.
+     *
+     * @return A {@link CoordinateTransform} for the observer.
+     */
+    protected CoordinateTransform getTransform(double latitude, double longitude, boolean refract) {
+        CoordinateTransform site = refract ? siteTransform : siteGeometricTransform;
+        if (site != null && site.getLatitude() == latitude && site.getLongitude() == longitude)
+            return site;
+
+        CoordinateTransform transform = new CoordinateTransform(latitude, longitude, refract);
+        if (latitude == config.getSiteLatitude() && longitude == config.getSiteLongitude()) {
+            if (refract) {
+                siteTransform = transform;
+            } else {
+                siteGeometricTransform = transform;
+            }
+        }
+        return transform;
+    }
+
+    /**
+     * Converts catalogue (J2000) coordinates into the Altitude and Azimuth
+     * seen by an observer, with {@link CoordinateTransform}.
+     *
+     * @param ra The J2000 Right Ascension, in decimal hours.
+     * @param dec The J2000 Declination, in decimal degrees.
+     * @param latitude The latitude of the observer.
+     * @param longitude The longitude of the observer.
+     * @param time The time to calculate for.
+     * @param refract {@code true} for the apparent altitude, {@code false}
+     *                for the geometric one.
+     *
+     * @return An array containing the Altitude and Azimuth.
+     */
+    @SuppressWarnings("java:S107")
+    protected double[] catalogueToAltAz(double ra, double dec, double latitude, double longitude, Instant time, boolean refract) {
+        double[] altAz = new double[2];
+        getTransform(latitude, longitude, refract).transform(ra * 15.0, dec, time.toEpochMilli(), altAz);
+        return altAz;
+    }
+
+    /**
+     * Calculates analytically when catalogue (J2000) coordinates are above an
+     * apparent altitude. The apparent place is taken at the middle of
+     * {@code searchInterval}, as it barely moves within a few days.
+     *
+     * @param ra The J2000 Right Ascension, in decimal hours.
+     * @param dec The J2000 Declination, in decimal degrees.
+     * @param latitude The latitude of the observer.
+     * @param longitude The longitude of the observer.
+     * @param searchInterval The interval to search in.
+     * @param targetAltitude The apparent altitude, taking refraction into account.
+     *
+     * @return The first {@link Interval} above {@code targetAltitude}, or
+     *         {@link Interval#empty()} if there is none.
+     */
+    @SuppressWarnings("java:S107")
+    protected Interval catalogueRiseSetTime(double ra, double dec, double latitude, double longitude, Interval searchInterval, double targetAltitude) {
+        double[] apparent = new double[2];
+        CoordinateTransform.apparentPlace(ra * 15.0, dec, middleOf(searchInterval), apparent);
+        return RiseSetSolver.fixedIntervalAbove(apparent[0], apparent[1], latitude,
+                    millis -> CoordinateTransform.localSiderealTime(millis, longitude),
+                    searchInterval, RiseSetSolver.unrefract(targetAltitude));
+    }
+
+    /**
+     * Batch version of
+     * {@link #catalogueRiseSetTime(double, double, double, double, Interval, double)}
+     * for the configured site.
+     *
+     * @param ra The J2000 Right Ascensions, in decimal hours.
+     * @param dec The J2000 Declinations, in decimal degrees.
+     * @param searchInterval The interval to search in.
+     * @param targetAltitude The apparent altitude, taking refraction into account.
+     *
+     * @return The first {@link Interval} above {@code targetAltitude} of each
+     *         body, in the same order.
+     */
+    protected Interval[] catalogueRiseSetTimes(double[] ra, double[] dec, Interval searchInterval, double targetAltitude) {
+        double[] raDeg = new double[ra.length];
+        for (int i = 0; i < ra.length; i++) {
+            raDeg[i] = ra[i] * 15.0;
+        }
+
+        double[] apparentRa = new double[ra.length];
+        double[] apparentDec = new double[ra.length];
+        CoordinateTransform.apparentPlaces(raDeg, dec, middleOf(searchInterval), apparentRa, apparentDec);
+        for (int i = 0; i < ra.length; i++) {
+            apparentRa[i] /= 15.0;
+        }
+
+        double longitude = config.getSiteLongitude();
+        return RiseSetSolver.fixedIntervalsAbove(apparentRa, apparentDec, config.getSiteLatitude(),
+                    millis -> CoordinateTransform.localSiderealTime(millis, longitude),
+                    searchInterval, RiseSetSolver.unrefract(targetAltitude));
+    }
+
+    private static long middleOf(Interval interval) {
+        long start = interval.getStart().toEpochMilli();
+        return start + (interval.getEnd().toEpochMilli() - start) / 2;
+    }
+
     /**
      * Calculates the Local Sidereal Time (LST) for the current time and
      * configured longitude.
@@ -370,6 +621,10 @@ public abstract class EphemeridesSolver {
     /**
      * Basic conversion from Right Ascension and Declination to Altitude and
      * Azimuth. Might be inaccurate for some objects.
+     * <p>
+     * The altitude is geometric, without refraction, as this is used to point
+     * the dome at where the telescope is slewed to, see
+     * {@link #raDecToAltAz(double, double, double, double, Instant, boolean)}.
      * 
      * @param ra The Right Ascension of the object.
      * @param dec The Declination of the object.
@@ -382,7 +637,8 @@ public abstract class EphemeridesSolver {
 
     /**
      * Basic conversion from Right Ascension and Declination to Altitude and
-     * Azimuth. Might be inaccurate for some objects.
+     * Azimuth, with the geometric altitude. Might be inaccurate for some
+     * objects.
      * 
      * @param ra The Right Ascension of the object.
      * @param dec The Declination of the object.
@@ -397,17 +653,42 @@ public abstract class EphemeridesSolver {
 
     /**
      * Basic conversion from Right Ascension and Declination to Altitude and
-     * Azimuth. Might be inaccurate for some objects.
+     * Azimuth, with the geometric altitude. Might be inaccurate for some
+     * objects.
+     * 
+     * @param ra The Right Ascension of the object.
+     * @param dec The Declination of the object.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @param time The time to calculate for.
+     * 
+     * @return An array containing the Altitude and Azimuth of the object.
+     */
+    public Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time) {
+        return raDecToAltAz(ra, dec, latitude, longitude, time, false);
+    }
+
+    /**
+     * Conversion from Right Ascension and Declination to Altitude and Azimuth.
+     * <p>
+     * The apparent altitude, with refraction, is what the visibility checks
+     * and rise/set times use, so a body is visible once it is seen above the
+     * horizon line. The geometric one is used for pointing, as the mount
+     * corrects the refraction itself when slewing by RA/Dec.
      * 
      * @param ra The Right Ascension of the object.
      * @param dec The Declination of the object.
      * @param latitude The latitude of the location.
      * @param longitude The longitude of the location.
      * @param time The time to calculate for.
+     * @param refract {@code true} for the apparent altitude, corrected for
+     *                atmospheric refraction, {@code false} for the geometric
+     *                one.
      * 
      * @return An array containing the Altitude and Azimuth of the object.
      */
-    public abstract Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time);
+    @SuppressWarnings("java:S107")
+    public abstract Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time, boolean refract);
 
     /**
      * An estimation of the precision of the
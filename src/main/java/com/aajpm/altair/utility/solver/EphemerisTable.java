@@ -0,0 +1,165 @@
+package com.aajpm.altair.utility.solver;
+
+import java.time.Instant;
+
+import com.aajpm.altair.utility.Interval;
+
+/**
+ * A table of horizontal coordinates of a body, sampled at a fixed step, that
+ * answers queries at any time inside it by cubic Hermite interpolation.
+ * <p>
+ * The samples are kept in primitive arrays, so a whole night at a 5 minute
+ * step takes a couple of KB, and each query is a handful of multiplications.
+ */
+public final class EphemerisTable {
+
+    private final long startMillis;
+
+    private final long stepMillis;
+
+    private final double[] altitude;
+
+    private final double[] azimuth;
+
+    private final boolean[] clear;
+
+    /**
+     * Creates a new {@link EphemerisTable}.
+     *
+     * @param startMillis The time of the first sample, in milliseconds since the Unix epoch.
+     * @param stepMillis The time between samples, in milliseconds.
+     * @param altitude The altitude at each sample, in decimal degrees.
+     * @param azimuth The azimuth at each sample, in decimal degrees.
+     * @param clear If the body was free and clear, not eclipsed or occulted,
+     *              at each sample. Can be {@code null} if unknown, and then it
+     *              is always considered clear.
+     */
+    public EphemerisTable(long startMillis, long stepMillis, double[] altitude, double[] azimuth, boolean[] clear) {
+        if (stepMillis <= 0)
+            throw new IllegalArgumentException("stepMillis must be positive");
+        if (altitude.length == 0 || altitude.length != azimuth.length || (clear != null && clear.length != altitude.length))
+            throw new IllegalArgumentException("All the sample arrays must have the same, non-zero, length");
+
+        this.startMillis = startMillis;
+        this.stepMillis = stepMillis;
+        this.altitude = altitude;
+        this.azimuth = azimuth;
+        this.clear = clear;
+    }
+
+    /**
+     * @return The interval covered by the table.
+     */
+    public Interval getInterval() {
+        return new Interval(Instant.ofEpochMilli(startMillis), Instant.ofEpochMilli(getEndMillis()));
+    }
+
+    /**
+     * @return The time of the last sample, in milliseconds since the Unix epoch.
+     */
+    public long getEndMillis() {
+        return startMillis + (altitude.length - 1) * stepMillis;
+    }
+
+    /**
+     * @return How many samples the table has.
+     */
+    public int size() {
+        return altitude.length;
+    }
+
+    /**
+     * Checks if the table can answer queries at the given time.
+     *
+     * @param millis The time, in milliseconds since the Unix epoch.
+     *
+     * @return {@code true} if the time is within the table.
+     */
+    public boolean covers(long millis) {
+        return millis >= startMillis && millis <= getEndMillis();
+    }
+
+    /**
+     * Interpolates the altitude at the given time.
+     *
+     * @param millis The time, in milliseconds since the Unix epoch. Must be
+     *               within the table.
+     *
+     * @return The altitude, in decimal degrees.
+     */
+    public double altitude(long millis) {
+        return interpolate(altitude, millis, false);
+    }
+
+    /**
+     * Interpolates the azimuth at the given time.
+     *
+     * @param millis The time, in milliseconds since the Unix epoch. Must be
+     *               within the table.
+     *
+     * @return The azimuth, in decimal degrees (0-360).
+     */
+    public double azimuth(long millis) {
+        return AnalyticEphemerides.normalizeDegrees(interpolate(azimuth, millis, true));
+    }
+
+    /**
+     * Checks if the body was free and clear at the sample closest to the
+     * given time.
+     *
+     * @param millis The time, in milliseconds since the Unix epoch. Must be
+     *               within the table.
+     *
+     * @return {@code true} if it wasn't eclipsed or occulted.
+     */
+    public boolean isClear(long millis) {
+        if (clear == null)
+            return true;
+        long offset = checkedOffset(millis);
+        return clear[(int) Math.min(clear.length - 1L, (offset + stepMillis / 2) / stepMillis)];
+    }
+
+    /**
+     * Cubic Hermite interpolation, with the tangents taken from the
+     * neighbouring samples (Catmull-Rom). Angles are unwrapped around the
+     * first sample of the segment.
+     */
+    private double interpolate(double[] values, long millis, boolean isAngle) {
+        long offset = checkedOffset(millis);
+        int i = (int) (offset / stepMillis);
+        int last = values.length - 1;
+        if (i >= last)
+            return values[last];
+
+        double u = (offset - (long) i * stepMillis) / (double) stepMillis;
+
+        double p0 = values[i];
+        double p1 = p0 + delta(values[i], values[i + 1], isAngle);
+        double pPrev = i > 0 ? p0 - delta(values[i - 1], values[i], isAngle) : p0 - (p1 - p0);
+        double pNext = i + 2 <= last ? p1 + delta(values[i + 1], values[i + 2], isAngle) : p1 + (p1 - p0);
+
+        double m0 = (p1 - pPrev) / 2.0;
+        double m1 = (pNext - p0) / 2.0;
+
+        double u2 = u * u;
+        double u3 = u2 * u;
+        return (2 * u3 - 3 * u2 + 1) * p0
+             + (u3 - 2 * u2 + u) * m0
+             + (-2 * u3 + 3 * u2) * p1
+             + (u3 - u2) * m1;
+    }
+
+    private static double delta(double from, double to, boolean isAngle) {
+        double d = to - from;
+        if (isAngle) {
+            d = ((d + 540.0) % 360.0) - 180.0;
+        }
+        return d;
+    }
+
+    private long checkedOffset(long millis) {
+        if (!covers(millis))
+            throw new IllegalArgumentException("Time " + Instant.ofEpochMilli(millis) + " is outside of the table " + getInterval());
+        return millis - startMillis;
+    }
+}
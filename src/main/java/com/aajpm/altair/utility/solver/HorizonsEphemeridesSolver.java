@@ -2,12 +2,13 @@ package com.aajpm.altair.utility.solver;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -42,6 +43,15 @@ public class HorizonsEphemeridesSolver extends EphemeridesSolver {
 
     private WebClient client;
     private Map<String, String> baseParams;
+    private EphemeridesCache cache = null;
+
+    /** Alt/Az tables by body and observing day, most recently used last */
+    private final Map<String, Mono<EphemerisTable>> tables = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mono<EphemerisTable>> eldest) {
+            return size() > MAX_TABLES;
+        }
+    };
 
     private final Logger logger = LoggerFactory.getLogger(HorizonsEphemeridesSolver.class);
 
@@ -72,49 +82,32 @@ public class HorizonsEphemeridesSolver extends EphemeridesSolver {
         baseParams.put("CSV_FORMAT", "YES");        // Add commas to separate values
     }
 
+    /**
+     * Sets a cache for the body ID lookups, so each body is only looked up
+     * once.
+     * 
+     * @param cache The {@link EphemeridesCache} to use, or {@code null} to
+     *              disable caching.
+     */
+    public void setCache(EphemeridesCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * {@inheritDoc}
      * 
      * <p>This method uses the Horizons API to get the ID of the body with the
      * given name. If the body is not found, a {@link BodyNotFoundException} is
      * thrown as a {@link Mono#error(Throwable)}.
+     * 
+     * <p>The position is interpolated from the {@link EphemerisTable} of the
+     * body for the observing day of {@code time}, so only the first query of
+     * each body and day makes a request to Horizons.
      */
     @Override
     public Mono<double[]> getAltAz(String body, Instant time) {
-        Map<String, String> params = new HashMap<>(baseParams);
-        
-        // Fix the time string to be in the correct format for Horizons
-        String timeString = parseToHorizonsDate(time);
-        params.put("TLIST", timeString);
-        params.put("QUANTITIES", "4"); // Alt/Az
-        
-        return getBodyId(body).flatMap(id -> {
-            params.put("COMMAND", "" + id);
-            return getReq(params).flatMap(response -> {
-                logger.trace("getAltAz(body = {},time = {}) Horizons response: \n{}", body, time, response);
-                String[] lines = response.split("\n");
-                
-                // Scroll through the lines until it finds the start of the data
-                int i = 0;
-                while (i < lines.length && !lines[i].contains("$$SOE")) {
-                    i++;
-                }
-
-                if (i >= lines.length) {
-                    return Mono.error(new SolverException("Horizons returned an unexpected response for " + body));
-                }
-
-                if (lines[i + 1].contains("No ephemeris")) {
-                    return Mono.error(new SolverException("Horizons returned no ephemeris for " + body + " at " + timeString));
-                }
-
-                String[] data = lines[i + 1].trim().split(",");
-                double az = Double.parseDouble(data[3]);
-                double alt = Double.parseDouble(data[4]);
-
-                return Mono.just(new double[] {alt, az});
-            });
-        });
+        long millis = time.toEpochMilli();
+        return getDayTable(body, time).map(table -> new double[] {table.altitude(millis), table.azimuth(millis)});
     }
 
     /**
@@ -123,59 +116,129 @@ public class HorizonsEphemeridesSolver extends EphemeridesSolver {
      * <p>This method uses the Horizons API to get the ID of the body with the
      * given name. If the body is not found, a {@link BodyNotFoundException} is
      * thrown as a {@link Mono#error(Throwable)}.
+     * 
+     * <p>Like {@link #getAltAz(String, Instant)}, it is answered from the
+     * {@link EphemerisTable} of the body for the observing day of {@code time}.
+     * The body must be above {@code altitude}, the elevation cut, and not
+     * eclipsed or occulted. Except for the Sun and the Moon, the Sun must also
+     * be below the configured dawn line, taken from the Sun's own table.
      */
     @Override
-    @SuppressWarnings("java:S3776")
     public Mono<Boolean> isVisible(String body, Instant time, double altitude) {
-        
+        long millis = time.toEpochMilli();
+        return getBodyId(body).flatMap(id -> getDayTable(body, time).flatMap(table -> {
+            boolean isAboveCut = table.altitude(millis) > altitude && table.isClear(millis);
+            if (!isAboveCut || id.equals("" + 10) || id.equals("" + 301)) {    // If Sun or Moon, just check altitude, they can be seen in the day
+                return Mono.just(isAboveCut);
+            }
+            return getDayTable(SUN, time).map(sun -> sun.altitude(millis) < config.getDawnLine());
+        }));
+    }
+
+    /**
+     * Gets the horizontal coordinates of a body over an interval, sampled at
+     * a fixed step, in a single request to Horizons.
+     * 
+     * @param body The name of the body.
+     * @param interval The interval to cover.
+     * @param step The time between samples. Horizons works in whole minutes,
+     *             so it is rounded down to them (with a minimum of 1 minute).
+     * 
+     * @return A {@link Mono} containing the {@link EphemerisTable} of the body.
+     *         If the body is not found, a {@link BodyNotFoundException} is
+     *         thrown as a {@link Mono#error(Throwable)}.
+     */
+    public Mono<EphemerisTable> getAltAzTable(String body, Interval interval, Duration step) {
+        long stepMinutes = Math.max(1, step.toMinutes());
+        long stepMillis = Duration.ofMinutes(stepMinutes).toMillis();
+
         Map<String, String> params = new HashMap<>(baseParams);
-        
-        // Fix the time string to be in the correct format for Horizons
-        String timeString = parseToHorizonsDate(time);
-        params.put("TLIST", timeString);
+        params.put("START_TIME", parseToHorizonsDate(interval.getStart()));
+        params.put("STOP_TIME", parseToHorizonsDate(interval.getEnd()));
+        params.put("STEP_SIZE", stepMinutes + "m");
         params.put("QUANTITIES", "4,12"); // Alt/Az + visibility
-        
-        if (altitude > 0) {
-            params.put("ELEV_CUT", "" + altitude);
-        }
-        
+
         return getBodyId(body).flatMap(id -> {
             params.put("COMMAND", "" + id);
             return getReq(params).flatMap(response -> {
-                logger.trace("isVisible(body = {},time = {}, altitude = {}) Horizons response: \n{}", body, time, altitude, response);
-                String[] lines = response.split("\n");
-                
-                // Scroll through the lines until it finds the start of the data
-                int i = 0;
-                while (i < lines.length && !lines[i].contains("$$SOE")) {
-                    i++;
-                }
-
-                if (i >= lines.length) {
-                    return Mono.error(new SolverException("Horizons returned an unexpected response for " + body));
-                }
-
-                if (lines[i + 1].contains("No ephemeris")) {
-                    return Mono.error(new SolverException("Horizons returned no ephemeris for " + body + " at " + timeString));
+                logger.trace("getAltAzTable(body = {}, interval = {}, step = {}) Horizons response: \n{}", body, interval, step, response);
+                List<String> ephemerides = Arrays.stream(response.split("\n"))
+                                            .dropWhile(line -> !line.contains("$$SOE"))
+                                            .skip(1)
+                                            .takeWhile(line -> !line.contains("$$EOE"))
+                                            .filter(line -> !line.isBlank())
+                                            .map(String::trim)
+                                            .collect(Collectors.toList());
+
+                if (ephemerides.isEmpty() || ephemerides.get(0).contains("No ephemeris")) {
+                    return Mono.error(new SolverException("Horizons returned no ephemeris for " + body + " in " + interval));
                 }
 
-
-                String[] data = lines[i + 1].trim().split(",");
-
-                if (id.equals("" + 10) || id.equals("" + 301)) {    // If Sun or Moon, just check altitude, they can be seen in the day
-                    boolean isAboveHorizon = Double.parseDouble(data[4]) > altitude;
-                    return Mono.just(isAboveHorizon);
+                int size = ephemerides.size();
+                double[] altitude = new double[size];
+                double[] azimuth = new double[size];
+                boolean[] clear = new boolean[size];
+                Instant first = null;
+
+                for (int i = 0; i < size; i++) {
+                    String[] data = ephemerides.get(i).split(",");
+                    Instant date = parseHorizonsDate(data[0].trim());
+                    if (first == null) {
+                        first = date;
+                    } else if (Duration.between(first, date).toMillis() != i * stepMillis) {
+                        return Mono.error(new SolverException("Horizons returned an unevenly sampled table for " + body));
+                    }
+                    clear[i] = data.length < 7 || isClear(data[6].trim());
+                    azimuth[i] = Double.parseDouble(data[3]);
+                    altitude[i] = Double.parseDouble(data[4]);
                 }
 
-                boolean isNight = data[1].isBlank();                       // blank means night OR geocentric ephemeris
-                boolean visible = data[6].trim().startsWith("*");   // * means free and clear  
-
-
-                return (id.equals("" + 10) || id.equals("" + 301)) ?  Mono.just(visible) : Mono.just(isNight && visible);
+                return Mono.just(new EphemerisTable(first.toEpochMilli(), stepMillis, altitude, azimuth, clear));
             });
         });
     }
 
+    /**
+     * Checks the visibility code of Horizons' quantity 12. Only satellites
+     * have one, everything else gets "n.a.", which counts as clear.
+     * 
+     * @return {@code false} if the body is eclipsed ({@code -}) or occulted
+     *         ({@code +}) by its primary.
+     */
+    private static boolean isClear(String visibilityCode) {
+        return !visibilityCode.startsWith("-") && !visibilityCode.startsWith("+");
+    }
+
+    /**
+     * Gets the {@link EphemerisTable} of a body that covers the whole
+     * observing day of {@code time}, from noon to noon, fetching it if it
+     * hasn't been already. Concurrent calls for the same body and day share
+     * the same request.
+     */
+    private Mono<EphemerisTable> getDayTable(String body, Instant time) {
+        LocalDate day = getObservingDay(time);
+        String key = body.trim().toUpperCase(Locale.US) + "|" + day;
+
+        synchronized (tables) {
+            Mono<EphemerisTable> table = tables.get(key);
+            if (table == null) {
+                Duration step = config.getEphemerisTableStep();
+                Instant noon = getLocalNoon(day);
+                // One extra sample past the next noon so it is always covered
+                Interval interval = new Interval(noon, noon.plus(Duration.ofDays(1)).plus(step));
+                table = getAltAzTable(body, interval, step)
+                            .doOnError(e -> {
+                                synchronized (tables) {
+                                    tables.remove(key);
+                                }
+                            })
+                            .cache();
+                tables.put(key, table);
+            }
+            return table;
+        }
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -344,141 +407,126 @@ public class HorizonsEphemeridesSolver extends EphemeridesSolver {
     /**
      * {@inheritDoc}
      * 
-     * <p>This method uses a formula from
-     * {@link http://www.stargazing.net/kepler/altaz.html#twig02}. While
-     * an approximation, it is accurate to within 0.3 seconds for dates
-     * within 100 years of J2000.
+     * <p>This method uses the IAU 2006 expression for the Greenwich Mean
+     * Sidereal Time, plus the equation of the equinoxes.
      * 
+     * @see CoordinateTransform#localSiderealTime(long, double)
      */
     @Override
     public Mono<Double> getLST(Instant time, double longitude, boolean useHoursInstead) {
-        return Mono.just(getLSTImpl(time, longitude, useHoursInstead));
+        double lst = CoordinateTransform.localSiderealTime(time.toEpochMilli(), longitude);
+        return Mono.just(useHoursInstead ? lst / 15.0 : lst);
     }
 
-    /**
-     * Implementation of {@link #getLST(Instant, double, boolean)}.
-     */
-    protected double getLSTImpl(Instant time, double longitude, boolean useHoursInstead) {
-        // Using the formula from http://www.stargazing.net/kepler/altaz.html
-        double daysSinceJ2000 = getJ2000Time(time).toSeconds() / 86400.0;
-        ZonedDateTime utcTime = time.atZone(ZoneOffset.UTC);
-        double utc = utcTime.getHour() + utcTime.getMinute() / 60.0 + utcTime.getSecond() / 3600.0; 
-        double lst = (100.46 + 0.985647 * daysSinceJ2000 + longitude + 15 * utc) % 360;
-        
-        return useHoursInstead ? lst / 15.0 : lst;
-    }
-    
-
-    
     /**
      * {@inheritDoc}
      * 
-     * <p>This method uses spherical trigonometry to calculate the altitude
-     * and azimuth of a body, based on the formula from
-     * {@link http://www.stargazing.net/kepler/altaz.html#twig04}. It is a
-     * rough approximation, with an experimental error of approx. +/- 2%
+     * <p>The coordinates are taken as J2000 and corrected for precession,
+     * nutation and aberration locally. With {@code refract}, the result
+     * matches the apparent altitudes of {@link #getAltAz(String, Instant)}.
      * 
+     * @see CoordinateTransform
      */
     @Override
-    public Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time) {
-        return Mono.just(raDecToAltAzImpl(ra, dec, latitude, longitude, time));
-    }
-
-    /**
-     * Implementation of {@link #raDecToAltAz(double, double, double, double, Instant)}.
-     */
-    protected double[] raDecToAltAzImpl(double ra, double dec, double latitude, double longitude, Instant time) {
-        // Using the formula from http://www.stargazing.net/kepler/altaz.html
-        
-        double lst = getLSTImpl(time, longitude, false);
-        double raDeg = ra * 15; // Convert RA from hours to degrees
-        double ha = (lst - raDeg) % 360; // Clamp to 0-360
-
-        double haRad = degToRad(ha);
-        double decRad = degToRad(dec);
-        double latRad = degToRad(latitude);
-
-        double altRad = Math.asin(Math.sin(decRad) * Math.sin(latRad) + Math.cos(decRad) * Math.cos(latRad) * Math.cos(haRad));
-        double azRad = Math.acos((Math.sin(decRad) - Math.sin(altRad) * Math.sin(latRad)) / (Math.cos(altRad) * Math.cos(latRad)));
-
-        if (Math.sin(haRad) >= 0) {
-            azRad = 2 * Math.PI - azRad;
-        }
-
-        return new double[] {radToDeg(altRad), radToDeg(azRad)};
+    public Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time, boolean refract) {
+        return Mono.just(catalogueToAltAz(ra, dec, latitude, longitude, time, refract));
     }
 
     /**
      * {@inheritDoc}
      * 
-     * @return The value 98.0, based on observations of its precision.
+     * @return The value 99.99, as the transform is accurate to about an
+     *         arcsecond.
      */
     @Override
-    public double getRaDecToAltAzPrecision() { return 98.0; }
+    public double getRaDecToAltAzPrecision() { return 99.99; }
 
     /**
      * {@inheritDoc}
      * 
-     * <p>This method uses a naive implementation of a greedy algorithm to
-     * find the rise and set times of a body, dividing the search interval
-     * into equal length steps and checking the altitude at each step. Since
-     * it uses {@link #raDecToAltAz(double, double, double, double, Instant)},
-     * it is subject to some degree of error, but it should be almost negligible
-     * for rise and set times, since the altitude changes rapidly around those
-     * times and it is not advisable to be taking observations at those times.
-     * 
-     * @see #raDecToAltAz(double, double, double, double, Instant)
-     * @see #getRaDecToAltAzPrecision()
-     * 
-     * @implNote This method should be overhauled to use a proper astrophysical
-     *           algorithm, but it is not a priority at the moment.
+     * <p>The crossings are calculated analytically from the hour angle at
+     * which the apparent place of the body reaches {@code targetAltitude},
+     * taking refraction into account, so they are consistent with
+     * {@link #raDecToAltAz(double, double, double, double, Instant, boolean)}
+     * with {@code refract}.
+     * Circumpolar bodies are above it for the whole {@code searchInterval},
+     * and bodies that never rise return an empty one.
      * 
+     * @see #raDecToAltAz(double, double, double, double, Instant, boolean)
      */
     @Override
-    @SuppressWarnings("java:S2589") // False positive
     public Mono<Interval> getRiseSetTime(double ra, double dec, double latitude, double longitude, Interval searchInterval, double targetAltitude) {
+        return Mono.just(catalogueRiseSetTime(ra, dec, latitude, longitude, searchInterval, targetAltitude));
+    }
 
-        int maxIterations = 2048;
-
-        double farLimitSecs = searchInterval.getDurationSeconds();
-        long stepSize = (long) Math.floor(farLimitSecs / maxIterations);
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>All the bodies are solved analytically in a single parallel pass.
+     */
+    @Override
+    public Mono<Interval[]> getRiseSetTimes(double[] ra, double[] dec, Interval searchInterval, double targetAltitude) {
+        return Mono.fromCallable(() -> catalogueRiseSetTimes(ra, dec, searchInterval, targetAltitude));
+    }
 
-        
-        double lastAlt = raDecToAltAzImpl(ra, dec, latitude, longitude, searchInterval.getStart())[0];
-        Instant riseTime = (lastAlt >= targetAltitude) ? searchInterval.getStart() : null;
-        Instant setTime = null;
-
-        // This is a very naive implementation, it should be improved by a proper astrophysicist.
-        for (int i = 1; i < maxIterations; i++) {
-
-            // Get the time for the current iteration
-            Instant time = searchInterval.getStart().plusSeconds(stepSize * i);
-            // Calculate the altitude for the current iteration
-            double alt = raDecToAltAzImpl(ra, dec, latitude, longitude, time)[0];
-
-            // Check if the altitude is above or below the target altitude, and if that has changed from the last iteration
-            if (alt >= targetAltitude && lastAlt < targetAltitude && riseTime == null) {
-                riseTime = time;
-            } else if (alt < targetAltitude && lastAlt >= targetAltitude && setTime == null) {
-                setTime = time;
-            }
+    /**
+     * Gets the heliocentric osculating orbital elements of a body, referred to
+     * the J2000 ecliptic, so its orbit can be propagated locally.
+     *
+     * @param body The name of the body.
+     * @param time The epoch to get the elements for.
+     *
+     * @return A {@link Mono} containing the {@link OrbitalElements} of the
+     *         body, or a {@link Mono#error(Throwable)} if the body was not found.
+     */
+    public Mono<OrbitalElements> getOrbitalElements(String body, Instant time) {
+        Map<String, String> params = new HashMap<>(10);
+        params.put("MAKE_EPHEM", "YES");
+        params.put("OBJ_DATA", "NO");
+        params.put("EPHEM_TYPE", "ELEMENTS");
+        params.put("CENTER", "500@10");         // Heliocentric
+        params.put("REF_PLANE", "ECLIPTIC");
+        params.put("REF_SYSTEM", "ICRF");
+        params.put("OUT_UNITS", "AU-D");
+        params.put("CSV_FORMAT", "YES");
+        params.put("TLIST", parseToHorizonsDate(time));
 
-            // Update the last altitude
-            lastAlt = alt;
+        return getBodyId(body).flatMap(id -> {
+            params.put("COMMAND", "" + id);
+            return getReq(params).flatMap(response -> {
+                logger.trace("getOrbitalElements(body = {}, time = {}) Horizons response: \n{}", body, time, response);
+                String[] lines = response.split("\n");
 
-            // If we have both a rise and set time, we can stop
-            if (riseTime != null && setTime != null) {
-                break;
-            }
-        }
+                // Scroll through the lines until it finds the start of the data
+                int i = 0;
+                while (i < lines.length && !lines[i].contains("$$SOE")) {
+                    i++;
+                }
 
-        if (riseTime == null)   // If we didn't find a rise time, return an empty interval
-            return Mono.just(Interval.empty());
+                if (i + 1 >= lines.length) {
+                    return Mono.error(new SolverException("Horizons returned an unexpected response for " + body));
+                }
 
-        if (setTime == null)    // If we didn't find a set time, set it to the end of the search interval
-            setTime = searchInterval.getEnd();
+                // JDTDB, Calendar Date, EC, QR, IN, OM, W, Tp, N, MA, TA, A, AD, PR
+                String[] data = lines[i + 1].trim().split(",");
+                if (data.length < 12) {
+                    return Mono.error(new SolverException("Horizons returned no orbital elements for " + body));
+                }
 
-        return Mono.just(new Interval(riseTime, setTime));
+                double jd = Double.parseDouble(data[0].trim());
+                Instant epoch = Instant.ofEpochMilli(Math.round((jd - 2440587.5) * 86400000.0));
+
+                return Mono.just(new OrbitalElements(
+                    epoch,
+                    Double.parseDouble(data[11].trim()),
+                    Double.parseDouble(data[2].trim()),
+                    Double.parseDouble(data[4].trim()),
+                    Double.parseDouble(data[5].trim()),
+                    Double.parseDouble(data[6].trim()),
+                    Double.parseDouble(data[9].trim())
+                ));
+            });
+        });
     }
 
     /**
@@ -490,6 +538,22 @@ public class HorizonsEphemeridesSolver extends EphemeridesSolver {
      *         a {@link Mono#error(Throwable)} if the body was not found.
      */
     private Mono<String> getBodyId(String body) {
+        String cacheKey = "id|" + body.trim().toUpperCase(Locale.US);
+        String cachedId = cache != null ? cache.get(cacheKey) : null;
+        if (cachedId != null) {
+            return Mono.just(cachedId);
+        }
+
+        return getBodyIdImpl(body).doOnNext(id -> {
+            if (cache != null)
+                cache.put(cacheKey, id, Instant.now().plus(BODY_ID_RETENTION));
+        });
+    }
+
+    /**
+     * Implementation of {@link #getBodyId(String)}, without caching.
+     */
+    private Mono<String> getBodyIdImpl(String body) {
         Map<String, String> params = new HashMap<>(baseParams);
         params.replace("MAKE_EPHEM", "NO");
         params.replace("OBJ_DATA", "YES");
@@ -677,6 +741,15 @@ public class HorizonsEphemeridesSolver extends EphemeridesSolver {
         return formatter.format(date);
     }
 
+    /** The name the Sun is looked up by, for the darkness of the sky */
+    private static final String SUN = "Sol";
+
+    /** How many alt/az tables are kept in memory */
+    private static final int MAX_TABLES = 64;
+
+    /** How long a body ID is cached for */
+    private static final Duration BODY_ID_RETENTION = Duration.ofDays(365);
+
     private static final String MARKER_RISE = "r";
     private static final String MARKER_SET = "s";
 
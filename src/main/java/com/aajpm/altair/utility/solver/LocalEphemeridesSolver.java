@@ -0,0 +1,327 @@
+package com.aajpm.altair.utility.solver;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aajpm.altair.config.AstrometricsConfig;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.exception.BodyNotFoundException;
+import com.aajpm.altair.utility.exception.SolverException;
+import com.aajpm.altair.utility.solver.AnalyticEphemerides.Body;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * An {@link EphemeridesSolver} that calculates everything locally, using the
+ * analytic series in {@link AnalyticEphemerides}. The Sun, the Moon and the
+ * planets are always available offline, and every call is evaluated in
+ * microseconds instead of a round-trip to an external service.
+ * <p>
+ * Small bodies (asteroids, comets...) are propagated from their
+ * {@link OrbitalElements}. They can be registered manually with
+ * {@link #registerOrbitalElements(String, OrbitalElements)}, or fetched once
+ * from JPL Horizons if an {@code elementsProvider} is set, and are then cached
+ * until they are {@link #ELEMENTS_MAX_AGE} away from the requested time.
+ */
+public class LocalEphemeridesSolver extends EphemeridesSolver {
+
+    /** How far from their epoch cached orbital elements are still used */
+    public static final Duration ELEMENTS_MAX_AGE = Duration.ofDays(30);
+
+    /** Step used to look for rise/set times before refining them */
+    private static final long SEARCH_STEP_MILLIS = Duration.ofMinutes(10).toMillis();
+
+    /** Precision of the rise/set times */
+    private static final long SEARCH_PRECISION_MILLIS = 1000;
+
+    private final HorizonsEphemeridesSolver elementsProvider;
+
+    private final Map<String, OrbitalElements> elementsCache = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(LocalEphemeridesSolver.class);
+
+    /**
+     * Creates a new {@link LocalEphemeridesSolver} that works fully offline.
+     * Only the Sun, the Moon, the planets and the bodies registered with
+     * {@link #registerOrbitalElements(String, OrbitalElements)} will be found.
+     *
+     * @param config The {@link AstrometricsConfig} to use, containing the
+     *               observatory location and other settings.
+     */
+    public LocalEphemeridesSolver(AstrometricsConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Creates a new {@link LocalEphemeridesSolver}.
+     *
+     * @param config The {@link AstrometricsConfig} to use, containing the
+     *               observatory location and other settings.
+     * @param elementsProvider The solver used to fetch the orbital elements of
+     *                         small bodies that aren't cached yet, or
+     *                         {@code null} to never go online.
+     */
+    public LocalEphemeridesSolver(AstrometricsConfig config, HorizonsEphemeridesSolver elementsProvider) {
+        super(config);
+        this.elementsProvider = elementsProvider;
+    }
+
+    //////////////////////////////// BODIES ///////////////////////////////////
+    //#region Bodies
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned altitude is topocentric and corrected for atmospheric
+     * refraction.
+     */
+    @Override
+    public Mono<double[]> getAltAz(String body, Instant time) {
+        return getModel(body, time).map(model -> altAz(model, time.toEpochMilli(), true));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The Sun and the Moon are visible whenever they are above
+     * {@code targetAltitude}. Any other body also needs the Sun to be below the
+     * configured dawn line.
+     */
+    @Override
+    public Mono<Boolean> isVisible(String body, Instant time, double targetAltitude) {
+        Body builtIn = Body.fromName(body);
+        long millis = time.toEpochMilli();
+        return getModel(body, time).map(model -> {
+            boolean isAbove = altAz(model, millis, true)[0] > targetAltitude;
+            if (builtIn == Body.SUN || builtIn == Body.MOON)
+                return isAbove;
+            return isAbove && sunAltitude(millis) < config.getDawnLine();
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>For the Sun and the Moon, the times are those of the upper limb
+     * crossing {@code targetAltitude}, taking refraction into account.
+     */
+    @Override
+    public Mono<Interval> getRiseSetTime(String body, Interval searchInterval, double targetAltitude) {
+        Body builtIn = Body.fromName(body);
+        double radius = builtIn == null ? 0.0 : builtIn.getRadius();
+
+        return getModel(body, searchInterval.getStart()).map(model -> {
+            double[] position = new double[3];
+            double[] altAz = new double[2];
+            return RiseSetSolver.findIntervalAbove(millis -> {
+                model.position(millis, position);
+                toHorizontal(position, millis, config.getSiteLatitude(), config.getSiteLongitude(), true, altAz);
+                return altAz[0] + AnalyticEphemerides.semiDiameter(radius, position[2]) - targetAltitude;
+            }, searchInterval, SEARCH_STEP_MILLIS, SEARCH_PRECISION_MILLIS);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>For sites above the polar circles, up to 200 days are searched to
+     * account for the midnight sun.
+     */
+    @Override
+    public Mono<Interval> getNightTime(Instant start) {
+        boolean mayMidnightSun = Math.abs(config.getSiteLatitude()) > 65;
+        Interval searchInterval = new Interval(start, Duration.ofDays(mayMidnightSun ? 200 : 1));
+
+        Interval night = RiseSetSolver.findIntervalAbove(millis -> config.getDawnLine() - sunAltitude(millis), searchInterval, SEARCH_STEP_MILLIS, SEARCH_PRECISION_MILLIS);
+        if (night.equals(Interval.empty()) || !night.getEnd().isBefore(searchInterval.getEnd())) {
+            return Mono.error(new SolverException("Could not find astronomical dawn"));
+        }
+        return Mono.just(night);
+    }
+
+    /**
+     * Caches the orbital elements of a small body, so its position can be
+     * calculated offline.
+     *
+     * @param body The name of the body.
+     * @param elements The heliocentric orbital elements of the body.
+     */
+    public void registerOrbitalElements(String body, OrbitalElements elements) {
+        elementsCache.put(normalizeName(body), elements);
+    }
+
+    /**
+     * Gets the cached orbital elements of a small body.
+     *
+     * @param body The name of the body.
+     *
+     * @return The cached elements, or {@code null} if there are none.
+     */
+    public OrbitalElements getCachedOrbitalElements(String body) {
+        return elementsCache.get(normalizeName(body));
+    }
+
+    //#endregion
+    ///////////////////////////// COORDINATES /////////////////////////////////
+    //#region Coordinates
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This method uses the IAU 2006 expression for the Greenwich Mean
+     * Sidereal Time, plus the equation of the equinoxes.
+     *
+     * @see CoordinateTransform#localSiderealTime(long, double)
+     */
+    @Override
+    public Mono<Double> getLST(Instant time, double longitude, boolean useHoursInstead) {
+        double lst = CoordinateTransform.localSiderealTime(time.toEpochMilli(), longitude);
+        return Mono.just(useHoursInstead ? lst / 15.0 : lst);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The coordinates are taken as J2000 and corrected for precession,
+     * nutation and aberration, and for refraction if {@code refract} is set.
+     *
+     * @see CoordinateTransform
+     */
+    @Override
+    public Mono<double[]> raDecToAltAz(double ra, double dec, double latitude, double longitude, Instant time, boolean refract) {
+        return Mono.just(catalogueToAltAz(ra, dec, latitude, longitude, time, refract));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return The value 99.99, as the transform is accurate to about an
+     *         arcsecond.
+     */
+    @Override
+    public double getRaDecToAltAzPrecision() { return 99.99; }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Like the rise/set times, the apparent altitude is used, taking
+     * refraction into account.
+     */
+    @Override
+    public Mono<Boolean> isVisible(double ra, double dec, Instant time, double targetAltitude) {
+        long millis = time.toEpochMilli();
+        double[] altAz = catalogueToAltAz(ra, dec, config.getSiteLatitude(), config.getSiteLongitude(), time, true);
+        boolean isAbove = altAz[0] > targetAltitude;
+
+        double[] sun = new double[3];
+        AnalyticEphemerides.apparentPosition(Body.SUN, millis, sun);
+        toHorizontal(sun, millis, config.getSiteLatitude(), config.getSiteLongitude(), true, altAz);
+        boolean isSunOut = altAz[0] > 0.0;
+
+        return Mono.just(isAbove && !isSunOut);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The crossings are calculated analytically from the hour angle at
+     * which the apparent place of the body reaches {@code targetAltitude},
+     * taking refraction into account. Circumpolar bodies are above it for the
+     * whole {@code searchInterval}, and bodies that never rise return an
+     * empty one.
+     */
+    @Override
+    public Mono<Interval> getRiseSetTime(double ra, double dec, double latitude, double longitude, Interval searchInterval, double targetAltitude) {
+        return Mono.just(catalogueRiseSetTime(ra, dec, latitude, longitude, searchInterval, targetAltitude));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All the bodies are solved analytically in a single parallel pass.
+     */
+    @Override
+    public Mono<Interval[]> getRiseSetTimes(double[] ra, double[] dec, Interval searchInterval, double targetAltitude) {
+        return Mono.fromCallable(() -> catalogueRiseSetTimes(ra, dec, searchInterval, targetAltitude));
+    }
+
+    //#endregion
+    /////////////////////////////// HELPERS ///////////////////////////////////
+    //#region Helpers
+
+    /**
+     * Writes the apparent geocentric RA (deg), Dec (deg) and distance (AU) of
+     * a body at the given time into {@code out}.
+     */
+    @FunctionalInterface
+    private interface PositionModel {
+        void position(long epochMillis, double[] out);
+    }
+
+    /**
+     * Finds the model to calculate the position of a body, fetching its
+     * orbital elements if needed.
+     */
+    private Mono<PositionModel> getModel(String body, Instant time) {
+        Body builtIn = Body.fromName(body);
+        if (builtIn != null) {
+            return Mono.just((millis, out) -> AnalyticEphemerides.apparentPosition(builtIn, millis, out));
+        }
+
+        return getOrbitalElements(body, time)
+                .map(elements -> (millis, out) -> AnalyticEphemerides.apparentPosition(elements, millis, out));
+    }
+
+    /**
+     * Gets the orbital elements of a small body, from the cache if they are
+     * close enough to {@code time}, or from the {@code elementsProvider} if not.
+     */
+    private Mono<OrbitalElements> getOrbitalElements(String body, Instant time) {
+        String key = normalizeName(body);
+        OrbitalElements cached = elementsCache.get(key);
+        if (cached != null && Duration.between(cached.epoch(), time).abs().compareTo(ELEMENTS_MAX_AGE) <= 0) {
+            return Mono.just(cached);
+        }
+
+        if (elementsProvider == null) {
+            return cached != null ? Mono.just(cached) : Mono.error(new BodyNotFoundException(body));
+        }
+
+        logger.debug("LocalEphemeridesSolver: Fetching orbital elements for {} at {}", body, time);
+        return elementsProvider.getOrbitalElements(body, time)
+                .doOnNext(elements -> elementsCache.put(key, elements));
+    }
+
+    private double[] altAz(PositionModel model, long millis, boolean refract) {
+        double[] position = new double[3];
+        double[] altAz = new double[2];
+        model.position(millis, position);
+        toHorizontal(position, millis, config.getSiteLatitude(), config.getSiteLongitude(), refract, altAz);
+        return altAz;
+    }
+
+    private double sunAltitude(long millis) {
+        double[] position = new double[3];
+        double[] altAz = new double[2];
+        AnalyticEphemerides.apparentPosition(Body.SUN, millis, position);
+        toHorizontal(position, millis, config.getSiteLatitude(), config.getSiteLongitude(), false, altAz);
+        return altAz[0];
+    }
+
+    private static void toHorizontal(double[] position, long millis, double latitude, double longitude, boolean refract, double[] out) {
+        double lst = CoordinateTransform.localSiderealTime(millis, longitude);
+        AnalyticEphemerides.equatorialToHorizontal(position[0], position[1], position[2], lst, latitude, refract, out);
+    }
+
+    private static String normalizeName(String body) {
+        return body.trim().toUpperCase(Locale.US);
+    }
+
+    //#endregion
+}
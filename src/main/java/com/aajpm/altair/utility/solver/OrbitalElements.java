@@ -0,0 +1,50 @@
+package com.aajpm.altair.utility.solver;
+
+import java.time.Instant;
+
+/**
+ * Heliocentric osculating orbital elements of a body, referred to the J2000
+ * ecliptic and equinox. Used to propagate the orbits of small bodies (asteroids,
+ * comets...) without having to query an external service every time.
+ *
+ * @param epoch The epoch the elements are valid for.
+ * @param semiMajorAxis The semi-major axis, in AU. Negative for hyperbolic orbits.
+ * @param eccentricity The eccentricity of the orbit.
+ * @param inclination The inclination, in decimal degrees.
+ * @param ascendingNode The longitude of the ascending node, in decimal degrees.
+ * @param argumentOfPerihelion The argument of perihelion, in decimal degrees.
+ * @param meanAnomaly The mean anomaly at {@code epoch}, in decimal degrees.
+ */
+public record OrbitalElements(
+    Instant epoch,
+    double semiMajorAxis,
+    double eccentricity,
+    double inclination,
+    double ascendingNode,
+    double argumentOfPerihelion,
+    double meanAnomaly
+) {
+
+    /** Gaussian gravitational constant, in degrees per day */
+    private static final double GAUSS_K_DEG = 0.9856076686;
+
+    /**
+     * Calculates the mean motion of the orbit.
+     *
+     * @return The mean motion, in decimal degrees per day.
+     */
+    public double meanMotion() {
+        double a = Math.abs(semiMajorAxis);
+        return GAUSS_K_DEG / (a * Math.sqrt(a));
+    }
+
+    /**
+     * Checks if the orbit is closed i.e. the body will come back.
+     *
+     * @return {@code true} if the orbit is elliptical, {@code false} if it is
+     *         parabolic or hyperbolic.
+     */
+    public boolean isElliptical() {
+        return eccentricity < 1.0;
+    }
+}
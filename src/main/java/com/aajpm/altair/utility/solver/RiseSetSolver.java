@@ -0,0 +1,387 @@
+package com.aajpm.altair.utility.solver;
+
+import java.time.Instant;
+import java.util.function.LongToDoubleFunction;
+import java.util.stream.IntStream;
+
+import com.aajpm.altair.utility.Interval;
+
+/**
+ * Root-finding routines for rise/set times, shared by the
+ * {@link EphemeridesSolver} implementations.
+ * <p>
+ * Bodies with fixed coordinates are solved analytically from the hour angle
+ * at which they cross the target altitude. Moving bodies are scanned at a
+ * coarse step to bracket each crossing, which is then refined with Brent's
+ * method.
+ */
+public final class RiseSetSolver {
+
+    /////////////////////////////// CONSTANTS /////////////////////////////////
+    //#region Constants
+
+    /** Rate of the sidereal time, in degrees per millisecond */
+    private static final double SIDEREAL_RATE = 360.98564736629 / 86400000.0;
+
+    /** Maximum number of Newton iterations to refine an analytic crossing */
+    private static final int MAX_NEWTON_ITERATIONS = 4;
+
+    /** Largest correction accepted from a Newton iteration, beyond it the estimate is kept */
+    private static final long MAX_NEWTON_STEP_MILLIS = 600000;
+
+    /** Maximum number of Brent iterations, a safeguard in case of a bad bracket */
+    private static final int MAX_BRENT_ITERATIONS = 64;
+
+    //#endregion
+    ///////////////////////////// CONSTRUCTORS ////////////////////////////////
+    //#region Constructors
+
+    private RiseSetSolver() {}
+
+    //#endregion
+    ///////////////////////////// FIXED BODIES ////////////////////////////////
+    //#region Fixed bodies
+
+    /**
+     * Calculates the hour angle at which a body with fixed coordinates
+     * crosses an altitude.
+     *
+     * @param dec The declination of the body, in decimal degrees.
+     * @param latitude The latitude of the observer, in decimal degrees north positive.
+     * @param altitude The geometric altitude to cross, in decimal degrees.
+     *
+     * @return The hour angle of the setting crossing, in decimal degrees
+     *         (0-180), the rising one being its negative. {@link Double#NaN}
+     *         if the body never rises above {@code altitude}, and
+     *         {@link Double#POSITIVE_INFINITY} if it never sets below it
+     *         (circumpolar).
+     */
+    public static double crossingHourAngle(double dec, double latitude, double altitude) {
+        double decRad = Math.toRadians(dec);
+        double latRad = Math.toRadians(latitude);
+        double cosH = (Math.sin(Math.toRadians(altitude)) - Math.sin(latRad) * Math.sin(decRad))
+                        / (Math.cos(latRad) * Math.cos(decRad));
+
+        if (cosH > 1.0 || Double.isNaN(cosH))     // Always below (NaN at the poles when it lies on the horizon)
+            return Double.NaN;
+        if (cosH < -1.0)                            // Always above
+            return Double.POSITIVE_INFINITY;
+        return Math.toDegrees(Math.acos(cosH));
+    }
+
+    /**
+     * Converts an apparent altitude into the geometric one that the body must
+     * reach to be seen at it, inverting {@link AnalyticEphemerides#refraction(double)}.
+     *
+     * @param apparentAltitude The apparent altitude, in decimal degrees.
+     *
+     * @return The geometric altitude, in decimal degrees.
+     */
+    public static double unrefract(double apparentAltitude) {
+        double trueAltitude = apparentAltitude;
+        for (int i = 0; i < 20; i++) {
+            double next = apparentAltitude - AnalyticEphemerides.refraction(trueAltitude);
+            if (Math.abs(next - trueAltitude) < 1e-9)
+                return next;
+            trueAltitude = next;
+        }
+        return trueAltitude;
+    }
+
+    /**
+     * Finds the first interval within {@code searchInterval} where a body
+     * with fixed coordinates is above an altitude, from its hour angle.
+     * <p>
+     * The crossings are first placed assuming a uniform sidereal rate, and
+     * then refined with Newton's method against {@code localSiderealTime}, so
+     * they agree with it to the millisecond.
+     *
+     * @param ra The right ascension of the body, in decimal degrees.
+     * @param dec The declination of the body, in decimal degrees.
+     * @param latitude The latitude of the observer, in decimal degrees north positive.
+     * @param localSiderealTime The Local Sidereal Time at the observer, in
+     *                          decimal degrees, as a function of the time in
+     *                          milliseconds since the Unix epoch.
+     * @param searchInterval The interval to search.
+     * @param altitude The geometric altitude to cross, in decimal degrees.
+     *
+     * @return The first interval where the body is above {@code altitude},
+     *         clamped to {@code searchInterval}, or {@link Interval#empty()}
+     *         if it never is.
+     */
+    @SuppressWarnings("java:S107")
+    public static Interval fixedIntervalAbove(double ra, double dec, double latitude, LongToDoubleFunction localSiderealTime, Interval searchInterval, double altitude) {
+        double h0 = crossingHourAngle(dec, latitude, altitude);
+        if (Double.isNaN(h0))
+            return Interval.empty();
+        if (Double.isInfinite(h0))
+            return searchInterval;
+
+        long start = searchInterval.getStart().toEpochMilli();
+        long end = searchInterval.getEnd().toEpochMilli();
+
+        // Hour angle at the start, in the range (-180, 180]
+        double ha = hourAngle(localSiderealTime.applyAsDouble(start), ra);
+
+        long rise;
+        long set;
+        if (Math.abs(ha) <= h0) {       // Already up
+            rise = start;
+            set = refine(start + millisUntil(ha, h0), ra, dec, latitude, localSiderealTime, altitude);
+        } else {
+            rise = refine(start + millisUntil(ha, -h0), ra, dec, latitude, localSiderealTime, altitude);
+            if (rise >= end)
+                return Interval.empty();
+            set = refine(rise + millisUntil(-h0, h0), ra, dec, latitude, localSiderealTime, altitude);
+        }
+
+        rise = Math.max(rise, start);
+        set = Math.min(set, end);
+        if (set <= rise)
+            return Interval.empty();
+
+        return new Interval(Instant.ofEpochMilli(rise), Instant.ofEpochMilli(set));
+    }
+
+    /**
+     * Finds the first interval within {@code searchInterval} where each of
+     * several bodies with fixed coordinates is above an altitude, in a single
+     * parallel pass over the coordinate arrays.
+     * <p>
+     * The sidereal time is evaluated only at the ends of the search interval
+     * and interpolated linearly in between, which is accurate to a few
+     * milliseconds over several days.
+     *
+     * @param raHours The right ascension of each body, in decimal hours.
+     * @param dec The declination of each body, in decimal degrees.
+     * @param latitude The latitude of the observer, in decimal degrees north positive.
+     * @param localSiderealTime The Local Sidereal Time at the observer, in
+     *                          decimal degrees, as a function of the time in
+     *                          milliseconds since the Unix epoch.
+     * @param searchInterval The interval to search.
+     * @param altitude The geometric altitude to cross, in decimal degrees.
+     *
+     * @return The interval of each body, in the same order, as returned by
+     *         {@link #fixedIntervalAbove}.
+     */
+    @SuppressWarnings("java:S107")
+    public static Interval[] fixedIntervalsAbove(double[] raHours, double[] dec, double latitude, LongToDoubleFunction localSiderealTime, Interval searchInterval, double altitude) {
+        if (raHours.length != dec.length)
+            throw new IllegalArgumentException("The RA and Dec arrays must have the same length");
+
+        LongToDoubleFunction lst = linearSiderealTime(localSiderealTime, searchInterval);
+        Interval[] ret = new Interval[raHours.length];
+        IntStream.range(0, raHours.length).parallel().forEach(i ->
+            ret[i] = fixedIntervalAbove(raHours[i] * 15.0, dec[i], latitude, lst, searchInterval, altitude)
+        );
+        return ret;
+    }
+
+    /**
+     * Linearizes the sidereal time over an interval, from its values at both
+     * ends. The nutation and the quadratic terms of the sidereal time barely
+     * change in a few days, so the result is as good as the original, and
+     * much cheaper to evaluate.
+     */
+    private static LongToDoubleFunction linearSiderealTime(LongToDoubleFunction localSiderealTime, Interval interval) {
+        long start = interval.getStart().toEpochMilli();
+        long end = interval.getEnd().toEpochMilli();
+        double lstStart = localSiderealTime.applyAsDouble(start);
+        if (end <= start)
+            return millis -> lstStart;
+
+        // Whole turns are lost in the 0-360 range, so add them back from the nominal rate
+        double nominal = (end - start) * SIDEREAL_RATE;
+        double residual = AnalyticEphemerides.normalizeDegrees(localSiderealTime.applyAsDouble(end) - lstStart - nominal + 180.0) - 180.0;
+        double rate = (nominal + residual) / (end - start);
+
+        return millis -> lstStart + rate * (millis - start);
+    }
+
+    /**
+     * How long the sidereal time takes to move the hour angle from
+     * {@code from} to {@code to}, going forward.
+     */
+    private static long millisUntil(double from, double to) {
+        return Math.round(AnalyticEphemerides.normalizeDegrees(to - from) / SIDEREAL_RATE);
+    }
+
+    /**
+     * Refines an estimated crossing with Newton's method on the altitude,
+     * whose derivative with respect to the hour angle is known analytically.
+     */
+    @SuppressWarnings("java:S107")
+    private static long refine(long estimate, double ra, double dec, double latitude, LongToDoubleFunction localSiderealTime, double altitude) {
+        double decRad = Math.toRadians(dec);
+        double latRad = Math.toRadians(latitude);
+        double sinAlt = Math.sin(Math.toRadians(altitude));
+        double a = Math.sin(latRad) * Math.sin(decRad);
+        double b = Math.cos(latRad) * Math.cos(decRad);
+
+        long time = estimate;
+        for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+            double ha = Math.toRadians(hourAngle(localSiderealTime.applyAsDouble(time), ra));
+            // f = sin(alt) - sin(target), df/dt = -b * sin(ha) * dHA/dt
+            double f = a + b * Math.cos(ha) - sinAlt;
+            double df = -b * Math.sin(ha) * Math.toRadians(SIDEREAL_RATE);
+            if (df == 0.0)
+                break;
+            long step = Math.round(f / df);
+            if (step == 0 || Math.abs(step) > MAX_NEWTON_STEP_MILLIS)     // Converged, or grazing the altitude
+                break;
+            time -= step;
+        }
+        return time;
+    }
+
+    private static double hourAngle(double lst, double ra) {
+        double ha = AnalyticEphemerides.normalizeDegrees(lst - ra);
+        return ha > 180.0 ? ha - 360.0 : ha;
+    }
+
+    //#endregion
+    ///////////////////////////// MOVING BODIES ///////////////////////////////
+    //#region Moving bodies
+
+    /**
+     * Finds the first interval within {@code searchInterval} where
+     * {@code function} is positive.
+     * <p>
+     * The function is sampled every {@code stepMillis} to bracket the sign
+     * changes, so it must not go up and down again within a step, and each
+     * bracket is then refined with {@link #findRoot}.
+     *
+     * @param function A function of the time, in milliseconds since the Unix
+     *                 epoch, that is positive when the condition is met.
+     * @param searchInterval The interval to search.
+     * @param stepMillis The sampling step, in milliseconds.
+     * @param precisionMillis The precision of the crossings, in milliseconds.
+     *
+     * @return The first interval where {@code function} is positive, clamped
+     *         to {@code searchInterval}, or {@link Interval#empty()} if it
+     *         never is.
+     */
+    public static Interval findIntervalAbove(LongToDoubleFunction function, Interval searchInterval, long stepMillis, long precisionMillis) {
+        long start = searchInterval.getStart().toEpochMilli();
+        long end = searchInterval.getEnd().toEpochMilli();
+
+        long prevTime = start;
+        double prevValue = function.applyAsDouble(start);
+        long riseTime = prevValue >= 0 ? start : -1;
+        long setTime = -1;
+
+        while (prevTime < end && setTime < 0) {
+            long time = Math.min(prevTime + stepMillis, end);
+            double value = function.applyAsDouble(time);
+
+            if (riseTime < 0 && prevValue < 0 && value >= 0) {
+                riseTime = findRoot(function, prevTime, prevValue, time, value, precisionMillis);
+            } else if (riseTime >= 0 && prevValue >= 0 && value < 0) {
+                setTime = findRoot(function, prevTime, prevValue, time, value, precisionMillis);
+            }
+
+            prevTime = time;
+            prevValue = value;
+        }
+
+        if (riseTime < 0)       // Never got above
+            return Interval.empty();
+
+        if (setTime < 0)        // Never got below again
+            setTime = end;
+
+        return new Interval(Instant.ofEpochMilli(riseTime), Instant.ofEpochMilli(setTime));
+    }
+
+    /**
+     * Finds where {@code function} changes sign between {@code low} and
+     * {@code high} with Brent's method, which combines inverse quadratic
+     * interpolation and the secant method with bisection as a fallback, so it
+     * converges in a few evaluations for smooth functions and never does worse
+     * than bisection.
+     *
+     * @param function The function, of the time in milliseconds since the Unix epoch.
+     * @param low The start of the bracket.
+     * @param lowValue The value of the function at {@code low}.
+     * @param high The end of the bracket.
+     * @param highValue The value of the function at {@code high}, with the
+     *                  opposite sign of {@code lowValue}.
+     * @param precisionMillis The precision of the root, in milliseconds.
+     *
+     * @return The time of the crossing, rounded to {@code precisionMillis}.
+     */
+    @SuppressWarnings("java:S3776")
+    public static long findRoot(LongToDoubleFunction function, long low, double lowValue, long high, double highValue, long precisionMillis) {
+        // Brent's method, with b the best estimate and [b, c] the bracket
+        double a = low;
+        double fa = lowValue;
+        double b = high;
+        double fb = highValue;
+        double c = a;
+        double fc = fa;
+        double d = b - a;
+        double e = d;
+
+        for (int i = 0; i < MAX_BRENT_ITERATIONS; i++) {
+            if (Math.signum(fb) == Math.signum(fc) && fb != 0) {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+
+            double tolerance = precisionMillis / 2.0;
+            double m = (c - b) / 2.0;
+            if (Math.abs(m) <= tolerance || fb == 0)
+                break;
+
+            if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+                double s = fb / fa;
+                double p;
+                double q;
+                if (a == c) {                   // Secant
+                    p = 2.0 * m * s;
+                    q = 1.0 - s;
+                } else {                        // Inverse quadratic interpolation
+                    double r = fb / fc;
+                    q = fa / fc;
+                    p = s * (2.0 * m * q * (q - r) - (b - a) * (r - 1.0));
+                    q = (q - 1.0) * (r - 1.0) * (s - 1.0);
+                }
+                if (p > 0)
+                    q = -q;
+                else
+                    p = -p;
+
+                if (2.0 * p < Math.min(3.0 * m * q - Math.abs(tolerance * q), Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {                        // Interpolation is not converging fast enough, bisect
+                    d = m;
+                    e = m;
+                }
+            } else {
+                d = m;
+                e = m;
+            }
+
+            a = b;
+            fa = fb;
+            b += Math.abs(d) > tolerance ? d : Math.copySign(tolerance, m);
+            fb = function.applyAsDouble(Math.round(b));
+        }
+
+        long rounded = Math.round(b / precisionMillis) * precisionMillis;
+        return Math.max(low, Math.min(high, rounded));
+    }
+
+    //#endregion
+}
@@ -0,0 +1,63 @@
+package com.aajpm.altair.utility.statusreporting;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * Decides how long a {@link StatusPublisher} should wait before polling a
+ * device again, based on the last status the device reported.
+ *
+ * @param <T> The type of the status record being sampled.
+ */
+@FunctionalInterface
+public interface SamplingPolicy<T> {
+
+    /**
+     * Calculates the delay until the next sample.
+     *
+     * @param lastStatus The last status reported by the device, or
+     *                   {@code null} if it hasn't reported any yet.
+     *
+     * @return The time to wait before polling the device again.
+     */
+    Duration nextInterval(T lastStatus);
+
+    /**
+     * Creates a policy that always samples at the same rate.
+     *
+     * @param <T> The type of the status record being sampled.
+     * @param interval The time between samples.
+     *
+     * @return A policy that always returns {@code interval}.
+     */
+    static <T> SamplingPolicy<T> fixed(Duration interval) {
+        return lastStatus -> interval;
+    }
+
+    /**
+     * Creates a policy that samples at three different rates, depending on
+     * what the device is doing.
+     * <p>
+     * If the device hasn't reported a status yet, it is considered active so
+     * the first transitions are picked up as soon as possible.
+     *
+     * @param <T> The type of the status record being sampled.
+     * @param isActive Checks if the device is busy (e.g. slewing or exposing).
+     * @param isParked Checks if the device is at rest (e.g. parked or disconnected).
+     * @param activeInterval The time between samples while the device is busy.
+     * @param idleInterval The time between samples while the device is neither busy nor at rest.
+     * @param parkedInterval The time between samples while the device is at rest.
+     *
+     * @return A policy that switches between the three rates.
+     */
+    static <T> SamplingPolicy<T> tiered(Predicate<T> isActive, Predicate<T> isParked,
+                                        Duration activeInterval, Duration idleInterval, Duration parkedInterval) {
+        return lastStatus -> {
+            if (lastStatus == null || isActive.test(lastStatus))
+                return activeInterval;
+            if (isParked.test(lastStatus))
+                return parkedInterval;
+            return idleInterval;
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.aajpm.altair.utility.statusreporting;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Polls a device's status and publishes it as a shared stream.
+ * <p>
+ * The delay between polls is chosen by a {@link SamplingPolicy} from the last
+ * status received, so the rate changes by itself when the device changes
+ * state (e.g. fast while slewing, slow while parked). Only statuses that differ
+ * from the last one emitted are emitted, unless it was longer ago than the
+ * maximum interval, and the device is only polled while there is at least one
+ * subscriber, no matter how many there are.
+ *
+ * @param <T> The type of the status record being published.
+ */
+public class StatusPublisher<T> {
+
+    private final String name;
+
+    private final Supplier<Mono<T>> poller;
+
+    private final SamplingPolicy<T> policy;
+
+    private final BiPredicate<T, T> isUnchanged;
+
+    private final Duration maxInterval;
+
+    private final Flux<T> stream;
+
+    private volatile T lastStatus = null;
+
+    private final Logger logger = LoggerFactory.getLogger(StatusPublisher.class);
+
+    /**
+     * Creates a new {@link StatusPublisher} that emits every status that is
+     * not equal to the last one.
+     *
+     * @param name A name for the publisher, used for logging.
+     * @param poller Supplies a {@link Mono} that fetches the current status.
+     * @param policy The {@link SamplingPolicy} used to pick the delay between polls.
+     */
+    public StatusPublisher(String name, Supplier<Mono<T>> poller, SamplingPolicy<T> policy) {
+        this(name, poller, policy, Objects::equals, Duration.ZERO);
+    }
+
+    /**
+     * Creates a new {@link StatusPublisher}.
+     *
+     * @param name A name for the publisher, used for logging.
+     * @param poller Supplies a {@link Mono} that fetches the current status.
+     * @param policy The {@link SamplingPolicy} used to pick the delay between polls.
+     * @param isUnchanged Checks if a status, the second argument, is close
+     *                    enough to the last one emitted, the first, to not
+     *                    emit it (e.g. a temperature within a deadband).
+     * @param maxInterval The longest time without emitting, after which the
+     *                    next status is emitted even if it is unchanged.
+     *                    {@link Duration#ZERO} to only emit changes.
+     */
+    public StatusPublisher(String name, Supplier<Mono<T>> poller, SamplingPolicy<T> policy,
+                           BiPredicate<T, T> isUnchanged, Duration maxInterval) {
+        this.name = name;
+        this.poller = poller;
+        this.policy = policy;
+        this.isUnchanged = isUnchanged;
+        this.maxInterval = maxInterval;
+        this.stream = Flux.defer(() -> {
+                            // Each connection starts again, so its first status is always emitted
+                            ChangeFilter changes = new ChangeFilter();
+                            return Mono.defer(this.poller)
+                                        .doOnNext(status -> lastStatus = status)
+                                        .onErrorResume(e -> {
+                                            logger.debug("StatusPublisher[{}]: Error polling status", this.name, e);
+                                            return Mono.empty();
+                                        })
+                                        .repeatWhen(polls -> polls.concatMap(p -> Mono.delay(nextInterval())))
+                                        .filter(changes);
+                        })
+                        .replay(1)
+                        .refCount();
+    }
+
+    /**
+     * Gets the shared status stream. New subscribers immediately receive the
+     * latest status, if any.
+     *
+     * @return A {@link Flux} that emits the status every time it changes.
+     */
+    public Flux<T> getStream() {
+        return stream;
+    }
+
+    /**
+     * Gets the last status received by this publisher.
+     *
+     * @return The last status received, or {@code null} if the device hasn't
+     *         been polled yet.
+     */
+    public T getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Gets the delay until the next poll, according to the last status.
+     *
+     * @return The time to wait before polling the device again.
+     */
+    public Duration nextInterval() {
+        return policy.nextInterval(lastStatus);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    /**
+     * Lets a status through if it has changed since the last one let through,
+     * or if that was longer ago than the maximum interval.
+     */
+    private class ChangeFilter implements Predicate<T> {
+
+        private T lastEmitted = null;
+
+        private long lastEmittedAt;
+
+        @Override
+        public boolean test(T status) {
+            long now = System.nanoTime();
+            boolean overdue = !maxInterval.isZero() && now - lastEmittedAt >= maxInterval.toNanos();
+            if (lastEmitted != null && !overdue && isUnchanged.test(lastEmitted, status))
+                return false;
+
+            lastEmitted = status;
+            lastEmittedAt = now;
+            return true;
+        }
+    }
+}
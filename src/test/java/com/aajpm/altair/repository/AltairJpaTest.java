@@ -0,0 +1,47 @@
+package com.aajpm.altair.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * A {@link DataJpaTest} of the entities and repositories of Altair, on an H2
+ * database in memory with the second-level cache off, as set in
+ * {@code application-jpatest.properties}. The services the test needs are
+ * added with {@link Import} on the test class.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("jpatest")
+@ContextConfiguration(classes = AltairJpaTest.Config.class)
+public @interface AltairJpaTest {
+
+    /**
+     * Properties that override the ones of the profile, as in
+     * {@link DataJpaTest#properties()}.
+     */
+    @AliasFor(annotation = DataJpaTest.class)
+    String[] properties() default {};
+
+    @Configuration
+    @EntityScan(basePackages = { "com.aajpm.altair.entity", "com.aajpm.altair.security.account" })
+    @EnableJpaRepositories(basePackages = { "com.aajpm.altair.repository", "com.aajpm.altair.security.account" })
+    class Config {}
+}
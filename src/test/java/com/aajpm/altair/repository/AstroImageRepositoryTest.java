@@ -0,0 +1,161 @@
+package com.aajpm.altair.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.ImageValue;
+import com.aajpm.altair.service.AstroImageService;
+import com.aajpm.altair.service.AstroObjectService;
+import com.aajpm.altair.service.ImageAttributeService;
+import com.aajpm.altair.service.ImageValueService;
+import com.aajpm.altair.service.ObservatoryService;
+
+/**
+ * Checks the backfill of the typed values of the images catalogued before
+ * they were stored, which only had their values as strings.
+ */
+@AltairJpaTest
+@Import({ AstroImageService.class, ImageValueService.class, ImageAttributeService.class })
+public class AstroImageRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2023-06-09T21:00:00Z");
+
+    @MockBean
+    private ObservatoryService observatoryService;
+
+    @MockBean
+    private AstroObjectService astroObjectService;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private AstroImageRepository astroImageRepository;
+
+    @Autowired
+    private ImageValueRepository imageValueRepository;
+
+    @Autowired
+    private AstroImageService astroImageService;
+
+    /** As catalogued before: every value only as a string */
+    private AstroImage old;
+
+    /** Catalogued with the typed values */
+    private AstroImage current;
+
+    @BeforeEach
+    void setUp() {
+        ImageAttribute exposureTime = attribute("Exposure time", "EXPTIME");
+        ImageAttribute filter = attribute("Filter", "FILTER");
+        ImageAttribute observed = attribute("Observed", "DATE-OBS");
+        ImageAttribute observer = attribute("Observer", "OBSERVER");
+
+        old = image("old.fit");
+        value(old, exposureTime, "6.0D1");
+        value(old, filter, "Red");
+        value(old, observed, "2023-06-09T21:05:00");
+        value(old, observer, "Someone");
+
+        current = image("current.fit");
+        current.setExposureTime(30.0);
+        current.setFilter("Blue");
+        value(current, exposureTime, "30.0").setNumericValue(30.0);
+        value(current, filter, "Blue");
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void testBackfillFindsOnlyOldImages() {
+        assertEquals(old.getId(), astroImageRepository.findWithSearchColumnsMissing().get(0).getId());
+        assertEquals(1, astroImageRepository.findWithSearchColumnsMissing().size());
+        // The exposure time and the date, but not the name of the observer
+        assertEquals(2, imageValueRepository.findUntypedNumbersOrDates().size());
+    }
+
+    @Test
+    void testBackfillFillsTheTypedValues() {
+        astroImageService.backfillTypedValues();
+        em.flush();
+        em.clear();
+
+        AstroImage image = astroImageRepository.findById(old.getId()).orElseThrow();
+        assertEquals(60.0, image.getExposureTime());
+        assertEquals("Red", image.getFilter());
+        // Not in its values
+        assertNull(image.getCcdTemperature());
+        assertNull(image.getFrameType());
+
+        for (ImageValue value : imageValueRepository.findByImageId(old.getId())) {
+            switch (value.getAttribute().getFitsKeyword()) {
+                case "EXPTIME":
+                    assertEquals(60.0, value.getNumericValue());
+                    break;
+                case "DATE-OBS":
+                    assertEquals(NOW.plusSeconds(300), value.getDateValue());
+                    break;
+                default:
+                    assertNull(value.getNumericValue());
+                    assertNull(value.getDateValue());
+            }
+        }
+
+        assertTrue(astroImageRepository.findWithSearchColumnsMissing().isEmpty());
+        assertTrue(imageValueRepository.findUntypedNumbersOrDates().isEmpty());
+    }
+
+    @Test
+    void testBackfillKeepsTheCurrentImages() {
+        long version = astroImageRepository.findById(current.getId()).orElseThrow().getVersion();
+        em.clear();
+
+        astroImageService.backfillTypedValues();
+        em.flush();
+        em.clear();
+
+        // Not even updated
+        AstroImage image = astroImageRepository.findById(current.getId()).orElseThrow();
+        assertEquals(30.0, image.getExposureTime());
+        assertEquals("Blue", image.getFilter());
+        assertEquals(version, image.getVersion());
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private ImageAttribute attribute(String name, String keyword) {
+        ImageAttribute attribute = new ImageAttribute();
+        attribute.setName(name);
+        attribute.setFitsKeyword(keyword);
+        return em.persist(attribute);
+    }
+
+    private AstroImage image(String fileName) {
+        AstroImage image = new AstroImage();
+        image.setFileName(fileName);
+        image.setCreationDate(NOW);
+        return em.persist(image);
+    }
+
+    /** Persisted on its own, like the images catalogued before */
+    private ImageValue value(AstroImage image, ImageAttribute attribute, String text) {
+        ImageValue value = new ImageValue();
+        value.setImage(image);
+        value.setAttribute(attribute);
+        value.setValue(text);
+        return em.persist(value);
+    }
+}
@@ -0,0 +1,203 @@
+package com.aajpm.altair.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.BasicEntity;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.ImageValue;
+
+/**
+ * Checks that the images and their values are inserted in JDBC batches, as
+ * the ingestion does, by counting the statements and the batches sent to the
+ * database with and without batches, and that the ids are taken in blocks.
+ * <p>
+ * It has a context of its own, as the id generators of a shared one would
+ * still be giving the blocks the other tests left half used.
+ */
+@AltairJpaTest
+@DirtiesContext(classMode = ClassMode.BEFORE_CLASS)
+public class BatchInsertTest {
+
+    private static final int IMAGES = 500;
+
+    /** As hibernate.jdbc.batch_size in application.yaml */
+    private static final int BATCH_SIZE = 50;
+
+    /** The allocation size of the id generator, see BasicEntity */
+    private static final int ID_BLOCK = 50;
+
+    private static final Instant NOW = Instant.parse("2023-06-09T21:00:00Z");
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private AstroImageRepository astroImageRepository;
+
+    @Autowired
+    private ImageValueRepository imageValueRepository;
+
+    private List<ImageAttribute> attributes;
+
+    @BeforeEach
+    void setUp() {
+        attributes = new ArrayList<>();
+        for (String keyword : List.of("FILTER", "EXPTIME", "CCD-TEMP")) {
+            ImageAttribute attribute = new ImageAttribute();
+            attribute.setName(keyword);
+            attribute.setFitsKeyword(keyword);
+            attributes.add(em.persist(attribute));
+        }
+        em.flush();
+    }
+
+    @Test
+    void testImagesAndValuesAreInsertedInBatches() {
+        int values = IMAGES * attributes.size();
+
+        // One statement for each row: 500 + 1500
+        Executions unbatched = insert("unbatched", 1);
+        assertEquals(IMAGES + values, unbatched.statements);
+        assertEquals(0, unbatched.batches);
+
+        // One batch for each 50 rows of a table, the images first and then their values: 10 + 30
+        Executions batched = insert("batched", BATCH_SIZE);
+        assertEquals(0, batched.statements);
+        assertEquals(batches(IMAGES, BATCH_SIZE) + batches(values, BATCH_SIZE), batched.batches);
+
+        // The last batch of the images is shorter: 17 + 50
+        Executions uneven = insert("uneven", 30);
+        assertEquals(0, uneven.statements);
+        assertEquals(batches(IMAGES, 30) + batches(values, 30), uneven.batches);
+
+        assertEquals(3L * IMAGES, astroImageRepository.count());
+        assertEquals(3L * values, imageValueRepository.count());
+    }
+
+    @Test
+    void testIdsAreTakenInBlocks() {
+        long before = nextId();
+
+        List<AstroImage> images = images("ids");
+        astroImageRepository.saveAll(images);
+        em.flush();
+
+        List<Long> imageIds = images.stream().map(BasicEntity::getId).toList();
+        List<Long> valueIds = images.stream().flatMap(image -> image.getValues().stream()).map(BasicEntity::getId).toList();
+
+        // Unique across entities, and each block of ids is used in order
+        assertEquals(IMAGES, imageIds.stream().distinct().count());
+        for (int i = 1; i < imageIds.size(); i++)
+            assertTrue(imageIds.get(i) > imageIds.get(i - 1));
+        assertTrue(Collections.disjoint(imageIds, valueIds));
+        attributes.forEach(attribute -> assertFalse(imageIds.contains(attribute.getId())));
+
+        // Each entity takes blocks of its own from the same row, only one
+        // round-trip for every 50 ids. IMAGES is a multiple of the block,
+        // so none is left half used for the next test.
+        int imageBlocks = batches(imageIds.size(), ID_BLOCK);
+        int valueBlocks = batches(valueIds.size(), ID_BLOCK);
+        long after = nextId();
+        assertEquals(before + (long) ID_BLOCK * (imageBlocks + valueBlocks), after);
+
+        // The stored value is the last id of the blocks taken, so every id given is after the one stored before
+        for (List<Long> ids : List.of(imageIds, valueIds)) {
+            for (long id : ids)
+                assertTrue(id > before && id <= after, id + " is not after " + before + " and up to " + after);
+        }
+        assertEquals(imageBlocks, imageIds.stream().map(id -> (id - before - 1) / ID_BLOCK).distinct().count());
+        assertEquals(valueBlocks, valueIds.stream().map(id -> (id - before - 1) / ID_BLOCK).distinct().count());
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    /**
+     * Inserts {@link #IMAGES} images with a value for each attribute.
+     *
+     * @return What was sent to the database to insert them, without taking
+     *         the ids, which are taken when they are saved.
+     */
+    private Executions insert(String run, int batchSize) {
+        List<AstroImage> images = images(run);
+
+        Session session = em.getEntityManager().unwrap(Session.class);
+        session.setJdbcBatchSize(batchSize);
+        astroImageRepository.saveAll(images);
+
+        Executions executions = new Executions();
+        session.addEventListeners(executions);
+        em.flush();
+        executions.counting = false;
+        em.clear();
+
+        return executions;
+    }
+
+    private long nextId() {
+        return ((Number) em.getEntityManager()
+                    .createNativeQuery("SELECT next_val FROM hibernate_sequences WHERE sequence_name = 'default'")
+                    .getSingleResult()).longValue();
+    }
+
+    private static int batches(int rows, int batchSize) {
+        return (rows + batchSize - 1) / batchSize;
+    }
+
+    private List<AstroImage> images(String run) {
+        List<AstroImage> images = new ArrayList<>();
+        for (int i = 0; i < IMAGES; i++) {
+            AstroImage image = new AstroImage();
+            image.setFileName(run + i + ".fit");
+            image.setCreationDate(NOW.plusSeconds(i));
+            for (ImageAttribute attribute : attributes) {
+                ImageValue value = new ImageValue();
+                value.setImage(image);
+                value.setAttribute(attribute);
+                value.setValue(attribute.getFitsKeyword() + i);
+                image.addValue(value);
+            }
+            images.add(image);
+        }
+        return images;
+    }
+
+    /** Counts the statements run on their own and the batches executed */
+    private static class Executions implements SessionEventListener {
+
+        private boolean counting = true;
+
+        private int statements;
+
+        private int batches;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            if (counting)
+                statements++;
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            if (counting)
+                batches++;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.aajpm.altair.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.security.account.AltairUser;
+import com.aajpm.altair.security.account.Role;
+import com.aajpm.altair.service.ControlOrderService;
+
+/**
+ * Checks the range queries of the control orders against the database, and
+ * the backfill of the requested end of the orders saved before it existed.
+ */
+@AltairJpaTest
+@Import(ControlOrderService.class)
+public class ControlOrderRepositoryTest {
+
+    private static final Instant DUSK = Instant.parse("2023-06-09T21:00:00Z");
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ControlOrderRepository controlOrderRepository;
+
+    @Autowired
+    private ControlOrderService controlOrderService;
+
+    private AltairUser user;
+
+    /** 21:00 to 22:00 */
+    private ControlOrder first;
+
+    /** 22:00 to 23:00, right after the first one */
+    private ControlOrder second;
+
+    /** 20:00 to 02:00, containing both */
+    private ControlOrder wholeNight;
+
+    private static Instant at(double hours) {
+        return DUSK.plus(Duration.ofMinutes((long) (hours * 60)));
+    }
+
+    @BeforeEach
+    void setUp() {
+        Role role = em.persist(new Role("ADVANCED_USER"));
+        user = new AltairUser("observer", "password");
+        user.addRole(role);
+        em.persist(user);
+
+        first = persist(at(0), Duration.ofHours(1));
+        second = persist(at(1), Duration.ofHours(1));
+        wholeNight = persist(at(-1), Duration.ofHours(6));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void testOverlapExcludesTouchingOrders() {
+        // The first one ends when the range starts
+        assertEquals(ids(wholeNight, second), ids(controlOrderRepository.findOverlappingOrder(at(1), at(2))));
+        // The second one starts when the range ends
+        assertEquals(ids(wholeNight, first), ids(controlOrderRepository.findOverlappingOrder(at(-0.5), at(1))));
+        // Containing the range, or contained in it
+        assertEquals(ids(wholeNight, first), ids(controlOrderRepository.findOverlappingOrder(at(0.25), at(0.75))));
+        assertEquals(ids(wholeNight), ids(controlOrderRepository.findOverlappingOrder(at(3), at(4))));
+        assertTrue(controlOrderRepository.findOverlappingOrder(at(5), at(6)).isEmpty());
+    }
+
+    @Test
+    void testWithinRangeNeedsTheWholeOrder() {
+        // Starting at the start of the range counts, ending at its end doesn't, as before
+        assertEquals(ids(first), ids(controlOrderRepository.findWithinRangeOrder(at(0), at(2))));
+        assertEquals(ids(first, second), ids(controlOrderRepository.findWithinRangeOrder(at(0), at(2.5))));
+        assertEquals(ids(wholeNight, first, second), ids(controlOrderRepository.findWithinRangeOrder(at(-1), at(6))));
+        // Containing the range is not being within it
+        assertTrue(controlOrderRepository.findWithinRangeOrder(at(0.25), at(0.75)).isEmpty());
+    }
+
+    @Test
+    void testBackfillFindsOldOrders() {
+        // As saved before the column existed
+        em.getEntityManager().createNativeQuery("UPDATE control_orders SET requested_end = NULL").executeUpdate();
+        em.clear();
+
+        assertEquals(3, controlOrderRepository.findByRequestedEndIsNull().size());
+        assertTrue(controlOrderRepository.findOverlappingOrder(at(0), at(1)).isEmpty());
+
+        controlOrderService.backfillRequestedEnd();
+        em.flush();
+        em.clear();
+
+        assertTrue(controlOrderRepository.findByRequestedEndIsNull().isEmpty());
+        assertEquals(at(2), controlOrderRepository.findById(second.getId()).orElseThrow().getRequestedEnd());
+        assertEquals(ids(wholeNight, first), ids(controlOrderRepository.findOverlappingOrder(at(0), at(1))));
+    }
+
+    @Test
+    void testBackfillWithNothingToFill() {
+        controlOrderService.backfillRequestedEnd();
+        em.flush();
+        em.clear();
+
+        assertTrue(controlOrderRepository.findByRequestedEndIsNull().isEmpty());
+        assertEquals(3, controlOrderRepository.findOverlappingOrder(at(-1), at(5)).size());
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private ControlOrder persist(Instant start, Duration duration) {
+        ControlOrder order = new ControlOrder();
+        order.setUser(user);
+        order.setCompleted(false);
+        order.setCreationTime(DUSK.minus(Duration.ofDays(1)));
+        order.setRequestedTime(start);
+        order.setRequestedDuration(duration);
+        return em.persist(order);
+    }
+
+    private static List<Long> ids(ControlOrder... orders) {
+        return Arrays.stream(orders).map(ControlOrder::getId).toList();
+    }
+
+    private static List<Long> ids(List<ControlOrder> orders) {
+        return orders.stream().map(ControlOrder::getId).toList();
+    }
+}
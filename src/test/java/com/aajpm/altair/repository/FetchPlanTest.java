@@ -0,0 +1,242 @@
+package com.aajpm.altair.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.ExposureOrder;
+import com.aajpm.altair.entity.ExposureParams;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.ImageValue;
+import com.aajpm.altair.entity.Program;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.entity.AstroObject.AstroType;
+import com.aajpm.altair.security.account.AltairUser;
+import com.aajpm.altair.security.account.AltairUserRepository;
+import com.aajpm.altair.security.account.Role;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Counts the SQL statements each use case needs, so a new association or a
+ * missing entity graph that brings back the N+1 queries fails here.
+ */
+@AltairJpaTest
+public class FetchPlanTest {
+
+    private static final int ORDERS = 3;
+    private static final int EXPOSURES = 4;
+    private static final int IMAGES = 5;
+
+    private static final Instant NOW = Instant.parse("2023-06-09T21:00:00Z");
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private ProgramOrderRepository programOrderRepository;
+
+    @Autowired
+    private ControlOrderRepository controlOrderRepository;
+
+    @Autowired
+    private ProgramRepository programRepository;
+
+    @Autowired
+    private AstroImageRepository astroImageRepository;
+
+    @Autowired
+    private ImageAttributeRepository imageAttributeRepository;
+
+    @Autowired
+    private AltairUserRepository userRepository;
+
+    private Statistics statistics;
+
+    private long programId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = em.persist(new Role("ADMIN"));
+        AltairUser user = new AltairUser("observer", "password");
+        user.addRole(role);
+        em.persist(user);
+
+        AstroObject target = new AstroObject();
+        target.setName("M31");
+        target.setType(AstroType.GALAXY);
+        em.persist(target);
+
+        Program program = new Program();
+        program.setName("Andromeda");
+        program.setEnabled(true);
+        program.setTarget(target);
+        for (int i = 0; i < EXPOSURES; i++) {
+            ExposureParams params = new ExposureParams();
+            params.setLightFrame(true);
+            params.setExposureTime(60.0 * (i + 1));
+            params.setFilter("Luminance");
+            params.setBinX(1);
+            params.setBinY(1);
+            program.addExposure(params);
+        }
+        em.persist(program);
+        programId = program.getId();
+
+        for (int i = 0; i < ORDERS; i++) {
+            ProgramOrder order = new ProgramOrder();
+            order.setUser(user);
+            order.setProgram(program);
+            order.setCompleted(false);
+            order.setCreationTime(NOW.plusSeconds(i));
+            for (ExposureParams params : program.getExposures()) {
+                ExposureOrder exposure = new ExposureOrder();
+                exposure.setProgram(order);
+                exposure.setExposureParams(params);
+                order.getExposureOrders().add(exposure);
+            }
+            em.persist(order);
+
+            ControlOrder control = new ControlOrder();
+            control.setUser(user);
+            control.setCompleted(false);
+            control.setCreationTime(NOW.plusSeconds(i));
+            control.setRequestedTime(NOW.plusSeconds(3600L * i));
+            control.setRequestedDuration(Duration.ofMinutes(30));
+            em.persist(control);
+        }
+
+        ImageAttribute filter = new ImageAttribute();
+        filter.setName("Filter");
+        filter.setFitsKeyword("FILTER");
+        em.persist(filter);
+        ImageAttribute exposure = new ImageAttribute();
+        exposure.setName("Exposure");
+        exposure.setFitsKeyword("EXPTIME");
+        em.persist(exposure);
+
+        for (int i = 0; i < IMAGES; i++) {
+            AstroImage image = new AstroImage();
+            image.setFileName("image" + i + ".fit");
+            image.setCreationDate(NOW.plusSeconds(60L * i));
+            image.setTarget(target);
+            for (ImageAttribute attribute : List.of(filter, exposure)) {
+                ImageValue value = new ImageValue();
+                value.setImage(image);
+                value.setAttribute(attribute);
+                value.setValue(attribute.getName() + i);
+                image.addValue(value);
+            }
+            em.persist(image);
+        }
+
+        em.flush();
+        em.clear();
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testSchedulerLoadsPendingOrdersInOneQuery() {
+        List<ProgramOrder> orders = programOrderRepository.findByCompletedFalseOrderByCreationTimeAsc();
+        em.clear();     // Detached, like the orders the governor keeps
+
+        assertEquals(ORDERS, orders.size());
+        for (ProgramOrder order : orders) {
+            assertEquals("M31", order.getProgram().getTarget().getName());
+            assertEquals("observer", order.getUser().getUsername());
+            assertEquals(EXPOSURES, order.getExposureOrders().size());
+            for (ExposureOrder exposure : order.getExposureOrders()) {
+                assertTrue(exposure.getExposureParams().getExposureTime() > 0);
+                assertEquals("M31", exposure.getExposureParams().getProgram().getTarget().getName());
+            }
+        }
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testGovernorReloadsAnOrderInOneQuery() {
+        long id = programOrderRepository.findAll().get(0).getId();
+        em.clear();
+        statistics.clear();
+
+        ProgramOrder order = programOrderRepository.findWithExposuresById(id).orElseThrow();
+        em.clear();
+
+        assertEquals(EXPOSURES, order.getExposureOrders().size());
+        assertEquals("Andromeda", order.getProgram().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testControlOrdersComeWithTheirUser() {
+        List<ControlOrder> orders = controlOrderRepository.findOverlappingOrder(NOW.minusSeconds(1), NOW.plusSeconds(86400));
+        em.clear();
+
+        assertEquals(ORDERS, orders.size());
+        orders.forEach(order -> assertEquals("observer", order.getUser().getUsername()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testProgramComesWithTargetAndExposures() {
+        Program program = programRepository.findById(programId).orElseThrow();
+        em.clear();
+
+        assertEquals(EXPOSURES, program.getExposures().size());
+        assertEquals("M31", program.getTarget().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testCatalogueLoadsImagesWithTheirValuesInOneQuery() {
+        List<AstroImage> images = astroImageRepository.findByCreationDateBetweenOrderByCreationDateAsc(NOW, NOW.plusSeconds(3600));
+        em.clear();
+
+        assertEquals(IMAGES, images.size());
+        for (AstroImage image : images) {
+            assertEquals("M31", image.getTarget().getName());
+            assertEquals(2, image.getValues().size());
+            image.getValues().forEach(value -> assertTrue(value.getAttribute().getName().length() > 0));
+        }
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testAttributesDontLoadTheirValues() {
+        Collection<ImageAttribute> attributes = imageAttributeRepository.findAll();
+
+        assertEquals(2, attributes.size());
+        attributes.forEach(attribute -> assertFalse(Hibernate.isInitialized(attribute.getValues())));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testUserComesWithRoles() {
+        AltairUser user = userRepository.findByUsername("observer");
+        em.clear();
+
+        assertTrue(user.isAdmin());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+}
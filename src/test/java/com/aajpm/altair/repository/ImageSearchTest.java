@@ -0,0 +1,140 @@
+package com.aajpm.altair.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.ImageValue;
+import com.aajpm.altair.service.ImageAttributeService;
+import com.aajpm.altair.service.ImageSearchService;
+import com.aajpm.altair.service.ImageSearchService.AttributeFilter;
+import com.aajpm.altair.service.ImageSearchService.ImageSearch;
+import com.aajpm.altair.service.ImageSearchService.ImageSearchPage;
+import com.aajpm.altair.service.ImageSearchService.ImageSummary;
+import com.aajpm.altair.service.ImageSearchService.SortField;
+
+@AltairJpaTest
+@Import({ ImageSearchService.class, ImageAttributeService.class })
+public class ImageSearchTest {
+
+    private static final int IMAGES = 25;
+
+    private static final Instant NOW = Instant.parse("2023-06-09T21:00:00Z");
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ImageSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        ImageAttribute gain = new ImageAttribute();
+        gain.setName("Gain");
+        gain.setFitsKeyword("GAIN");
+        em.persist(gain);
+
+        // Every 5 images share the date, to check the ties are paged by id
+        for (int i = 0; i < IMAGES; i++) {
+            AstroImage image = new AstroImage();
+            image.setFileName("image" + i + ".fit");
+            image.setCreationDate(NOW.plusSeconds(60L * (i / 5)));
+            image.setFilter(i % 2 == 0 ? "Red" : "Blue");
+            image.setExposureTime(i % 3 == 0 ? null : 10.0 * i);
+
+            ImageValue value = new ImageValue();
+            value.setImage(image);
+            value.setAttribute(gain);
+            value.setValue(Integer.toString(i * 10));
+            value.setNumericValue(i * 10.0);
+            image.addValue(value);
+            em.persist(image);
+        }
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void testPagesCoverEveryImageOnce() {
+        for (boolean descending : List.of(false, true)) {
+            List<ImageSummary> found = searchAll(search(null, SortField.DATE, descending, 7, null), 7);
+
+            assertEquals(IMAGES, found.size());
+            assertEquals(IMAGES, found.stream().map(ImageSummary::id).distinct().count());
+            for (int i = 1; i < found.size(); i++) {
+                int order = found.get(i - 1).creationDate().compareTo(found.get(i).creationDate());
+                if (order == 0)
+                    order = Long.compare(found.get(i - 1).id(), found.get(i).id());
+                assertTrue(descending ? order > 0 : order < 0);
+            }
+        }
+    }
+
+    @Test
+    void testFiltersByColumnAndAttribute() {
+        List<AttributeFilter> gain = List.of(new AttributeFilter("GAIN", null, 50.0, 150.0, null, null));
+        ImageSearch search = new ImageSearch(null, null, null, "Red", null, null, null, null, null,
+                                gain, SortField.DATE, false, 3, null);
+
+        Set<String> fileNames = new HashSet<>();
+        searchAll(search, 3).forEach(image -> fileNames.add(image.fileName()));
+
+        // Red are the even ones, and a gain between 50 and 150 is from 5 to 15
+        assertEquals(Set.of("image6.fit", "image8.fit", "image10.fit", "image12.fit", "image14.fit"), fileNames);
+    }
+
+    @Test
+    void testSortingByAColumnSkipsImagesWithoutIt() {
+        List<ImageSummary> found = searchAll(search(null, SortField.EXPOSURE_TIME, false, 4, null), 4);
+
+        // Every third image has no exposure time
+        assertEquals(IMAGES - 9, found.size());
+        for (int i = 1; i < found.size(); i++)
+            assertTrue(found.get(i - 1).exposureTime() < found.get(i).exposureTime());
+    }
+
+    @Test
+    void testRejectsCursorOfAnotherOrder() {
+        ImageSearchPage first = searchService.search(search(null, SortField.DATE, false, 5, null));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> searchService.search(search(null, SortField.EXPOSURE_TIME, false, 5, first.next())));
+    }
+
+    //////////////////////////////// HELPERS /////////////////////////////////
+
+    private static ImageSearch search(String filter, SortField sort, boolean descending, int limit, String after) {
+        return new ImageSearch(null, null, null, filter, null, null, null, null, null, null, sort, descending, limit, after);
+    }
+
+    /** Follows the cursors until the last page */
+    private List<ImageSummary> searchAll(ImageSearch search, int limit) {
+        List<ImageSummary> found = new ArrayList<>();
+        ImageSearchPage page = searchService.search(search);
+        found.addAll(page.images());
+        while (page.next() != null) {
+            assertEquals(limit, page.images().size());
+            page = searchService.search(search.startingAfter(page.next()));
+            found.addAll(page.images());
+        }
+        assertNull(page.next());
+        return found;
+    }
+
+}
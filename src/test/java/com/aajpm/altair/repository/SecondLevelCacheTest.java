@@ -0,0 +1,121 @@
+package com.aajpm.altair.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.AstroObject.AstroType;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks that the reference data is read from the second-level cache, and
+ * that what is saved through the repositories is seen right away. Each
+ * repository call is its own transaction, as in the services, since the
+ * cache is only written when a transaction commits.
+ */
+@AltairJpaTest(properties = {
+    "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+    "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+    // The caches are shared by every context in the JVM, this keeps them apart
+    "spring.jpa.properties.hibernate.cache.region_prefix=secondlevelcache"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private AstroObjectRepository astroObjectRepository;
+
+    @Autowired
+    private ImageAttributeRepository imageAttributeRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        AstroObject target = new AstroObject();
+        target.setName("M31");
+        target.setType(AstroType.GALAXY);
+        astroObjectRepository.save(target);
+
+        ImageAttribute exposure = new ImageAttribute();
+        exposure.setName("Exposure");
+        exposure.setFitsKeyword("EXPTIME");
+        imageAttributeRepository.save(exposure);
+
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageAttributeRepository.deleteAll();
+        astroObjectRepository.deleteAll();
+    }
+
+    @Test
+    void testObjectsAreReadFromTheCache() {
+        long id = astroObjectRepository.findByNameIgnoreCase("M31").getId();
+        statistics.clear();
+
+        for (int i = 0; i < 3; i++)
+            assertEquals("M31", astroObjectRepository.findById(id).orElseThrow().getName());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(3, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void testUpdatesAreSeenFromTheCache() {
+        AstroObject target = astroObjectRepository.findByNameIgnoreCase("M31");
+        target.setBaseFocus(1200);
+        // The merged copy, the one with the new version
+        target = astroObjectRepository.save(target);
+        statistics.clear();
+
+        AstroObject cached = astroObjectRepository.findById(target.getId()).orElseThrow();
+        assertEquals(1200, cached.getBaseFocus());
+        assertEquals(target.getVersion(), cached.getVersion());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1200, astroObjectRepository.findByNameIgnoreCase("M31").getBaseFocus());
+
+        astroObjectRepository.delete(cached);
+        assertTrue(astroObjectRepository.findById(target.getId()).isEmpty());
+    }
+
+    @Test
+    void testQueriesAreCachedUntilTheTableChanges() {
+        assertEquals(1, imageAttributeRepository.findAll().size());
+        long queries = statistics.getPrepareStatementCount();
+
+        // Served from the query cache
+        assertEquals(1, imageAttributeRepository.findAll().size());
+        assertEquals("EXPTIME", imageAttributeRepository.findByName("Exposure").getFitsKeyword());
+        assertEquals("EXPTIME", imageAttributeRepository.findByName("Exposure").getFitsKeyword());
+        assertEquals(queries + 1, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() >= 2);
+
+        // Writing to the table invalidates them
+        ImageAttribute filter = new ImageAttribute();
+        filter.setName("Filter");
+        filter.setFitsKeyword("FILTER");
+        imageAttributeRepository.save(filter);
+
+        assertEquals(2, imageAttributeRepository.findAll().size());
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.aajpm.altair.config.AstrometricsConfig;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+public class AstroObjectServiceTest {
+
+    private static final Instant DUSK = Instant.parse("2023-06-09T21:00:00Z");
+
+    private static final Interval FIRST_NIGHT = new Interval(DUSK, Duration.ofHours(8));
+
+    private static final Interval SECOND_NIGHT = new Interval(DUSK.plus(Duration.ofDays(1)), Duration.ofHours(8));
+
+    @Mock
+    private EphemeridesSolver solver;
+
+    @InjectMocks
+    private AstroObjectService astroObjectService;
+
+    @BeforeEach
+    void setUp() {
+        AstrometricsConfig config = new AstrometricsConfig();
+        config.setEphemerisTableStep(Duration.ofHours(1));
+
+        lenient().when(solver.getConfig()).thenReturn(config);
+        lenient().when(solver.getNightTime(any(Instant.class))).thenAnswer(invocation ->
+                Mono.just(((Instant) invocation.getArgument(0)).isBefore(FIRST_NIGHT.getEnd()) ? FIRST_NIGHT : SECOND_NIGHT));
+        lenient().when(solver.getAltAz(anyString(), any(Instant.class))).thenReturn(Mono.just(new double[] {-20.0, 180.0}));
+    }
+
+    @Test
+    void testSkyConditionsAreKeptByNight() {
+        // Nights prepared at the same time ask for their sky in turns, 9 hourly samples of the Sun and the Moon each
+        assertNotNull(astroObjectService.getSkyConditions(FIRST_NIGHT).block());
+        assertNotNull(astroObjectService.getSkyConditions(SECOND_NIGHT).block());
+        verify(solver, times(36)).getAltAz(anyString(), any(Instant.class));
+
+        for (int hours = 0; hours < 8; hours++) {
+            assertNotNull(astroObjectService.getSkyConditions(new Interval(FIRST_NIGHT.getStart().plus(Duration.ofHours(hours)), Duration.ofHours(1))).block());
+            assertNotNull(astroObjectService.getSkyConditions(new Interval(SECOND_NIGHT.getStart().plus(Duration.ofHours(hours)), Duration.ofHours(1))).block());
+        }
+
+        // Neither night was sampled again
+        verify(solver, times(36)).getAltAz(anyString(), any(Instant.class));
+    }
+
+    @Test
+    void testFailedSamplingIsNotKept() {
+        lenient().when(solver.getAltAz(anyString(), any(Instant.class)))
+                 .thenReturn(Mono.error(new IllegalStateException("No ephemerides")))
+                 .thenReturn(Mono.just(new double[] {-20.0, 180.0}));
+
+        astroObjectService.getSkyConditions(FIRST_NIGHT).onErrorResume(e -> Mono.empty()).block();
+        assertNotNull(astroObjectService.getSkyConditions(FIRST_NIGHT).block());
+    }
+}
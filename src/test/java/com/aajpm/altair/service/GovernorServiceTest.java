@@ -0,0 +1,331 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.ExposureOrder;
+import com.aajpm.altair.entity.ExposureParams;
+import com.aajpm.altair.entity.Order;
+import com.aajpm.altair.entity.Program;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.service.GovernorService.State;
+import com.aajpm.altair.service.ObservatoryService.ObservatoryStatus;
+import com.aajpm.altair.service.observatory.WeatherWatchService;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Takes the governor through its states with the devices mocked. The steps
+ * run on the governor's worker, so each test waits for the transition.
+ */
+@ExtendWith(MockitoExtension.class)
+public class GovernorServiceTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private ObservatoryService observatoryService;
+
+    @Mock
+    private WeatherWatchService weatherWatch;
+
+    @Mock
+    private EphemeridesSolver ephemeridesSolver;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ScheduleService scheduleService;
+
+    @Mock
+    private LookaheadService lookaheadService;
+
+    @Mock
+    private ProgramOrderService programOrderService;
+
+    @Mock
+    private ControlOrderService controlOrderService;
+
+    @Mock
+    private ExposureOrderService exposureOrderService;
+
+    @Mock
+    private AstroImageService astroImageService;
+
+    @Mock
+    private AltairUserService userService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SequencerService sequencer;
+
+    private WorkerService workers;
+
+    private GovernorService governor;
+
+    /** What the devices report, changed by the tests */
+    private final AtomicReference<ObservatoryStatus> status = new AtomicReference<>();
+
+    /** What the weather watch reports, changed by the tests */
+    private final AtomicBoolean safe = new AtomicBoolean(true);
+
+    @BeforeEach
+    void setUp() {
+        ObservatoryConfig config = new ObservatoryConfig();
+        workers = new WorkerService();
+        ReflectionTestUtils.setField(workers, "config", config);
+        ReflectionTestUtils.setField(workers, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(workers, "setUp");
+
+        governor = new GovernorService(config);
+        ReflectionTestUtils.setField(governor, "observatoryService", observatoryService);
+        ReflectionTestUtils.setField(governor, "weatherWatch", weatherWatch);
+        ReflectionTestUtils.setField(governor, "ephemeridesSolver", ephemeridesSolver);
+        ReflectionTestUtils.setField(governor, "orderService", orderService);
+        ReflectionTestUtils.setField(governor, "scheduleService", scheduleService);
+        ReflectionTestUtils.setField(governor, "lookaheadService", lookaheadService);
+        ReflectionTestUtils.setField(governor, "programOrderService", programOrderService);
+        ReflectionTestUtils.setField(governor, "controlOrderService", controlOrderService);
+        ReflectionTestUtils.setField(governor, "exposureOrderService", exposureOrderService);
+        ReflectionTestUtils.setField(governor, "astroImageService", astroImageService);
+        ReflectionTestUtils.setField(governor, "userService", userService);
+        ReflectionTestUtils.setField(governor, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(governor, "workers", workers);
+        ReflectionTestUtils.setField(governor, "sequencer", sequencer);
+
+        // Parked, in the middle of a safe night
+        status.set(SchedulingSimulationTest.observatoryStatus(false, true));
+        lenient().when(ephemeridesSolver.getNightTime()).thenReturn(Mono.just(new Interval(Instant.now().minus(Duration.ofHours(2)), Duration.ofHours(8))));
+        lenient().when(weatherWatch.connect()).thenReturn(Mono.just(true));
+        lenient().when(observatoryService.isSafe(anyBoolean())).thenAnswer(invocation -> Mono.just(safe.get()));
+        lenient().when(observatoryService.getStatus()).thenAnswer(invocation -> Mono.just(status.get()));
+
+        // Every device does what it's told
+        lenient().when(observatoryService.connectAll()).thenAnswer(invocation -> {
+            status.set(SchedulingSimulationTest.observatoryStatus(true, false));
+            return Mono.just(true);
+        });
+        lenient().when(observatoryService.startAwait()).thenReturn(Mono.just(true));
+        lenient().when(observatoryService.stopAwait()).thenAnswer(invocation -> {
+            status.set(SchedulingSimulationTest.observatoryStatus(true, true));
+            return Mono.just(true);
+        });
+        lenient().when(observatoryService.disconnectAllExceptWeather()).thenAnswer(invocation -> {
+            status.set(SchedulingSimulationTest.observatoryStatus(false, true));
+            return Mono.just(true);
+        });
+        lenient().when(observatoryService.disconnectAll()).thenReturn(Mono.just(true));
+        lenient().when(observatoryService.abort()).thenReturn(Mono.just(true));
+        lenient().when(observatoryService.abortExposure()).thenReturn(Mono.just(true));
+        lenient().when(observatoryService.waitForExposure(any())).thenReturn(Mono.never());
+        lenient().when(sequencer.start(any())).thenReturn(Mono.just(true));
+        lenient().when(exposureOrderService.update(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(orderService.update(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(workers, "tearDown");
+    }
+
+    @Test
+    void testDisabledDoesNothing() {
+        assertEquals(State.DISABLED, governor.getState().block());
+
+        governor.queueOrder(programOrder(1L)).block();
+
+        verify(scheduleService, after(500).never()).next(any());
+        verify(observatoryService, never()).connectAll();
+        assertNull(governor.getCurrentOrder());
+    }
+
+    @Test
+    void testParkedWithNothingToRunStaysParked() {
+        governor.enable().block();
+
+        verify(scheduleService, timeout(TIMEOUT)).next(any());
+        verify(observatoryService, timeout(TIMEOUT)).disconnectAllExceptWeather();
+        verify(observatoryService, never()).connectAll();
+        assertNull(governor.getCurrentOrder());
+        assertEquals(State.PARKED, governor.getState().block());
+    }
+
+    @Test
+    void testParkedStartsThePlannedProgram() {
+        ProgramOrder order = programOrder(1L);
+        when(scheduleService.next(any())).thenReturn(order, (ProgramOrder) null);
+
+        governor.enable().block();
+        awaitCurrentOrder(order);
+
+        verify(observatoryService).connectAll();
+        verify(observatoryService).startAwait();
+        verify(sequencer).start(order.getExposureOrders().get(0).getExposureParams());
+        assertEquals(ExposureOrder.States.IN_PROGRESS, order.getExposureOrders().get(0).getState());
+        assertEquals(State.RUNNING_PROGRAM, governor.getState().block());
+    }
+
+    @Test
+    void testQueuedOrderGoesBeforeThePlannedOnes() {
+        ProgramOrder queued = programOrder(2L);
+
+        governor.queueOrder(queued).block();
+        governor.enable().block();
+        awaitCurrentOrder(queued);
+
+        verify(scheduleService, never()).next(any());
+        assertEquals(State.RUNNING_PROGRAM, governor.getState().block());
+    }
+
+    @Test
+    void testUnsafeAbortsTheRunningProgram() {
+        ProgramOrder order = programOrder(1L);
+        when(scheduleService.next(any())).thenReturn(order, (ProgramOrder) null);
+        governor.enable().block();
+        awaitCurrentOrder(order);
+
+        safe.set(false);
+        governor.checkObservingConditions().block();
+
+        Awaitility.await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() -> governor.getCurrentOrder() == null);
+        verify(sequencer, atLeastOnce()).reset();
+        verify(observatoryService, timeout(TIMEOUT).atLeastOnce()).abort();
+        verify(observatoryService, timeout(TIMEOUT)).stopAwait();
+        assertEquals(ExposureOrder.States.FAILED, order.getExposureOrders().get(0).getState());
+        assertEquals(State.PARKED, governor.getState().block());
+    }
+
+    @Test
+    void testUnsafeInterruptsTheSlew() {
+        ProgramOrder order = programOrder(1L);
+        when(scheduleService.next(any())).thenReturn(order, (ProgramOrder) null);
+        // The slew to the target never ends
+        when(sequencer.start(any())).thenReturn(Mono.never());
+        governor.enable().block();
+        verify(sequencer, timeout(TIMEOUT)).start(any());
+
+        // Parks right away, instead of after the transition timeout
+        safe.set(false);
+        governor.checkObservingConditions().block();
+
+        verify(observatoryService, timeout(TIMEOUT)).abort();
+        verify(observatoryService, timeout(TIMEOUT)).abortExposure();
+        verify(observatoryService, timeout(TIMEOUT)).stopAwait();
+        assertNull(governor.getCurrentOrder());
+        assertEquals(ExposureOrder.States.PENDING, order.getExposureOrders().get(0).getState());
+    }
+
+    @Test
+    void testUnsafeIsNotReplacedByLaterEvents() {
+        ProgramOrder order = programOrder(1L);
+        when(scheduleService.next(any())).thenReturn(order, (ProgramOrder) null);
+        governor.enable().block();
+        awaitCurrentOrder(order);
+
+        // As if a step were in progress, so the events are coalesced
+        AtomicBoolean stepping = (AtomicBoolean) ReflectionTestUtils.getField(governor, "stepping");
+        Awaitility.await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() -> stepping.compareAndSet(false, true));
+
+        safe.set(false);
+        governor.checkObservingConditions().block();
+        // The periodic check comes right after, the step must still halt the observatory
+        governor.governor().block();
+
+        AtomicReference<?> pending = (AtomicReference<?>) ReflectionTestUtils.getField(governor, "pendingTrigger");
+        assertEquals("SAFETY_CHANGED", String.valueOf(pending.get()));
+        stepping.set(false);
+    }
+
+    @Test
+    void testManualSessionEndsWhenItsTimeIsUp() {
+        ControlOrder order = new ControlOrder();
+        order.setId(3L);
+        order.setCompleted(false);
+        order.setRequestedTime(Instant.now());
+        order.setRequestedDuration(Duration.ofSeconds(1));
+        when(controlOrderService.findByIdWithUser(3L)).thenReturn(order);
+
+        governor.queueOrder(order).block();
+        governor.enable().block();
+        awaitCurrentOrder(order);
+        assertEquals(State.MANUAL, governor.getState().block());
+
+        // Once it's over, it's marked as completed and there's nothing else to run
+        Awaitility.await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() -> governor.getCurrentOrder() == null);
+        verify(orderService, timeout(TIMEOUT)).update(order);
+        assertTrue(order.isCompleted());
+        verify(observatoryService, timeout(TIMEOUT)).disconnectAllExceptWeather();
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private void awaitCurrentOrder(Order order) {
+        Awaitility.await().atMost(TIMEOUT, TimeUnit.MILLISECONDS).until(() -> governor.getCurrentOrder() != null);
+        assertSame(order, governor.getCurrentOrder());
+    }
+
+    /** With a single ten minute exposure, reloaded as the same instance */
+    private ProgramOrder programOrder(long id) {
+        AstroObject target = new AstroObject();
+        target.setId(100L + id);
+        Program program = new Program();
+        program.setId(200L + id);
+        program.setTarget(target);
+
+        ProgramOrder order = new ProgramOrder();
+        order.setId(id);
+        order.setProgram(program);
+        order.setCompleted(false);
+
+        ExposureParams params = new ExposureParams();
+        params.setLightFrame(true);
+        params.setExposureTime(600.0);
+        ExposureOrder exposure = new ExposureOrder();
+        exposure.setId(300L + id);
+        exposure.setProgram(order);
+        exposure.setExposureParams(params);
+        exposure.setState(ExposureOrder.States.PENDING);
+        order.getExposureOrders().add(exposure);
+
+        lenient().when(programOrderService.findByIdWithExposures(anyLong())).thenReturn(order);
+        return order;
+    }
+}
@@ -0,0 +1,227 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.entity.AstroImage;
+import com.aajpm.altair.entity.ImageAttribute;
+import com.aajpm.altair.entity.ImageValue;
+import com.aajpm.altair.service.ImageIngestionService.IngestionStatus;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nom.tam.fits.Header;
+
+/**
+ * Ingests a small archive in the image store, with the catalogue mocked: the
+ * headers are really read, and the images that would be saved are kept.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ImageIngestionServiceTest {
+
+    @TempDir
+    Path store;
+
+    @Mock
+    private AstroImageService astroImageService;
+
+    @Mock
+    private ImageAttributeService imageAttributeService;
+
+    @Mock
+    private AstroObjectService astroObjectService;
+
+    @InjectMocks
+    private ImageIngestionService ingestionService;
+
+    private WorkerService workers;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    /** The file names of each batch saved */
+    private final List<List<String>> batches = new ArrayList<>();
+
+    private final List<AstroImage> saved = new ArrayList<>();
+
+    private final Answer<List<AstroImage>> saveBatch = invocation -> {
+        Collection<AstroImage> batch = invocation.getArgument(0);
+        batches.add(batch.stream().map(AstroImage::getFileName).toList());
+        saved.addAll(batch);
+        return new ArrayList<>(batch);
+    };
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ObservatoryConfig config = new ObservatoryConfig();
+        config.setCamera(new ObservatoryConfig.CameraConfig());
+        config.getCamera().setImageStorePath(store.toString());
+        config.getCamera().setIngestionBatchSize(2);
+
+        workers = new WorkerService();
+        ReflectionTestUtils.setField(workers, "config", config);
+        ReflectionTestUtils.setField(workers, "registry", registry);
+        ReflectionTestUtils.invokeMethod(workers, "setUp");
+        ReflectionTestUtils.setField(ingestionService, "workers", workers);
+        ReflectionTestUtils.setField(ingestionService, "config", config);
+        ReflectionTestUtils.setField(ingestionService, "registry", registry);
+
+        // The images are created from the headers as the service does, only saving them is mocked
+        AstroImageService catalogue = new AstroImageService();
+        ReflectionTestUtils.setField(catalogue, "imageValueService", new ImageValueService());
+        lenient().when(astroImageService.create(anyString(), any(Header.class), any(), any()))
+            .thenAnswer(invocation -> catalogue.create(invocation.getArgument(0), invocation.getArgument(1),
+                                                       invocation.getArgument(2), invocation.getArgument(3)));
+        lenient().when(astroImageService.saveAll(any(), anyInt())).thenAnswer(saveBatch);
+
+        // Already catalogued
+        copyFixture("image.fits", "archive/a.fits");
+        // New ones, some gzipped and with other extensions
+        copyFixture("image.fits", "archive/b.fits");
+        copyFixture("image.fits", "archive/night1/c.fits");
+        copyFixture("image.fits.gz", "archive/night1/d.fits.gz");
+        copyFixture("image.fits", "archive/night2/e.fit");
+        copyFixture("image.fits", "archive/night2/f.fts");
+        // Not FITS files, the first one only by its extension
+        Files.writeString(store.resolve("archive/broken.fits"), "Not a FITS file", StandardCharsets.US_ASCII);
+        Files.writeString(store.resolve("archive/notes.txt"), "Not a FITS file", StandardCharsets.US_ASCII);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(workers, "tearDown");
+    }
+
+    @Test
+    void testIngestSkipsCataloguedAndMalformedFiles() {
+        when(astroImageService.findAllFileNames()).thenReturn(Set.of("archive/a.fits"));
+
+        IngestionStatus status = ingest();
+
+        assertEquals(7, status.found());
+        assertEquals(1, status.skipped());
+        assertEquals(1, status.failed());
+        assertEquals(5, status.catalogued());
+        assertEquals(Set.of("archive/b.fits", "archive/night1/c.fits", "archive/night1/d.fits.gz", "archive/night2/e.fit", "archive/night2/f.fts"),
+                     Set.copyOf(batches.stream().flatMap(List::stream).toList()));
+
+        assertEquals(1.0, count("skipped"));
+        assertEquals(1.0, count("failed"));
+        assertEquals(5.0, count("catalogued"));
+    }
+
+    @Test
+    void testImagesAreSavedInBatches() {
+        IngestionStatus status = ingest();
+
+        // Six images in batches of two
+        assertEquals(6, status.catalogued());
+        assertEquals(List.of(2, 2, 2), batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    void testInvalidImageOnlyFailsItself() {
+        // Lenient, as it's called with the other images too
+        lenient().doThrow(new IllegalArgumentException("The image file name contains illegal characters."))
+            .when(astroImageService).validate(argThat(image -> image.getFileName().equals("archive/b.fits")));
+
+        IngestionStatus status = ingest();
+
+        // It never reaches a batch, so the others are saved
+        assertEquals(2, status.failed());
+        assertEquals(5, status.catalogued());
+        assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    void testFailedBatchIsResumed() {
+        doThrow(new IllegalStateException("Connection lost")).doAnswer(saveBatch)
+            .when(astroImageService).saveAll(any(), anyInt());
+
+        IngestionStatus first = ingest();
+        assertEquals(4, first.catalogued());
+        assertEquals(3, first.failed());
+
+        // The images of the failed batch are not in the catalogue, so they are the only ones read again
+        Set<String> catalogue = Set.copyOf(batches.stream().flatMap(List::stream).toList());
+        when(astroImageService.findAllFileNames()).thenReturn(catalogue);
+        doAnswer(saveBatch).when(astroImageService).saveAll(any(), anyInt());
+
+        IngestionStatus second = ingest();
+        assertEquals(4, second.skipped());
+        assertEquals(2, second.catalogued());
+    }
+
+    @Test
+    void testImagesKeepEveryMappedKeyword() {
+        List<ImageAttribute> attributes = new ArrayList<>();
+        for (String keyword : List.of("OBJECT", "EXPTIME", "FILTER", "CCD-TEMP", "IMAGETYP", "GAIN")) {
+            ImageAttribute attribute = new ImageAttribute();
+            attribute.setName(keyword);
+            attribute.setFitsKeyword(keyword);
+            attributes.add(attribute);
+        }
+        when(imageAttributeService.findAll()).thenReturn(attributes);
+
+        IngestionStatus status = ingest();
+
+        // Every keyword in the header but GAIN, which the fixtures don't have
+        assertEquals(6, status.catalogued());
+        for (AstroImage image : saved) {
+            Map<String, String> values = image.getValues().stream()
+                .collect(Collectors.toMap(value -> value.getAttribute().getFitsKeyword(), ImageValue::getValue));
+            assertEquals(Map.of("OBJECT", "M 31", "EXPTIME", "60.0", "FILTER", "Red", "CCD-TEMP", "-10.5", "IMAGETYP", "Light Frame"),
+                         values, image.getFileName());
+            assertEquals(60.0, image.getExposureTime());
+            assertEquals("Red", image.getFilter());
+        }
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private IngestionStatus ingest() {
+        ingestionService.start(Path.of("archive"));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> !ingestionService.getStatus().running());
+        return ingestionService.getStatus();
+    }
+
+    private double count(String result) {
+        return registry.get("altair.ingestion.files").tag("result", result).counter().count();
+    }
+
+    private void copyFixture(String fixture, String name) throws Exception {
+        Path target = store.resolve(name);
+        Files.createDirectories(target.getParent());
+        Files.copy(Path.of(ImageIngestionServiceTest.class.getResource("/fits/" + fixture).toURI()), target);
+    }
+}
@@ -0,0 +1,178 @@
+package com.aajpm.altair.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aajpm.altair.config.SchedulerConfig;
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.Program;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+public class LookaheadServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ProgramOrderService programOrderService;
+
+    @Mock
+    private ControlOrderService controlOrderService;
+
+    @Mock
+    private AstroObjectService astroObjectService;
+
+    @Mock
+    private EphemeridesSolver ephemeridesSolver;
+
+    @Mock
+    private SchedulerConfig schedulerConfig;
+
+    @InjectMocks
+    private LookaheadService lookaheadService;
+
+    private Interval firstNight;
+
+    private Interval secondNight;
+
+    /** Each order is only observable in one of the nights */
+    private ProgramOrder firstNightOrder;
+
+    private ProgramOrder secondNightOrder;
+
+    private final List<ProgramOrder> pending = new ArrayList<>();
+
+    private final List<ControlOrder> firstNightControl = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Instant dusk = Instant.now().truncatedTo(ChronoUnit.DAYS).plus(Duration.ofDays(1)).plus(Duration.ofHours(21));
+        firstNight = new Interval(dusk, Duration.ofHours(8));
+        secondNight = new Interval(dusk.plus(Duration.ofDays(1)), Duration.ofHours(8));
+        firstNightOrder = programOrder(1L);
+        secondNightOrder = programOrder(2L);
+        pending.add(firstNightOrder);
+        pending.add(secondNightOrder);
+
+        lenient().when(schedulerConfig.getLookaheadNights()).thenReturn(2);
+        lenient().when(schedulerConfig.getLookaheadThreads()).thenReturn(2);
+        lenient().when(ephemeridesSolver.getNightTime(any(Instant.class))).thenAnswer(invocation -> {
+            Instant time = invocation.getArgument(0);
+            Interval night = firstNight;
+            while (!time.isBefore(night.getEnd())) {
+                night = new Interval(night.getStart().plus(Duration.ofDays(1)), night.getDuration());
+            }
+            return Mono.just(night);
+        });
+
+        lenient().when(programOrderService.findNotCompleted()).thenAnswer(invocation -> new ArrayList<>(pending));
+        lenient().when(astroObjectService.isVisibleInterval(any(), any())).thenAnswer(invocation -> {
+            AstroObject target = invocation.getArgument(0);
+            Interval night = invocation.getArgument(1);
+            boolean isFirst = night.equals(firstNight);
+            // Targets 101 and 103 are observable the first night, 102 the second
+            return Mono.just((target.getId() % 2 == 1) == isFirst ? night : Interval.empty());
+        });
+
+        // A single free slot for each night
+        lenient().when(controlOrderService.findInRangeOpen(any(Instant.class), any(Instant.class))).thenAnswer(invocation ->
+                firstNight.getStart().equals(invocation.getArgument(0)) ? new ArrayList<>(firstNightControl) : new ArrayList<>());
+        lenient().when(controlOrderService.findAvailableTime(any(Instant.class), any(Instant.class))).thenAnswer(invocation ->
+                List.of(new Interval((Instant) invocation.getArgument(0), (Instant) invocation.getArgument(1))));
+        lenient().when(orderService.findCandidates(any())).thenReturn(Mono.just(List.of()));
+
+        ReflectionTestUtils.invokeMethod(lookaheadService, "setUp");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(lookaheadService, "tearDown");
+    }
+
+    @Test
+    void testUnchangedNightsAreReused() {
+        lookaheadService.refresh().block();
+        lookaheadService.refresh().block();
+
+        verify(orderService, times(1)).findCandidates(eq(firstNight));
+        verify(orderService, times(1)).findCandidates(eq(secondNight));
+    }
+
+    @Test
+    void testOrderChangeOnlyInvalidatesItsNights() {
+        lookaheadService.refresh().block();
+
+        // A new order only observable the first night
+        pending.add(programOrder(3L));
+        lookaheadService.refresh().block();
+        verify(orderService, times(2)).findCandidates(eq(firstNight));
+        verify(orderService, times(1)).findCandidates(eq(secondNight));
+
+        // The order of the second night gets older
+        secondNightOrder.setCreationTime(Instant.parse("2023-06-09T12:00:00Z"));
+        lookaheadService.refresh().block();
+        verify(orderService, times(2)).findCandidates(eq(firstNight));
+        verify(orderService, times(2)).findCandidates(eq(secondNight));
+
+        // Completed, so no longer pending
+        pending.remove(firstNightOrder);
+        lookaheadService.refresh().block();
+        verify(orderService, times(3)).findCandidates(eq(firstNight));
+        verify(orderService, times(2)).findCandidates(eq(secondNight));
+    }
+
+    @Test
+    void testControlOrderInvalidatesItsNight() {
+        lookaheadService.refresh().block();
+
+        ControlOrder control = new ControlOrder();
+        control.setId(10L);
+        control.setRequestedTime(firstNight.getStart().plus(Duration.ofHours(1)));
+        control.setRequestedDuration(Duration.ofHours(1));
+        firstNightControl.add(control);
+        lookaheadService.refresh().block();
+
+        verify(orderService, times(2)).findCandidates(eq(firstNight));
+        verify(orderService, times(1)).findCandidates(eq(secondNight));
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private static ProgramOrder programOrder(long id) {
+        AstroObject target = new AstroObject();
+        target.setId(100L + id);
+        Program program = new Program();
+        program.setTarget(target);
+
+        ProgramOrder order = new ProgramOrder();
+        order.setId(id);
+        order.setProgram(program);
+        order.setCompleted(false);
+        return order;
+    }
+}
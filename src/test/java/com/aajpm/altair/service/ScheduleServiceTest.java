@@ -0,0 +1,181 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.Program;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.service.event.ObservingConditionsEvent;
+import com.aajpm.altair.service.event.OrderChangedEvent;
+import com.aajpm.altair.service.event.OrderChangedEvent.Change;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.scheduler.ScheduledExposure;
+
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+public class ScheduleServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ControlOrderService controlOrderService;
+
+    @Mock
+    private AstroObjectService astroObjectService;
+
+    @InjectMocks
+    private ScheduleService scheduleService;
+
+    /** Whole milliseconds, as the plan keeps its times */
+    private Instant now;
+
+    private Interval night;
+
+    private ProgramOrder first;
+
+    private ProgramOrder second;
+
+    @BeforeEach
+    void setUp() {
+        now = Instant.ofEpochMilli(System.currentTimeMillis());
+        night = new Interval(now.minus(Duration.ofHours(1)), Duration.ofHours(6));
+        first = programOrder(1L);
+        second = programOrder(2L);
+
+        // A single free slot for the whole night
+        lenient().when(controlOrderService.findInRangeOpen(any(Instant.class), any(Instant.class))).thenReturn(new ArrayList<>());
+        lenient().when(controlOrderService.findAvailableTime(any(Instant.class), any(Instant.class))).thenReturn(List.of(night));
+    }
+
+    @Test
+    void testSlotIsPlannedOnce() {
+        when(orderService.planSlot(any(), any())).thenReturn(Mono.just(plan(first, second)));
+
+        assertEquals(first, scheduleService.next(night));
+
+        // Nothing changed, the second one is just not due yet
+        assertNull(scheduleService.next(night));
+        assertEquals(now.plus(Duration.ofMinutes(9)), scheduleService.getNextStart());
+        verify(orderService, times(1)).planSlot(any(), any());
+    }
+
+    @Test
+    void testOrderChangeMakesTheSlotDirty() {
+        when(orderService.planSlot(any(), any())).thenReturn(Mono.just(plan(first, second)), Mono.just(plan(second, first)));
+        assertEquals(first, scheduleService.next(night));
+
+        // Not in the visibility index, so it may be observed anywhere
+        scheduleService.onOrderChanged(new OrderChangedEvent(programOrder(3L), Change.CREATED));
+
+        assertEquals(second, scheduleService.next(night));
+        verify(orderService, times(2)).planSlot(any(), any());
+    }
+
+    @Test
+    void testCompletedOrderLeavesThePlan() {
+        when(orderService.planSlot(any(), any())).thenReturn(Mono.just(plan(first, second)), Mono.just(List.of()));
+        assertEquals(first, scheduleService.next(night));
+        assertEquals(1, scheduleService.getPlan().size());
+
+        second.setCompleted(true);
+        scheduleService.onOrderChanged(new OrderChangedEvent(second, Change.UPDATED));
+        assertTrue(scheduleService.getPlan().isEmpty());
+
+        // The slot is filled again, with what's left
+        assertNull(scheduleService.next(night));
+        verify(orderService, times(2)).planSlot(any(), any());
+    }
+
+    @Test
+    void testChangeWhilePlanningIsNotLost() {
+        AtomicInteger calls = new AtomicInteger();
+        when(orderService.planSlot(any(), any())).thenAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                // The event arrives while the slot is being planned, without the lock
+                scheduleService.onOrderChanged(new OrderChangedEvent(programOrder(3L), Change.CREATED));
+                return Mono.just(plan(first));
+            }
+            return Mono.just(plan(second));
+        });
+
+        // The first plan was made before the change, so it isn't used
+        assertEquals(second, scheduleService.next(night));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testControlOrderChangeKeepsTheSlotPlan() {
+        when(orderService.planSlot(any(), any())).thenReturn(Mono.just(plan(first, second)));
+        assertEquals(first, scheduleService.next(night));
+
+        ControlOrder control = new ControlOrder();
+        control.setId(10L);
+        scheduleService.onOrderChanged(new OrderChangedEvent(control, Change.UPDATED));
+
+        // Laid out again, but the slot is the same one, so is its plan
+        assertNull(scheduleService.next(night));
+        verify(controlOrderService, times(2)).findAvailableTime(any(Instant.class), any(Instant.class));
+        verify(orderService, times(1)).planSlot(any(), any());
+    }
+
+    @Test
+    void testResumingReplansTheCurrentSlot() {
+        when(orderService.planSlot(any(), any())).thenReturn(Mono.just(plan(first, second)), Mono.just(plan(second)));
+        assertEquals(first, scheduleService.next(night));
+
+        scheduleService.onObservingConditions(new ObservingConditionsEvent(true));
+
+        assertEquals(second, scheduleService.next(night));
+        verify(orderService, times(2)).planSlot(any(), any());
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private ProgramOrder programOrder(long id) {
+        AstroObject target = new AstroObject();
+        target.setId(100L + id);
+        Program program = new Program();
+        program.setTarget(target);
+
+        ProgramOrder order = new ProgramOrder();
+        order.setId(id);
+        order.setProgram(program);
+        order.setCompleted(false);
+        return order;
+    }
+
+    /** Ten minute exposures, the first one started a minute ago */
+    private List<ScheduledExposure<ProgramOrder>> plan(ProgramOrder... orders) {
+        List<ScheduledExposure<ProgramOrder>> plan = new ArrayList<>();
+        long start = now.minus(Duration.ofMinutes(1)).toEpochMilli();
+        for (ProgramOrder order : orders) {
+            long end = start + Duration.ofMinutes(10).toMillis();
+            plan.add(new ScheduledExposure<>(order, start, end));
+            start = end;
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,394 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.aajpm.altair.config.AstrometricsConfig;
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.AstroObject.AstroType;
+import com.aajpm.altair.entity.ControlOrder;
+import com.aajpm.altair.entity.ExposureOrder;
+import com.aajpm.altair.entity.ExposureParams;
+import com.aajpm.altair.entity.Order;
+import com.aajpm.altair.entity.Program;
+import com.aajpm.altair.entity.ProgramOrder;
+import com.aajpm.altair.repository.AltairJpaTest;
+import com.aajpm.altair.repository.AstroObjectRepository;
+import com.aajpm.altair.repository.ControlOrderRepository;
+import com.aajpm.altair.repository.ProgramOrderRepository;
+import com.aajpm.altair.repository.ProgramRepository;
+import com.aajpm.altair.security.account.AltairUser;
+import com.aajpm.altair.security.account.AltairUserRepository;
+import com.aajpm.altair.security.account.AltairUserService;
+import com.aajpm.altair.security.account.Role;
+import com.aajpm.altair.security.account.RoleRepository;
+import com.aajpm.altair.service.ObservatoryService.ObservatoryStatus;
+import com.aajpm.altair.service.observatory.CameraService.CameraStatus;
+import com.aajpm.altair.service.observatory.DomeService;
+import com.aajpm.altair.service.observatory.DomeService.DomeStatus;
+import com.aajpm.altair.service.observatory.FilterWheelService.FilterWheelStatus;
+import com.aajpm.altair.service.observatory.FocuserService.FocuserStatus;
+import com.aajpm.altair.service.observatory.TelescopeService.TelescopeStatus;
+import com.aajpm.altair.service.observatory.WeatherWatchService;
+import com.aajpm.altair.service.observatory.WeatherWatchService.WeatherWatchStatus;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.scheduler.DispatchSchedulingEngine;
+import com.aajpm.altair.utility.scheduler.ScheduledExposure;
+import com.aajpm.altair.utility.scheduler.SchedulingEngine;
+import com.aajpm.altair.utility.solver.CoordinateTransform;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+import com.aajpm.altair.utility.solver.LocalEphemeridesSolver;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the real scheduler against the database: the orders are saved to H2,
+ * planned by {@link OrderService#buildSchedule(Interval)}, and the first one
+ * is taken from the {@link ScheduleService} and started by the
+ * {@link GovernorService}, with the devices mocked.
+ * <p>
+ * The sky is always dark, so what gets planned only depends on where the
+ * targets are, and the night is the one going on, so the governor can run
+ * it right away.
+ */
+@AltairJpaTest
+@Import(SchedulingSimulationTest.Config.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SchedulingSimulationTest {
+
+    private static final int TARGETS = 40;
+
+    /** The night going on, from half an hour ago */
+    private static final Interval NIGHT = new Interval(Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(Duration.ofMinutes(30)), Duration.ofHours(10));
+
+    @TestConfiguration
+    @Import({ OrderService.class, ControlOrderService.class, ProgramOrderService.class, ExposureOrderService.class,
+              AstroObjectService.class, ScheduleService.class, GovernorService.class, WorkerService.class })
+    static class Config {
+
+        @Bean
+        AstrometricsConfig astrometricsConfig() {
+            AstrometricsConfig config = new AstrometricsConfig();
+            config.setSiteLatitude(37.2597);
+            config.setSiteLongitude(-6.9325);
+            config.setSiteElevation(130.0);
+            config.setHorizonLine(20.0);
+            return config;
+        }
+
+        @Bean
+        EphemeridesSolver ephemeridesSolver(AstrometricsConfig config) {
+            return new DarkSkySolver(config);
+        }
+
+        @Bean
+        SchedulingEngine schedulingEngine() {
+            return new DispatchSchedulingEngine();
+        }
+
+        @Bean
+        ObservatoryConfig observatoryConfig() {
+            return new ObservatoryConfig();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    /** The local solver, in a sky without the Sun or the Moon, where it is always {@link #NIGHT} */
+    static class DarkSkySolver extends LocalEphemeridesSolver {
+
+        DarkSkySolver(AstrometricsConfig config) {
+            super(config);
+        }
+
+        @Override
+        public Mono<double[]> getAltAz(String body, Instant time) {
+            return isSunOrMoon(body) ? Mono.just(new double[] {-45.0, 0.0}) : super.getAltAz(body, time);
+        }
+
+        @Override
+        public Mono<Interval> getRiseSetTime(String body, Interval searchInterval, double targetAltitude) {
+            return isSunOrMoon(body) ? Mono.just(Interval.empty()) : super.getRiseSetTime(body, searchInterval, targetAltitude);
+        }
+
+        @Override
+        public Mono<Interval> getNightTime(Instant start) {
+            return Mono.just(start.isBefore(NIGHT.getEnd()) ? NIGHT : new Interval(NIGHT.getStart().plus(Duration.ofDays(1)), NIGHT.getDuration()));
+        }
+
+        private static boolean isSunOrMoon(String body) {
+            return body.equalsIgnoreCase("Sol") || body.equalsIgnoreCase("Sun")
+                || body.equalsIgnoreCase("Moon") || body.equalsIgnoreCase("Luna");
+        }
+    }
+
+    //////////////////////////////// SERVICES /////////////////////////////////
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProgramOrderService programOrderService;
+
+    @Autowired
+    private AstroObjectService astroObjectService;
+
+    @Autowired
+    private GovernorService governorService;
+
+    @Autowired
+    private AstrometricsConfig astrometricsConfig;
+
+    @Autowired
+    private AstroObjectRepository astroObjectRepository;
+
+    @Autowired
+    private ProgramRepository programRepository;
+
+    @Autowired
+    private ProgramOrderRepository programOrderRepository;
+
+    @Autowired
+    private ControlOrderRepository controlOrderRepository;
+
+    @Autowired
+    private AltairUserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @MockBean
+    private ObservatoryService observatoryService;
+
+    @MockBean
+    private WeatherWatchService weatherWatch;
+
+    @MockBean
+    private SequencerService sequencer;
+
+    @MockBean
+    private LookaheadService lookaheadService;
+
+    @MockBean
+    private AstroImageService astroImageService;
+
+    @MockBean
+    private AltairUserService userService;
+
+    //////////////////////////////// WORKLOAD /////////////////////////////////
+
+    private final List<ProgramOrder> orders = new ArrayList<>();
+
+    private final List<ControlOrder> controlOrders = new ArrayList<>();
+
+    /**
+     * Saves a target culminating right now and others spread over the night,
+     * each with an order of one to four exposures, and two control orders
+     * later in the night.
+     */
+    @BeforeEach
+    void setUp() {
+        Role role = roleRepository.save(new Role("ADVANCED_USER"));
+        AltairUser user = new AltairUser("observer", "password");
+        user.addRole(role);
+        user = userRepository.save(user);
+
+        Random random = new Random(42);
+        double latitude = astrometricsConfig.getSiteLatitude();
+        double lst = CoordinateTransform.localSiderealTime(System.currentTimeMillis(), astrometricsConfig.getSiteLongitude()) / 15.0;
+        for (int i = 0; i < TARGETS; i++) {
+            // The first one is at the zenith, the rest culminate within the next hours
+            double ra = i == 0 ? lst : lst - 2.0 + random.nextDouble() * 10.0;
+            double dec = i == 0 ? latitude : latitude - 30.0 + random.nextDouble() * 50.0;
+
+            AstroObject target = new AstroObject();
+            target.setName("Target " + i);
+            target.setType(AstroType.GALAXY);
+            target.setRa((ra + 24.0) % 24.0);
+            target.setDec(dec);
+            target = astroObjectRepository.save(target);
+
+            Program program = new Program();
+            program.setName("Program " + i);
+            program.setEnabled(true);
+            program.setTarget(target);
+            int exposures = 1 + random.nextInt(4);
+            for (int j = 0; j < exposures; j++) {
+                ExposureParams params = new ExposureParams();
+                params.setLightFrame(true);
+                params.setExposureTime(120.0 * (1 + random.nextInt(5)));
+                params.setFilter("Luminance");
+                params.setBinX(1);
+                params.setBinY(1);
+                program.addExposure(params);
+            }
+            program = programRepository.save(program);
+
+            orders.add(programOrderService.save(programOrderService.create(program, user)));
+        }
+
+        for (int hours : new int[] {3, 6}) {
+            ControlOrder control = new ControlOrder();
+            control.setUser(user);
+            control.setCompleted(false);
+            control.setCreationTime(Instant.now());
+            control.setRequestedTime(NIGHT.getStart().plus(Duration.ofHours(hours)));
+            control.setRequestedDuration(Duration.ofHours(1));
+            controlOrders.add(controlOrderRepository.save(control));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (governorService.isEnabled())
+            governorService.disable().block();
+
+        programOrderRepository.deleteAll();
+        controlOrderRepository.deleteAll();
+        programRepository.deleteAll();
+        astroObjectRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+        orders.clear();
+        controlOrders.clear();
+    }
+
+    ////////////////////////////////// TESTS //////////////////////////////////
+
+    @Test
+    void testBuildScheduleFromTheDatabase() {
+        long start = System.nanoTime();
+        List<ScheduledExposure<Order>> schedule = orderService.buildSchedule(NIGHT).block();
+        double latencyMillis = (System.nanoTime() - start) / 1e6;
+        assertNotNull(schedule);
+
+        Map<Long, Integer> planned = new HashMap<>();
+        int exposures = 0;
+        long exposedMillis = 0;
+        long previousEnd = Long.MIN_VALUE;
+        for (ScheduledExposure<Order> scheduled : schedule) {
+            // In order and one at a time
+            assertTrue(scheduled.getStartMillis() >= previousEnd, "Overlapping at " + Instant.ofEpochMilli(scheduled.getStartMillis()));
+            previousEnd = scheduled.getEndMillis();
+
+            Interval interval = new Interval(Instant.ofEpochMilli(scheduled.getStartMillis()), Instant.ofEpochMilli(scheduled.getEndMillis()));
+            if (scheduled.getOrder() instanceof ControlOrder control) {
+                // Control orders keep their requested time
+                assertEquals(control.getRequestedInterval(), interval);
+                continue;
+            }
+
+            ProgramOrder order = (ProgramOrder) scheduled.getOrder();
+            assertTrue(!interval.getStart().isBefore(NIGHT.getStart()) && !interval.getEnd().isAfter(NIGHT.getEnd()), interval + " is out of the night");
+            for (ControlOrder control : controlOrders) {
+                assertTrue(control.getRequestedInterval().overlap(interval).isEmpty(), interval + " overlaps control order " + control.getId());
+            }
+            Interval visible = astroObjectService.isVisibleInterval(order.getProgram().getTarget(), interval).block();
+            assertFalse(visible == null || visible.isEmpty(), "Target of order " + order.getId() + " is not visible at " + interval);
+
+            planned.merge(order.getId(), 1, Integer::sum);
+            exposures++;
+            exposedMillis += scheduled.getEndMillis() - scheduled.getStartMillis();
+        }
+
+        assertEquals(controlOrders.size(), schedule.stream().filter(scheduled -> scheduled.getOrder() instanceof ControlOrder).count());
+        for (ProgramOrder order : orders) {
+            assertTrue(planned.getOrDefault(order.getId(), 0) <= order.getExposureOrders().size(), "Order " + order.getId() + " was planned too many times");
+        }
+        assertTrue(exposures > 0);
+
+        long freeMillis = NIGHT.getDuration().toMillis() - controlOrders.size() * Duration.ofHours(1).toMillis();
+        System.out.println("--- testBuildScheduleFromTheDatabase -> " + exposures + " exposures of " + planned.size() + " orders, "
+                + (100 * exposedMillis / freeMillis) + "% of the free time, built in " + latencyMillis + " ms ---");
+    }
+
+    @Test
+    void testGovernorStartsThePlannedOrder() {
+        when(weatherWatch.connect()).thenReturn(Mono.just(true));
+        when(observatoryService.getStatus()).thenReturn(Mono.just(observatoryStatus(true, false)));
+        when(observatoryService.isSafe(anyBoolean())).thenReturn(Mono.just(true));
+        when(observatoryService.connectAll()).thenReturn(Mono.just(true));
+        when(observatoryService.startAwait()).thenReturn(Mono.just(true));
+        when(observatoryService.stopAwait()).thenReturn(Mono.just(true));
+        when(observatoryService.abort()).thenReturn(Mono.just(true));
+        when(observatoryService.disconnectAll()).thenReturn(Mono.just(true));
+        when(observatoryService.disconnectAllExceptWeather()).thenReturn(Mono.just(true));
+        when(observatoryService.waitForExposure(any())).thenReturn(Mono.never());
+        when(sequencer.start(any())).thenReturn(Mono.just(true));
+
+        long start = System.nanoTime();
+        governorService.setSafeOverride(true);
+        governorService.enable().block();
+        Awaitility.await().atMost(60, TimeUnit.SECONDS).until(() -> governorService.getCurrentOrder() != null);
+        double latencyMillis = (System.nanoTime() - start) / 1e6;
+
+        // An order of the database, planned from now, with its exposure started
+        ProgramOrder current = (ProgramOrder) governorService.getCurrentOrder();
+        ProgramOrder saved = orders.stream().filter(order -> order.getId() == current.getId()).findFirst().orElseThrow();
+        ExposureOrder exposure = current.getExposureOrders()
+                                        .stream()
+                                        .filter(eo -> eo.getState() == ExposureOrder.States.IN_PROGRESS)
+                                        .findFirst()
+                                        .orElseThrow();
+        verify(sequencer, atLeastOnce()).start(any());
+        assertEquals(GovernorService.State.RUNNING_PROGRAM, governorService.getState().block());
+
+        Interval now = new Interval(Instant.now(), Duration.ofMinutes(1));
+        Interval visible = astroObjectService.isVisibleInterval(saved.getProgram().getTarget(), now).block();
+        assertFalse(visible == null || visible.isEmpty(), "Target of order " + current.getId() + " is not visible now");
+
+        System.out.println("--- testGovernorStartsThePlannedOrder -> exposure " + exposure.getId() + " of order " + current.getId()
+                + " started in " + latencyMillis + " ms ---");
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    /**
+     * The status of the observatory, with every device connected or not, and
+     * parked or not.
+     */
+    static ObservatoryStatus observatoryStatus(boolean connected, boolean parked) {
+        return new ObservatoryStatus(false, false,
+                new TelescopeStatus(connected, 0.0, 0.0, 0.0, 0.0, parked, parked, false, !parked, 0.0),
+                new DomeStatus(connected, 0.0, parked ? 0 : 100, parked ? DomeService.SHUTTER_CLOSED_STATUS : "Open", parked, parked, false, !parked),
+                new FocuserStatus(connected, 0, 0.0, false, false),
+                new CameraStatus(connected, -10.0, "On", 50.0, "Idle", "1x1", 0.0, 0, 0, 0, 0),
+                new FilterWheelStatus(connected, 0, "Luminance", 0, false),
+                new WeatherWatchStatus(true, true, "Clear", "Normal", "Normal", "Dry", "Dark", "Good", "Cold", "Normal", "Calm", "0", "None"));
+    }
+}
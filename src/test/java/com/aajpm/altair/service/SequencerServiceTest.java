@@ -0,0 +1,216 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.aajpm.altair.entity.AstroObject;
+import com.aajpm.altair.entity.AstroObject.AstroType;
+import com.aajpm.altair.entity.ExposureParams;
+import com.aajpm.altair.entity.Program;
+import com.aajpm.altair.utility.solver.EphemeridesSolver;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Checks the order the sequencer runs the actions of an exposure in. Each
+ * device action is a sink that the test completes by hand, so what matters
+ * is which actions are waiting for it when it completes.
+ */
+@ExtendWith(MockitoExtension.class)
+public class SequencerServiceTest {
+
+    @Mock
+    private ObservatoryService observatoryService;
+
+    @Mock
+    private EphemeridesSolver ephemeridesSolver;
+
+    @Spy
+    private MeterRegistry registry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private SequencerService sequencer;
+
+    private final Sinks.One<Boolean> camera = Sinks.one();
+
+    private final Sinks.One<Boolean> slew = Sinks.one();
+
+    private final Sinks.One<Boolean> slaving = Sinks.one();
+
+    /** The filter and focus moves */
+    private final Sinks.One<Boolean> filterAndFocus = Sinks.one();
+
+    private final Sinks.One<Boolean> exposure = Sinks.one();
+
+    private final Sinks.One<Boolean> download = Sinks.one();
+
+    private ExposureParams params;
+
+    @BeforeEach
+    void setUp() {
+        params = exposureParams(1L, "Red");
+    }
+
+    @Test
+    void testStartMovesEverythingTogetherBeforeExposing() {
+        stubPreparing(params);
+        when(observatoryService.startCamera()).thenReturn(camera.asMono());
+        AtomicBoolean started = subscribe(sequencer.start(params));
+
+        // The camera cools down while the telescope slews and the filter and focus move
+        assertEquals(1, camera.currentSubscriberCount());
+        assertEquals(1, slew.currentSubscriberCount());
+        assertEquals(1, filterAndFocus.currentSubscriberCount());
+        // The dome is only slaved once on target
+        assertEquals(0, slaving.currentSubscriberCount());
+
+        slew.tryEmitValue(true);
+        assertEquals(1, slaving.currentSubscriberCount());
+
+        // The exposure waits for every one of them
+        camera.tryEmitValue(true);
+        slaving.tryEmitValue(true);
+        assertEquals(0, exposure.currentSubscriberCount());
+        filterAndFocus.tryEmitValue(true);
+        assertEquals(1, exposure.currentSubscriberCount());
+
+        assertFalse(started.get());
+        exposure.tryEmitValue(true);
+        assertTrue(started.get());
+    }
+
+    @Test
+    void testAdvancePreparesWhileDownloading() {
+        ExposureParams next = exposureParams(2L, "Green");
+        stubPreparing(next);
+        AtomicBoolean started = subscribe(sequencer.advance(download.asMono(), next));
+
+        // The next target and filter are prepared while the image downloads
+        assertEquals(1, download.currentSubscriberCount());
+        assertEquals(1, slew.currentSubscriberCount());
+        assertEquals(1, filterAndFocus.currentSubscriberCount());
+        verify(observatoryService, never()).prepareExposure(params);
+
+        slew.tryEmitValue(true);
+        slaving.tryEmitValue(true);
+        filterAndFocus.tryEmitValue(true);
+
+        // But the camera is only started once the image is downloaded
+        assertEquals(0, exposure.currentSubscriberCount());
+        download.tryEmitValue(true);
+        assertEquals(1, exposure.currentSubscriberCount());
+
+        exposure.tryEmitValue(true);
+        assertTrue(started.get());
+    }
+
+    @Test
+    void testAdvanceKeepsTheImageIfPreparingFails() {
+        ExposureParams next = exposureParams(2L, "Green");
+        stubPreparing(next);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        sequencer.advance(download.asMono(), next).subscribe(v -> {}, error::set);
+
+        filterAndFocus.tryEmitError(new IllegalStateException("Filter wheel stuck"));
+        slew.tryEmitValue(true);
+        slaving.tryEmitValue(true);
+
+        // The download goes on, and the error is only reported once it's done
+        assertEquals(1, download.currentSubscriberCount());
+        assertNull(error.get());
+        download.tryEmitValue(true);
+
+        assertTrue(error.get() instanceof IllegalStateException);
+        assertEquals(0, exposure.currentSubscriberCount());
+    }
+
+    @Test
+    void testOverheadIsMeasuredFromTheImage() {
+        ExposureParams next = exposureParams(2L, "Green");
+        stubPreparing(next);
+        sequencer.imageReady();
+        subscribe(sequencer.advance(download.asMono(), next));
+
+        download.tryEmitValue(true);
+        slew.tryEmitValue(true);
+        slaving.tryEmitValue(true);
+        filterAndFocus.tryEmitValue(true);
+        exposure.tryEmitValue(true);
+
+        Timer pipelined = registry.find("altair.sequencer.overhead").tag("pipelined", "true").timer();
+        assertEquals(1, pipelined.count());
+    }
+
+    @Test
+    void testNothingIsMeasuredAfterReset() {
+        stubPreparing(params);
+        when(observatoryService.startCamera()).thenReturn(camera.asMono());
+        sequencer.imageReady();
+        sequencer.reset();
+        subscribe(sequencer.start(params));
+
+        camera.tryEmitValue(true);
+        slew.tryEmitValue(true);
+        slaving.tryEmitValue(true);
+        filterAndFocus.tryEmitValue(true);
+        exposure.tryEmitValue(true);
+
+        assertNull(registry.find("altair.sequencer.overhead").timer());
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private void stubPreparing(ExposureParams params) {
+        when(observatoryService.slewTogetherRaDecAwait(anyDouble(), anyDouble())).thenReturn(slew.asMono());
+        when(observatoryService.setSlavedAwait(true)).thenReturn(slaving.asMono());
+        when(observatoryService.prepareExposure(params)).thenReturn(filterAndFocus.asMono());
+        when(observatoryService.startCameraExposure(params)).thenReturn(exposure.asMono());
+    }
+
+    private static AtomicBoolean subscribe(Mono<Boolean> sequence) {
+        AtomicBoolean done = new AtomicBoolean(false);
+        sequence.subscribe(v -> done.set(true));
+        return done;
+    }
+
+    /** Entities are equal by id, so each one has its own */
+    private static ExposureParams exposureParams(long id, String filter) {
+        AstroObject target = new AstroObject();
+        target.setName("M 31");
+        target.setType(AstroType.GALAXY);
+        target.setRa(0.712);
+        target.setDec(41.27);
+
+        Program program = new Program();
+        program.setTarget(target);
+
+        ExposureParams params = new ExposureParams();
+        params.setId(id);
+        params.setLightFrame(true);
+        params.setExposureTime(60.0);
+        params.setFilter(filter);
+        params.setProgram(program);
+        return params;
+    }
+}
@@ -0,0 +1,146 @@
+package com.aajpm.altair.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aajpm.altair.config.ObservatoryConfig;
+import com.aajpm.altair.service.observatory.CameraService;
+import com.aajpm.altair.service.observatory.CameraService.CameraStatus;
+import com.aajpm.altair.service.observatory.DomeService;
+import com.aajpm.altair.service.observatory.FilterWheelService;
+import com.aajpm.altair.service.observatory.FocuserService;
+import com.aajpm.altair.service.observatory.TelescopeService;
+import com.aajpm.altair.service.observatory.WeatherWatchService;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Polls a mocked camera every few milliseconds through the camera stream,
+ * which reports the given statuses in order and then keeps reporting the
+ * last one.
+ */
+@ExtendWith(MockitoExtension.class)
+public class StatusPublisherServiceTest {
+
+    @Mock
+    private ObservatoryService observatory;
+
+    @Mock
+    private GovernorService governor;
+
+    @Mock
+    private TelescopeService telescope;
+
+    @Mock
+    private DomeService dome;
+
+    @Mock
+    private FocuserService focuser;
+
+    @Mock
+    private CameraService camera;
+
+    @Mock
+    private FilterWheelService filterWheel;
+
+    @Mock
+    private WeatherWatchService weatherWatch;
+
+    @InjectMocks
+    private StatusPublisherService publisherService;
+
+    private ObservatoryConfig config;
+
+    private final AtomicInteger polls = new AtomicInteger();
+
+    private final List<CameraStatus> emitted = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config = new ObservatoryConfig();
+        config.setStatusUpdateInterval(5);
+        ReflectionTestUtils.setField(publisherService, "config", config);
+    }
+
+    @Test
+    void testCameraEmitsOnChange() {
+        cameraReports(status("Idle", -10.0, 50.0), status("Idle", -10.0, 50.0), status("Exposing", -10.0, 50.0));
+
+        listen(10);
+
+        assertEquals(List.of("Idle", "Exposing"), emitted.stream().map(CameraStatus::status).toList());
+    }
+
+    @Test
+    void testCameraSuppressesTemperatureInsideTheDeadband() {
+        cameraReports(status("Idle", -10.0, 50.0), status("Idle", -10.05, 50.5), status("Idle", -9.98, 49.4),
+                      status("Idle", -10.12, 50.0), status("Idle", -10.12, 51.2));
+
+        listen(10);
+
+        // Each one compared to the last one emitted: the temperature, then the power, are out of their deadbands
+        assertEquals(List.of(-10.0, -10.12, -10.12), emitted.stream().map(CameraStatus::temperature).toList());
+        assertEquals(List.of(50.0, 50.0, 51.2), emitted.stream().map(CameraStatus::coolerPower).toList());
+    }
+
+    @Test
+    void testCameraForcesAnEmitAtTheMaxInterval() {
+        config.getSampling().getCamera().setMaxInterval(50);
+        cameraReports(status("Idle", -10.0, 50.0), status("Idle", -10.05, 50.5));
+
+        ReflectionTestUtils.invokeMethod(publisherService, "init");
+        Disposable subscription = publisherService.getCameraStream().subscribe(emitted::add);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> emitted.size() >= 3);
+        subscription.dispose();
+
+        // Sent again as it was, even inside the deadband
+        assertTrue(polls.get() > emitted.size());
+        assertEquals(-10.05, emitted.get(emitted.size() - 1).temperature());
+    }
+
+    @Test
+    void testCameraDeadbandOnlyCoversTheNoisyValues() {
+        CameraStatus last = status("Idle", -10.0, 50.0);
+
+        assertTrue(StatusPublisherService.isCameraUnchanged(last, status("Idle", -10.09, 50.9)));
+        assertFalse(StatusPublisherService.isCameraUnchanged(last, status("Idle", -10.2, 50.0)));
+        assertFalse(StatusPublisherService.isCameraUnchanged(last, status("Idle", -10.0, 51.0)));
+        assertFalse(StatusPublisherService.isCameraUnchanged(last, status("Exposing", -10.0, 50.0)));
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private CameraStatus status(String state, double temperature, double coolerPower) {
+        return new CameraStatus(true, temperature, "On", coolerPower, state, "1x1", 0.0, 1024, 1024, 0, 0);
+    }
+
+    private void cameraReports(CameraStatus... statuses) {
+        when(camera.getStatus()).thenAnswer(invocation ->
+            Mono.fromSupplier(() -> statuses[Math.min(polls.getAndIncrement(), statuses.length - 1)]));
+    }
+
+    /** Subscribes to the camera stream until the camera has been polled at least the given times */
+    private void listen(int times) {
+        ReflectionTestUtils.invokeMethod(publisherService, "init");
+        Disposable subscription = publisherService.getCameraStream().subscribe(emitted::add);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> polls.get() >= times);
+        subscription.dispose();
+    }
+}
@@ -0,0 +1,89 @@
+package com.aajpm.altair.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+
+/**
+ * The fixtures are an 8x8 image with the same header: plain, gzipped, and
+ * cut right after the header, without its data unit.
+ */
+public class FitsHeaderReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadPlain() throws Exception {
+        assertHeader(FitsHeaderReader.read(fixture("image.fits")));
+    }
+
+    @Test
+    void testReadGzipped() throws Exception {
+        assertHeader(FitsHeaderReader.read(fixture("image.fits.gz")));
+    }
+
+    @Test
+    void testGzipIsDetectedWhateverTheExtension() throws Exception {
+        Path renamed = tempDir.resolve("compressed.fits");
+        Files.copy(fixture("image.fits.gz"), renamed, StandardCopyOption.REPLACE_EXISTING);
+
+        assertHeader(FitsHeaderReader.read(renamed));
+    }
+
+    @Test
+    void testStopsAtTheEndCard() throws Exception {
+        // Reading the data unit would fail, as the file ends with the header
+        Path headerOnly = fixture("header-only.fits");
+        assertEquals(2880, Files.size(headerOnly));
+
+        assertHeader(FitsHeaderReader.read(headerOnly));
+    }
+
+    @Test
+    void testNotAFitsFile() throws Exception {
+        Path text = tempDir.resolve("notes.fits");
+        Files.writeString(text, "Not a FITS file", StandardCharsets.US_ASCII);
+
+        // Whatever the library finds wrong with it, it's one of the declared exceptions
+        Exception e = assertThrows(Exception.class, () -> FitsHeaderReader.read(text));
+        assertTrue(e instanceof FitsException || e instanceof IOException, e.toString());
+    }
+
+    @Test
+    void testMissingFile() {
+        Path missing = tempDir.resolve("missing.fits");
+
+        assertThrows(IOException.class, () -> FitsHeaderReader.read(missing));
+        assertThrows(IllegalArgumentException.class, () -> FitsHeaderReader.read(null));
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private static Path fixture(String name) throws URISyntaxException {
+        return Path.of(FitsHeaderReaderTest.class.getResource("/fits/" + name).toURI());
+    }
+
+    private static void assertHeader(Header header) {
+        assertEquals(2, header.getIntValue("NAXIS"));
+        assertEquals(8, header.getIntValue("NAXIS1"));
+        assertEquals("M 31", header.getStringValue("OBJECT"));
+        assertEquals(60.0, header.getDoubleValue("EXPTIME"));
+        assertEquals("Red", header.getStringValue("FILTER"));
+        assertEquals(-10.5, header.getDoubleValue("CCD-TEMP"));
+        assertEquals("Light Frame", header.getStringValue("IMAGETYP"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.aajpm.altair.utility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class IntervalSetTest {
+
+    private static final Instant DUSK = Instant.parse("2023-06-09T21:00:00Z");
+
+    private static Instant at(int hours) {
+        return DUSK.plus(Duration.ofHours(hours));
+    }
+
+    private static Interval interval(int from, int to) {
+        return new Interval(at(from), at(to));
+    }
+
+    @Test
+    void testMergesOverlappingIntervals() {
+        IntervalSet set = IntervalSet.of(List.of(interval(5, 7), interval(0, 2), interval(1, 3), interval(3, 4), interval(6, 6)));
+
+        assertEquals(List.of(interval(0, 4), interval(5, 7)), set.toList());
+        assertEquals(Duration.ofHours(6).toMillis(), set.getTotalMillis());
+        assertTrue(set.contains(at(0).toEpochMilli()));
+        assertFalse(set.contains(at(4).toEpochMilli()));
+        assertTrue(set.contains(interval(1, 4)));
+        assertFalse(set.contains(interval(3, 6)));
+        assertTrue(set.intersects(interval(4, 6)));
+        assertFalse(set.intersects(interval(4, 5)));
+    }
+
+    @Test
+    void testOperations() {
+        IntervalSet a = IntervalSet.of(List.of(interval(0, 4), interval(6, 10)));
+        IntervalSet b = IntervalSet.of(List.of(interval(2, 3), interval(5, 7), interval(9, 12)));
+
+        assertEquals(List.of(interval(0, 4), interval(5, 12)), a.union(b).toList());
+        assertEquals(List.of(interval(2, 3), interval(6, 7), interval(9, 10)), a.intersection(b).toList());
+        assertEquals(List.of(interval(0, 2), interval(3, 4), interval(7, 9)), a.difference(b).toList());
+        assertEquals(List.of(interval(-1, 0), interval(4, 6)), a.complement(interval(-1, 8)).toList());
+        assertEquals(List.of(interval(3, 4), interval(6, 8)), a.clamp(interval(3, 8)).toList());
+    }
+
+    @Test
+    void testDaylightSubtraction() {
+        // Daylight in the middle of the observable time keeps the part before it
+        IntervalSet observable = IntervalSet.of(interval(0, 10));
+        assertEquals(interval(0, 3), observable.difference(IntervalSet.of(interval(3, 5))).first());
+        // Daylight covering all of it leaves nothing
+        assertTrue(observable.difference(IntervalSet.of(interval(-1, 11))).first().isEmpty());
+        // No daylight at all
+        assertEquals(interval(0, 10), observable.difference(IntervalSet.of(Interval.empty())).first());
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(42);
+        int size = 200;
+        for (int round = 0; round < 200; round++) {
+            long[][] a = randomIntervals(random, size);
+            long[][] b = randomIntervals(random, size);
+            IntervalSet setA = IntervalSet.ofMillis(a[0], a[1]);
+            IntervalSet setB = IntervalSet.ofMillis(b[0], b[1]);
+            boolean[] inA = paint(a, size);
+            boolean[] inB = paint(b, size);
+
+            for (int t = 0; t < size; t++) {
+                assertEquals(inA[t], setA.contains(t));
+                assertEquals(inA[t] || inB[t], setA.union(setB).contains(t));
+                assertEquals(inA[t] && inB[t], setA.intersection(setB).contains(t));
+                assertEquals(inA[t] && !inB[t], setA.difference(setB).contains(t));
+                assertEquals(!inA[t], setA.complement(millis(0, size)).contains(t));
+            }
+
+            IntervalTree tree = new IntervalTree(a[0], a[1]);
+            for (int t = 0; t < size; t++) {
+                long from = t;
+                long to = t + 1 + random.nextInt(10);
+                int[] expected = IntStream.range(0, a[0].length)
+                        .filter(i -> a[0][i] < to && a[1][i] > from && a[0][i] < a[1][i])
+                        .toArray();
+                int[] found = tree.findOverlapping(from, to);
+                Arrays.sort(found);
+                assertArrayEquals(expected, found);
+                assertEquals(expected.length > 0, tree.overlaps(from, to));
+            }
+        }
+    }
+
+    @Test
+    void testBenchmarkStabbing() {
+        Random random = new Random(42);
+        int n = 100_000;
+        long night = Duration.ofHours(10).toMillis();
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Mostly short windows, and some objects observable all night
+            starts[i] = i % 50 == 0 ? 0 : (long) (random.nextDouble() * night);
+            ends[i] = i % 50 == 0 ? night : starts[i] + (long) (random.nextDouble() * night / 20);
+        }
+
+        long buildStart = System.nanoTime();
+        IntervalTree tree = new IntervalTree(starts, ends);
+        long buildTime = System.nanoTime() - buildStart;
+
+        long found = 0;
+        long queryStart = System.nanoTime();
+        for (int q = 0; q < 1000; q++) {
+            found += tree.stab((long) (random.nextDouble() * night)).length;
+        }
+        long queryTime = System.nanoTime() - queryStart;
+
+        System.out.println("--- testBenchmarkStabbing -> " + n + " windows ---");
+        System.out.println("\tBuild: " + buildTime / 1e6 + " ms");
+        System.out.println("\t1000 queries: " + queryTime / 1e6 + " ms, " + found / 1000 + " windows each");
+
+        assertTrue(found >= 1000L * n / 50, "The all-night windows should always be found");
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private static long[][] randomIntervals(Random random, int size) {
+        int n = random.nextInt(12);
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = random.nextInt(size);
+            ends[i] = starts[i] + random.nextInt(30) - 5;    // Some are empty
+        }
+        return new long[][] {starts, ends};
+    }
+
+    private static boolean[] paint(long[][] intervals, int size) {
+        boolean[] painted = new boolean[size];
+        for (int i = 0; i < intervals[0].length; i++) {
+            for (long t = Math.max(0, intervals[0][i]); t < Math.min(size, intervals[1][i]); t++) {
+                painted[(int) t] = true;
+            }
+        }
+        return painted;
+    }
+
+    private static Interval millis(long from, long to) {
+        return new Interval(Instant.ofEpochMilli(from), Instant.ofEpochMilli(to));
+    }
+}
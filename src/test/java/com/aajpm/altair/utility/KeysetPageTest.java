@@ -0,0 +1,74 @@
+package com.aajpm.altair.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+public class KeysetPageTest {
+
+    private static final List<Long> IDS = LongStream.rangeClosed(1, 23).boxed().toList();
+
+    /** A page of {@link #IDS} as the repositories would load it, one more than the limit */
+    private static KeysetPage<Long> page(long after, int limit) {
+        List<Long> fetched = IDS.stream().filter(id -> id > after).limit(limit + 1L).toList();
+        return KeysetPage.of(fetched, limit, Long::longValue);
+    }
+
+    @Test
+    void testPagesEndWithTheIdOfTheirLastItem() {
+        KeysetPage<Long> first = page(0, 10);
+        assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), first.items());
+        assertEquals(10L, first.next());
+
+        KeysetPage<Long> last = page(20, 10);
+        assertEquals(List.of(21L, 22L, 23L), last.items());
+        assertNull(last.next());
+
+        // Exactly full, without a next page
+        KeysetPage<Long> exact = page(13, 10);
+        assertEquals(10, exact.items().size());
+        assertNull(exact.next());
+    }
+
+    @Test
+    void testChecksTheLimit() {
+        assertEquals(KeysetPage.DEFAULT_LIMIT, KeysetPage.limit(null));
+        assertEquals(1, KeysetPage.limit(1));
+        assertThrows(IllegalArgumentException.class, () -> KeysetPage.limit(0));
+        assertThrows(IllegalArgumentException.class, () -> KeysetPage.limit(KeysetPage.MAX_LIMIT + 1));
+    }
+
+    @Test
+    void testStreamsEveryItemOnceLoadingPagesOnDemand() {
+        AtomicInteger loaded = new AtomicInteger();
+        LongFunction<KeysetPage<Long>> pages = after -> {
+            loaded.incrementAndGet();
+            return page(after, 5);
+        };
+
+        assertEquals(List.of(1L, 2L, 3L), KeysetPage.stream(0, pages).take(3).collectList().block());
+        assertTrue(loaded.get() <= 2, "Loaded " + loaded.get() + " pages for 3 items");
+
+        loaded.set(0);
+        assertEquals(IDS, KeysetPage.stream(0, pages).collectList().block());
+        assertEquals(5, loaded.get());
+    }
+
+    @Test
+    void testResumesAfterAnId() {
+        List<Long> items = new ArrayList<>();
+        KeysetPage.stream(17, after -> page(after, 4)).toStream().forEach(items::add);
+
+        assertEquals(List.of(18L, 19L, 20L, 21L, 22L, 23L), items);
+    }
+
+}
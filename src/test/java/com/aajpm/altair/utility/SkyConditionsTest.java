@@ -0,0 +1,86 @@
+package com.aajpm.altair.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+public class SkyConditionsTest {
+
+    private static final long START = Instant.parse("2023-06-09T22:00:00Z").toEpochMilli();
+    private static final long STEP = 10 * 60 * 1000L;
+    private static final int SIZE = 13;
+
+    @Test
+    void testAirmassAndSeparation() {
+        assertEquals(1.0, SkyConditions.airmass(90.0), 1e-3);
+        assertEquals(1.994, SkyConditions.airmass(30.0), 1e-3);
+        assertEquals(38.0, SkyConditions.airmass(0.0001), 0.1);
+        assertEquals(Double.POSITIVE_INFINITY, SkyConditions.airmass(-1.0));
+
+        assertEquals(180.0, SkyConditions.separation(-30.0, 0.0, 30.0, 180.0), 1e-9);
+        assertEquals(20.0, SkyConditions.separation(0.0, 350.0, 0.0, 10.0), 1e-9);
+    }
+
+    @Test
+    void testFullMoonAvoidance() {
+        // Full Moon opposite the Sun, target moving away from it along the same altitude
+        SkyConditions sky = new SkyConditions(START, STEP, constant(-30.0, 0.0), constant(30.0, 180.0), -18.0, 60.0);
+        QualityCurve curve = sky.curveFor(fill(i -> 30.0), fill(i -> 180.0 + 10.0 * i));
+
+        assertEquals(1.0, sky.getMoonIllumination(START + STEP / 2), 1e-9);
+        assertTrue(sky.isDark(START));
+        assertEquals(0.0, curve.getQuality(START), 1e-9);
+        assertEquals(0.0, curve.getMoonSeparation(START), 1e-9);
+        assertFalse(curve.isMoonClear(START + 7 * STEP));
+        assertTrue(curve.isMoonClear(START + 8 * STEP));
+
+        // 60 degrees along the almucantar at 30 degrees is an azimuth difference of ~70.5 degrees
+        Interval night = new Interval(Instant.ofEpochMilli(START), Instant.ofEpochMilli(sky.getEndMillis()));
+        Interval clear = curve.firstClearInterval(night);
+        assertEquals(START + 8 * STEP, clear.getStart().toEpochMilli());
+        assertEquals(sky.getEndMillis(), clear.getEnd().toEpochMilli());
+        assertEquals(1.0 / SkyConditions.airmass(30.0), curve.meanQuality(clear), 1e-9);
+        assertTrue(curve.meanQuality(night) < curve.meanQuality(clear));
+    }
+
+    @Test
+    void testMoonBelowHorizonAndDaylight() {
+        SkyConditions sky = new SkyConditions(START, STEP, fillAltAz(i -> i < 6 ? -20.0 : -10.0), constant(-5.0, 180.0), -18.0, 60.0);
+        QualityCurve curve = sky.curveFor(fill(i -> 90.0), fill(i -> 180.0));
+
+        Interval night = new Interval(Instant.ofEpochMilli(START), Instant.ofEpochMilli(sky.getEndMillis()));
+        assertEquals(night, curve.firstClearInterval(night));
+        assertEquals(1.0, curve.getQuality(START), 1e-3);
+        // Twilight after the sixth sample
+        assertEquals(0.0, curve.getQuality(START + 6 * STEP), 1e-9);
+        assertFalse(sky.isDark(START + 6 * STEP));
+
+        assertThrows(IllegalArgumentException.class, () -> curve.getQuality(START - 1));
+        assertThrows(IllegalArgumentException.class, () -> sky.curveFor(new double[2], new double[2]));
+    }
+
+    private interface Sample {
+        double at(int i);
+    }
+
+    private static double[] fill(Sample sample) {
+        double[] ret = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            ret[i] = sample.at(i);
+        }
+        return ret;
+    }
+
+    private static double[][] fillAltAz(Sample altitude) {
+        return new double[][] {fill(altitude), fill(i -> 0.0)};
+    }
+
+    private static double[][] constant(double altitude, double azimuth) {
+        return new double[][] {fill(i -> altitude), fill(i -> azimuth)};
+    }
+}
@@ -0,0 +1,75 @@
+package com.aajpm.altair.utility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class VisibilityIndexTest {
+
+    private static final Instant DUSK = Instant.parse("2023-06-09T21:00:00Z");
+    private static final Interval NIGHT = new Interval(DUSK, Duration.ofHours(8));
+
+    private static Instant at(int hours) {
+        return DUSK.plus(Duration.ofHours(hours));
+    }
+
+    private static VisibilityIndex buildIndex() {
+        return new VisibilityIndex.Builder(NIGHT)
+                .add(1, new Interval(at(0), at(3)))             // Sets early
+                .add(2, new Interval(at(2), at(8)))             // Rises late
+                .add(3, new Interval(at(-1), at(9)))            // Whole night, clamped
+                .add(4, new Interval(at(0), at(1)))             // Sets and rises again
+                .add(4, new Interval(at(6), at(8)))
+                .add(5)                                         // Never rises
+                .build();
+    }
+
+    @Test
+    void testLookups() {
+        VisibilityIndex index = buildIndex();
+
+        assertEquals(5, index.size());
+        assertTrue(index.contains(5));
+        assertFalse(index.contains(6));
+        assertEquals(List.of(NIGHT), index.getWindows(3));
+        assertEquals(2, index.getWindows(4).size());
+        assertTrue(index.getWindows(5).isEmpty());
+
+        Interval range = new Interval(at(2), at(7));
+        assertEquals(new Interval(at(2), at(3)), index.firstWindow(1, range));
+        assertEquals(new Interval(at(6), at(7)), index.firstWindow(4, range));
+        assertEquals(Interval.empty(), index.firstWindow(5, range));
+
+        assertTrue(index.isObservableDuring(2, new Interval(at(3), at(4))));
+        assertFalse(index.isObservableDuring(4, new Interval(at(0), at(7))));
+    }
+
+    @Test
+    void testRangeAndStabbingQueries() {
+        VisibilityIndex index = buildIndex();
+
+        assertArrayEquals(new long[] {1, 3, 4}, index.findObservable(at(0)));
+        assertArrayEquals(new long[] {1, 2, 3}, index.findObservable(new Interval(at(2), at(4))));
+        assertArrayEquals(new long[] {2, 3, 4}, index.findObservable(new Interval(at(5), at(8))));
+        assertTrue(index.covers(new Interval(at(1), at(2))));
+        assertFalse(index.covers(new Interval(at(7), at(9))));
+    }
+
+    @Test
+    void testWithout() {
+        VisibilityIndex index = buildIndex().without(4);
+
+        assertFalse(index.contains(4));
+        assertEquals(4, index.size());
+        assertArrayEquals(new long[] {1, 3}, index.findObservable(at(0)));
+        assertArrayEquals(new long[] {2, 3}, index.findObservable(at(7)));
+        assertEquals(List.of(new Interval(at(2), at(8))), index.getWindows(2));
+    }
+}
@@ -0,0 +1,501 @@
+package com.aajpm.altair.utility.scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.IntervalSet;
+import com.aajpm.altair.utility.QualityCurve;
+import com.aajpm.altair.utility.SkyConditions;
+
+/**
+ * Runs a {@link SchedulingEngine} over simulated nights, to compare how much
+ * it gets done and how fast it plans without touching the observatory.
+ * <p>
+ * Time is virtual: each free slot of a night, the time not taken by control
+ * orders, is planned from its start, and the plan is carried out exposure by
+ * exposure as the governor would. When the weather turns bad in the middle of
+ * an exposure, the exposure is lost and the slot is planned again once it is
+ * safe, like {@code ScheduleService} does after a pause. Only the calls to
+ * the engine take real time, which is what the latency is measured on.
+ * <p>
+ * The workload, see {@link Workload#generate(long, Instant, int, int)}, has
+ * targets crossing the meridian at random times, drifting about four minutes
+ * earlier each night as the real sky does, so orders left from a night are
+ * still there for the next ones.
+ * <p>
+ * Only the engine is simulated here. The services that feed it from the
+ * database are run against H2 by {@code SchedulingSimulationTest}.
+ */
+public final class SchedulerSimulator {
+
+    /** Sidereal day, so targets culminate about four minutes earlier each night */
+    private static final long SIDEREAL_DAY_MILLIS = 86_164_091L;
+
+    /** How fast a target rises or sets, in degrees per millisecond */
+    private static final double ALTITUDE_RATE = 15.0 / 3_600_000.0;
+
+    private final SchedulingEngine engine;
+
+    private final double minAltitude;
+
+    /**
+     * Creates a new {@link SchedulerSimulator}.
+     *
+     * @param engine The engine that plans the free slots.
+     * @param minAltitude The altitude above which the targets are observable,
+     *                    in degrees.
+     */
+    public SchedulerSimulator(SchedulingEngine engine, double minAltitude) {
+        if (engine == null)
+            throw new IllegalArgumentException("engine cannot be null");
+
+        this.engine = engine;
+        this.minAltitude = minAltitude;
+    }
+
+    /**
+     * Runs every night of a workload, one after the other. The workload is
+     * not changed, so it can be run again with another engine.
+     *
+     * @param workload The nights and orders to simulate.
+     *
+     * @return A report of each night, in order.
+     */
+    public List<NightReport> run(Workload workload) {
+        int[] done = new int[workload.orders.size()];
+        List<NightReport> reports = new ArrayList<>(workload.nights.size());
+        for (Night night : workload.nights) {
+            reports.add(runNight(workload, night, done));
+        }
+        return reports;
+    }
+
+    ////////////////////////////////// NIGHT //////////////////////////////////
+    //#region Night
+
+    private NightReport runNight(Workload workload, Night night, int[] done) {
+        // Each target is only sampled once per night
+        List<SimulatedOrder> orders = workload.orders;
+        QualityCurve[] curves = new QualityCurve[orders.size()];
+        long[] culminations = new long[orders.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            culminations[i] = orders.get(i).culminationDuring(night.interval);
+            curves[i] = curveFor(night.sky, culminations[i], orders.get(i).maxAltitude);
+        }
+
+        Stats stats = new Stats();
+        IntervalSet free = IntervalSet.of(night.interval).difference(night.control);
+        for (int s = 0; s < free.size(); s++) {
+            long cursor = free.getStartMillis(s);
+            long slotEnd = free.getEndMillis(s);
+
+            while (cursor < slotEnd) {
+                // Wait for the weather before planning
+                long safe = safeFrom(night.outages, cursor);
+                if (safe >= slotEnd)
+                    break;
+                cursor = safe;
+
+                List<SchedulingCandidate<SimulatedOrder>> candidates = candidatesFor(orders, done, culminations, curves, cursor, slotEnd);
+                long start = System.nanoTime();
+                List<ScheduledExposure<SimulatedOrder>> plan = engine.schedule(candidates, toInterval(cursor, slotEnd));
+                stats.latencies.add(System.nanoTime() - start);
+
+                if (plan.isEmpty()) {
+                    stats.idle.add(new long[] {cursor, slotEnd});
+                    break;
+                }
+                cursor = carryOut(plan, night, curves, done, stats, cursor);
+            }
+        }
+
+        return stats.report(night, free);
+    }
+
+    /**
+     * Carries out a plan until it ends or the weather interrupts it.
+     *
+     * @return The time at which the slot must be planned again.
+     */
+    private static long carryOut(List<ScheduledExposure<SimulatedOrder>> plan, Night night, QualityCurve[] curves, int[] done, Stats stats, long cursor) {
+        for (ScheduledExposure<SimulatedOrder> exposure : plan) {
+            if (exposure.getStartMillis() > cursor)
+                stats.idle.add(new long[] {cursor, exposure.getStartMillis()});
+
+            int outage = firstOutage(night.outages, exposure.getStartMillis(), exposure.getEndMillis());
+            if (outage >= 0) {
+                stats.lostMillis += Math.max(0, night.outages.getStartMillis(outage) - exposure.getStartMillis());
+                return night.outages.getEndMillis(outage);
+            }
+
+            SimulatedOrder order = exposure.getOrder();
+            long duration = exposure.getEndMillis() - exposure.getStartMillis();
+            stats.exposures++;
+            stats.exposedMillis += duration;
+            stats.weightedQuality += curves[order.index].getQuality(exposure.getStartMillis() + duration / 2) * duration;
+            if (++done[order.index] == order.exposureMillis.length)
+                stats.completedOrders++;
+            cursor = exposure.getEndMillis();
+        }
+        return cursor;
+    }
+
+    /**
+     * Builds the candidates that can be observed for some time of
+     * {@code [from, to)}, as {@code OrderService} does from the database.
+     */
+    private List<SchedulingCandidate<SimulatedOrder>> candidatesFor(List<SimulatedOrder> orders, int[] done, long[] culminations, QualityCurve[] curves, long from, long to) {
+        List<SchedulingCandidate<SimulatedOrder>> candidates = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            SimulatedOrder order = orders.get(i);
+            if (done[i] >= order.exposureMillis.length)
+                continue;
+
+            // Above the minimum altitude while it is within this many millis of the meridian
+            long halfWindow = (long) ((order.maxAltitude - minAltitude) / ALTITUDE_RATE);
+            long start = Math.max(from, culminations[i] - halfWindow);
+            long end = Math.min(to, culminations[i] + halfWindow);
+            if (end - start < order.exposureMillis[done[i]])
+                continue;
+
+            long[] remaining = Arrays.copyOfRange(order.exposureMillis, done[i], order.exposureMillis.length);
+            candidates.add(new SchedulingCandidate<>(order, toInterval(start, end), remaining, order.priority, curves[i]));
+        }
+        return candidates;
+    }
+
+    private static QualityCurve curveFor(SkyConditions sky, long culmination, double maxAltitude) {
+        double[] altitude = new double[sky.size()];
+        for (int j = 0; j < altitude.length; j++) {
+            altitude[j] = maxAltitude - ALTITUDE_RATE * Math.abs(sky.timeOf(j) - culmination);
+        }
+        return sky.curveFor(altitude, new double[altitude.length]);
+    }
+
+    /**
+     * The first safe time at or after {@code millis}.
+     */
+    private static long safeFrom(IntervalSet outages, long millis) {
+        for (int i = 0; i < outages.size(); i++) {
+            if (outages.getStartMillis(i) <= millis && millis < outages.getEndMillis(i))
+                return outages.getEndMillis(i);
+        }
+        return millis;
+    }
+
+    /**
+     * The index of the first outage within {@code [from, to)}, or -1.
+     */
+    private static int firstOutage(IntervalSet outages, long from, long to) {
+        for (int i = 0; i < outages.size(); i++) {
+            if (outages.getStartMillis(i) < to && outages.getEndMillis(i) > from)
+                return i;
+        }
+        return -1;
+    }
+
+    private static Interval toInterval(long start, long end) {
+        return new Interval(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end));
+    }
+
+    /** What happened during a night, until it is turned into a report */
+    private static final class Stats {
+
+        private final List<Long> latencies = new ArrayList<>();
+
+        private final List<long[]> idle = new ArrayList<>();
+
+        private int exposures = 0;
+
+        private int completedOrders = 0;
+
+        private long exposedMillis = 0;
+
+        private long lostMillis = 0;
+
+        /** Sum of the quality of the sky during each exposure, times its duration */
+        private double weightedQuality = 0.0;
+
+        private NightReport report(Night night, IntervalSet free) {
+            // Waiting out the weather isn't idle time
+            long[] starts = idle.stream().mapToLong(gap -> gap[0]).toArray();
+            long[] ends = idle.stream().mapToLong(gap -> gap[1]).toArray();
+            IntervalSet gaps = IntervalSet.ofMillis(starts, ends).difference(night.outages);
+            long longestGap = 0;
+            for (int i = 0; i < gaps.size(); i++) {
+                longestGap = Math.max(longestGap, gaps.getEndMillis(i) - gaps.getStartMillis(i));
+            }
+
+            long safeMillis = free.difference(night.outages).getTotalMillis();
+            double meanLatency = latencies.stream().mapToLong(Long::longValue).average().orElse(0.0) / 1e6;
+            double maxLatency = latencies.stream().mapToLong(Long::longValue).max().orElse(0L) / 1e6;
+
+            return new NightReport(night.interval, latencies.size(), meanLatency, maxLatency,
+                                   night.control.clamp(night.interval).getTotalMillis(), safeMillis,
+                                   exposedMillis, lostMillis, gaps.size(), gaps.getTotalMillis(), longestGap,
+                                   exposures, completedOrders, exposedMillis == 0 ? 0.0 : weightedQuality / exposedMillis);
+        }
+    }
+
+    //#endregion
+    ///////////////////////////////// WORKLOAD ////////////////////////////////
+    //#region Workload
+
+    /**
+     * The nights to simulate and the orders pending at the start.
+     */
+    public static final class Workload {
+
+        private final List<Night> nights;
+
+        private final List<SimulatedOrder> orders;
+
+        /**
+         * Creates a new {@link Workload}.
+         *
+         * @param nights The nights to simulate, in order.
+         * @param orders The orders, all pending at the start.
+         */
+        public Workload(List<Night> nights, List<SimulatedOrder> orders) {
+            this.nights = List.copyOf(nights);
+            this.orders = List.copyOf(orders);
+            for (int i = 0; i < this.orders.size(); i++) {
+                this.orders.get(i).index = i;
+            }
+        }
+
+        public List<Night> getNights() {
+            return nights;
+        }
+
+        public List<SimulatedOrder> getOrders() {
+            return orders;
+        }
+
+        /**
+         * Generates a random workload: ten hour nights, dark and without
+         * Moon, a third of them with an hour for a control order and most
+         * with a few weather outages, and orders of one to eight exposures
+         * of one to ten minutes.
+         *
+         * @param seed The seed, so the same workload can be generated again.
+         * @param firstDusk When the first night starts.
+         * @param nights How many nights to generate.
+         * @param orders How many orders to generate.
+         *
+         * @return The new workload.
+         */
+        public static Workload generate(long seed, Instant firstDusk, int nights, int orders) {
+            Random random = new Random(seed);
+            long hour = Duration.ofHours(1).toMillis();
+            long minute = Duration.ofMinutes(1).toMillis();
+
+            List<Night> generatedNights = new ArrayList<>(nights);
+            for (int n = 0; n < nights; n++) {
+                long dusk = firstDusk.toEpochMilli() + n * Duration.ofDays(1).toMillis();
+                Interval interval = toInterval(dusk, dusk + 10 * hour);
+
+                IntervalSet control = IntervalSet.empty();
+                if (random.nextInt(3) == 0) {
+                    long start = dusk + random.nextInt(9) * hour;
+                    control = IntervalSet.ofMillis(start, start + hour);
+                }
+
+                int outageCount = random.nextInt(3);
+                long[] outageStarts = new long[outageCount];
+                long[] outageEnds = new long[outageCount];
+                for (int i = 0; i < outageCount; i++) {
+                    outageStarts[i] = dusk + (long) (random.nextDouble() * 10 * hour);
+                    outageEnds[i] = outageStarts[i] + (15 + random.nextInt(76)) * minute;
+                }
+
+                generatedNights.add(new Night(interval, darkSky(dusk, 10 * hour), control, IntervalSet.ofMillis(outageStarts, outageEnds)));
+            }
+
+            List<SimulatedOrder> generatedOrders = new ArrayList<>(orders);
+            for (int i = 0; i < orders; i++) {
+                long[] exposures = new long[1 + random.nextInt(8)];
+                for (int j = 0; j < exposures.length; j++) {
+                    exposures[j] = (1 + random.nextInt(10)) * minute;
+                }
+                // Culminating at any time of the day, so some are only observable later in the season
+                long culmination = firstDusk.toEpochMilli() + (long) (random.nextDouble() * SIDEREAL_DAY_MILLIS);
+                double maxAltitude = 35.0 + random.nextDouble() * 55.0;
+                generatedOrders.add(new SimulatedOrder(i, random.nextDouble(), exposures, culmination, maxAltitude));
+            }
+
+            return new Workload(generatedNights, generatedOrders);
+        }
+
+        private static SkyConditions darkSky(long dusk, long length) {
+            long step = Duration.ofMinutes(10).toMillis();
+            int size = (int) (length / step) + 1;
+            double[] below = new double[size];
+            Arrays.fill(below, -30.0);
+            return new SkyConditions(dusk, step, new double[][] {below, new double[size]}, new double[][] {below.clone(), new double[size]}, -18.0, 60.0);
+        }
+    }
+
+    /**
+     * A simulated night.
+     */
+    public static final class Night {
+
+        private final Interval interval;
+
+        private final SkyConditions sky;
+
+        private final IntervalSet control;
+
+        private final IntervalSet outages;
+
+        /**
+         * Creates a new {@link Night}.
+         *
+         * @param interval From dusk to dawn.
+         * @param sky The Sun and the Moon during the night.
+         * @param control The time taken by control orders.
+         * @param outages The time during which the weather is not safe.
+         */
+        public Night(Interval interval, SkyConditions sky, IntervalSet control, IntervalSet outages) {
+            this.interval = interval;
+            this.sky = sky;
+            this.control = control;
+            this.outages = outages;
+        }
+
+        public Interval getInterval() {
+            return interval;
+        }
+
+        public IntervalSet getControl() {
+            return control;
+        }
+
+        public IntervalSet getOutages() {
+            return outages;
+        }
+    }
+
+    /**
+     * A simulated program order: its exposures and where its target is.
+     */
+    public static final class SimulatedOrder {
+
+        private final long id;
+
+        private final double priority;
+
+        private final long[] exposureMillis;
+
+        /** A time at which the target crosses the meridian */
+        private final long culminationMillis;
+
+        private final double maxAltitude;
+
+        /** Position in the workload, to keep the progress in arrays */
+        private int index;
+
+        /**
+         * Creates a new {@link SimulatedOrder}.
+         *
+         * @param id The ID of the order.
+         * @param priority The priority, from 0 to 1.
+         * @param exposureMillis The exposures.
+         * @param culminationMillis A time at which the target crosses the meridian.
+         * @param maxAltitude The altitude of the target at the meridian.
+         */
+        public SimulatedOrder(long id, double priority, long[] exposureMillis, long culminationMillis, double maxAltitude) {
+            this.id = id;
+            this.priority = priority;
+            this.exposureMillis = exposureMillis.clone();
+            Arrays.sort(this.exposureMillis);
+            this.culminationMillis = culminationMillis;
+            this.maxAltitude = maxAltitude;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getExposureCount() {
+            return exposureMillis.length;
+        }
+
+        /**
+         * The culmination closest to the middle of a night.
+         */
+        private long culminationDuring(Interval night) {
+            long middle = night.getStart().toEpochMilli() + night.getDuration().toMillis() / 2;
+            long days = Math.round((double) (middle - culminationMillis) / SIDEREAL_DAY_MILLIS);
+            return culminationMillis + days * SIDEREAL_DAY_MILLIS;
+        }
+
+        @Override
+        public String toString() {
+            return "SimulatedOrder [id=" + id + "]";
+        }
+    }
+
+    //#endregion
+    ////////////////////////////////// REPORT /////////////////////////////////
+    //#region Report
+
+    /**
+     * What was done during a simulated night.
+     */
+    public record NightReport(
+        /** The night */
+        Interval night,
+        /** How many times the engine was called */
+        int plans,
+        /** Mean time the engine took to plan, in milliseconds */
+        double meanLatencyMillis,
+        /** Longest time the engine took to plan, in milliseconds */
+        double maxLatencyMillis,
+        /** Time taken by control orders */
+        long controlMillis,
+        /** Time left for the scheduler with safe weather */
+        long safeMillis,
+        /** Time spent on exposures that were completed */
+        long exposedMillis,
+        /** Time spent on exposures interrupted by the weather */
+        long lostMillis,
+        /** How many times the telescope was idle with safe weather */
+        int idleGaps,
+        /** Time the telescope was idle with safe weather */
+        long idleMillis,
+        /** Longest time the telescope was idle with safe weather */
+        long longestGapMillis,
+        /** Exposures completed */
+        int exposures,
+        /** Orders completed */
+        int completedOrders,
+        /** Mean quality of the sky during the completed exposures, from 0 to 1 */
+        double meanQuality
+    ) {
+
+        /**
+         * @return The fraction of the safe time spent on completed exposures.
+         */
+        public double utilisation() {
+            return safeMillis == 0 ? 0.0 : (double) exposedMillis / safeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d exposures, %d orders completed, quality %.3f, utilisation %.1f%%, %d idle gaps (%d min, longest %d min), %d min lost, %d plans (mean %.2f ms, max %.2f ms)",
+                    night, exposures, completedOrders, meanQuality, 100.0 * utilisation(), idleGaps, idleMillis / 60_000, longestGapMillis / 60_000,
+                    lostMillis / 60_000, plans, meanLatencyMillis, maxLatencyMillis);
+        }
+    }
+
+    //#endregion
+}
@@ -0,0 +1,69 @@
+package com.aajpm.altair.utility.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aajpm.altair.utility.scheduler.SchedulerSimulator.NightReport;
+import com.aajpm.altair.utility.scheduler.SchedulerSimulator.Workload;
+
+public class SchedulerSimulatorTest {
+
+    private static final Instant DUSK = Instant.parse("2023-06-09T21:00:00Z");
+
+    @Test
+    void testReportsAddUp() {
+        Workload workload = Workload.generate(42, DUSK, 7, 500);
+
+        List<NightReport> reports = new SchedulerSimulator(new DispatchSchedulingEngine(), 30.0).run(workload);
+
+        assertEquals(7, reports.size());
+        int completed = 0;
+        for (NightReport report : reports) {
+            // Every safe minute is either exposing, lost to the weather or idle
+            assertEquals(report.safeMillis(), report.exposedMillis() + report.lostMillis() + report.idleMillis(), report.toString());
+            assertTrue(report.longestGapMillis() <= report.idleMillis());
+            assertTrue(report.utilisation() > 0.5, report.toString());
+            completed += report.completedOrders();
+        }
+        assertTrue(completed <= workload.getOrders().size());
+    }
+
+    @Test
+    void testSameWorkloadSameResult() {
+        SchedulerSimulator simulator = new SchedulerSimulator(new FifoSchedulingEngine(), 30.0);
+
+        List<NightReport> first = simulator.run(Workload.generate(7, DUSK, 3, 200));
+        List<NightReport> second = simulator.run(Workload.generate(7, DUSK, 3, 200));
+
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).exposures(), second.get(i).exposures());
+            assertEquals(first.get(i).idleMillis(), second.get(i).idleMillis());
+        }
+    }
+
+    @Test
+    void testBenchmarkEngines() {
+        Workload workload = Workload.generate(42, DUSK, 14, 3000);
+
+        for (SchedulingEngine engine : List.of(new FifoSchedulingEngine(), new DispatchSchedulingEngine())) {
+            List<NightReport> reports = new SchedulerSimulator(engine, 30.0).run(workload);
+
+            System.out.println("--- testBenchmarkEngines -> " + engine.getClass().getSimpleName() + ", " + workload.getOrders().size() + " orders ---");
+            reports.forEach(report -> System.out.println("\t" + report));
+
+            int exposures = reports.stream().mapToInt(NightReport::exposures).sum();
+            int completed = reports.stream().mapToInt(NightReport::completedOrders).sum();
+            double utilisation = reports.stream().mapToDouble(NightReport::utilisation).average().orElse(0.0);
+            double quality = reports.stream().mapToDouble(NightReport::meanQuality).average().orElse(0.0);
+            double maxLatency = reports.stream().mapToDouble(NightReport::maxLatencyMillis).max().orElse(0.0);
+            double meanLatency = reports.stream().mapToDouble(NightReport::meanLatencyMillis).average().orElse(0.0);
+            System.out.println("\tTotal: " + exposures + " exposures, " + completed + " orders completed, mean quality " + quality
+                    + ", mean utilisation " + utilisation + ", mean latency " + meanLatency + " ms, max latency " + maxLatency + " ms");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.aajpm.altair.utility.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.QualityCurve;
+import com.aajpm.altair.utility.SkyConditions;
+
+public class SchedulingEngineTest {
+
+    static final long START = Instant.parse("2023-06-09T21:00:00Z").toEpochMilli();
+    private static final long STEP = 10 * 60 * 1000L;
+    private static final int SIZE = 61;     // 10 hours
+    private static final long MINUTE = 60 * 1000L;
+
+    /** Dark all night, Moon below the horizon */
+    static final SkyConditions SKY = new SkyConditions(START, STEP, constant(-30.0), constant(-30.0), -18.0, 60.0);
+
+    @Test
+    void testFifoKeepsTheOrder() {
+        Interval slot = interval(START, START + 60 * MINUTE);
+        List<SchedulingCandidate<String>> candidates = List.of(
+            new SchedulingCandidate<>("A", slot, new long[] {20 * MINUTE, 10 * MINUTE}, 1.0, null),
+            new SchedulingCandidate<>("B", slot, new long[] {25 * MINUTE, 25 * MINUTE}, 1.0, null));
+
+        List<ScheduledExposure<String>> plan = new FifoSchedulingEngine().schedule(candidates, slot);
+
+        // A shortest first, then B until it doesn't fit
+        assertEquals(List.of("A", "A", "B"), plan.stream().map(ScheduledExposure::getOrder).toList());
+        assertEquals(START + 10 * MINUTE, plan.get(0).getEndMillis());
+        assertEquals(START + 55 * MINUTE, plan.get(2).getEndMillis());
+    }
+
+    @Test
+    void testDispatchFollowsTheTargets() {
+        Interval slot = interval(START, START + 120 * MINUTE);
+        // "West" is setting and must be taken first, "East" is rising and is better later
+        List<SchedulingCandidate<String>> candidates = List.of(
+            new SchedulingCandidate<>("East", slot, new long[] {30 * MINUTE, 30 * MINUTE}, 1.0, curve(i -> 10.0 + 5.0 * i)),
+            new SchedulingCandidate<>("West", interval(START, START + 60 * MINUTE), new long[] {30 * MINUTE, 30 * MINUTE}, 0.0, curve(i -> 60.0 - 5.0 * i)),
+            new SchedulingCandidate<>("Late", interval(START + 200 * MINUTE, START + 300 * MINUTE), new long[] {10 * MINUTE}, 1.0, null));
+
+        List<ScheduledExposure<String>> plan = new DispatchSchedulingEngine().schedule(candidates, slot);
+
+        assertEquals(List.of("West", "West", "East", "East"), plan.stream().map(ScheduledExposure::getOrder).toList());
+        assertEquals(START + 120 * MINUTE, plan.get(3).getEndMillis());
+        assertValid(candidates, plan, slot);
+    }
+
+    @Test
+    void testDispatchWaitsForTheTarget() {
+        Interval slot = interval(START, START + 120 * MINUTE);
+        List<SchedulingCandidate<String>> candidates = List.of(
+            new SchedulingCandidate<>("Rising", interval(START + 45 * MINUTE, START + 120 * MINUTE), new long[] {30 * MINUTE}, 1.0, null));
+
+        List<ScheduledExposure<String>> plan = new DispatchSchedulingEngine().schedule(candidates, slot);
+
+        assertEquals(1, plan.size());
+        assertEquals(interval(START + 45 * MINUTE, START + 75 * MINUTE), plan.get(0).getInterval());
+    }
+
+    @Test
+    void testSkipDropsTheShortestExposures() {
+        SchedulingCandidate<String> candidate = new SchedulingCandidate<>("A", interval(START, START + 60 * MINUTE), new long[] {30 * MINUTE, 10 * MINUTE, 20 * MINUTE}, 1.0, null);
+
+        assertSame(candidate, candidate.skip(0));
+        assertEquals(2, candidate.skip(1).size());
+        assertEquals(20 * MINUTE, candidate.skip(1).getExposureMillis(0));
+        assertNull(candidate.skip(3));
+    }
+
+    @Test
+    void testThousandsOfOrders() {
+        Interval night = interval(START, SKY.getEndMillis());
+        List<SchedulingCandidate<Integer>> candidates = randomCandidates(5000, new Random(42));
+
+        List<ScheduledExposure<Integer>> fifoPlan = new FifoSchedulingEngine().schedule(candidates, night);
+        List<ScheduledExposure<Integer>> dispatchPlan = new DispatchSchedulingEngine().schedule(candidates, night);
+
+        assertValid(candidates, dispatchPlan, night);
+        double fifoQuality = meanQuality(candidates, fifoPlan);
+        double dispatchQuality = meanQuality(candidates, dispatchPlan);
+
+        System.out.println("--- testThousandsOfOrders -> " + candidates.size() + " orders ---");
+        System.out.println("\tFIFO: " + fifoPlan.size() + " exposures, " + busyMillis(fifoPlan) / MINUTE + " min, mean quality " + fifoQuality);
+        System.out.println("\tDispatch: " + dispatchPlan.size() + " exposures, " + busyMillis(dispatchPlan) / MINUTE + " min, mean quality " + dispatchQuality);
+
+        assertTrue(dispatchQuality > fifoQuality, "The dispatch plan should be taken through less airmass");
+        // Without buying it by leaving the telescope idle, there is always some target up
+        assertTrue(busyMillis(dispatchPlan) >= 0.9 * night.getDuration().toMillis(), "The dispatch plan should keep the telescope busy");
+    }
+
+    /**
+     * Targets culminating at random times of the night, with a few exposures
+     * each.
+     */
+    static List<SchedulingCandidate<Integer>> randomCandidates(int count, Random random) {
+        List<SchedulingCandidate<Integer>> candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double culmination = random.nextDouble() * (SIZE - 1);
+            double height = 30.0 + random.nextDouble() * 60.0;
+            QualityCurve curve = curve(j -> height - 4.0 * Math.abs(j - culmination));
+
+            long rises = START + (long) (Math.max(0.0, culmination - height / 4.0) * STEP);
+            long sets = START + (long) (Math.min(SIZE - 1.0, culmination + height / 4.0) * STEP);
+            long[] exposures = new long[1 + random.nextInt(8)];
+            for (int j = 0; j < exposures.length; j++) {
+                exposures[j] = (1 + random.nextInt(10)) * MINUTE;
+            }
+            if (sets > rises)
+                candidates.add(new SchedulingCandidate<>(i, interval(rises, sets), exposures, random.nextDouble(), curve));
+        }
+        return candidates;
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    /** Checks the plan doesn't overlap, stays within the windows and keeps the exposures in order */
+    private static <T> void assertValid(List<SchedulingCandidate<T>> candidates, List<ScheduledExposure<T>> plan, Interval slot) {
+        Map<T, SchedulingCandidate<T>> byOrder = new HashMap<>();
+        candidates.forEach(candidate -> byOrder.put(candidate.getOrder(), candidate));
+        Map<T, Integer> taken = new HashMap<>();
+
+        long previousEnd = slot.getStart().toEpochMilli();
+        for (ScheduledExposure<T> exposure : plan) {
+            SchedulingCandidate<T> candidate = byOrder.get(exposure.getOrder());
+            int index = taken.merge(exposure.getOrder(), 1, Integer::sum) - 1;
+
+            assertTrue(exposure.getStartMillis() >= previousEnd, "Overlapping exposures at " + exposure);
+            assertTrue(exposure.getStartMillis() >= candidate.getVisibleStart(), "Exposure before its window " + exposure);
+            assertTrue(exposure.getEndMillis() <= candidate.getVisibleEnd(), "Exposure after its window " + exposure);
+            assertEquals(candidate.getExposureMillis(index), exposure.getEndMillis() - exposure.getStartMillis());
+            previousEnd = exposure.getEndMillis();
+        }
+        assertTrue(previousEnd <= slot.getEnd().toEpochMilli());
+    }
+
+    private static <T> long busyMillis(List<ScheduledExposure<T>> plan) {
+        return plan.stream().mapToLong(exposure -> exposure.getEndMillis() - exposure.getStartMillis()).sum();
+    }
+
+    private static <T> double meanQuality(List<SchedulingCandidate<T>> candidates, List<ScheduledExposure<T>> plan) {
+        Map<T, SchedulingCandidate<T>> byOrder = new HashMap<>();
+        candidates.forEach(candidate -> byOrder.put(candidate.getOrder(), candidate));
+
+        double sum = 0.0;
+        long time = 0;
+        for (ScheduledExposure<T> exposure : plan) {
+            long duration = exposure.getEndMillis() - exposure.getStartMillis();
+            sum += byOrder.get(exposure.getOrder()).getQuality(exposure.getStartMillis() + duration / 2) * duration;
+            time += duration;
+        }
+        return sum / time;
+    }
+
+    private interface Sample {
+        double at(int i);
+    }
+
+    private static QualityCurve curve(Sample altitude) {
+        double[] alt = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            alt[i] = altitude.at(i);
+        }
+        return SKY.curveFor(alt, new double[SIZE]);
+    }
+
+    private static double[][] constant(double altitude) {
+        double[] alt = new double[SIZE];
+        Arrays.fill(alt, altitude);
+        return new double[][] {alt, new double[SIZE]};
+    }
+
+    private static Interval interval(long start, long end) {
+        return new Interval(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end));
+    }
+}
@@ -0,0 +1,106 @@
+package com.aajpm.altair.utility.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.aajpm.altair.config.AstrometricsConfig;
+import com.aajpm.altair.utility.Interval;
+
+import reactor.core.publisher.Mono;
+
+public class CachingEphemeridesSolverTest {
+
+    /** The afternoon before the nights queried, so none of them is over */
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2023-06-09T12:00:00Z"), ZoneOffset.UTC);
+
+    private AstrometricsConfig config = new AstrometricsConfig();
+
+    private AtomicInteger calls = new AtomicInteger();
+
+    private LocalEphemeridesSolver delegate;
+
+    /** The same solver, to compare with, without counting its calls */
+    private LocalEphemeridesSolver reference;
+
+    CachingEphemeridesSolverTest() {
+        super();
+        config.setSiteLatitude(37.2597);
+        config.setSiteLongitude(-6.9325);
+        config.setSiteElevation(130.0);
+        config.setHorizonLine(0.0);
+
+        reference = new LocalEphemeridesSolver(config);
+        delegate = new LocalEphemeridesSolver(config) {
+            @Override
+            public Mono<Interval> getRiseSetTime(String body, Interval searchInterval, double targetAltitude) {
+                calls.incrementAndGet();
+                return super.getRiseSetTime(body, searchInterval, targetAltitude);
+            }
+        };
+    }
+
+    @Test
+    void testRiseSetIsCachedByNight() {
+        CachingEphemeridesSolver solver = new CachingEphemeridesSolver(delegate, new EphemeridesCache(null, 16, CLOCK), CLOCK);
+        Instant dusk = Instant.parse("2023-06-09T20:00:00Z");
+
+        solver.getRiseSetTime("Mars", new Interval(dusk, Duration.ofHours(10)), 0.0).block();
+        int firstCalls = calls.get();
+
+        // Each query starts a bit later, as the scheduler's do
+        for (int i = 1; i <= 30; i++) {
+            Interval search = new Interval(dusk.plus(Duration.ofMinutes(7L * i)), Duration.ofHours(10));
+            Interval cached = solver.getRiseSetTime("Mars", search, 0.0).block();
+            Interval expected = reference.getRiseSetTime("Mars", search, 0.0).block();
+
+            assertEquals(expected.isEmpty(), cached.isEmpty());
+            if (!expected.isEmpty()) {
+                assertTrue(Duration.between(expected.getStart(), cached.getStart()).abs().toMinutes() <= 2, expected + " vs " + cached);
+                assertTrue(Duration.between(expected.getEnd(), cached.getEnd()).abs().toMinutes() <= 2, expected + " vs " + cached);
+            }
+        }
+        assertEquals(firstCalls, calls.get());
+
+        // The next night is a new entry
+        solver.getRiseSetTime("Mars", new Interval(dusk.plus(Duration.ofDays(1)), Duration.ofHours(10)), 0.0).block();
+        assertTrue(calls.get() > firstCalls);
+    }
+
+    @Test
+    void testPastNightsAreCachedToo() {
+        Clock later = Clock.offset(CLOCK, Duration.ofDays(365));
+        CachingEphemeridesSolver solver = new CachingEphemeridesSolver(delegate, new EphemeridesCache(null, 16, later), later);
+        Interval search = new Interval(Instant.parse("2023-06-09T20:00:00Z"), Duration.ofHours(10));
+
+        Interval first = solver.getRiseSetTime("Mars", search, 0.0).block();
+        int firstCalls = calls.get();
+
+        assertEquals(first, solver.getRiseSetTime("Mars", search, 0.0).block());
+        assertEquals(firstCalls, calls.get());
+    }
+
+    @Test
+    void testBodiesRisingTwiceInADay() {
+        CachingEphemeridesSolver solver = new CachingEphemeridesSolver(delegate, new EphemeridesCache(null, 16, CLOCK), CLOCK);
+        Instant noon = Instant.parse("2023-06-09T12:28:00Z");
+
+        // Every part of the day gets the same answer as the delegate
+        for (int hours = 0; hours < 24; hours += 3) {
+            Interval search = new Interval(noon.plus(Duration.ofHours(hours)), Duration.ofHours(3));
+            Interval expected = reference.getRiseSetTime("Moon", search, 0.0).block();
+            Interval cached = solver.getRiseSetTime("Moon", search, 0.0).block();
+
+            assertEquals(expected.isEmpty(), cached.isEmpty(), "At " + search);
+            if (!expected.isEmpty())
+                assertTrue(Duration.between(expected.getStart(), cached.getStart()).abs().toMinutes() <= 2, expected + " vs " + cached);
+        }
+    }
+}
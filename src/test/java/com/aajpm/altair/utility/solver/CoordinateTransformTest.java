@@ -0,0 +1,131 @@
+package com.aajpm.altair.utility.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CoordinateTransformTest {
+
+    private static final double ARCSEC = 1.0 / 3600.0;
+
+    @Test
+    void testSiderealTime() {
+        // Meeus, examples 12.a, 12.b
+        long midnight = Instant.parse("1987-04-10T00:00:00Z").toEpochMilli();
+        assertEquals(hms(13, 10, 46.3668), CoordinateTransform.greenwichMeanSiderealTime(midnight), 0.1 * ARCSEC);
+        assertEquals(hms(13, 10, 46.1351), CoordinateTransform.greenwichApparentSiderealTime(midnight), 0.1 * ARCSEC);
+
+        long evening = Instant.parse("1987-04-10T19:21:00Z").toEpochMilli();
+        assertEquals(hms(8, 34, 57.0896), CoordinateTransform.greenwichMeanSiderealTime(evening), 0.1 * ARCSEC);
+        assertEquals(hms(8, 34, 56.853) - 77.0655556, CoordinateTransform.localSiderealTime(evening, -77.0655556), 0.2 * ARCSEC);
+    }
+
+    @Test
+    void testNutation() {
+        // Meeus, example 22.a
+        double t = (2446895.5 - 2451545.0) / 36525.0;
+        assertEquals(-3.788 * ARCSEC, CoordinateTransform.nutationInLongitude(t), 0.05 * ARCSEC);
+        assertEquals(9.443 * ARCSEC, CoordinateTransform.nutationInObliquity(t), 0.05 * ARCSEC);
+    }
+
+    @Test
+    void testApparentPlace() {
+        // Meeus, examples 21.b and 23.a: theta Persei on 2028 Nov 13.19 TD, proper motion already applied
+        double ra = hms(2, 44, 11.986 + 0.03425 * 28.86705);
+        double dec = dms(49, 13, 42.48 - 0.0895 * 28.86705);
+        long time = fromJulianEphemerisDay(2462088.69);
+
+        double[] apparent = new double[2];
+        CoordinateTransform.apparentPlace(ra, dec, time, apparent);
+
+        assertEquals(hms(2, 46, 14.390), apparent[0], 0.5 * ARCSEC);
+        assertEquals(dms(49, 21, 7.45), apparent[1], 0.5 * ARCSEC);
+    }
+
+    @Test
+    void testHorizontal() {
+        // Meeus, example 13.b: Venus from the US Naval Observatory, azimuth measured from the north
+        CoordinateTransform transform = new CoordinateTransform(dms(38, 55, 17), -dms(77, 3, 56), false);
+        double[] altAz = new double[2];
+        transform.horizontal(hms(23, 9, 16.641), -dms(6, 43, 11.61), hms(8, 34, 56.853) - dms(77, 3, 56), altAz);
+
+        assertEquals(15.1249, altAz[0], 2e-4);
+        assertEquals(68.0337 + 180.0, altAz[1], 2e-4);
+    }
+
+    @Test
+    void testRefraction() {
+        CoordinateTransform geometric = new CoordinateTransform(37.2597, -6.9325, false);
+        CoordinateTransform apparent = new CoordinateTransform(37.2597, -6.9325);
+        long time = Instant.parse("2023-06-09T00:00:00Z").toEpochMilli();
+
+        double[] trueAltAz = new double[2];
+        double[] apparentAltAz = new double[2];
+        geometric.transform(279.2347, 38.7837, time, trueAltAz);
+        apparent.transform(279.2347, 38.7837, time, apparentAltAz);
+
+        assertEquals(AnalyticEphemerides.refraction(trueAltAz[0]), apparentAltAz[0] - trueAltAz[0], 1e-12);
+        assertEquals(trueAltAz[1], apparentAltAz[1], 1e-12);
+        // Vega, as in the solver tests
+        assertEquals(67.0035, apparentAltAz[0], 0.5);
+        assertEquals(77.1148, apparentAltAz[1], 0.5);
+    }
+
+    @Test
+    void testBulkMatchesSingleWithoutAllocating() {
+        CoordinateTransform transform = new CoordinateTransform(37.2597, -6.9325);
+        long time = Instant.parse("2023-06-09T00:00:00Z").toEpochMilli();
+
+        Random random = new Random(42);
+        int size = 10000;
+        double[] ra = new double[size];
+        double[] dec = new double[size];
+        for (int i = 0; i < size; i++) {
+            ra[i] = random.nextDouble() * 360.0;
+            dec[i] = Math.toDegrees(Math.asin(random.nextDouble() * 2.0 - 1.0));
+        }
+        double[] alt = new double[size];
+        double[] az = new double[size];
+
+        // Warm up
+        for (int i = 0; i < 20; i++) {
+            transform.transform(ra, dec, time, alt, az);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        threads.getThreadAllocatedBytes(thread);
+        long before = threads.getThreadAllocatedBytes(thread);
+        transform.transform(ra, dec, time, alt, az);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(allocated < 1024, "The batch allocated " + allocated + " bytes");
+
+        double[] single = new double[2];
+        for (int i = 0; i < size; i += 97) {
+            transform.transform(ra[i], dec[i], time, single);
+            assertEquals(single[0], alt[i], 1e-12);
+            assertEquals(single[1], az[i], 1e-12);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> transform.transform(ra, new double[1], time, alt, az));
+    }
+
+    private static double hms(double hours, double minutes, double seconds) {
+        return (hours + minutes / 60.0 + seconds / 3600.0) * 15.0;
+    }
+
+    private static double dms(double degrees, double minutes, double seconds) {
+        return degrees + minutes / 60.0 + seconds / 3600.0;
+    }
+
+    /** Same Delta T as {@link AnalyticEphemerides} */
+    private static long fromJulianEphemerisDay(double jde) {
+        return Math.round((jde - 2440587.5) * 86400000.0) - 69200;
+    }
+}
@@ -0,0 +1,104 @@
+package com.aajpm.altair.utility.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class EphemeridesCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMemoryOnly() {
+        EphemeridesCache cache = new EphemeridesCache(null, 2);
+        Instant expiry = Instant.now().plus(Duration.ofDays(1));
+
+        cache.put("a", "1", expiry);
+        cache.put("b", "2", expiry);
+        cache.get("a");                 // "b" is now the least recently used
+        cache.put("c", "3", expiry);
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    void testDiskTier() {
+        EphemeridesCache cache = new EphemeridesCache(tempDir.resolve("test.cache"), 1);
+        Instant expiry = Instant.now().plus(Duration.ofDays(1));
+
+        cache.put("a", "1", expiry);
+        cache.put("b", "2", expiry);    // Evicts "a" from memory, but it's still on disk
+
+        assertEquals("1", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testSurvivesRestart() {
+        Path file = tempDir.resolve("restart.cache");
+        Instant expiry = Instant.now().plus(Duration.ofDays(1));
+
+        EphemeridesCache cache = new EphemeridesCache(file, 16);
+        cache.put("night|37.2597,-6.9325|-18.0000|2023-06-09", "1686352380000,1686369780000", expiry);
+        cache.put("id|CERES", "1;", expiry);
+        cache.put("id|CERES", "2000001;", expiry);      // Overwritten
+        cache.put("old", "x", Instant.now().minusSeconds(1));
+        cache.close();
+
+        EphemeridesCache reloaded = new EphemeridesCache(file, 16);
+        assertEquals("1686352380000,1686369780000", reloaded.get("night|37.2597,-6.9325|-18.0000|2023-06-09"));
+        assertEquals("2000001;", reloaded.get("id|CERES"));
+        assertNull(reloaded.get("old"));
+        assertEquals(2, reloaded.size());
+    }
+
+    @Test
+    void testWritesToDiskInBatches() throws IOException {
+        Path file = tempDir.resolve("batches.cache");
+        Instant expiry = Instant.now().plus(Duration.ofDays(1));
+
+        EphemeridesCache cache = new EphemeridesCache(file, 16);
+        for (int i = 0; i < EphemeridesCache.FLUSH_ENTRIES - 1; i++)
+            cache.put("key" + i, "value" + i, expiry);
+        assertEquals(0, Files.readAllLines(file).size());
+
+        cache.put("last", "value", expiry);
+        assertEquals(EphemeridesCache.FLUSH_ENTRIES, Files.readAllLines(file).size());
+
+        cache.put("pending", "value", expiry);
+        assertEquals("value", cache.get("pending"));
+        cache.close();
+        assertEquals(EphemeridesCache.FLUSH_ENTRIES + 1, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void testCompactsWhileRunning() throws IOException {
+        Path file = tempDir.resolve("compact.cache");
+        Instant expiry = Instant.now().plus(Duration.ofDays(1));
+
+        EphemeridesCache cache = new EphemeridesCache(file, 16);
+        for (int i = 0; i < 5000; i++) {
+            cache.put("night", "value" + i, expiry);
+            cache.flush();
+        }
+
+        // Only the overwritten entries are dropped
+        assertTrue(Files.readAllLines(file).size() < 2000);
+        assertEquals("value4999", cache.get("night"));
+        cache.close();
+        assertEquals("value4999", new EphemeridesCache(file, 16).get("night"));
+    }
+}
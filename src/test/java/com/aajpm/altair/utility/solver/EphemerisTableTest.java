@@ -0,0 +1,62 @@
+package com.aajpm.altair.utility.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class EphemerisTableTest {
+
+    private static final long START = 1686326400000L;       // 2023-06-09T16:00:00Z
+    private static final long STEP = 5 * 60 * 1000L;
+
+    @Test
+    void testInterpolatesSmoothCurve() {
+        // A body crossing the sky, 12 hours at a 5 minute step
+        int size = 145;
+        double[] alt = new double[size];
+        double[] az = new double[size];
+        for (int i = 0; i < size; i++) {
+            alt[i] = altitudeAt(START + i * STEP);
+            az[i] = 90.0 + i;
+        }
+        EphemerisTable table = new EphemerisTable(START, STEP, alt, az, null);
+
+        for (long t = START; t <= table.getEndMillis(); t += 37_000) {
+            assertEquals(altitudeAt(t), table.altitude(t), 1e-3);
+        }
+        assertEquals(90.5, table.azimuth(START + STEP / 2), 1e-9);
+        assertTrue(table.isClear(START));
+    }
+
+    @Test
+    void testAzimuthWrapsAround() {
+        double[] alt = {10.0, 11.0, 12.0, 13.0};
+        double[] az = {350.0, 355.0, 0.0, 5.0};
+        EphemerisTable table = new EphemerisTable(START, STEP, alt, az, null);
+
+        assertEquals(357.5, table.azimuth(START + STEP + STEP / 2), 1e-9);
+        assertEquals(2.5, table.azimuth(START + 2 * STEP + STEP / 2), 1e-9);
+    }
+
+    @Test
+    void testClearAndRange() {
+        double[] alt = {10.0, 11.0, 12.0};
+        double[] az = {100.0, 101.0, 102.0};
+        boolean[] clear = {false, true, true};
+        EphemerisTable table = new EphemerisTable(START, STEP, alt, az, clear);
+
+        assertFalse(table.isClear(START + STEP / 4));
+        assertTrue(table.isClear(START + 3 * STEP / 4));
+        assertTrue(table.covers(table.getEndMillis()));
+        assertFalse(table.covers(START - 1));
+        assertThrows(IllegalArgumentException.class, () -> table.altitude(table.getEndMillis() + 1));
+    }
+
+    private static double altitudeAt(long millis) {
+        double hours = (millis - START) / 3_600_000.0;
+        return 60.0 * Math.sin(Math.PI * hours / 12.0) - 5.0;
+    }
+}
@@ -0,0 +1,228 @@
+package com.aajpm.altair.utility.solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import com.aajpm.altair.config.AstrometricsConfig;
+import com.aajpm.altair.utility.Interval;
+import com.aajpm.altair.utility.exception.SolverException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Checks {@link LocalEphemeridesSolver} against the same values used in
+ * {@link HorizonsEphemeridesSolverTest}, which come from JPL Horizons.
+ */
+public class LocalEphemeridesSolverTest {
+
+    private AstrometricsConfig config = new AstrometricsConfig();
+
+    LocalEphemeridesSolverTest() {
+        super();
+        config.setSiteLatitude(37.2597);
+        config.setSiteLongitude(-6.9325);
+        config.setSiteElevation(130.0);
+        config.setHorizonLine(0.0);
+    }
+
+    private static boolean isWithin(Instant expected, Instant actual, int minuteMargin) {
+        return Duration.between(expected, actual).abs().toMinutes() < minuteMargin;
+    }
+
+    @Test
+    void testGetAltAz() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        double[] expectedAltAz = { 2.589722257, 121.561196473 };
+        double[] altAz = solver.getAltAz("Sun", Instant.parse("2012-12-31T08:00:00Z")).block();
+
+        assertEquals(expectedAltAz[0], altAz[0], 0.1);
+        assertEquals(expectedAltAz[1], altAz[1], 0.1);
+    }
+
+    @Test
+    void testGetRiseSetTimes() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        int minuteMargin = 5;
+
+        Interval expectedRiseSetTimes = new Interval(Instant.parse("2012-12-31T07:40:00Z"),Instant.parse("2012-12-31T17:23:00Z"));
+        Interval riseSetTimes = solver.getRiseSetTime("Sun", new Interval(Instant.parse("2012-12-31T00:00:00Z"), Duration.ofDays(1)), 0.0).block();
+
+        assertTrue(isWithin(expectedRiseSetTimes.getStart(), riseSetTimes.getStart(), minuteMargin));
+        assertTrue(isWithin(expectedRiseSetTimes.getEnd(), riseSetTimes.getEnd(), minuteMargin));
+    }
+
+    @Test
+    void testIsVisible() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        assertTrue(solver.isVisible("Sun", Instant.parse("2012-12-31T12:00:00Z")).block());
+        assertFalse(solver.isVisible("Sun", Instant.parse("2012-12-31T22:00:00Z")).block());
+    }
+
+    @Test
+    void testGetNightTime() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        int minuteMargin = 5;
+
+        Interval expectedNightTime = new Interval(Instant.parse("2012-12-31T18:53:00Z"),Instant.parse("2013-01-01T06:08:00Z"));
+        Interval nightTime = solver.getNightTime(Instant.parse("2012-12-31T17:23:00Z")).block();
+
+        assertTrue(isWithin(expectedNightTime.getStart(), nightTime.getStart(), minuteMargin));
+        assertTrue(isWithin(expectedNightTime.getEnd(), nightTime.getEnd(), minuteMargin));
+    }
+
+    @Test
+    void tesGetNightTimeMidnightSun() {
+        AstrometricsConfig northPole = new AstrometricsConfig();
+        northPole.setSiteLatitude(87.5);
+        northPole.setSiteLongitude(0.0);
+        northPole.setSiteElevation(0.0);
+        northPole.setHorizonLine(0.0);
+        northPole.setDawnLine(-18.0);
+
+        EphemeridesSolver solver = new LocalEphemeridesSolver(northPole);
+
+        Interval expectedNightTime = new Interval(Instant.parse("2023-11-07T21:45:00Z"),Instant.parse("2023-11-08T01:45:00Z"));
+        Interval nightTime = solver.getNightTime(Instant.parse("2023-06-25T18:00:00Z")).block();
+
+        // The first polar nights are very short and depend heavily on the
+        // declination of the Sun, so just check that the first night is found
+        // within a few days and is centered around the lower culmination
+        Instant expectedMiddle = expectedNightTime.getStart().plus(expectedNightTime.getDuration().dividedBy(2));
+        Instant middle = nightTime.getStart().plus(nightTime.getDuration().dividedBy(2));
+
+        int secondsOfDayDiff = Math.abs(expectedMiddle.atZone(ZoneOffset.UTC).toLocalTime().toSecondOfDay()
+                                        - middle.atZone(ZoneOffset.UTC).toLocalTime().toSecondOfDay());
+        secondsOfDayDiff = Math.min(secondsOfDayDiff, 86400 - secondsOfDayDiff);
+
+        assertTrue(Duration.between(expectedNightTime.getStart(), nightTime.getStart()).abs().toDays() <= 4);
+        assertTrue(secondsOfDayDiff < 30 * 60);
+    }
+
+    @Test
+    void testGetNightTimeNoNightInSearch() {
+        AstrometricsConfig northPole = new AstrometricsConfig();
+        northPole.setSiteLatitude(87.5);
+        northPole.setSiteLongitude(0.0);
+        northPole.setSiteElevation(0.0);
+        northPole.setHorizonLine(0.0);
+        northPole.setDawnLine(-18.0);
+
+        EphemeridesSolver solver = new LocalEphemeridesSolver(northPole);
+
+        // The first night after the spring equinox is in November, past the 200 days searched
+        Mono<Interval> nightTime = solver.getNightTime(Instant.parse("2023-03-25T18:00:00Z"));
+
+        assertThrows(SolverException.class, nightTime::block);
+    }
+
+    @Test
+    void testLST() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        double expected = 10 + 3/60.0 + 16/3600.0;
+        double lst = solver.getLST(Instant.parse("2023-06-09T17:19:43Z"), true).block();
+
+        assertEquals(expected, lst, 0.001);
+    }
+
+    @Test
+    void testRaDecToAltAz() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        double ra = 18.61555;
+        double dec = 38.783;
+        Instant time = Instant.parse("2023-06-09T00:00:00Z");
+        double[] expectedAltAz = { 67.0035, 77.1148 };
+
+        double[] altAz = solver.raDecToAltAz(ra, dec, 37.2597, -6.9325, time).block();
+
+        assertEquals(expectedAltAz[0], altAz[0], 0.5);
+        assertEquals(expectedAltAz[1], altAz[1], 0.5);
+    }
+
+    @Test
+    void testRefractionIsExplicit() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        // Vega, low in the north-east
+        double ra = 18.61555;
+        double dec = 38.783;
+        Instant time = Instant.parse("2023-06-09T18:00:00Z");
+
+        double[] geometric = solver.raDecToAltAz(ra, dec, 37.2597, -6.9325, time, false).block();
+        double[] apparent = solver.raDecToAltAz(ra, dec, 37.2597, -6.9325, time, true).block();
+        assertEquals(geometric[0] + AnalyticEphemerides.refraction(geometric[0]), apparent[0], 1e-9);
+        assertEquals(geometric[1], apparent[1], 1e-9);
+
+        // Without the option, the altitude is geometric
+        assertArrayEquals(geometric, solver.raDecToAltAz(ra, dec, 37.2597, -6.9325, time).block(), 1e-9);
+
+        // The rise and set times are those of the apparent altitude
+        Interval day = new Interval(Instant.parse("2023-06-09T12:00:00Z"), Duration.ofDays(1));
+        Interval above = solver.getRiseSetTime(ra, dec, 37.2597, -6.9325, day, 10.0).block();
+        assertEquals(10.0, solver.raDecToAltAz(ra, dec, 37.2597, -6.9325, above.getStart(), true).block()[0], 0.02);
+        assertEquals(10.0, solver.raDecToAltAz(ra, dec, 37.2597, -6.9325, above.getEnd(), true).block()[0], 0.02);
+    }
+
+    @Test
+    void testGetRiseSetTimesSpace() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+
+        int minuteMargin = 10;
+
+        double ra = 18.61666;
+        double dec = 38.78333;
+
+        Interval expectedRiseSetTimes = new Interval(Instant.parse("2023-06-09T00:00:00Z"),Instant.parse("2023-06-09T10:30:00Z"));
+        Interval riseSetTimes = solver.getRiseSetTime(ra, dec, 37.2597, -6.9325, new Interval(Instant.parse("2023-06-09T00:00:00Z"), Duration.ofDays(1)), 0.0).block();
+
+        assertTrue(isWithin(expectedRiseSetTimes.getStart(), riseSetTimes.getStart(), minuteMargin));
+        assertTrue(isWithin(expectedRiseSetTimes.getEnd(), riseSetTimes.getEnd(), minuteMargin));
+    }
+
+    @Test
+    void testPlanetsAndKeplerAgree() {
+        LocalEphemeridesSolver solver = new LocalEphemeridesSolver(config);
+        Instant time = Instant.parse("2023-06-09T00:00:00Z");
+
+        // Mars, propagated from its J2000 elements as if it was a small body
+        solver.registerOrbitalElements("Not Mars", new OrbitalElements(
+            Instant.parse("2000-01-01T11:58:55.816Z"),
+            1.52371034, 0.09339410, 1.84969142, 49.55953891,
+            -23.94362959 - 49.55953891, -4.55343205 + 23.94362959));
+
+        double[] planet = solver.getAltAz("Mars", time).block();
+        double[] kepler = solver.getAltAz("Not Mars", time).block();
+
+        // Both use the same model, only the drift of the elements changes
+        assertEquals(planet[0], kepler[0], 0.5);
+        assertEquals(planet[1], kepler[1], 0.5);
+    }
+
+    @Test
+    void testBatchMarksFailedBodies() {
+        EphemeridesSolver solver = new LocalEphemeridesSolver(config);
+        Interval night = new Interval(Instant.parse("2023-06-09T20:00:00Z"), Duration.ofHours(10));
+
+        Interval[] riseSet = solver.getRiseSetTimes(new String[] {"Mars", "Not a body", "Saturn"}, night).block();
+
+        assertEquals(3, riseSet.length);
+        assertEquals(solver.getRiseSetTime("Mars", night).block(), riseSet[0]);
+        assertNull(riseSet[1]);
+        assertEquals(solver.getRiseSetTime("Saturn", night).block(), riseSet[2]);
+    }
+}
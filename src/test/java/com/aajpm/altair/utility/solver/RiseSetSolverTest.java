@@ -0,0 +1,168 @@
+package com.aajpm.altair.utility.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.function.LongToDoubleFunction;
+
+import org.junit.jupiter.api.Test;
+
+import com.aajpm.altair.utility.Interval;
+
+public class RiseSetSolverTest {
+
+    private static final Interval DAY = new Interval(Instant.parse("2023-06-09T00:00:00Z"), Duration.ofDays(1));
+
+    @Test
+    void testFixedMatchesScan() {
+        double[][] targets = {
+            // ra (deg), dec (deg), latitude (deg)
+            {279.2347, 38.7837, 37.2597},       // Vega from Huelva
+            {101.2872, -16.7161, 37.2597},      // Sirius
+            {83.8221, -5.3911, -33.8688},       // M42 from Sydney
+            {10.6847, 41.2687, 60.1699},        // M31 from Helsinki
+        };
+
+        for (double[] target : targets) {
+            LongToDoubleFunction lst = millis -> CoordinateTransform.localSiderealTime(millis, -6.9325);
+            LongToDoubleFunction altitude = millis -> altitude(target[0], target[1], target[2], lst.applyAsDouble(millis)) - 3.0;
+
+            Interval expected = RiseSetSolver.findIntervalAbove(altitude, DAY, 1000, 1);
+            Interval actual = RiseSetSolver.fixedIntervalAbove(target[0], target[1], target[2], lst, DAY, 3.0);
+
+            assertEquals(expected.getStart().toEpochMilli(), actual.getStart().toEpochMilli(), 1000.0);
+            assertEquals(expected.getEnd().toEpochMilli(), actual.getEnd().toEpochMilli(), 1000.0);
+        }
+    }
+
+    @Test
+    void testBatchMatchesSingle() {
+        LongToDoubleFunction lst = millis -> CoordinateTransform.localSiderealTime(millis, -6.9325);
+
+        // A catalogue of 10k objects spread over the whole sky
+        Random random = new Random(42);
+        int size = 10000;
+        double[] ra = new double[size];
+        double[] dec = new double[size];
+        for (int i = 0; i < size; i++) {
+            ra[i] = random.nextDouble() * 24.0;
+            dec[i] = Math.toDegrees(Math.asin(random.nextDouble() * 2.0 - 1.0));
+        }
+
+        Interval[] batch = RiseSetSolver.fixedIntervalsAbove(ra, dec, 37.2597, lst, DAY, 3.0);
+
+        for (int i = 0; i < size; i += 97) {
+            Interval single = RiseSetSolver.fixedIntervalAbove(ra[i] * 15.0, dec[i], 37.2597, lst, DAY, 3.0);
+            assertEquals(single.isEmpty(), batch[i].isEmpty());
+            assertEquals(single.getStart().toEpochMilli(), batch[i].getStart().toEpochMilli(), 100.0);
+            assertEquals(single.getEnd().toEpochMilli(), batch[i].getEnd().toEpochMilli(), 100.0);
+        }
+    }
+
+    @Test
+    void testCircumpolarAndNeverRises() {
+        LongToDoubleFunction lst = millis -> CoordinateTransform.localSiderealTime(millis, 0.0);
+
+        // Polaris from the north, Acrux from the north
+        assertEquals(Double.POSITIVE_INFINITY, RiseSetSolver.crossingHourAngle(89.26, 37.2597, 0.0));
+        assertTrue(Double.isNaN(RiseSetSolver.crossingHourAngle(-63.1, 37.2597, 0.0)));
+
+        assertEquals(DAY, RiseSetSolver.fixedIntervalAbove(37.95, 89.26, 37.2597, lst, DAY, 0.0));
+        assertEquals(Interval.empty(), RiseSetSolver.fixedIntervalAbove(186.65, -63.1, 37.2597, lst, DAY, 0.0));
+    }
+
+    @Test
+    void testFindRoot() {
+        // Crosses zero at 1234567 ms
+        LongToDoubleFunction function = millis -> Math.sin((millis - 1234567) / 3600000.0);
+
+        long root = RiseSetSolver.findRoot(function, 0, function.applyAsDouble(0), 3600000, function.applyAsDouble(3600000), 1000);
+        assertEquals(1235000, root);
+
+        Interval above = RiseSetSolver.findIntervalAbove(function, new Interval(Instant.ofEpochMilli(0), Duration.ofHours(24)), 600000, 1);
+        assertEquals(1234567, above.getStart().toEpochMilli(), 1.0);
+        assertEquals(1234567 + Math.round(Math.PI * 3600000.0), above.getEnd().toEpochMilli(), 1.0);
+    }
+
+    @Test
+    void testUnrefract() {
+        double trueAltitude = RiseSetSolver.unrefract(0.0);
+        assertEquals(0.0, trueAltitude + AnalyticEphemerides.refraction(trueAltitude), 1e-6);
+        assertEquals(-0.57, trueAltitude, 0.01);
+    }
+
+    @Test
+    void testMatchesScanWithFewerEvaluations() {
+        // Vega from Huelva, counting how many times the sidereal time is evaluated
+        long[] evaluations = new long[1];
+        LongToDoubleFunction lst = millis -> {
+            evaluations[0]++;
+            return CoordinateTransform.localSiderealTime(millis, -6.9325);
+        };
+
+        // At an apparent altitude, as the solvers answer, so both refract it the same way
+        Interval analytic = RiseSetSolver.fixedIntervalAbove(279.2347, 38.7837, 37.2597, lst, DAY, RiseSetSolver.unrefract(3.0));
+        long analyticEvaluations = evaluations[0];
+
+        evaluations[0] = 0;
+        Interval scanned = scan(279.2347, 38.7837, 37.2597, lst, DAY, 3.0);
+        long scanEvaluations = evaluations[0];
+
+        // The scan finds each crossing at the first step after it, so it's
+        // late by up to a step. Compared as longs, as a float delta would
+        // lose two minutes to rounding.
+        long step = DAY.getDuration().toMillis() / 2048;
+        assertLateByUpTo(analytic.getStart(), scanned.getStart(), step);
+        assertLateByUpTo(analytic.getEnd(), scanned.getEnd(), step);
+
+        assertTrue(analyticEvaluations <= 10, "Analytic solution took " + analyticEvaluations + " evaluations");
+        assertTrue(analyticEvaluations * 10 < scanEvaluations, "Analytic: " + analyticEvaluations + " evaluations, scan: " + scanEvaluations);
+    }
+
+    private static void assertLateByUpTo(Instant expected, Instant actual, long millis) {
+        long late = actual.toEpochMilli() - expected.toEpochMilli();
+        assertTrue(late >= 0 && late <= millis, actual + " is not up to " + millis + " ms after " + expected);
+    }
+
+    /**
+     * The fixed-step scan that was used before, dividing the search interval
+     * into 2048 steps, kept as a baseline. The altitude is apparent, with the
+     * refraction.
+     */
+    static Interval scan(double ra, double dec, double latitude, LongToDoubleFunction lst, Interval searchInterval, double targetAltitude) {
+        int maxIterations = 2048;
+        long stepSize = (long) Math.floor(searchInterval.getDurationSeconds() / maxIterations);
+
+        double lastAlt = altitude(ra, dec, latitude, lst.applyAsDouble(searchInterval.getStart().toEpochMilli()), true);
+        Instant riseTime = (lastAlt >= targetAltitude) ? searchInterval.getStart() : null;
+        Instant setTime = null;
+
+        for (int i = 1; i < maxIterations && (riseTime == null || setTime == null); i++) {
+            Instant time = searchInterval.getStart().plusSeconds(stepSize * i);
+            double alt = altitude(ra, dec, latitude, lst.applyAsDouble(time.toEpochMilli()), true);
+            if (alt >= targetAltitude && lastAlt < targetAltitude && riseTime == null) {
+                riseTime = time;
+            } else if (alt < targetAltitude && lastAlt >= targetAltitude && setTime == null) {
+                setTime = time;
+            }
+            lastAlt = alt;
+        }
+
+        if (riseTime == null)
+            return Interval.empty();
+        return new Interval(riseTime, setTime == null ? searchInterval.getEnd() : setTime);
+    }
+
+    static double altitude(double ra, double dec, double latitude, double lst) {
+        return altitude(ra, dec, latitude, lst, false);
+    }
+
+    static double altitude(double ra, double dec, double latitude, double lst, boolean refract) {
+        double[] altAz = new double[2];
+        AnalyticEphemerides.equatorialToHorizontal(ra, dec, Double.POSITIVE_INFINITY, lst, latitude, refract, altAz);
+        return altAz[0];
+    }
+}
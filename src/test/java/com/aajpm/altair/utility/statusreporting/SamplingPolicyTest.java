@@ -0,0 +1,45 @@
+package com.aajpm.altair.utility.statusreporting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+public class SamplingPolicyTest {
+
+    private static final Duration ACTIVE = Duration.ofMillis(500);
+    private static final Duration IDLE = Duration.ofSeconds(5);
+    private static final Duration PARKED = Duration.ofSeconds(30);
+
+    /** A device that is busy over 0, and parked under 0 */
+    private final SamplingPolicy<Integer> tiered = SamplingPolicy.tiered(status -> status > 0, status -> status < 0, ACTIVE, IDLE, PARKED);
+
+    @Test
+    void testFixedIgnoresTheStatus() {
+        SamplingPolicy<Integer> fixed = SamplingPolicy.fixed(IDLE);
+
+        assertEquals(IDLE, fixed.nextInterval(null));
+        assertEquals(IDLE, fixed.nextInterval(1));
+        assertEquals(IDLE, fixed.nextInterval(-1));
+    }
+
+    @Test
+    void testTieredFollowsTheState() {
+        assertEquals(ACTIVE, tiered.nextInterval(1));
+        assertEquals(IDLE, tiered.nextInterval(0));
+        assertEquals(PARKED, tiered.nextInterval(-1));
+    }
+
+    @Test
+    void testTieredIsActiveBeforeTheFirstStatus() {
+        assertEquals(ACTIVE, tiered.nextInterval(null));
+    }
+
+    @Test
+    void testTieredActiveWinsOverParked() {
+        SamplingPolicy<Integer> both = SamplingPolicy.tiered(status -> true, status -> true, ACTIVE, IDLE, PARKED);
+
+        assertEquals(ACTIVE, both.nextInterval(0));
+    }
+}
@@ -0,0 +1,118 @@
+package com.aajpm.altair.utility.statusreporting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Polls a fake device every few milliseconds, which reports the given
+ * statuses in order and then keeps reporting the last one.
+ */
+public class StatusPublisherTest {
+
+    private static final SamplingPolicy<Double> EVERY_5_MS = SamplingPolicy.fixed(Duration.ofMillis(5));
+
+    private final AtomicInteger polls = new AtomicInteger();
+
+    private final List<Double> emitted = new CopyOnWriteArrayList<>();
+
+    @Test
+    void testEmitsOnlyChanges() {
+        StatusPublisher<Double> publisher = new StatusPublisher<>("Test", device(1.0, 1.0, 2.0, 2.0, 2.0, 1.0), EVERY_5_MS);
+
+        listen(publisher, 10);
+
+        assertEquals(List.of(1.0, 2.0, 1.0), emitted);
+        assertEquals(1.0, publisher.getLastStatus());
+    }
+
+    @Test
+    void testSuppressesChangesInsideTheDeadband() {
+        StatusPublisher<Double> publisher = new StatusPublisher<>("Test", device(10.0, 10.05, 10.09, 10.15, 10.2, 10.26), EVERY_5_MS,
+                                                                  (last, status) -> Math.abs(last - status) < 0.1, Duration.ZERO);
+
+        listen(publisher, 10);
+
+        // Compared to the last one emitted, so a slow drift is emitted too
+        assertEquals(List.of(10.0, 10.15, 10.26), emitted);
+    }
+
+    @Test
+    void testForcesAnEmitAtTheMaxInterval() {
+        StatusPublisher<Double> publisher = new StatusPublisher<>("Test", device(1.0), EVERY_5_MS,
+                                                                  Double::equals, Duration.ofMillis(50));
+
+        Disposable subscription = publisher.getStream().subscribe(emitted::add);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> emitted.size() >= 3);
+        subscription.dispose();
+
+        // Only some of the polls, all of them unchanged
+        assertTrue(polls.get() > emitted.size());
+        emitted.forEach(status -> assertEquals(1.0, status));
+    }
+
+    @Test
+    void testNoMaxIntervalNeverRepeats() {
+        StatusPublisher<Double> publisher = new StatusPublisher<>("Test", device(1.0), EVERY_5_MS);
+
+        listen(publisher, 20);
+
+        assertEquals(List.of(1.0), emitted);
+    }
+
+    @Test
+    void testPollsOnlyWhileSubscribed() throws InterruptedException {
+        StatusPublisher<Double> publisher = new StatusPublisher<>("Test", device(1.0, 2.0), EVERY_5_MS);
+
+        Thread.sleep(50);
+        assertEquals(0, polls.get());
+        assertNull(publisher.getLastStatus());
+
+        listen(publisher, 5);
+        int polled = polls.get();
+        Thread.sleep(50);
+        assertEquals(polled, polls.get());
+    }
+
+    @Test
+    void testSubscribersShareThePolls() {
+        StatusPublisher<Double> publisher = new StatusPublisher<>("Test", device(1.0, 2.0, 3.0), SamplingPolicy.fixed(Duration.ofMillis(50)));
+        List<Double> other = new CopyOnWriteArrayList<>();
+
+        Disposable first = publisher.getStream().subscribe(emitted::add);
+        Disposable second = publisher.getStream().subscribe(other::add);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> emitted.size() >= 3 && other.size() >= 3);
+        first.dispose();
+        second.dispose();
+
+        assertEquals(List.of(1.0, 2.0, 3.0), emitted);
+        // Each subscriber polling on its own would have skipped some
+        assertEquals(emitted, other);
+    }
+
+    //////////////////////////////// HELPERS //////////////////////////////////
+
+    private Supplier<Mono<Double>> device(Double... statuses) {
+        return () -> Mono.fromSupplier(() -> statuses[Math.min(polls.getAndIncrement(), statuses.length - 1)]);
+    }
+
+    /** Subscribes until the device has been polled at least the given times */
+    private void listen(StatusPublisher<Double> publisher, int times) {
+        Disposable subscription = publisher.getStream().subscribe(emitted::add);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> polls.get() >= times);
+        subscription.dispose();
+    }
+}